@@ -0,0 +1,136 @@
+package io.zrz.jpgsql.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+/**
+ * encoding 1024 COPY BINARY records with the {@link ByteBufBinaryWriter} and the
+ * {@link BinaryOutputStreamWriter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CopyEncodingBenchmark {
+
+  private static final int ROWS = 1024;
+
+  @Param({ "ascii", "utf8" })
+  public String text;
+
+  private String[] names;
+  private long[] ids;
+  private List<String> tags;
+  private byte[][] documents;
+  private ByteBuf buf;
+  private ByteBufBinaryWriter bufWriter;
+  private ByteArrayOutputStream bytes;
+  private BinaryOutputStreamWriter streamWriter;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(1);
+    this.names = new String[ROWS];
+    this.ids = new long[ROWS];
+    for (int i = 0; i < ROWS; ++i) {
+      this.ids[i] = random.nextLong();
+      this.names[i] = (this.text.equals("ascii") ? "customer name " : "clïent ñame ✓ ") + random.nextInt(1000000);
+    }
+    this.documents = new byte[ROWS][];
+    for (int i = 0; i < ROWS; ++i) {
+      final StringBuilder json = new StringBuilder("{\"id\":").append(this.ids[i]).append(",\"lines\":[");
+      for (int j = 0; j < 8; ++j) {
+        json.append(j == 0 ? "" : ",").append("{\"name\":\"").append(this.names[(i + j) % ROWS]).append("\",\"note\":\"").append(j == 0 ? "said \\\"hi\\\"" : "said hello").append("\"}");
+      }
+      this.documents[i] = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+    this.tags = Arrays.asList("alpha", "beta", "gamma \"quoted\"", "delta");
+    this.buf = PooledByteBufAllocator.DEFAULT.directBuffer(1024 * 1024);
+    this.bufWriter = new ByteBufBinaryWriter(this.buf);
+    this.bytes = new ByteArrayOutputStream(1024 * 1024);
+    this.streamWriter = new BinaryOutputStreamWriter((DataOutput) new DataOutputStream(this.bytes));
+  }
+
+  @TearDown
+  public void teardown() {
+    this.buf.release();
+  }
+
+  private static void record(final BinaryStreamWriter w, final long id, final String name) {
+    w.writeStartRecord(5);
+    w.writeBigint(id);
+    w.writeInt((int) id);
+    w.writeText(name);
+    w.writeBoolean((id & 1) == 0);
+    w.writeTimestampPgMicros(id >>> 8);
+  }
+
+  @Benchmark
+  public ByteBuf byteBuf() {
+    this.buf.clear();
+    for (int i = 0; i < ROWS; ++i) {
+      record(this.bufWriter, this.ids[i], this.names[i]);
+    }
+    return this.buf;
+  }
+
+  /**
+   * text[] is only supported by the {@link ByteBufBinaryWriter}.
+   */
+  @Benchmark
+  public ByteBuf byteBufTextArray() {
+    this.buf.clear();
+    for (int i = 0; i < ROWS; ++i) {
+      this.bufWriter.writeStartRecord(1);
+      this.bufWriter.writeTextArray(this.tags);
+    }
+    return this.buf;
+  }
+
+  /**
+   * documents of around 500 bytes, with a couple of escapes in each.
+   */
+  @Benchmark
+  public ByteBuf byteBufJsonb() {
+    this.buf.clear();
+    for (int i = 0; i < ROWS; ++i) {
+      this.bufWriter.writeStartRecord(1);
+      this.bufWriter.writeJsonb(this.documents[i]);
+    }
+    return this.buf;
+  }
+
+  @Benchmark
+  public ByteArrayOutputStream outputStream() {
+    this.bytes.reset();
+    for (int i = 0; i < ROWS; ++i) {
+      record(this.streamWriter, this.ids[i], this.names[i]);
+    }
+    return this.bytes;
+  }
+
+}
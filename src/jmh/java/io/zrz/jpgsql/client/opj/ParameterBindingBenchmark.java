@@ -0,0 +1,190 @@
+package io.zrz.jpgsql.client.opj;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.postgresql.core.Oid;
+import org.postgresql.core.ParameterList;
+import org.postgresql.util.ByteStreamWriter;
+
+import io.zrz.jpgsql.client.DefaultParametersList;
+import io.zrz.jpgsql.client.QueryParameters;
+
+/**
+ * populating a {@link DefaultParametersList} and binding it into the driver's parameter list, as
+ * done for every execution.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterBindingBenchmark {
+
+  private final CapturingParameterList target = new CapturingParameterList(8);
+  private byte[] uuid;
+  private byte[] payload;
+
+  @Setup
+  public void setup() {
+    final UUID id = UUID.randomUUID();
+    this.uuid = java.nio.ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    this.payload = new byte[256];
+  }
+
+  private QueryParameters params() {
+    return new DefaultParametersList(8)
+      .setInteger(1, 42)
+      .setLong(2, 1234567890123L)
+      .setString(3, "hello, world", Oid.TEXT)
+      .setString(4, "{\"a\":1}", Oid.JSON)
+      .setBytes(5, this.uuid, Oid.UUID)
+      .setBytes(6, this.payload, Oid.BYTEA)
+      .setIntArray(7, new int[] { 1, 2, 3, 4, 5, 6, 7, 8 })
+      .setStringArray(8, Arrays.asList("a", "b c", "d\"e"));
+  }
+
+  @Benchmark
+  public QueryParameters populate() {
+    return this.params();
+  }
+
+  @Benchmark
+  public ParameterList bind() throws Exception {
+    return PgLocalConnection.bind(this.params(), this.target);
+  }
+
+  /**
+   * holds on to the last values, so the binding is not optimised away.
+   */
+  private static final class CapturingParameterList implements ParameterList {
+
+    private final Object[] values;
+    private final int[] oids;
+
+    CapturingParameterList(final int count) {
+      this.values = new Object[count];
+      this.oids = new int[count];
+    }
+
+    private void set(final int index, final Object value, final int oid) {
+      this.values[index - 1] = value;
+      this.oids[index - 1] = oid;
+    }
+
+    @Override
+    public void registerOutParameter(final int index, final int sqlType) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getParameterCount() {
+      return this.values.length;
+    }
+
+    @Override
+    public int getInParameterCount() {
+      return this.values.length;
+    }
+
+    @Override
+    public int getOutParameterCount() {
+      return 0;
+    }
+
+    @Override
+    public int[] getTypeOIDs() {
+      return this.oids;
+    }
+
+    @Override
+    public void setIntParameter(final int index, final int value) {
+      this.set(index, value, Oid.INT4);
+    }
+
+    @Override
+    public void setLiteralParameter(final int index, final String value, final int oid) {
+      this.set(index, value, oid);
+    }
+
+    @Override
+    public void setStringParameter(final int index, final String value, final int oid) {
+      this.set(index, value, oid);
+    }
+
+    @Override
+    public void setBytea(final int index, final byte[] data, final int offset, final int length) {
+      this.set(index, data, Oid.BYTEA);
+    }
+
+    @Override
+    public void setBytea(final int index, final InputStream stream, final int length) {
+      this.set(index, stream, Oid.BYTEA);
+    }
+
+    @Override
+    public void setBytea(final int index, final InputStream stream) {
+      this.set(index, stream, Oid.BYTEA);
+    }
+
+    @Override
+    public void setBytea(final int index, final ByteStreamWriter writer) {
+      this.set(index, writer, Oid.BYTEA);
+    }
+
+    @Override
+    public void setText(final int index, final InputStream stream) {
+      this.set(index, stream, Oid.TEXT);
+    }
+
+    @Override
+    public void setBinaryParameter(final int index, final byte[] value, final int oid) {
+      this.set(index, value, oid);
+    }
+
+    @Override
+    public void setNull(final int index, final int oid) {
+      this.set(index, null, oid);
+    }
+
+    @Override
+    public ParameterList copy() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+      Arrays.fill(this.values, null);
+    }
+
+    @Override
+    public String toString(final int index, final boolean standardConformingStrings) {
+      return String.valueOf(this.values[index - 1]);
+    }
+
+    @Override
+    public void appendAll(final ParameterList list) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object[] getValues() {
+      return this.values;
+    }
+
+  }
+
+}
@@ -0,0 +1,131 @@
+package io.zrz.jpgsql.client.opj;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.postgresql.core.Field;
+import org.postgresql.core.Oid;
+
+/**
+ * text format decoding: the byte level parsers in {@link PgResultDecoder} against the previous
+ * approach of creating a String and handing it to the JDK.
+ *
+ * each invocation decodes a batch of 1024 values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PgResultDecoderBenchmark {
+
+  private static final int SIZE = 1024;
+
+  private static final DateTimeFormatter TIMESTAMPTZ =
+    new DateTimeFormatterBuilder()
+      .appendPattern("yyyy-MM-dd HH:mm:ss")
+      .appendFraction(ChronoField.MICRO_OF_SECOND, 0, 6, true)
+      .appendOffset("+HH", "")
+      .toFormatter();
+
+  private static final PgResultField TIMESTAMPTZ_FIELD = new PgResultField(0, new Field("ts", Oid.TIMESTAMPTZ, 8, 0, 0, 0));
+
+  private byte[][] longs;
+  private byte[][] doubles;
+  private byte[][] decimals;
+  private byte[][] timestamps;
+
+  @Setup
+  public void setup() {
+    this.longs = new byte[SIZE][];
+    this.doubles = new byte[SIZE][];
+    this.decimals = new byte[SIZE][];
+    this.timestamps = new byte[SIZE][];
+    final java.util.Random random = new java.util.Random(1);
+    for (int i = 0; i < SIZE; ++i) {
+      this.longs[i] = bytes(Long.toString(random.nextLong() >> random.nextInt(48)));
+      this.doubles[i] = bytes(Double.toString(random.nextDouble() * random.nextInt(100000)));
+      this.decimals[i] = bytes(BigDecimal.valueOf(random.nextInt(), 4).toPlainString());
+      this.timestamps[i] = bytes(String.format("2020-%02d-%02d %02d:%02d:%02d.%06d+00", 1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24), random.nextInt(60),
+        random.nextInt(60), random.nextInt(1000000)));
+    }
+  }
+
+  private static byte[] bytes(final String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public void longString(final Blackhole bh) {
+    for (final byte[] bs : this.longs) {
+      bh.consume(Long.parseLong(new String(bs)));
+    }
+  }
+
+  @Benchmark
+  public void longBytes(final Blackhole bh) {
+    for (final byte[] bs : this.longs) {
+      bh.consume(PgResultDecoder.parseLong(bs, 0, bs.length));
+    }
+  }
+
+  @Benchmark
+  public void doubleString(final Blackhole bh) {
+    for (final byte[] bs : this.doubles) {
+      bh.consume(Double.parseDouble(new String(bs)));
+    }
+  }
+
+  @Benchmark
+  public void doubleBytes(final Blackhole bh) {
+    for (final byte[] bs : this.doubles) {
+      bh.consume(PgResultDecoder.parseDouble(bs, 0, bs.length));
+    }
+  }
+
+  @Benchmark
+  public void decimalString(final Blackhole bh) {
+    for (final byte[] bs : this.decimals) {
+      bh.consume(new BigDecimal(Double.parseDouble(new String(bs))));
+    }
+  }
+
+  @Benchmark
+  public void decimalBytes(final Blackhole bh) {
+    for (final byte[] bs : this.decimals) {
+      bh.consume(PgResultDecoder.parseDecimal(bs, 0, bs.length));
+    }
+  }
+
+  @Benchmark
+  public void timestamptzString(final Blackhole bh) {
+    for (final byte[] bs : this.timestamps) {
+      bh.consume(TIMESTAMPTZ.parse(new String(bs), Instant::from));
+    }
+  }
+
+  @Benchmark
+  public void timestamptzBytes(final Blackhole bh) {
+    for (final byte[] bs : this.timestamps) {
+      bh.consume(PgResultDecoder.toInstant(TIMESTAMPTZ_FIELD, bs));
+    }
+  }
+
+}
@@ -0,0 +1,128 @@
+package io.zrz.jpgsql.client.opj;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.postgresql.core.Field;
+import org.postgresql.core.Oid;
+import org.postgresql.core.Tuple;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+
+import io.zrz.jpgsql.client.QueryOptions.RowBufferFormat;
+import io.zrz.jpgsql.client.RowBuffer;
+import io.zrz.jpgsql.client.SimpleQuery;
+
+/**
+ * building and reading a batch of 8192 rows, with a mix of binary and text columns, in each
+ * {@link RowBufferFormat}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PgResultRowsBenchmark {
+
+  private static final int ROWS = 8192;
+
+  @Param({ "TUPLES", "PACKED", "PACKED_DIRECT" })
+  public RowBufferFormat format;
+
+  private final SimpleQuery query = new SimpleQuery("SELECT id, seq, name, score, active FROM bench");
+  private PgResultMeta meta;
+  private List<Tuple> tuples;
+  private RowBuffer rows;
+
+  private static Field field(final String name, final int oid, final int format) {
+    final Field field = new Field(name, oid, 0, 0, 0, 0);
+    field.setFormat(format);
+    return field;
+  }
+
+  @Setup
+  public void setup() {
+    this.meta = new PgResultMeta(new Field[] {
+      field("id", Oid.INT8, Field.BINARY_FORMAT),
+      field("seq", Oid.INT4, Field.BINARY_FORMAT),
+      field("name", Oid.TEXT, Field.TEXT_FORMAT),
+      field("score", Oid.FLOAT8, Field.TEXT_FORMAT),
+      field("active", Oid.BOOL, Field.TEXT_FORMAT) });
+    final Random random = new Random(1);
+    this.tuples = new ArrayList<>(ROWS);
+    for (int i = 0; i < ROWS; ++i) {
+      this.tuples.add(new Tuple(new byte[][] {
+        Longs.toByteArray(random.nextLong()),
+        Ints.toByteArray(i),
+        ("name-" + random.nextInt(100000)).getBytes(StandardCharsets.UTF_8),
+        Double.toString(random.nextInt(100000) / 100.0).getBytes(StandardCharsets.UTF_8),
+        (random.nextBoolean() ? "t" : "f").getBytes(StandardCharsets.UTF_8) }));
+    }
+    this.rows = this.build();
+  }
+
+  private RowBuffer build() {
+    switch (this.format) {
+      case PACKED:
+        return PgPackedResultRows.pack(this.query, 0, this.meta, this.tuples, true, false);
+      case PACKED_DIRECT:
+        return PgPackedResultRows.pack(this.query, 0, this.meta, this.tuples, true, true);
+      case TUPLES:
+      default:
+        return new PgResultRows(this.query, 0, this.meta, ImmutableList.copyOf(this.tuples), true);
+    }
+  }
+
+  @Benchmark
+  public RowBuffer batch() {
+    return this.build();
+  }
+
+  @Benchmark
+  public void longval(final Blackhole bh) {
+    for (int i = 0; i < ROWS; ++i) {
+      bh.consume(this.rows.longval(i, 0));
+      bh.consume(this.rows.intval(i, 1));
+    }
+  }
+
+  @Benchmark
+  public void strval(final Blackhole bh) {
+    for (int i = 0; i < ROWS; ++i) {
+      bh.consume(this.rows.strval(i, 2));
+    }
+  }
+
+  @Benchmark
+  public void doubleval(final Blackhole bh) {
+    for (int i = 0; i < ROWS; ++i) {
+      bh.consume(this.rows.doubleval(i, 3));
+    }
+  }
+
+  @Benchmark
+  public void boolval(final Blackhole bh) {
+    for (int i = 0; i < ROWS; ++i) {
+      bh.consume(this.rows.boolval(i, 4));
+    }
+  }
+
+}
@@ -0,0 +1,81 @@
+package io.zrz.jpgsql.proto.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.channel.EventLoopGroup;
+import io.zrz.jpgsql.client.PostgresConnectionProperties;
+import io.zrz.jpgsql.client.QueryResult;
+import io.zrz.jpgsql.proto.netty.PgTransport;
+import io.zrz.jpgsql.proto.server.EmbeddedPgServer;
+
+/**
+ * the round trip of a {@code SELECT 1} over loopback to the embedded server, with both ends on the same transport.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PgTransportBenchmark {
+
+  @Param({ "NIO", "EPOLL" })
+  private PgTransport transport;
+
+  @Param({ "false", "true" })
+  private boolean tcpQuickAck;
+
+  private EventLoopGroup serverGroup;
+  private EventLoopGroup clientGroup;
+  private EmbeddedPgServer server;
+  private PgNettyClient client;
+
+  @Setup
+  public void setup() {
+    if (!this.transport.isAvailable()) {
+      throw new IllegalStateException(this.transport + " is not available here");
+    }
+    this.serverGroup = this.transport.newEventLoopGroup(1);
+    this.clientGroup = this.transport.newEventLoopGroup(1);
+    this.server = EmbeddedPgServer.builder().group(this.serverGroup).start();
+    this.client =
+      PgNettyClient.create(
+        PostgresConnectionProperties.builder()
+          .hostname(this.server.getHostname())
+          .port(this.server.getPort())
+          .dbname("test")
+          .username("test")
+          .maxPoolSize(1)
+          .tcpQuickAck(this.tcpQuickAck)
+          .build(),
+        this.clientGroup);
+    this.roundTrip();
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.client.close();
+    this.server.close();
+    this.clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    this.serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+  }
+
+  @Benchmark
+  public QueryResult roundTrip() {
+    return this.client.submit("SELECT 1").blockingLast();
+  }
+
+}
@@ -0,0 +1,106 @@
+package io.zrz.jpgsql.proto.netty.handler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * frame parsing of a result set: RowDescription, 1024 DataRows, CommandComplete and ReadyForQuery,
+ * delivered in 16KB reads into pooled direct buffers, as from the socket.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostgreSQLDecoderBenchmark {
+
+  private static final int ROWS = 1024;
+  private static final int READ_SIZE = 16 * 1024;
+
+  private ByteBuf frames;
+  private EmbeddedChannel channel;
+
+  private static void message(final ByteBuf out, final char type, final ByteBuf body) {
+    out.writeByte(type);
+    out.writeInt(body.readableBytes() + 4);
+    out.writeBytes(body);
+    body.release();
+  }
+
+  private static void cstring(final ByteBuf out, final String value) {
+    out.writeCharSequence(value, StandardCharsets.UTF_8);
+    out.writeByte(0);
+  }
+
+  @Setup
+  public void setup() {
+    this.frames = Unpooled.buffer();
+    final String[] columns = { "id", "name", "value", "updated_at" };
+    final ByteBuf desc = Unpooled.buffer();
+    desc.writeShort(columns.length);
+    for (final String column : columns) {
+      cstring(desc, column);
+      desc.writeInt(0).writeShort(0).writeInt(25).writeShort(-1).writeInt(-1).writeShort(0);
+    }
+    message(this.frames, 'T', desc);
+    for (int i = 0; i < ROWS; ++i) {
+      final ByteBuf row = Unpooled.buffer();
+      row.writeShort(columns.length);
+      for (final String value : new String[] { Integer.toString(i), "name-" + i, (i % 7) == 0 ? null : Double.toString(i * 1.5), "2020-09-22 10:54:18.123456+00" }) {
+        if (value == null) {
+          row.writeInt(-1);
+        }
+        else {
+          final byte[] bs = value.getBytes(StandardCharsets.UTF_8);
+          row.writeInt(bs.length).writeBytes(bs);
+        }
+      }
+      message(this.frames, 'D', row);
+    }
+    final ByteBuf complete = Unpooled.buffer();
+    cstring(complete, "SELECT " + ROWS);
+    message(this.frames, 'C', complete);
+    message(this.frames, 'Z', Unpooled.buffer().writeByte('I'));
+    this.channel = new EmbeddedChannel(new PostgreSQLDecoder());
+  }
+
+  @TearDown
+  public void teardown() {
+    this.channel.finishAndReleaseAll();
+    this.frames.release();
+  }
+
+  @Benchmark
+  public void decode(final Blackhole bh) {
+    final int size = this.frames.readableBytes();
+    for (int offset = 0; offset < size; offset += READ_SIZE) {
+      final int length = Math.min(READ_SIZE, size - offset);
+      this.channel.writeInbound(this.channel.alloc().directBuffer(length).writeBytes(this.frames, offset, length));
+    }
+    Object msg;
+    while ((msg = this.channel.readInbound()) != null) {
+      bh.consume(msg);
+      ReferenceCountUtil.release(msg);
+    }
+  }
+
+}
@@ -0,0 +1,73 @@
+package io.zrz.jpgsql.proto.netty.handler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.ImmutableList;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.zrz.jpgsql.proto.wire.Bind;
+import io.zrz.jpgsql.proto.wire.Describe;
+import io.zrz.jpgsql.proto.wire.Execute;
+import io.zrz.jpgsql.proto.wire.Sync;
+
+/**
+ * 64 pipelined queries of a cached statement (Bind/Describe/Execute/Sync each) written and then flushed, as
+ * PgConnection does, counting the buffers which reach the channel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostgreSQLEncoderBenchmark {
+
+  private static final int QUERIES = 64;
+
+  private EmbeddedChannel channel;
+  private Bind bind;
+
+  @Setup
+  public void setup() {
+    this.channel = new EmbeddedChannel(new PostgreSQLEncoder());
+    this.bind = new Bind("", "S_1", ImmutableList.of(1), ImmutableList.of(new byte[8]), ImmutableList.of());
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.channel.finishAndReleaseAll();
+  }
+
+  @Benchmark
+  public int pipelined(final Blackhole bh) {
+    for (int i = 0; i < QUERIES; ++i) {
+      this.channel.write(this.bind);
+      this.channel.write(new Describe(Describe.PORTAL, ""));
+      this.channel.write(new Execute("", 0));
+      this.channel.write(new Sync());
+    }
+    this.channel.flush();
+    int buffers = 0;
+    for (ByteBuf buf = this.channel.readOutbound(); buf != null; buf = this.channel.readOutbound()) {
+      bh.consume(buf.readableBytes());
+      buf.release();
+      ++buffers;
+    }
+    return buffers;
+  }
+
+}
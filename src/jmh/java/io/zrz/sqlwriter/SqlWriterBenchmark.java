@@ -0,0 +1,69 @@
+package io.zrz.sqlwriter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.zrz.sqlwriter.SqlWriter.SqlGenerator;
+
+/**
+ * rendering typical generated statements, both inline and with bound parameters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlWriterBenchmark {
+
+  private static final DbIdent TABLE = DbIdent.of("public", "accounts");
+
+  private static SqlGenerator select() {
+    return SqlWriters.select(
+      TABLE,
+      SqlWriters.and(SqlWriters.eq("owner", "o'reilly"), SqlWriters.eq("region", 12)),
+      "id", "owner", "region", "balance", "updated_at");
+  }
+
+  private static SqlGenerator upsert() {
+    final Map<String, SqlGenerator> values = new LinkedHashMap<>();
+    values.put("id", SqlWriters.literal(1234567890L));
+    values.put("owner", SqlWriters.literal("o'reilly"));
+    values.put("region", SqlWriters.literal(12));
+    values.put("active", SqlWriters.literal(true));
+    values.put("note", SqlWriters.literal("some longer text value with a \\ backslash"));
+    return SqlWriters.upsert(TABLE, values);
+  }
+
+  @Benchmark
+  public String selectInline() {
+    return select().asString();
+  }
+
+  @Benchmark
+  public Tuple selectParams() {
+    return select().asTuple();
+  }
+
+  @Benchmark
+  public String upsertInline() {
+    return upsert().asString();
+  }
+
+  @Benchmark
+  public Tuple upsertParams() {
+    return upsert().asTuple();
+  }
+
+}
@@ -1,15 +1,21 @@
 // Generated by delombok at Tue Sep 22 10:54:18 PDT 2020
 package io.zrz.jpgsql.binary;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.OutputStream;
+import java.math.BigDecimal;
 import java.net.InetAddress;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import org.postgresql.core.Oid;
+
 import com.google.common.base.Splitter;
 
 import io.zrz.jpgsql.InternalUtils;
@@ -161,6 +167,151 @@ public class BinaryOutputStreamWriter implements BinaryStreamWriter {
     }
   }
 
+  @Override
+  public BinaryRecordWriter writeFloat(float value) {
+    try {
+      out.writeInt(4);
+      out.writeFloat(value);
+      return this;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
+  }
+
+  @Override
+  public BinaryRecordWriter writeDouble(double value) {
+    try {
+      out.writeInt(8);
+      out.writeDouble(value);
+      return this;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
+  }
+
+  @Override
+  public BinaryRecordWriter writeNumeric(BigDecimal value) {
+    try {
+      BinaryParameterCodecs.Digits digits = new BinaryParameterCodecs.Digits(value);
+      out.writeInt(8 + (2 * digits.count));
+      out.writeShort(digits.count);
+      out.writeShort(digits.weight);
+      out.writeShort(digits.sign);
+      out.writeShort(digits.scale);
+      for (int i = 0; i < digits.count; ++i) {
+        out.writeShort(digits.group(i));
+      }
+      return this;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
+  }
+
+  @Override
+  public BinaryRecordWriter writeUuid(UUID value) {
+    try {
+      out.writeInt(16);
+      out.writeLong(value.getMostSignificantBits());
+      out.writeLong(value.getLeastSignificantBits());
+      return this;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
+  }
+
+  @Override
+  public BinaryRecordWriter writeDatePgDays(int value) {
+    try {
+      out.writeInt(4);
+      out.writeInt(value);
+      return this;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
+  }
+
+  @Override
+  public BinaryRecordWriter writeInterval(long micros, int days, int months) {
+    try {
+      out.writeInt(16);
+      out.writeLong(micros);
+      out.writeInt(days);
+      out.writeInt(months);
+      return this;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
+  }
+
+  @Override
+  public BinaryRecordWriter writeEmptyRange() {
+    try {
+      out.writeInt(1);
+      out.writeByte(ByteBufBinaryWriter.RANGE_EMPTY);
+      return this;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
+  }
+
+  @Override
+  public BinaryRecordWriter writeInt4Range(Integer lower, Integer upper) {
+    try {
+      out.writeInt(1 + (lower == null ? 0
+                                      : 8)
+        + (upper == null ? 0
+                         : 8));
+      out.writeByte(ByteBufBinaryWriter.rangeFlags(lower, upper));
+      if (lower != null) {
+        out.writeInt(4);
+        out.writeInt(lower);
+      }
+      if (upper != null) {
+        out.writeInt(4);
+        out.writeInt(upper);
+      }
+      return this;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
+  }
+
+  @Override
+  public BinaryRecordWriter writeInt8Range(Long lower, Long upper) {
+    try {
+      out.writeInt(1 + (lower == null ? 0
+                                      : 12)
+        + (upper == null ? 0
+                         : 12));
+      out.writeByte(ByteBufBinaryWriter.rangeFlags(lower, upper));
+      if (lower != null) {
+        out.writeInt(8);
+        out.writeLong(lower);
+      }
+      if (upper != null) {
+        out.writeInt(8);
+        out.writeLong(upper);
+      }
+      return this;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
+  }
+
+  @Override
+  public BinaryRecordWriter writeTimestampRangePgMicros(Long lower, Long upper) {
+    return writeInt8Range(lower, upper);
+  }
+
   @Override
   public BinaryStreamWriter writeStartRecord(int numfields) {
     try {
@@ -199,12 +350,135 @@ public class BinaryOutputStreamWriter implements BinaryStreamWriter {
 
   @Override
   public BinaryStreamWriter writeEmptyArray(int oid) {
-    throw new IllegalArgumentException();
+    try {
+      out.writeInt(12);
+      // ndim
+      out.writeInt(0);
+      // flags
+      out.writeInt(0);
+      out.writeInt(oid);
+      return this;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
   }
 
+  /**
+   * the elements are encoded up front, as the length of the array comes first. null elements are allowed.
+   */
   @Override
   public BinaryStreamWriter writeTextArray(List<String> collect) {
-    throw new IllegalArgumentException();
+    try {
+      if (collect.isEmpty()) {
+        return writeEmptyArray(Oid.TEXT);
+      }
+      byte[][] values = new byte[collect.size()][];
+      int length = 20;
+      boolean nulls = false;
+      for (int i = 0; i < values.length; ++i) {
+        String value = collect.get(i);
+        if (value == null) {
+          nulls = true;
+        }
+        else {
+          values[i] = value.getBytes(StandardCharsets.UTF_8);
+          length += values[i].length;
+        }
+        length += 4;
+      }
+      out.writeInt(length);
+      arrayHeader(Oid.TEXT, values.length, nulls);
+      for (byte[] value : values) {
+        if (value == null) {
+          out.writeInt(-1);
+        }
+        else {
+          out.writeInt(value.length);
+          out.write(value);
+        }
+      }
+      return this;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
+  }
+
+  @Override
+  public BinaryRecordWriter writeIntArray(int[] values) {
+    try {
+      if (values.length == 0) {
+        return writeEmptyArray(Oid.INT4);
+      }
+      out.writeInt(20 + (values.length * 8));
+      arrayHeader(Oid.INT4, values.length, false);
+      for (int value : values) {
+        out.writeInt(4);
+        out.writeInt(value);
+      }
+      return this;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
+  }
+
+  @Override
+  public BinaryRecordWriter writeBigintArray(long[] values) {
+    try {
+      if (values.length == 0) {
+        return writeEmptyArray(Oid.INT8);
+      }
+      out.writeInt(20 + (values.length * 12));
+      arrayHeader(Oid.INT8, values.length, false);
+      for (long value : values) {
+        out.writeInt(8);
+        out.writeLong(value);
+      }
+      return this;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
+  }
+
+  /**
+   * a single dimension, starting at 1.
+   */
+  private void arrayHeader(int oid, int count, boolean nulls) throws java.io.IOException {
+    // ndim
+    out.writeInt(1);
+    // flags
+    out.writeInt(nulls ? 1
+                       : 0);
+    out.writeInt(oid);
+    // nelts
+    out.writeInt(count);
+    // index to start
+    out.writeInt(1);
+  }
+
+  /**
+   * the fields are collected in memory first, as the length of the composite comes before them.
+   */
+  @Override
+  public BinaryStreamWriter writeComposite(int numfields, Consumer<? super BinaryStreamWriter> fields) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      new BinaryOutputStreamWriter(bytes).writeCompositeFields(numfields, fields);
+      out.writeInt(bytes.size());
+      out.write(bytes.toByteArray());
+      return this;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
+  }
+
+  private void writeCompositeFields(int numfields, Consumer<? super BinaryStreamWriter> fields) throws java.io.IOException {
+    out.writeInt(numfields);
+    fields.accept(this);
   }
 
   @Override
@@ -0,0 +1,44 @@
+package io.zrz.jpgsql.binary;
+
+/**
+ * writes a java value of one postgres type in the binary format of a Bind message parameter.
+ *
+ * the length is asked for first so the caller can allocate the parameter once, and then the value is written straight
+ * into it.
+ *
+ * @see BinaryParameterCodecs
+ */
+public interface BinaryParameterCodec<T> {
+
+  /**
+   * the type this codec writes.
+   */
+  int oid();
+
+  /**
+   * the java type of the values it accepts.
+   */
+  Class<T> javaType();
+
+  /**
+   * the number of bytes {@link #write(Object, byte[], int)} will write for the value.
+   */
+  int length(T value);
+
+  /**
+   * writes the value at the offset.
+   *
+   * @return the offset after the last byte written.
+   */
+  int write(T value, byte[] target, int offset);
+
+  /**
+   * the value as a new array.
+   */
+  default byte[] encode(final T value) {
+    final byte[] target = new byte[this.length(value)];
+    this.write(value, target, 0);
+    return target;
+  }
+
+}
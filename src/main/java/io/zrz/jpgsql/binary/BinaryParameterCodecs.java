@@ -0,0 +1,553 @@
+package io.zrz.jpgsql.binary;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.postgresql.core.Oid;
+import org.postgresql.util.ByteConverter;
+
+/**
+ * the {@link BinaryParameterCodec}s used to bind query parameters, keyed by the OID of the parameter.
+ *
+ * numbers, booleans, dates and timestamps, UUIDs, text, bytea and one dimensional arrays of them are registered by
+ * default. other types can be added with {@link #register(BinaryParameterCodec)}, which replaces any codec already
+ * registered for the OID.
+ */
+public final class BinaryParameterCodecs {
+
+  private static final ConcurrentMap<Integer, BinaryParameterCodec<?>> CODECS = new ConcurrentHashMap<>();
+
+  private static final BigInteger NBASE = BigInteger.valueOf(10_000);
+
+  static {
+
+    register(fixed(Oid.BOOL, Boolean.class, 1, (v, b, o) -> ByteConverter.bool(b, o, v)));
+    register(fixed(Oid.INT2, Short.class, 2, (v, b, o) -> ByteConverter.int2(b, o, v)));
+    register(fixed(Oid.INT4, Integer.class, 4, (v, b, o) -> ByteConverter.int4(b, o, v)));
+    register(fixed(Oid.INT8, Long.class, 8, (v, b, o) -> ByteConverter.int8(b, o, v)));
+    register(fixed(Oid.FLOAT4, Float.class, 4, (v, b, o) -> ByteConverter.float4(b, o, v)));
+    register(fixed(Oid.FLOAT8, Double.class, 8, (v, b, o) -> ByteConverter.float8(b, o, v)));
+    register(fixed(Oid.UUID, UUID.class, 16, (v, b, o) -> {
+      ByteConverter.int8(b, o, v.getMostSignificantBits());
+      ByteConverter.int8(b, o + 8, v.getLeastSignificantBits());
+    }));
+    register(fixed(Oid.DATE, LocalDate.class, 4, (v, b, o) -> ByteConverter.int4(b, o, PostgresTimestamp.fromLocalDate(v))));
+    register(fixed(Oid.TIMESTAMP, LocalDateTime.class, 8, (v, b, o) -> ByteConverter.int8(b, o, PostgresTimestamp.fromLocalDateTime(v))));
+    register(fixed(Oid.TIMESTAMPTZ, Instant.class, 8, (v, b, o) -> ByteConverter.int8(b, o, PostgresTimestamp.fromInstant(v))));
+
+    register(new Text(Oid.TEXT, 0));
+    register(new Text(Oid.VARCHAR, 0));
+    register(new Text(Oid.BPCHAR, 0));
+    register(new Text(Oid.JSON, 0));
+    // jsonb is prefixed with its format version.
+    register(new Text(Oid.JSONB, 1));
+    register(new Bytea());
+    register(new Numeric());
+
+    register(new PrimitiveArray<>(Oid.BOOL_ARRAY, Oid.BOOL, boolean[].class, 1, (a, i, b, o) -> ByteConverter.bool(b, o, a[i])));
+    register(new PrimitiveArray<>(Oid.INT2_ARRAY, Oid.INT2, short[].class, 2, (a, i, b, o) -> ByteConverter.int2(b, o, a[i])));
+    register(new PrimitiveArray<>(Oid.INT4_ARRAY, Oid.INT4, int[].class, 4, (a, i, b, o) -> ByteConverter.int4(b, o, a[i])));
+    register(new PrimitiveArray<>(Oid.INT8_ARRAY, Oid.INT8, long[].class, 8, (a, i, b, o) -> ByteConverter.int8(b, o, a[i])));
+    register(new PrimitiveArray<>(Oid.FLOAT4_ARRAY, Oid.FLOAT4, float[].class, 4, (a, i, b, o) -> ByteConverter.float4(b, o, a[i])));
+    register(new PrimitiveArray<>(Oid.FLOAT8_ARRAY, Oid.FLOAT8, double[].class, 8, (a, i, b, o) -> ByteConverter.float8(b, o, a[i])));
+
+    register(new ObjectArray<>(Oid.TEXT_ARRAY, lookup(Oid.TEXT, String.class)));
+    register(new ObjectArray<>(Oid.VARCHAR_ARRAY, lookup(Oid.VARCHAR, String.class)));
+    register(new ObjectArray<>(Oid.JSON_ARRAY, lookup(Oid.JSON, String.class)));
+    register(new ObjectArray<>(Oid.JSONB_ARRAY, lookup(Oid.JSONB, String.class)));
+    register(new ObjectArray<>(Oid.UUID_ARRAY, lookup(Oid.UUID, UUID.class)));
+    register(new ObjectArray<>(Oid.NUMERIC_ARRAY, lookup(Oid.NUMERIC, BigDecimal.class)));
+    register(new ObjectArray<>(Oid.DATE_ARRAY, lookup(Oid.DATE, LocalDate.class)));
+    register(new ObjectArray<>(Oid.TIMESTAMP_ARRAY, lookup(Oid.TIMESTAMP, LocalDateTime.class)));
+    register(new ObjectArray<>(Oid.TIMESTAMPTZ_ARRAY, lookup(Oid.TIMESTAMPTZ, Instant.class)));
+    register(new ObjectArray<>(Oid.BYTEA_ARRAY, lookup(Oid.BYTEA, byte[].class)));
+
+  }
+
+  private BinaryParameterCodecs() {
+  }
+
+  /**
+   * registers a codec for its OID, replacing any already registered.
+   */
+  public static void register(final BinaryParameterCodec<?> codec) {
+    CODECS.put(codec.oid(), codec);
+  }
+
+  /**
+   * the codec registered for the OID, or null.
+   */
+  public static BinaryParameterCodec<?> lookup(final int oid) {
+    return CODECS.get(oid);
+  }
+
+  /**
+   * the codec registered for the OID.
+   *
+   * @throws IllegalArgumentException
+   *           if there is none, or it takes another java type.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> BinaryParameterCodec<T> lookup(final int oid, final Class<T> type) {
+    final BinaryParameterCodec<?> codec = CODECS.get(oid);
+    if (codec == null || !codec.javaType().equals(type)) {
+      throw new IllegalArgumentException(String.format("no codec for OID %d taking %s", oid, type.getName()));
+    }
+    return (BinaryParameterCodec<T>) codec;
+  }
+
+  /**
+   * the value in the binary format of the OID, or null if no codec registered for the OID accepts it.
+   */
+  @SuppressWarnings("unchecked")
+  public static byte[] encode(final int oid, final Object value) {
+    final BinaryParameterCodec<Object> codec = (BinaryParameterCodec<Object>) CODECS.get(oid);
+    if (codec == null || !codec.javaType().isInstance(value)) {
+      return null;
+    }
+    return codec.encode(value);
+  }
+
+  /**
+   * the size of the fixed width types which a parameter list can hold unboxed, or 0 for any other type.
+   *
+   * @see #encodeFixed(int, long)
+   */
+  public static int fixedWidth(final int oid) {
+    switch (oid) {
+      case Oid.BOOL:
+        return 1;
+      case Oid.INT2:
+        return 2;
+      case Oid.INT4:
+      case Oid.FLOAT4:
+      case Oid.DATE:
+        return 4;
+      case Oid.INT8:
+      case Oid.FLOAT8:
+      case Oid.TIMESTAMP:
+      case Oid.TIMESTAMPTZ:
+        return 8;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * a fixed width value in its binary format. the bits are what the default codec writes for the type, the integer
+   * itself, the raw bits of a float, 0 or 1 for a boolean, and days or microseconds since the postgres epoch for dates
+   * and timestamps. the low {@link #fixedWidth(int)} bytes are sent, most significant first.
+   */
+  public static byte[] encodeFixed(final int oid, long bits) {
+    final int width = fixedWidth(oid);
+    if (width == 0) {
+      throw new IllegalArgumentException(String.format("OID %d is not fixed width", oid));
+    }
+    final byte[] target = new byte[width];
+    for (int i = width - 1; i >= 0; --i) {
+      target[i] = (byte) bits;
+      bits >>>= 8;
+    }
+    return target;
+  }
+
+  /**
+   * the number of bytes the string takes as UTF-8. unpaired surrogates are replaced by '?', as
+   * {@link String#getBytes(java.nio.charset.Charset)} does.
+   */
+  static int utf8Length(final String value) {
+    final int count = value.length();
+    int length = count;
+    for (int i = 0; i < count; ++i) {
+      final char ch = value.charAt(i);
+      if (ch < 0x80) {
+        continue;
+      }
+      else if (ch < 0x800) {
+        length += 1;
+      }
+      else if (!Character.isSurrogate(ch)) {
+        length += 2;
+      }
+      else if (Character.isHighSurrogate(ch) && (i + 1) < count && Character.isLowSurrogate(value.charAt(i + 1))) {
+        // four bytes for the two chars.
+        length += 2;
+        ++i;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * writes the string as UTF-8.
+   *
+   * @return the offset after the last byte written.
+   */
+  static int writeUtf8(final String value, final byte[] target, int offset) {
+    final int count = value.length();
+    for (int i = 0; i < count; ++i) {
+      final char ch = value.charAt(i);
+      if (ch < 0x80) {
+        target[offset++] = (byte) ch;
+      }
+      else if (ch < 0x800) {
+        target[offset++] = (byte) (0xC0 | (ch >> 6));
+        target[offset++] = (byte) (0x80 | (ch & 0x3F));
+      }
+      else if (!Character.isSurrogate(ch)) {
+        target[offset++] = (byte) (0xE0 | (ch >> 12));
+        target[offset++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+        target[offset++] = (byte) (0x80 | (ch & 0x3F));
+      }
+      else if (Character.isHighSurrogate(ch) && (i + 1) < count && Character.isLowSurrogate(value.charAt(i + 1))) {
+        final int cp = Character.toCodePoint(ch, value.charAt(++i));
+        target[offset++] = (byte) (0xF0 | (cp >> 18));
+        target[offset++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+        target[offset++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        target[offset++] = (byte) (0x80 | (cp & 0x3F));
+      }
+      else {
+        target[offset++] = '?';
+      }
+    }
+    return offset;
+  }
+
+  private interface ValueWriter<T> {
+
+    void write(T value, byte[] target, int offset);
+
+  }
+
+  private interface ElementWriter<T> {
+
+    void write(T array, int index, byte[] target, int offset);
+
+  }
+
+  private static <T> BinaryParameterCodec<T> fixed(final int oid, final Class<T> type, final int width, final ValueWriter<T> writer) {
+    return new BinaryParameterCodec<T>() {
+
+      @Override
+      public int oid() {
+        return oid;
+      }
+
+      @Override
+      public Class<T> javaType() {
+        return type;
+      }
+
+      @Override
+      public int length(final T value) {
+        return width;
+      }
+
+      @Override
+      public int write(final T value, final byte[] target, final int offset) {
+        writer.write(value, target, offset);
+        return offset + width;
+      }
+
+    };
+  }
+
+  /**
+   * the array header: dimensions, whether there are nulls, the element type and then the size and lower bound of the
+   * single dimension.
+   */
+  private static int header(final int count) {
+    return count == 0 ? 12
+                      : 20;
+  }
+
+  private static int writeHeader(final byte[] target, final int offset, final int elementOid, final int count, final boolean nulls) {
+    if (count == 0) {
+      ByteConverter.int4(target, offset, 0);
+      ByteConverter.int4(target, offset + 4, 0);
+      ByteConverter.int4(target, offset + 8, elementOid);
+      return offset + 12;
+    }
+    ByteConverter.int4(target, offset, 1);
+    ByteConverter.int4(target, offset + 4, nulls ? 1
+                                                 : 0);
+    ByteConverter.int4(target, offset + 8, elementOid);
+    ByteConverter.int4(target, offset + 12, count);
+    ByteConverter.int4(target, offset + 16, 1);
+    return offset + 20;
+  }
+
+  private static final class Text implements BinaryParameterCodec<String> {
+
+    private final int oid;
+    private final int version;
+
+    Text(final int oid, final int version) {
+      this.oid = oid;
+      this.version = version;
+    }
+
+    @Override
+    public int oid() {
+      return this.oid;
+    }
+
+    @Override
+    public Class<String> javaType() {
+      return String.class;
+    }
+
+    @Override
+    public int length(final String value) {
+      return (this.version == 0 ? 0
+                                : 1)
+        + utf8Length(value);
+    }
+
+    @Override
+    public int write(final String value, final byte[] target, int offset) {
+      if (this.version != 0) {
+        target[offset++] = (byte) this.version;
+      }
+      return writeUtf8(value, target, offset);
+    }
+
+  }
+
+  private static final class Bytea implements BinaryParameterCodec<byte[]> {
+
+    @Override
+    public int oid() {
+      return Oid.BYTEA;
+    }
+
+    @Override
+    public Class<byte[]> javaType() {
+      return byte[].class;
+    }
+
+    @Override
+    public int length(final byte[] value) {
+      return value.length;
+    }
+
+    @Override
+    public int write(final byte[] value, final byte[] target, final int offset) {
+      System.arraycopy(value, 0, target, offset, value.length);
+      return offset + value.length;
+    }
+
+  }
+
+  /**
+   * numeric is a sign, a scale and base 10000 digits with the weight of the first one.
+   */
+  private static final class Numeric implements BinaryParameterCodec<BigDecimal> {
+
+    @Override
+    public int oid() {
+      return Oid.NUMERIC;
+    }
+
+    @Override
+    public Class<BigDecimal> javaType() {
+      return BigDecimal.class;
+    }
+
+    @Override
+    public int length(final BigDecimal value) {
+      return 8 + (2 * new Digits(value).count);
+    }
+
+    @Override
+    public int write(final BigDecimal value, final byte[] target, final int offset) {
+      final Digits digits = new Digits(value);
+      ByteConverter.int2(target, offset, digits.count);
+      ByteConverter.int2(target, offset + 2, digits.weight);
+      ByteConverter.int2(target, offset + 4, digits.sign);
+      ByteConverter.int2(target, offset + 6, digits.scale);
+      for (int i = 0; i < digits.count; ++i) {
+        ByteConverter.int2(target, offset + 8 + (i * 2), digits.group(i));
+      }
+      return offset + 8 + (2 * digits.count);
+    }
+
+  }
+
+  /**
+   * the base 10000 digits of a decimal, least significant first and without trailing zeros, along with the rest of the
+   * numeric header.
+   */
+  static final class Digits {
+
+    private static final int NEGATIVE = 0x4000;
+
+    private final short[] groups;
+    final int count;
+    final int weight;
+    final int sign;
+    final int scale;
+
+    Digits(final BigDecimal value) {
+
+      final int scale = Math.max(value.scale(), 0);
+      this.scale = scale;
+      this.sign = value.signum() < 0 ? NEGATIVE
+                                     : 0;
+
+      // pad the scale so the decimal point falls between two groups.
+      final int pad = (4 - (scale % 4)) % 4;
+      BigInteger unscaled = value.setScale(scale).unscaledValue().abs();
+      if (pad > 0) {
+        unscaled = unscaled.multiply(BigInteger.TEN.pow(pad));
+      }
+
+      // each group takes at least 13 bits.
+      final short[] all = new short[(unscaled.bitLength() / 13) + 1];
+      int total = 0;
+
+      if (unscaled.bitLength() < 63) {
+        for (long v = unscaled.longValue(); v != 0; v /= 10_000) {
+          all[total++] = (short) (v % 10_000);
+        }
+      }
+      else {
+        for (BigInteger v = unscaled; v.signum() != 0;) {
+          final BigInteger[] qr = v.divideAndRemainder(NBASE);
+          all[total++] = qr[1].shortValue();
+          v = qr[0];
+        }
+      }
+
+      int low = 0;
+      while (low < total && all[low] == 0) {
+        ++low;
+      }
+
+      this.groups = Arrays.copyOfRange(all, low, total);
+      this.count = total - low;
+      this.weight = this.count == 0 ? 0
+                                    : total - 1 - ((scale + pad) / 4);
+
+    }
+
+    /**
+     * the digit at the position, most significant first.
+     */
+    int group(final int index) {
+      return this.groups[this.groups.length - 1 - index];
+    }
+
+  }
+
+  private static final class PrimitiveArray<T> implements BinaryParameterCodec<T> {
+
+    private final int oid;
+    private final int elementOid;
+    private final Class<T> type;
+    private final int width;
+    private final ElementWriter<T> writer;
+
+    PrimitiveArray(final int oid, final int elementOid, final Class<T> type, final int width, final ElementWriter<T> writer) {
+      this.oid = oid;
+      this.elementOid = elementOid;
+      this.type = type;
+      this.width = width;
+      this.writer = writer;
+    }
+
+    @Override
+    public int oid() {
+      return this.oid;
+    }
+
+    @Override
+    public Class<T> javaType() {
+      return this.type;
+    }
+
+    @Override
+    public int length(final T value) {
+      final int count = Array.getLength(value);
+      return header(count) + (count * (4 + this.width));
+    }
+
+    @Override
+    public int write(final T value, final byte[] target, final int offset) {
+      final int count = Array.getLength(value);
+      int pos = writeHeader(target, offset, this.elementOid, count, false);
+      for (int i = 0; i < count; ++i) {
+        ByteConverter.int4(target, pos, this.width);
+        this.writer.write(value, i, target, pos + 4);
+        pos += 4 + this.width;
+      }
+      return pos;
+    }
+
+  }
+
+  private static final class ObjectArray<E> implements BinaryParameterCodec<E[]> {
+
+    private final int oid;
+    private final BinaryParameterCodec<E> element;
+    private final Class<E[]> type;
+
+    @SuppressWarnings("unchecked")
+    ObjectArray(final int oid, final BinaryParameterCodec<E> element) {
+      this.oid = oid;
+      this.element = element;
+      this.type = (Class<E[]>) Array.newInstance(element.javaType(), 0).getClass();
+    }
+
+    @Override
+    public int oid() {
+      return this.oid;
+    }
+
+    @Override
+    public Class<E[]> javaType() {
+      return this.type;
+    }
+
+    @Override
+    public int length(final E[] value) {
+      int length = header(value.length);
+      for (final E e : value) {
+        length += 4 + (e == null ? 0
+                                 : this.element.length(e));
+      }
+      return length;
+    }
+
+    @Override
+    public int write(final E[] value, final byte[] target, final int offset) {
+      boolean nulls = false;
+      for (final E e : value) {
+        nulls |= (e == null);
+      }
+      int pos = writeHeader(target, offset, this.element.oid(), value.length, nulls);
+      for (final E e : value) {
+        if (e == null) {
+          ByteConverter.int4(target, pos, -1);
+          pos += 4;
+        }
+        else {
+          final int end = this.element.write(e, target, pos + 4);
+          ByteConverter.int4(target, pos, end - pos - 4);
+          pos = end;
+        }
+      }
+      return pos;
+    }
+
+  }
+
+}
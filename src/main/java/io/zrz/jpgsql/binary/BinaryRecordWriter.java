@@ -1,13 +1,18 @@
 package io.zrz.jpgsql.binary;
 
+import java.math.BigDecimal;
 import java.net.InetAddress;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.Period;
 import java.time.ZoneOffset;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * writer of postgres binary records.
@@ -28,6 +33,18 @@ public interface BinaryRecordWriter {
 
   BinaryStreamWriter writeTextArray(List<String> collect);
 
+  /**
+   * an int4[].
+   */
+
+  BinaryRecordWriter writeIntArray(int[] values);
+
+  /**
+   * an int8[].
+   */
+
+  BinaryRecordWriter writeBigintArray(long[] values);
+
   /**
    * @param oid
    * 
@@ -57,6 +74,26 @@ public interface BinaryRecordWriter {
 
   BinaryRecordWriter writeBoolean(boolean value);
 
+  /**
+   * a float4.
+   */
+
+  BinaryRecordWriter writeFloat(float value);
+
+  /**
+   * a float8.
+   */
+
+  BinaryRecordWriter writeDouble(double value);
+
+  /**
+   * a numeric, with the scale of the value. a negative scale is written as 0.
+   */
+
+  BinaryRecordWriter writeNumeric(BigDecimal value);
+
+  BinaryRecordWriter writeUuid(UUID value);
+
   /**
    * 
    */
@@ -101,6 +138,55 @@ public interface BinaryRecordWriter {
 
   BinaryRecordWriter writeTimestampPgMicros(long microsSinceMillenium);
 
+  /**
+   * write a date as days since the postgres epoch.
+   */
+
+  BinaryRecordWriter writeDatePgDays(int daysSinceMillenium);
+
+  default BinaryRecordWriter writeDate(LocalDate value) {
+    return writeDatePgDays(PostgresTimestamp.fromLocalDate(value));
+  }
+
+  /**
+   * an interval, which postgres keeps as separate months, days and microseconds as they aren't a fixed length of each
+   * other.
+   */
+
+  BinaryRecordWriter writeInterval(long micros, int days, int months);
+
+  default BinaryRecordWriter writeInterval(Duration value) {
+    return writeInterval(Math.addExact(Math.multiplyExact(value.getSeconds(), 1_000_000L), value.getNano() / 1000), 0, 0);
+  }
+
+  default BinaryRecordWriter writeInterval(Period value) {
+    return writeInterval(0, value.getDays(), Math.toIntExact(value.toTotalMonths()));
+  }
+
+  /**
+   * ranges are written half open, as [lower, upper), with a null bound unbounded. the server puts discrete ranges
+   * (int4range, int8range, daterange) into this form anyway.
+   */
+
+  BinaryRecordWriter writeEmptyRange();
+
+  BinaryRecordWriter writeInt4Range(Integer lower, Integer upper);
+
+  BinaryRecordWriter writeInt8Range(Long lower, Long upper);
+
+  /**
+   * a tsrange or tstzrange, with the bounds in microseconds since the postgres epoch.
+   */
+
+  BinaryRecordWriter writeTimestampRangePgMicros(Long lower, Long upper);
+
+  default BinaryRecordWriter writeTimestampRange(Instant lower, Instant upper) {
+    return writeTimestampRangePgMicros(lower == null ? null
+                                                     : PostgresTimestamp.fromInstant(lower),
+      upper == null ? null
+                    : PostgresTimestamp.fromInstant(upper));
+  }
+
   //
 
   default BinaryRecordWriter writeTimestamp(Date value) {
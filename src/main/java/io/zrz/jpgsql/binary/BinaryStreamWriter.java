@@ -1,5 +1,7 @@
 package io.zrz.jpgsql.binary;
 
+import java.util.function.Consumer;
+
 /**
  * writer of postgres binary streams
  * 
@@ -29,4 +31,20 @@ public interface BinaryStreamWriter extends BinaryRecordWriter {
 
   void writeOid(int oid);
 
+  /**
+   * writes a composite (row type) value. the fields are written by the callback, each as its type's OID with
+   * {@link #writeOid(int)} followed by its value, which must be the exact type of the attribute.
+   *
+   * <pre>
+   * w.writeComposite(2, f -> {
+   *   f.writeOid(Oid.INT4);
+   *   f.writeInt(1);
+   *   f.writeOid(Oid.TEXT);
+   *   f.writeText("x");
+   * });
+   * </pre>
+   */
+
+  BinaryStreamWriter writeComposite(int numfields, Consumer<? super BinaryStreamWriter> fields);
+
 }
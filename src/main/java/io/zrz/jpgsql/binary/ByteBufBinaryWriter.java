@@ -1,11 +1,13 @@
 // Generated by delombok at Tue Sep 22 10:54:18 PDT 2020
 package io.zrz.jpgsql.binary;
 
+import java.math.BigDecimal;
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -15,10 +17,20 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 
 import io.netty.buffer.ByteBuf;
-import io.zrz.jpgsql.InternalUtils;
+import io.netty.buffer.ByteBufUtil;
 
 public class ByteBufBinaryWriter implements BinaryStreamWriter {
+
+  // range flags
+  static final int RANGE_EMPTY = 0x01;
+  static final int RANGE_LB_INC = 0x02;
+  static final int RANGE_LB_INF = 0x08;
+  static final int RANGE_UB_INF = 0x10;
+
+  private static final byte[] JSONB_NUL_REPLACEMENT = "\\ufffd".getBytes(StandardCharsets.US_ASCII);
+
   private ByteBuf buf;
+  private boolean replaceJsonbNul;
 
   public ByteBufBinaryWriter(ByteBuf buf) {
     this.buf = buf;
@@ -64,19 +76,28 @@ public class ByteBufBinaryWriter implements BinaryStreamWriter {
     return this;
   }
 
+  /**
+   * encodes the string straight into the buffer, then fills in the length in front of it.
+   */
   @Override
   public ByteBufBinaryWriter writeText(String data) {
-    //
     int pos = buf.writerIndex();
     buf.writeInt(0);
-    buf.writeBytes(data.getBytes(StandardCharsets.UTF_8));
-    int len = buf.writerIndex() - pos - 4;
-    buf.setInt(pos, len);
+    buf.setInt(pos, utf8(buf, data));
     return this;
   }
 
+  /**
+   * writes the UTF-8 encoding of the string in a single pass, without an intermediate array.
+   *
+   * @return the number of bytes written.
+   */
+  private static int utf8(ByteBuf buf, CharSequence data) {
+    return ByteBufUtil.reserveAndWriteUtf8(buf, data, ByteBufUtil.utf8MaxBytes(data));
+  }
+
   public ByteBufBinaryWriter writeText(ByteBuffer data) {
-    buf.writeInt(buf.readableBytes());
+    buf.writeInt(data.remaining());
     buf.writeBytes(data);
     return this;
   }
@@ -98,7 +119,7 @@ public class ByteBufBinaryWriter implements BinaryStreamWriter {
         .collect(Collectors.toList());
     buf.writeInt(words.size());
     words.forEach(lexeme -> {
-      buf.writeBytes(lexeme.getBytes(StandardCharsets.UTF_8));
+      utf8(buf, lexeme);
       buf.writeByte(0);
       // position
       buf.writeShort(0);
@@ -140,6 +161,117 @@ public class ByteBufBinaryWriter implements BinaryStreamWriter {
     return this;
   }
 
+  @Override
+  public ByteBufBinaryWriter writeFloat(float value) {
+    buf.writeInt(4);
+    buf.writeFloat(value);
+    return this;
+  }
+
+  @Override
+  public ByteBufBinaryWriter writeDouble(double value) {
+    buf.writeInt(8);
+    buf.writeDouble(value);
+    return this;
+  }
+
+  @Override
+  public ByteBufBinaryWriter writeNumeric(BigDecimal value) {
+    BinaryParameterCodecs.Digits digits = new BinaryParameterCodecs.Digits(value);
+    buf.writeInt(8 + (2 * digits.count));
+    buf.writeShort(digits.count);
+    buf.writeShort(digits.weight);
+    buf.writeShort(digits.sign);
+    buf.writeShort(digits.scale);
+    for (int i = 0; i < digits.count; ++i) {
+      buf.writeShort(digits.group(i));
+    }
+    return this;
+  }
+
+  @Override
+  public ByteBufBinaryWriter writeUuid(UUID value) {
+    buf.writeInt(16);
+    buf.writeLong(value.getMostSignificantBits());
+    buf.writeLong(value.getLeastSignificantBits());
+    return this;
+  }
+
+  @Override
+  public ByteBufBinaryWriter writeDatePgDays(int value) {
+    buf.writeInt(4);
+    buf.writeInt(value);
+    return this;
+  }
+
+  @Override
+  public ByteBufBinaryWriter writeInterval(long micros, int days, int months) {
+    buf.writeInt(16);
+    buf.writeLong(micros);
+    buf.writeInt(days);
+    buf.writeInt(months);
+    return this;
+  }
+
+  @Override
+  public ByteBufBinaryWriter writeEmptyRange() {
+    buf.writeInt(1);
+    buf.writeByte(RANGE_EMPTY);
+    return this;
+  }
+
+  @Override
+  public ByteBufBinaryWriter writeInt4Range(Integer lower, Integer upper) {
+    buf.writeInt(1 + (lower == null ? 0
+                                    : 8)
+      + (upper == null ? 0
+                       : 8));
+    buf.writeByte(rangeFlags(lower, upper));
+    if (lower != null) {
+      buf.writeInt(4);
+      buf.writeInt(lower);
+    }
+    if (upper != null) {
+      buf.writeInt(4);
+      buf.writeInt(upper);
+    }
+    return this;
+  }
+
+  @Override
+  public ByteBufBinaryWriter writeInt8Range(Long lower, Long upper) {
+    buf.writeInt(1 + (lower == null ? 0
+                                    : 12)
+      + (upper == null ? 0
+                       : 12));
+    buf.writeByte(rangeFlags(lower, upper));
+    if (lower != null) {
+      buf.writeInt(8);
+      buf.writeLong(lower);
+    }
+    if (upper != null) {
+      buf.writeInt(8);
+      buf.writeLong(upper);
+    }
+    return this;
+  }
+
+  @Override
+  public ByteBufBinaryWriter writeTimestampRangePgMicros(Long lower, Long upper) {
+    // timestamps are int8 micros too.
+    return writeInt8Range(lower, upper);
+  }
+
+  /**
+   * the flags of a [lower, upper) range, with a null bound unbounded.
+   */
+  static int rangeFlags(Object lower, Object upper) {
+    return (lower == null ? RANGE_LB_INF
+                          : RANGE_LB_INC)
+      | (upper == null ? RANGE_UB_INF
+                       : 0);
+  }
+
   /**
    * write the timestamp, which is provided in *microseconds* since postgres epoch (2000-01-01
    * 00:00:00 UTC).
@@ -152,18 +284,23 @@ public class ByteBufBinaryWriter implements BinaryStreamWriter {
     return this;
   }
 
-  public BinaryRecordWriter writeJsonb(ByteBuffer buf) {
-    try {
-      if (!buf.isDirect()) {
-        return writeJsonb(buf.array(), buf.remaining());
-      }
-      byte[] in = new byte[buf.remaining()];
-      buf.get(in);
-      return writeJsonb(in, in.length);
-    }
-    catch (final java.lang.Throwable $ex) {
-      throw InternalUtils.sneakyThrow($ex);
-    }
+  /**
+   * writes the remaining bytes of the document, copied straight from the buffer even if it's direct, without changing
+   * its position.
+   */
+  public BinaryRecordWriter writeJsonb(ByteBuffer data) {
+    int pos = jsonbHeader(data.remaining());
+    buf.writeBytes(data.duplicate());
+    return checkJsonb(pos);
+  }
+
+  /**
+   * writes the readable bytes of the document, consuming them.
+   */
+  public BinaryRecordWriter writeJsonb(ByteBuf data) {
+    int pos = jsonbHeader(data.readableBytes());
+    buf.writeBytes(data);
+    return checkJsonb(pos);
   }
 
   @Override
@@ -172,16 +309,43 @@ public class ByteBufBinaryWriter implements BinaryStreamWriter {
   }
 
   public BinaryRecordWriter writeJsonb(byte[] data, int length) {
-    if (length >= 6) {
-      for (int i = 0; i < (length - 6); ++i) {
-        if ((data[i] == '\\') && (data[i + 1] == 'u') && (data[i + 2] == '0') && (data[i + 3] == '0') && (data[i + 4] == '0') && (data[i + 5] == '0')) {
-          throw new IllegalArgumentException("\\u0000 not allowed in JSONB");
-        }
-      }
-    }
+    int pos = jsonbHeader(length);
+    buf.writeBytes(data, 0, length);
+    return checkJsonb(pos);
+  }
+
+  /**
+   * if a <code>&#92;u0000</code> in a JSONB document, which postgres can't store, is replaced with
+   * <code>&#92;ufffd</code> (the unicode replacement character) rather than failing the write. as they are the same
+   * length, the document is patched in place.
+   */
+  public ByteBufBinaryWriter replaceJsonbNul(boolean replace) {
+    this.replaceJsonbNul = replace;
+    return this;
+  }
+
+  private int jsonbHeader(int length) {
+    int pos = buf.writerIndex();
     buf.writeInt(length + 1);
+    // version
     buf.writeByte(1);
-    buf.writeBytes(data);
+    return pos;
+  }
+
+  /**
+   * scans the document once it has been copied into the buffer, so any kind of source is only read once.
+   */
+  private ByteBufBinaryWriter checkJsonb(int pos) {
+    int end = buf.writerIndex();
+    int index = JsonbEscapes.indexOfNul(buf, pos + 5, end);
+    while (index >= 0) {
+      if (!replaceJsonbNul) {
+        buf.writerIndex(pos);
+        throw new IllegalArgumentException("\\u0000 not allowed in JSONB");
+      }
+      buf.setBytes(index, JSONB_NUL_REPLACEMENT);
+      index = JsonbEscapes.indexOfNul(buf, index + 6, end);
+    }
     return this;
   }
 
@@ -242,16 +406,21 @@ public class ByteBufBinaryWriter implements BinaryStreamWriter {
     return this;
   }
 
+  /**
+   * the elements are encoded in a single pass, with the length of each and of the whole array filled in afterwards.
+   * null elements are allowed.
+   */
   @Override
   public BinaryStreamWriter writeTextArray(List<String> collect) {
     if (collect.isEmpty()) {
       return this.writeEmptyArray(Oid.TEXT);
     }
-    int bytes = collect.stream().mapToInt(x -> x.getBytes(StandardCharsets.UTF_8).length).sum();
-    buf.writeInt(20 + (bytes + (collect.size() * 4)));
+    int pos = buf.writerIndex();
+    buf.writeInt(0);
     // ndim
     buf.writeInt(1);
-    // flags
+    // flags: has nulls
+    int flags = buf.writerIndex();
     buf.writeInt(0);
     // OID
     buf.writeInt(Oid.TEXT);
@@ -262,10 +431,74 @@ public class ByteBufBinaryWriter implements BinaryStreamWriter {
       buf.writeInt(1);
     }
     for (String value : collect) {
-      byte[] data = value.getBytes(StandardCharsets.UTF_8);
-      buf.writeInt(data.length);
-      buf.writeBytes(data);
+      if (value == null) {
+        buf.setInt(flags, 1);
+        buf.writeInt(-1);
+        continue;
+      }
+      int len = buf.writerIndex();
+      buf.writeInt(0);
+      buf.setInt(len, utf8(buf, value));
     }
+    buf.setInt(pos, buf.writerIndex() - pos - 4);
+    return this;
+  }
+
+  @Override
+  public ByteBufBinaryWriter writeIntArray(int[] values) {
+    if (values.length == 0) {
+      writeEmptyArray(Oid.INT4);
+      return this;
+    }
+    buf.writeInt(20 + (values.length * 8));
+    arrayHeader(Oid.INT4, values.length);
+    for (int value : values) {
+      buf.writeInt(4);
+      buf.writeInt(value);
+    }
+    return this;
+  }
+
+  @Override
+  public ByteBufBinaryWriter writeBigintArray(long[] values) {
+    if (values.length == 0) {
+      writeEmptyArray(Oid.INT8);
+      return this;
+    }
+    buf.writeInt(20 + (values.length * 12));
+    arrayHeader(Oid.INT8, values.length);
+    for (long value : values) {
+      buf.writeInt(8);
+      buf.writeLong(value);
+    }
+    return this;
+  }
+
+  /**
+   * a single dimension without nulls, starting at 1.
+   */
+  private void arrayHeader(int oid, int count) {
+    // ndim
+    buf.writeInt(1);
+    // flags
+    buf.writeInt(0);
+    buf.writeInt(oid);
+    // nelts
+    buf.writeInt(count);
+    // index to start
+    buf.writeInt(1);
+  }
+
+  /**
+   * the fields are written straight into the buffer, and the length filled in afterwards.
+   */
+  @Override
+  public ByteBufBinaryWriter writeComposite(int numfields, Consumer<? super BinaryStreamWriter> fields) {
+    int pos = buf.writerIndex();
+    buf.writeInt(0);
+    buf.writeInt(numfields);
+    fields.accept(this);
+    buf.setInt(pos, buf.writerIndex() - pos - 4);
     return this;
   }
 
@@ -0,0 +1,111 @@
+package io.zrz.jpgsql.binary;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * finds the <code>&#92;u0000</code> escapes in a JSON document, which jsonb rejects as it can't store a NUL in text.
+ *
+ * backslashes only appear in JSON as the start of an escape, so the scan looks for backslashes a word at a time (eight
+ * bytes per step, with the SWAR zero byte test) and then checks the escape that follows each one. an escaped backslash
+ * is skipped as a whole, so <code>&#92;&#92;u0000</code> (a backslash followed by the text u0000) is allowed.
+ *
+ * the words are read straight from the buffer's array or memory where possible, as each access through the
+ * {@link ByteBuf} checks its reference count, which costs more than the scan itself.
+ */
+final class JsonbEscapes {
+
+  private static final boolean UNSAFE = PlatformDependent.hasUnsafe() && PlatformDependent.isUnaligned();
+
+  private static final long BACKSLASHES = 0x5C5C5C5C5C5C5C5CL;
+  private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+  // "\\u0000" as the low bytes of a word.
+  private static final long NUL = 0x30303030755CL;
+  private static final long NUL_MASK = 0xFFFFFFFFFFFFL;
+
+  // "0000"
+  private static final int ZEROS = 0x30303030;
+
+  private JsonbEscapes() {
+  }
+
+  /**
+   * the index of the backslash of the first <code>&#92;u0000</code> between the indexes, or -1 if there is none.
+   */
+  static int indexOfNul(final ByteBuf buf, final int from, final int to) {
+
+    byte[] array = null;
+    int offset = 0;
+    long address = 0;
+
+    if (UNSAFE && buf.hasArray()) {
+      array = buf.array();
+      offset = buf.arrayOffset();
+    }
+    else if (UNSAFE && buf.hasMemoryAddress()) {
+      address = buf.memoryAddress();
+    }
+
+    // the first index which isn't the character of an escape.
+    int next = from;
+    int index = from;
+
+    for (; (index + 8) <= to; index += 8) {
+      final long word = word(buf, array, offset, address, index) ^ BACKSLASHES;
+      // the high bit of each byte which was a backslash (and so is now zero), without false positives.
+      long found = ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+      for (; found != 0; found &= found - 1) {
+        final int bs = index + (Long.numberOfTrailingZeros(found) >>> 3);
+        if (bs >= next) {
+          if (isNul(buf, array, offset, address, bs, to)) {
+            return bs;
+          }
+          next = bs + 2;
+        }
+      }
+    }
+
+    for (index = Math.max(index, next); index < to; ++index) {
+      if (buf.getByte(index) == '\\') {
+        if (isNul(buf, index, to)) {
+          return index;
+        }
+        ++index;
+      }
+    }
+
+    return -1;
+
+  }
+
+  /**
+   * the eight bytes at the index, with the first in the lowest bits.
+   */
+  private static long word(final ByteBuf buf, final byte[] array, final int offset, final long address, final int index) {
+    final long word;
+    if (array != null) {
+      word = PlatformDependent.getLong(array, offset + index);
+    }
+    else if (address != 0) {
+      word = PlatformDependent.getLong(address + index);
+    }
+    else {
+      return Long.reverseBytes(buf.getLong(index));
+    }
+    return PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? Long.reverseBytes(word)
+                                                     : word;
+  }
+
+  private static boolean isNul(final ByteBuf buf, final byte[] array, final int offset, final long address, final int index, final int to) {
+    if ((index + 8) <= to) {
+      return (word(buf, array, offset, address, index) & NUL_MASK) == NUL;
+    }
+    return isNul(buf, index, to);
+  }
+
+  private static boolean isNul(final ByteBuf buf, final int index, final int to) {
+    return ((index + 6) <= to) && (buf.getByte(index + 1) == 'u') && (buf.getInt(index + 2) == ZEROS);
+  }
+
+}
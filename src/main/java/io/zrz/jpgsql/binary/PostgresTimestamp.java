@@ -1,5 +1,7 @@
 package io.zrz.jpgsql.binary;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 
@@ -7,6 +9,7 @@ public class PostgresTimestamp {
 
   public static final long POSTGRES_EPOCH_MILLIS = LocalDateTime.of(2000, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
   public static final long POSTGRES_EPOCH_MICROS = POSTGRES_EPOCH_MILLIS * 1000L;
+  public static final long POSTGRES_EPOCH_DAYS = LocalDate.of(2000, 1, 1).toEpochDay();
 
   public static long fromUnixMillis(long unixEpochMillis) {
     return (unixEpochMillis - POSTGRES_EPOCH_MILLIS) * 1000L;
@@ -24,4 +27,29 @@ public class PostgresTimestamp {
     return (pgEpochMicros + POSTGRES_EPOCH_MICROS);
   }
 
+  public static long fromInstant(Instant value) {
+    return fromUnixMicros(Math.addExact(Math.multiplyExact(value.getEpochSecond(), 1_000_000L), value.getNano() / 1000));
+  }
+
+  public static Instant toInstant(long pgEpochMicros) {
+    final long micros = toUnixMicros(pgEpochMicros);
+    return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1000L);
+  }
+
+  public static long fromLocalDateTime(LocalDateTime value) {
+    return fromInstant(value.toInstant(ZoneOffset.UTC));
+  }
+
+  public static LocalDateTime toLocalDateTime(long pgEpochMicros) {
+    return LocalDateTime.ofInstant(toInstant(pgEpochMicros), ZoneOffset.UTC);
+  }
+
+  public static int fromLocalDate(LocalDate value) {
+    return Math.toIntExact(value.toEpochDay() - POSTGRES_EPOCH_DAYS);
+  }
+
+  public static LocalDate toLocalDate(int pgEpochDays) {
+    return LocalDate.ofEpochDay(pgEpochDays + POSTGRES_EPOCH_DAYS);
+  }
+
 }
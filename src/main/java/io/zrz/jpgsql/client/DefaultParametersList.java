@@ -1,27 +1,46 @@
 package io.zrz.jpgsql.client;
 
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.UUID;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.postgresql.core.Oid;
 
 import com.google.common.base.Preconditions;
 
+import io.zrz.jpgsql.binary.BinaryParameterCodec;
+import io.zrz.jpgsql.binary.BinaryParameterCodecs;
+import io.zrz.jpgsql.binary.PostgresTimestamp;
 import io.zrz.jpgsql.client.opj.BinaryParamValue;
 
 /**
- * Default implementation of {@link QueryParameters}. Nothing to write home about.
+ * Default implementation of {@link QueryParameters}.
+ *
+ * fixed width values are kept unboxed in a slab of longs, in the form they are sent (see
+ * {@link BinaryParameterCodecs#encodeFixed(int, long)}), and only variable length values are held as objects.
  */
 
 public class DefaultParametersList implements QueryParameters {
 
+  /**
+   * marks a value which is in the slab.
+   */
+  private static final Object FIXED = new Object();
+
   private final Object[] values;
+  private final long[] bits;
   private final int[] oids;
 
   public DefaultParametersList(int count) {
     Preconditions.checkArgument(count >= 0);
     this.values = new Object[count];
+    this.bits = new long[count];
     this.oids = new int[count];
   }
 
@@ -34,20 +53,22 @@ public class DefaultParametersList implements QueryParameters {
     }
   }
 
-  @Override
-  public DefaultParametersList setInteger(int pnum, int val) {
+  private DefaultParametersList fixed(int pnum, long bits, int oid) {
     this.checkIndex(pnum);
-    this.values[pnum - 1] = val;
-    this.oids[pnum - 1] = Oid.INT4;
+    this.values[pnum - 1] = FIXED;
+    this.bits[pnum - 1] = bits;
+    this.oids[pnum - 1] = oid;
     return this;
   }
 
+  @Override
+  public DefaultParametersList setInteger(int pnum, int val) {
+    return this.fixed(pnum, val, Oid.INT4);
+  }
+
   @Override
   public DefaultParametersList setLong(int pnum, long val) {
-    this.checkIndex(pnum);
-    this.values[pnum - 1] = val;
-    this.oids[pnum - 1] = Oid.INT8;
-    return this;
+    return this.fixed(pnum, val, Oid.INT8);
   }
 
   @Override
@@ -77,7 +98,92 @@ public class DefaultParametersList implements QueryParameters {
   @Override
   public Object getValue(int pnum) {
     this.checkIndex(pnum);
-    return this.values[pnum - 1];
+    final Object value = this.values[pnum - 1];
+    if (value != FIXED) {
+      return value;
+    }
+    final long bits = this.bits[pnum - 1];
+    switch (this.oids[pnum - 1]) {
+      case Oid.BOOL:
+        return bits != 0;
+      case Oid.INT2:
+        return (short) bits;
+      case Oid.INT4:
+        return (int) bits;
+      case Oid.INT8:
+        return bits;
+      case Oid.FLOAT4:
+        return Float.intBitsToFloat((int) bits);
+      case Oid.FLOAT8:
+        return Double.longBitsToDouble(bits);
+      case Oid.DATE:
+        return PostgresTimestamp.toLocalDate((int) bits);
+      case Oid.TIMESTAMP:
+        return PostgresTimestamp.toLocalDateTime(bits);
+      case Oid.TIMESTAMPTZ:
+        return PostgresTimestamp.toInstant(bits);
+      default:
+        throw new AssertionError(this.oids[pnum - 1]);
+    }
+  }
+
+  @Override
+  public boolean isFixedWidth(int pnum) {
+    this.checkIndex(pnum);
+    return this.values[pnum - 1] == FIXED;
+  }
+
+  @Override
+  public long getBits(int pnum) {
+    if (!this.isFixedWidth(pnum)) {
+      throw new IllegalStateException(String.format("parameter %d is not fixed width", pnum));
+    }
+    return this.bits[pnum - 1];
+  }
+
+  /**
+   * the bits of a fixed width parameter of the type, or one of the alternatives.
+   */
+  private long bits(int pnum, int oid, int... alternatives) {
+    final long bits = this.getBits(pnum);
+    final int actual = this.oids[pnum - 1];
+    if (actual != oid && Arrays.stream(alternatives).noneMatch(x -> x == actual)) {
+      throw new IllegalStateException(String.format("parameter %d is %s, not %s", pnum, Oid.toString(actual), Oid.toString(oid)));
+    }
+    return bits;
+  }
+
+  @Override
+  public short getShort(int pnum) {
+    return (short) this.bits(pnum, Oid.INT2);
+  }
+
+  @Override
+  public int getInt(int pnum) {
+    return (int) this.bits(pnum, Oid.INT4, Oid.INT2);
+  }
+
+  @Override
+  public long getLong(int pnum) {
+    return this.bits(pnum, Oid.INT8, Oid.INT4, Oid.INT2);
+  }
+
+  @Override
+  public float getFloat(int pnum) {
+    return Float.intBitsToFloat((int) this.bits(pnum, Oid.FLOAT4));
+  }
+
+  @Override
+  public double getDouble(int pnum) {
+    if (this.getOid(pnum) == Oid.FLOAT4) {
+      return this.getFloat(pnum);
+    }
+    return Double.longBitsToDouble(this.bits(pnum, Oid.FLOAT8));
+  }
+
+  @Override
+  public boolean getBoolean(int pnum) {
+    return this.bits(pnum, Oid.BOOL) != 0;
   }
 
   @Override
@@ -104,6 +210,89 @@ public class DefaultParametersList implements QueryParameters {
     return this;
   }
 
+  @Override
+  public QueryParameters setLongArray(int pnum, long[] value) {
+    return this.put(pnum, value, Oid.INT8_ARRAY);
+  }
+
+  @Override
+  public QueryParameters setDoubleArray(int pnum, double[] value) {
+    return this.put(pnum, value, Oid.FLOAT8_ARRAY);
+  }
+
+  @Override
+  public QueryParameters setBooleanArray(int pnum, boolean[] value) {
+    return this.put(pnum, value, Oid.BOOL_ARRAY);
+  }
+
+  @Override
+  public QueryParameters setUUIDArray(int pnum, Collection<UUID> value) {
+    return this.put(pnum, value.toArray(new UUID[0]), Oid.UUID_ARRAY);
+  }
+
+  @Override
+  public QueryParameters setShort(int pnum, short val) {
+    return this.fixed(pnum, val, Oid.INT2);
+  }
+
+  @Override
+  public QueryParameters setBoolean(int pnum, boolean val) {
+    return this.fixed(pnum, val ? 1
+                                : 0,
+      Oid.BOOL);
+  }
+
+  @Override
+  public QueryParameters setFloat(int pnum, float val) {
+    return this.fixed(pnum, Float.floatToRawIntBits(val), Oid.FLOAT4);
+  }
+
+  @Override
+  public QueryParameters setDouble(int pnum, double val) {
+    return this.fixed(pnum, Double.doubleToRawLongBits(val), Oid.FLOAT8);
+  }
+
+  @Override
+  public QueryParameters setNumeric(int pnum, BigDecimal val) {
+    return this.put(pnum, val, Oid.NUMERIC);
+  }
+
+  @Override
+  public QueryParameters setTimestamp(int pnum, Instant val) {
+    return val == null ? this.setNull(pnum, Oid.TIMESTAMPTZ)
+                       : this.fixed(pnum, PostgresTimestamp.fromInstant(val), Oid.TIMESTAMPTZ);
+  }
+
+  @Override
+  public QueryParameters setTimestamp(int pnum, LocalDateTime val) {
+    return val == null ? this.setNull(pnum, Oid.TIMESTAMP)
+                       : this.fixed(pnum, PostgresTimestamp.fromLocalDateTime(val), Oid.TIMESTAMP);
+  }
+
+  @Override
+  public QueryParameters setDate(int pnum, LocalDate val) {
+    return val == null ? this.setNull(pnum, Oid.DATE)
+                       : this.fixed(pnum, PostgresTimestamp.fromLocalDate(val), Oid.DATE);
+  }
+
+  @Override
+  public QueryParameters setValue(int pnum, Object value, int oid) {
+    if (value != null) {
+      final BinaryParameterCodec<?> codec = BinaryParameterCodecs.lookup(oid);
+      if (codec == null || !codec.javaType().isInstance(value)) {
+        throw new IllegalArgumentException(String.format("no binary codec for OID %d taking %s", oid, value.getClass().getName()));
+      }
+    }
+    return this.put(pnum, value, oid);
+  }
+
+  private QueryParameters put(int pnum, Object value, int oid) {
+    this.checkIndex(pnum);
+    this.values[pnum - 1] = value;
+    this.oids[pnum - 1] = oid;
+    return this;
+  }
+
   @Override
   public QueryParameters set(int pnum, BinaryParamValue value) {
     this.checkIndex(pnum);
@@ -125,9 +314,22 @@ public class DefaultParametersList implements QueryParameters {
 
   @Override
   public int append(int offset, QueryParameters source) {
+    if (source instanceof DefaultParametersList) {
+      final DefaultParametersList list = (DefaultParametersList) source;
+      System.arraycopy(list.oids, 0, this.oids, offset - 1, list.count());
+      System.arraycopy(list.values, 0, this.values, offset - 1, list.count());
+      System.arraycopy(list.bits, 0, this.bits, offset - 1, list.count());
+      return offset + source.count();
+    }
     for (int i = 0; i < source.count(); ++i) {
       this.oids[offset + i - 1] = source.getOid(i + 1);
-      this.values[offset + i - 1] = source.getValue(i + 1);
+      if (source.isFixedWidth(i + 1)) {
+        this.values[offset + i - 1] = FIXED;
+        this.bits[offset + i - 1] = source.getBits(i + 1);
+      }
+      else {
+        this.values[offset + i - 1] = source.getValue(i + 1);
+      }
     }
     return offset + source.count();
   }
@@ -166,6 +368,21 @@ public class DefaultParametersList implements QueryParameters {
         if (arg.getClass().getComponentType().equals(String.class)) {
           this.setStringArray(i + 1, Arrays.asList((String[]) arg));
         }
+        else if (arg instanceof int[]) {
+          this.setIntArray(i + 1, (int[]) arg);
+        }
+        else if (arg instanceof long[]) {
+          this.setLongArray(i + 1, (long[]) arg);
+        }
+        else if (arg instanceof double[]) {
+          this.setDoubleArray(i + 1, (double[]) arg);
+        }
+        else if (arg instanceof boolean[]) {
+          this.setBooleanArray(i + 1, (boolean[]) arg);
+        }
+        else if (arg instanceof UUID[]) {
+          this.setUUIDArray(i + 1, Arrays.asList((UUID[]) arg));
+        }
         else {
           throw new IllegalArgumentException("array types not yet supported");
         }
@@ -185,6 +402,51 @@ public class DefaultParametersList implements QueryParameters {
 
         this.setLong(i + 1, (long) arg);
 
+      }
+      else if (arg instanceof Short) {
+
+        this.setShort(i + 1, (short) arg);
+
+      }
+      else if (arg instanceof Boolean) {
+
+        this.setBoolean(i + 1, (boolean) arg);
+
+      }
+      else if (arg instanceof Float) {
+
+        this.setFloat(i + 1, (float) arg);
+
+      }
+      else if (arg instanceof Double) {
+
+        this.setDouble(i + 1, (double) arg);
+
+      }
+      else if (arg instanceof BigDecimal) {
+
+        this.setNumeric(i + 1, (BigDecimal) arg);
+
+      }
+      else if (arg instanceof UUID) {
+
+        this.setUUID(i + 1, (UUID) arg);
+
+      }
+      else if (arg instanceof Instant) {
+
+        this.setTimestamp(i + 1, (Instant) arg);
+
+      }
+      else if (arg instanceof LocalDateTime) {
+
+        this.setTimestamp(i + 1, (LocalDateTime) arg);
+
+      }
+      else if (arg instanceof LocalDate) {
+
+        this.setDate(i + 1, (LocalDate) arg);
+
       }
       else if (arg instanceof BinaryParamValue) {
 
@@ -215,26 +477,33 @@ public class DefaultParametersList implements QueryParameters {
 
       sb.append(i + 1).append(" = ");
 
-      Class<? extends @NonNull Object> klass = this.values[i].getClass();
+      final Object value = this.getValue(i + 1);
+
+      if (value != null && value.getClass().isArray()) {
 
-      if (klass.isArray()) {
+        Class<? extends @NonNull Object> klass = value.getClass();
 
-        if (this.values[i].getClass().equals(byte[].class)) {
+        if (klass.equals(byte[].class)) {
 
           sb.append("(");
-          sb.append(((byte[]) this.values[i]).length);
+          sb.append(((byte[]) value).length);
           sb.append(" bytes)");
 
         }
         else if (klass.getComponentType().equals(String.class)) {
 
-          sb.append(Arrays.toString((Object[]) this.values[i]));
+          sb.append(Arrays.toString((Object[]) value));
+
+        }
+        else {
+
+          sb.append(klass.getComponentType().getSimpleName()).append("[").append(Array.getLength(value)).append("]");
 
         }
 
       }
       else {
-        sb.append(this.values[i]);
+        sb.append(value);
       }
 
       sb.append(" [").append(Oid.toString(this.oids[i])).append("]");
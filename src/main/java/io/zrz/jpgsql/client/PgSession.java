@@ -7,6 +7,9 @@ public interface PgSession extends PostgresQueryProcessor, AutoCloseable {
   @Override
   void close();
 
+  /**
+   * not supported by the netty client's sessions, which throw {@link UnsupportedOperationException}.
+   */
   Publisher<NotifyMessage> listen(String channel);
 
 }
@@ -35,6 +35,8 @@ public interface PostgresClient extends PostgresQueryProcessor, AutoCloseable {
   /**
    * opens a dedicated connection that monitors for notify messages, and can optionally collect other stats
    * periodically.
+   *
+   * not supported by the netty client, which throws {@link UnsupportedOperationException}.
    */
 
   Publisher<NotifyMessage> notifications(Collection<String> channels);
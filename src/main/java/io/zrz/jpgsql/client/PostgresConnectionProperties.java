@@ -84,6 +84,55 @@ public final class PostgresConnectionProperties {
   private final int sendBufferSize;
   private final int recvBufferSize;
   private final boolean debug;
+  /**
+   * the number of queries each connection of the netty client writes before waiting for earlier responses.
+   *
+   * each query is terminated by its own Sync, so an error only fails that query. 1 disables pipelining.
+   */
+  private final int pipelineDepth;
+  /**
+   * the number of named server side prepared statements each connection of the netty client keeps, least recently
+   * used first out. 0 sends every statement unnamed, so it is parsed and planned on each execution.
+   */
+  private final int statementCacheSize;
+  /**
+   * run the connections of the thread pooled client on virtual threads rather than a platform thread each, so
+   * waiting on the server parks rather than blocking a thread. there is still one per connection, so this doesn't
+   * allow any more sessions. needs JDK 21 and pgjdbc 42.6.0 or later, and is ignored (with a warning) otherwise: older
+   * pgjdbc holds a monitor for all of a query's I/O, which pins the carrier thread, so it would give no benefit.
+   */
+  private final boolean virtualThreads;
+  /**
+   * the number of queries of the thread pooled client which wait for a connection once its execution queue is
+   * full, each for up to {@link #getMaxStalledWait()}. 0 rejects them straight away.
+   */
+  private final int admissionQueueDepth;
+  /**
+   * the number of buffers a COPY FROM STDIN on the netty client has written to a connection but which haven't yet been
+   * flushed to the socket. more are only requested from the source as these complete, so memory use is bounded however
+   * large the load.
+   */
+  private final int copyInWindow;
+  /**
+   * the number of bytes written to a netty client connection at which a flush goes out to the socket straight away.
+   * below it, flushes are deferred to the end of the event loop's current task, so that queries submitted together
+   * share a single write. 0 (the default) flushes immediately, and Integer.MAX_VALUE always defers.
+   */
+  private final int flushThreshold;
+  /**
+   * whether the netty client runs on the native epoll transport where it is available, rather than NIO. only applies to
+   * the event loop group the client creates itself: a group passed in decides its own transport.
+   */
+  private final boolean nativeTransport;
+  /**
+   * TCP_QUICKACK on the netty client's connections, when on the epoll transport.
+   */
+  private final boolean tcpQuickAck;
+  /**
+   * SO_BUSY_POLL on the netty client's connections, when on the epoll transport: how long a read busy waits for data
+   * before sleeping. 0 doesn't busy poll.
+   */
+  private final int busyPollMicros;
 
   @java.lang.SuppressWarnings("all")
   private static int $default$minIdle() {
@@ -155,6 +204,51 @@ public final class PostgresConnectionProperties {
     return false;
   }
 
+  @java.lang.SuppressWarnings("all")
+  private static int $default$pipelineDepth() {
+    return 16;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  private static int $default$statementCacheSize() {
+    return 256;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  private static boolean $default$virtualThreads() {
+    return false;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  private static int $default$admissionQueueDepth() {
+    return 1024;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  private static int $default$copyInWindow() {
+    return 16;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  private static int $default$flushThreshold() {
+    return 0;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  private static boolean $default$nativeTransport() {
+    return true;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  private static boolean $default$tcpQuickAck() {
+    return false;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  private static int $default$busyPollMicros() {
+    return 0;
+  }
+
   @java.lang.SuppressWarnings("all")
   PostgresConnectionProperties(
       final String hostname,
@@ -176,7 +270,16 @@ public final class PostgresConnectionProperties {
       final int defaultRowFetchSize,
       final int sendBufferSize,
       final int recvBufferSize,
-      final boolean debug) {
+      final boolean debug,
+      final int pipelineDepth,
+      final int statementCacheSize,
+      final boolean virtualThreads,
+      final int admissionQueueDepth,
+      final int copyInWindow,
+      final int flushThreshold,
+      final boolean nativeTransport,
+      final boolean tcpQuickAck,
+      final int busyPollMicros) {
     this.hostname = hostname;
     this.port = port;
     this.dbname = dbname;
@@ -197,6 +300,15 @@ public final class PostgresConnectionProperties {
     this.sendBufferSize = sendBufferSize;
     this.recvBufferSize = recvBufferSize;
     this.debug = debug;
+    this.pipelineDepth = pipelineDepth;
+    this.statementCacheSize = statementCacheSize;
+    this.virtualThreads = virtualThreads;
+    this.admissionQueueDepth = admissionQueueDepth;
+    this.copyInWindow = copyInWindow;
+    this.flushThreshold = flushThreshold;
+    this.nativeTransport = nativeTransport;
+    this.tcpQuickAck = tcpQuickAck;
+    this.busyPollMicros = busyPollMicros;
   }
 
   @java.lang.SuppressWarnings("all")
@@ -269,6 +381,42 @@ public final class PostgresConnectionProperties {
     private boolean debug$set;
     @java.lang.SuppressWarnings("all")
     private boolean debug$value;
+    @java.lang.SuppressWarnings("all")
+    private boolean pipelineDepth$set;
+    @java.lang.SuppressWarnings("all")
+    private int pipelineDepth$value;
+    @java.lang.SuppressWarnings("all")
+    private boolean statementCacheSize$set;
+    @java.lang.SuppressWarnings("all")
+    private int statementCacheSize$value;
+    @java.lang.SuppressWarnings("all")
+    private boolean virtualThreads$set;
+    @java.lang.SuppressWarnings("all")
+    private boolean virtualThreads$value;
+    @java.lang.SuppressWarnings("all")
+    private boolean admissionQueueDepth$set;
+    @java.lang.SuppressWarnings("all")
+    private int admissionQueueDepth$value;
+    @java.lang.SuppressWarnings("all")
+    private boolean copyInWindow$set;
+    @java.lang.SuppressWarnings("all")
+    private int copyInWindow$value;
+    @java.lang.SuppressWarnings("all")
+    private boolean flushThreshold$set;
+    @java.lang.SuppressWarnings("all")
+    private int flushThreshold$value;
+    @java.lang.SuppressWarnings("all")
+    private boolean nativeTransport$set;
+    @java.lang.SuppressWarnings("all")
+    private boolean nativeTransport$value;
+    @java.lang.SuppressWarnings("all")
+    private boolean tcpQuickAck$set;
+    @java.lang.SuppressWarnings("all")
+    private boolean tcpQuickAck$value;
+    @java.lang.SuppressWarnings("all")
+    private boolean busyPollMicros$set;
+    @java.lang.SuppressWarnings("all")
+    private int busyPollMicros$value;
 
     @java.lang.SuppressWarnings("all")
     PostgresConnectionPropertiesBuilder() {
@@ -488,6 +636,127 @@ public final class PostgresConnectionProperties {
       return this;
     }
 
+    /**
+     * the number of queries each connection of the netty client writes before waiting for earlier responses.
+     *
+     * each query is terminated by its own Sync, so an error only fails that query. 1 disables pipelining.
+     * 
+     * @return {@code this}.
+     */
+    @java.lang.SuppressWarnings("all")
+    public PostgresConnectionProperties.PostgresConnectionPropertiesBuilder pipelineDepth(final int pipelineDepth) {
+      this.pipelineDepth$value = pipelineDepth;
+      pipelineDepth$set = true;
+      return this;
+    }
+
+    /**
+     * the number of named server side prepared statements each connection of the netty client keeps, least recently
+     * used first out. 0 sends every statement unnamed, so it is parsed and planned on each execution.
+     * 
+     * @return {@code this}.
+     */
+    @java.lang.SuppressWarnings("all")
+    public PostgresConnectionProperties.PostgresConnectionPropertiesBuilder statementCacheSize(final int statementCacheSize) {
+      this.statementCacheSize$value = statementCacheSize;
+      statementCacheSize$set = true;
+      return this;
+    }
+
+    /**
+     * run the connections of the thread pooled client on virtual threads rather than a platform thread each, so
+     * waiting on the server parks rather than blocking a thread. there is still one per connection, so this doesn't
+     * allow any more sessions. needs JDK 21 and pgjdbc 42.6.0 or later, and is ignored (with a warning) otherwise: older
+     * pgjdbc holds a monitor for all of a query's I/O, which pins the carrier thread, so it would give no benefit.
+     * 
+     * @return {@code this}.
+     */
+    @java.lang.SuppressWarnings("all")
+    public PostgresConnectionProperties.PostgresConnectionPropertiesBuilder virtualThreads(final boolean virtualThreads) {
+      this.virtualThreads$value = virtualThreads;
+      virtualThreads$set = true;
+      return this;
+    }
+
+    /**
+     * the number of queries of the thread pooled client which wait for a connection once its execution queue is
+     * full, each for up to {@link #getMaxStalledWait()}. 0 rejects them straight away.
+     * 
+     * @return {@code this}.
+     */
+    @java.lang.SuppressWarnings("all")
+    public PostgresConnectionProperties.PostgresConnectionPropertiesBuilder admissionQueueDepth(final int admissionQueueDepth) {
+      this.admissionQueueDepth$value = admissionQueueDepth;
+      admissionQueueDepth$set = true;
+      return this;
+    }
+
+    /**
+     * the number of buffers a COPY FROM STDIN on the netty client has written to a connection but which haven't yet been
+     * flushed to the socket. more are only requested from the source as these complete, so memory use is bounded however
+     * large the load.
+     * 
+     * @return {@code this}.
+     */
+    @java.lang.SuppressWarnings("all")
+    public PostgresConnectionProperties.PostgresConnectionPropertiesBuilder copyInWindow(final int copyInWindow) {
+      this.copyInWindow$value = copyInWindow;
+      copyInWindow$set = true;
+      return this;
+    }
+
+    /**
+     * the number of bytes written to a netty client connection at which a flush goes out to the socket straight away.
+     * below it, flushes are deferred to the end of the event loop's current task, so that queries submitted together
+     * share a single write. 0 (the default) flushes immediately, and Integer.MAX_VALUE always defers.
+     * 
+     * @return {@code this}.
+     */
+    @java.lang.SuppressWarnings("all")
+    public PostgresConnectionProperties.PostgresConnectionPropertiesBuilder flushThreshold(final int flushThreshold) {
+      this.flushThreshold$value = flushThreshold;
+      flushThreshold$set = true;
+      return this;
+    }
+
+    /**
+     * whether the netty client runs on the native epoll transport where it is available, rather than NIO. only applies to
+     * the event loop group the client creates itself: a group passed in decides its own transport.
+     * 
+     * @return {@code this}.
+     */
+    @java.lang.SuppressWarnings("all")
+    public PostgresConnectionProperties.PostgresConnectionPropertiesBuilder nativeTransport(final boolean nativeTransport) {
+      this.nativeTransport$value = nativeTransport;
+      nativeTransport$set = true;
+      return this;
+    }
+
+    /**
+     * TCP_QUICKACK on the netty client's connections, when on the epoll transport.
+     * 
+     * @return {@code this}.
+     */
+    @java.lang.SuppressWarnings("all")
+    public PostgresConnectionProperties.PostgresConnectionPropertiesBuilder tcpQuickAck(final boolean tcpQuickAck) {
+      this.tcpQuickAck$value = tcpQuickAck;
+      tcpQuickAck$set = true;
+      return this;
+    }
+
+    /**
+     * SO_BUSY_POLL on the netty client's connections, when on the epoll transport: how long a read busy waits for data
+     * before sleeping. 0 doesn't busy poll.
+     * 
+     * @return {@code this}.
+     */
+    @java.lang.SuppressWarnings("all")
+    public PostgresConnectionProperties.PostgresConnectionPropertiesBuilder busyPollMicros(final int busyPollMicros) {
+      this.busyPollMicros$value = busyPollMicros;
+      busyPollMicros$set = true;
+      return this;
+    }
+
     @java.lang.SuppressWarnings("all")
     public PostgresConnectionProperties build() {
       int minIdle$value = this.minIdle$value;
@@ -532,6 +801,33 @@ public final class PostgresConnectionProperties {
       boolean debug$value = this.debug$value;
       if (!this.debug$set)
         debug$value = PostgresConnectionProperties.$default$debug();
+      int pipelineDepth$value = this.pipelineDepth$value;
+      if (!this.pipelineDepth$set)
+        pipelineDepth$value = PostgresConnectionProperties.$default$pipelineDepth();
+      int statementCacheSize$value = this.statementCacheSize$value;
+      if (!this.statementCacheSize$set)
+        statementCacheSize$value = PostgresConnectionProperties.$default$statementCacheSize();
+      boolean virtualThreads$value = this.virtualThreads$value;
+      if (!this.virtualThreads$set)
+        virtualThreads$value = PostgresConnectionProperties.$default$virtualThreads();
+      int admissionQueueDepth$value = this.admissionQueueDepth$value;
+      if (!this.admissionQueueDepth$set)
+        admissionQueueDepth$value = PostgresConnectionProperties.$default$admissionQueueDepth();
+      int copyInWindow$value = this.copyInWindow$value;
+      if (!this.copyInWindow$set)
+        copyInWindow$value = PostgresConnectionProperties.$default$copyInWindow();
+      int flushThreshold$value = this.flushThreshold$value;
+      if (!this.flushThreshold$set)
+        flushThreshold$value = PostgresConnectionProperties.$default$flushThreshold();
+      boolean nativeTransport$value = this.nativeTransport$value;
+      if (!this.nativeTransport$set)
+        nativeTransport$value = PostgresConnectionProperties.$default$nativeTransport();
+      boolean tcpQuickAck$value = this.tcpQuickAck$value;
+      if (!this.tcpQuickAck$set)
+        tcpQuickAck$value = PostgresConnectionProperties.$default$tcpQuickAck();
+      int busyPollMicros$value = this.busyPollMicros$value;
+      if (!this.busyPollMicros$set)
+        busyPollMicros$value = PostgresConnectionProperties.$default$busyPollMicros();
       return new PostgresConnectionProperties(
         this.hostname,
         this.port,
@@ -552,7 +848,16 @@ public final class PostgresConnectionProperties {
         defaultRowFetchSize$value,
         sendBufferSize$value,
         recvBufferSize$value,
-        debug$value);
+        debug$value,
+        pipelineDepth$value,
+        statementCacheSize$value,
+        virtualThreads$value,
+        admissionQueueDepth$value,
+        copyInWindow$value,
+        flushThreshold$value,
+        nativeTransport$value,
+        tcpQuickAck$value,
+        busyPollMicros$value);
     }
 
     @java.lang.Override
@@ -598,6 +903,24 @@ public final class PostgresConnectionProperties {
         + this.recvBufferSize$value
         + ", debug$value="
         + this.debug$value
+        + ", pipelineDepth$value="
+        + this.pipelineDepth$value
+        + ", statementCacheSize$value="
+        + this.statementCacheSize$value
+        + ", virtualThreads$value="
+        + this.virtualThreads$value
+        + ", admissionQueueDepth$value="
+        + this.admissionQueueDepth$value
+        + ", copyInWindow$value="
+        + this.copyInWindow$value
+        + ", flushThreshold$value="
+        + this.flushThreshold$value
+        + ", nativeTransport$value="
+        + this.nativeTransport$value
+        + ", tcpQuickAck$value="
+        + this.tcpQuickAck$value
+        + ", busyPollMicros$value="
+        + this.busyPollMicros$value
         + ")";
     }
   }
@@ -628,7 +951,16 @@ public final class PostgresConnectionProperties {
       .defaultRowFetchSize(this.defaultRowFetchSize)
       .sendBufferSize(this.sendBufferSize)
       .recvBufferSize(this.recvBufferSize)
-      .debug(this.debug);
+      .debug(this.debug)
+      .pipelineDepth(this.pipelineDepth)
+      .statementCacheSize(this.statementCacheSize)
+      .virtualThreads(this.virtualThreads)
+      .admissionQueueDepth(this.admissionQueueDepth)
+      .copyInWindow(this.copyInWindow)
+      .flushThreshold(this.flushThreshold)
+      .nativeTransport(this.nativeTransport)
+      .tcpQuickAck(this.tcpQuickAck)
+      .busyPollMicros(this.busyPollMicros);
   }
 
   /**
@@ -781,6 +1113,91 @@ public final class PostgresConnectionProperties {
     return this.debug;
   }
 
+  /**
+   * the number of queries each connection of the netty client writes before waiting for earlier responses.
+   *
+   * each query is terminated by its own Sync, so an error only fails that query. 1 disables pipelining.
+   */
+  @java.lang.SuppressWarnings("all")
+  public int getPipelineDepth() {
+    return this.pipelineDepth;
+  }
+
+  /**
+   * the number of named server side prepared statements each connection of the netty client keeps, least recently
+   * used first out. 0 sends every statement unnamed, so it is parsed and planned on each execution.
+   */
+  @java.lang.SuppressWarnings("all")
+  public int getStatementCacheSize() {
+    return this.statementCacheSize;
+  }
+
+  /**
+   * run the connections of the thread pooled client on virtual threads rather than a platform thread each, so
+   * waiting on the server parks rather than blocking a thread. there is still one per connection, so this doesn't
+   * allow any more sessions. needs JDK 21 and pgjdbc 42.6.0 or later, and is ignored (with a warning) otherwise: older
+   * pgjdbc holds a monitor for all of a query's I/O, which pins the carrier thread, so it would give no benefit.
+   */
+  @java.lang.SuppressWarnings("all")
+  public boolean isVirtualThreads() {
+    return this.virtualThreads;
+  }
+
+  /**
+   * the number of queries of the thread pooled client which wait for a connection once its execution queue is
+   * full, each for up to {@link #getMaxStalledWait()}. 0 rejects them straight away.
+   */
+  @java.lang.SuppressWarnings("all")
+  public int getAdmissionQueueDepth() {
+    return this.admissionQueueDepth;
+  }
+
+  /**
+   * the number of buffers a COPY FROM STDIN on the netty client has written to a connection but which haven't yet been
+   * flushed to the socket. more are only requested from the source as these complete, so memory use is bounded however
+   * large the load.
+   */
+  @java.lang.SuppressWarnings("all")
+  public int getCopyInWindow() {
+    return this.copyInWindow;
+  }
+
+  /**
+   * the number of bytes written to a netty client connection at which a flush goes out to the socket straight away.
+   * below it, flushes are deferred to the end of the event loop's current task, so that queries submitted together
+   * share a single write. 0 (the default) flushes immediately, and Integer.MAX_VALUE always defers.
+   */
+  @java.lang.SuppressWarnings("all")
+  public int getFlushThreshold() {
+    return this.flushThreshold;
+  }
+
+  /**
+   * whether the netty client runs on the native epoll transport where it is available, rather than NIO. only applies to
+   * the event loop group the client creates itself: a group passed in decides its own transport.
+   */
+  @java.lang.SuppressWarnings("all")
+  public boolean isNativeTransport() {
+    return this.nativeTransport;
+  }
+
+  /**
+   * TCP_QUICKACK on the netty client's connections, when on the epoll transport.
+   */
+  @java.lang.SuppressWarnings("all")
+  public boolean isTcpQuickAck() {
+    return this.tcpQuickAck;
+  }
+
+  /**
+   * SO_BUSY_POLL on the netty client's connections, when on the epoll transport: how long a read busy waits for data
+   * before sleeping. 0 doesn't busy poll.
+   */
+  @java.lang.SuppressWarnings("all")
+  public int getBusyPollMicros() {
+    return this.busyPollMicros;
+  }
+
   @java.lang.Override
   @java.lang.SuppressWarnings("all")
   public boolean equals(final java.lang.Object o) {
@@ -859,6 +1276,24 @@ public final class PostgresConnectionProperties {
       return false;
     if (this.isDebug() != other.isDebug())
       return false;
+    if (this.getPipelineDepth() != other.getPipelineDepth())
+      return false;
+    if (this.getStatementCacheSize() != other.getStatementCacheSize())
+      return false;
+    if (this.isVirtualThreads() != other.isVirtualThreads())
+      return false;
+    if (this.getAdmissionQueueDepth() != other.getAdmissionQueueDepth())
+      return false;
+    if (this.getCopyInWindow() != other.getCopyInWindow())
+      return false;
+    if (this.getFlushThreshold() != other.getFlushThreshold())
+      return false;
+    if (this.isNativeTransport() != other.isNativeTransport())
+      return false;
+    if (this.isTcpQuickAck() != other.isTcpQuickAck())
+      return false;
+    if (this.getBusyPollMicros() != other.getBusyPollMicros())
+      return false;
     return true;
   }
 
@@ -936,6 +1371,24 @@ public final class PostgresConnectionProperties {
       (result * PRIME)
         + (this.isDebug() ? 79
                           : 97);
+    result = (result * PRIME) + this.getPipelineDepth();
+    result = (result * PRIME) + this.getStatementCacheSize();
+    result =
+      (result * PRIME)
+        + (this.isVirtualThreads() ? 79
+                                   : 97);
+    result = (result * PRIME) + this.getAdmissionQueueDepth();
+    result = (result * PRIME) + this.getCopyInWindow();
+    result = (result * PRIME) + this.getFlushThreshold();
+    result =
+      (result * PRIME)
+        + (this.isNativeTransport() ? 79
+                                    : 97);
+    result =
+      (result * PRIME)
+        + (this.isTcpQuickAck() ? 79
+                                : 97);
+    result = (result * PRIME) + this.getBusyPollMicros();
     return result;
   }
 
@@ -982,6 +1435,24 @@ public final class PostgresConnectionProperties {
       + this.getRecvBufferSize()
       + ", debug="
       + this.isDebug()
+      + ", pipelineDepth="
+      + this.getPipelineDepth()
+      + ", statementCacheSize="
+      + this.getStatementCacheSize()
+      + ", virtualThreads="
+      + this.isVirtualThreads()
+      + ", admissionQueueDepth="
+      + this.getAdmissionQueueDepth()
+      + ", copyInWindow="
+      + this.getCopyInWindow()
+      + ", flushThreshold="
+      + this.getFlushThreshold()
+      + ", nativeTransport="
+      + this.isNativeTransport()
+      + ", tcpQuickAck="
+      + this.isTcpQuickAck()
+      + ", busyPollMicros="
+      + this.getBusyPollMicros()
       + ")";
   }
 }
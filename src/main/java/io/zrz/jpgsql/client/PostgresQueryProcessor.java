@@ -6,6 +6,7 @@ import java.util.List;
 import org.reactivestreams.Publisher;
 
 import com.google.common.io.ByteSource;
+import com.google.common.primitives.ImmutableLongArray;
 
 import io.netty.buffer.ByteBuf;
 import io.reactivex.rxjava3.core.Flowable;
@@ -80,6 +81,33 @@ public interface PostgresQueryProcessor {
 
   Publisher<QueryResult> submit(Query query, QueryParameters params);
 
+  /**
+   * execute a single statement once for each of the parameter sets, e.g a multi row insert.
+   *
+   * the clients parse the statement once and send a Bind/Execute for each set, without building a combined statement,
+   * and either all of the executions take effect or none do. the netty client ends the batch with one Sync, so it runs
+   * in one implicit transaction. the thread pooled client runs it in a transaction block which it commits at the end,
+   * as pgjdbc sends a Sync part way through a large batch. this default submits each set in turn instead.
+   *
+   * @return the update count of each execution, in order.
+   */
+
+  default Publisher<long[]> executeBatch(final Query query, final Iterable<QueryParameters> params) {
+    return updateCounts(Flowable.fromIterable(params).concatMap(p -> Flowable.fromPublisher(this.submit(query, p))));
+  }
+
+  /**
+   * collects the update count of each {@link CommandStatus} in the results.
+   */
+
+  static Flowable<long[]> updateCounts(final Publisher<QueryResult> results) {
+    return Flowable.fromPublisher(results)
+      .ofType(CommandStatus.class)
+      .collect(ImmutableLongArray::builder, (counts, status) -> counts.add(status.getUpdateCount()))
+      .map(counts -> counts.build().toArray())
+      .toFlowable();
+  }
+
   /**
    * performs a copy.
    *
@@ -100,6 +128,18 @@ public interface PostgresQueryProcessor {
 
   Publisher<Long> copyTo(String sql, ByteSource source);
 
+  /**
+   * runs a {@code COPY ... TO STDOUT}, emitting the data in the chunks the server sends it. the subscriber owns (and must
+   * release) each buffer.
+   *
+   * data is only read from the server as it is requested, so a slow consumer holds the server back rather than the
+   * client buffering the whole table.
+   */
+
+  default Flowable<ByteBuf> copyOut(final String sql) {
+    return Flowable.error(new UnsupportedOperationException("COPY TO STDOUT is not supported here"));
+  }
+
   /**
    *
    * @param query
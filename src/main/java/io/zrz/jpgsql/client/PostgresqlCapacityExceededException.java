@@ -9,4 +9,11 @@ public class PostgresqlCapacityExceededException extends RuntimeException {
 
   private static final long serialVersionUID = 1L;
 
+  public PostgresqlCapacityExceededException() {
+  }
+
+  public PostgresqlCapacityExceededException(final String message) {
+    super(message);
+  }
+
 }
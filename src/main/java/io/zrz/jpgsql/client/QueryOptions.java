@@ -0,0 +1,235 @@
+package io.zrz.jpgsql.client;
+
+import io.zrz.jpgsql.client.opj.PgPackedResultRows;
+
+/**
+ * per query execution options.
+ */
+public final class QueryOptions {
+
+  /**
+   * how the rows of each result batch are held in memory.
+   */
+  public enum RowBufferFormat {
+
+    /**
+     * a byte[] per cell, as received from the driver.
+     */
+    TUPLES,
+
+    /**
+     * each batch copied into a single heap region, see {@link PgPackedResultRows}.
+     */
+    PACKED,
+
+    /**
+     * each batch copied into a single off heap region, see {@link PgPackedResultRows}.
+     */
+    PACKED_DIRECT;
+
+  }
+
+  /**
+   * which lane a query waits in when every connection is busy and the execution queue is full.
+   */
+  public enum Priority {
+
+    /**
+     * admitted ahead of any waiting {@link #BATCH} work.
+     */
+    INTERACTIVE,
+
+    /**
+     * admitted only when no {@link #INTERACTIVE} work is waiting.
+     */
+    BATCH;
+
+  }
+
+  public static final QueryOptions DEFAULTS = builder().build();
+
+  /**
+   * number of rows to fetch from the portal at a time. zero fetches all rows at once.
+   */
+  private final int fetchSize;
+  /**
+   * the representation of the returned {@link RowBuffer}s.
+   */
+  private final RowBufferFormat rowFormat;
+  /**
+   * the admission lane to wait in when the pool is saturated.
+   */
+  private final Priority priority;
+
+  @java.lang.SuppressWarnings("all")
+  private static int $default$fetchSize() {
+    return 0;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  private static RowBufferFormat $default$rowFormat() {
+    return RowBufferFormat.TUPLES;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  private static Priority $default$priority() {
+    return Priority.INTERACTIVE;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  QueryOptions(final int fetchSize, final RowBufferFormat rowFormat, final Priority priority) {
+    this.fetchSize = fetchSize;
+    this.rowFormat = rowFormat;
+    this.priority = priority;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public static class QueryOptionsBuilder {
+    @java.lang.SuppressWarnings("all")
+    private boolean fetchSize$set;
+    @java.lang.SuppressWarnings("all")
+    private int fetchSize$value;
+    @java.lang.SuppressWarnings("all")
+    private boolean rowFormat$set;
+    @java.lang.SuppressWarnings("all")
+    private RowBufferFormat rowFormat$value;
+    @java.lang.SuppressWarnings("all")
+    private boolean priority$set;
+    @java.lang.SuppressWarnings("all")
+    private Priority priority$value;
+
+    @java.lang.SuppressWarnings("all")
+    QueryOptionsBuilder() {
+    }
+
+    /**
+     * number of rows to fetch from the portal at a time. zero fetches all rows at once.
+     *
+     * @return {@code this}.
+     */
+    @java.lang.SuppressWarnings("all")
+    public QueryOptions.QueryOptionsBuilder fetchSize(final int fetchSize) {
+      this.fetchSize$value = fetchSize;
+      fetchSize$set = true;
+      return this;
+    }
+
+    /**
+     * the representation of the returned {@link RowBuffer}s.
+     *
+     * @return {@code this}.
+     */
+    @java.lang.SuppressWarnings("all")
+    public QueryOptions.QueryOptionsBuilder rowFormat(final RowBufferFormat rowFormat) {
+      this.rowFormat$value = rowFormat;
+      rowFormat$set = true;
+      return this;
+    }
+
+    /**
+     * the admission lane to wait in when the pool is saturated.
+     *
+     * @return {@code this}.
+     */
+    @java.lang.SuppressWarnings("all")
+    public QueryOptions.QueryOptionsBuilder priority(final Priority priority) {
+      this.priority$value = priority;
+      priority$set = true;
+      return this;
+    }
+
+    @java.lang.SuppressWarnings("all")
+    public QueryOptions build() {
+      int fetchSize$value = this.fetchSize$value;
+      if (!this.fetchSize$set)
+        fetchSize$value = QueryOptions.$default$fetchSize();
+      RowBufferFormat rowFormat$value = this.rowFormat$value;
+      if (!this.rowFormat$set)
+        rowFormat$value = QueryOptions.$default$rowFormat();
+      Priority priority$value = this.priority$value;
+      if (!this.priority$set)
+        priority$value = QueryOptions.$default$priority();
+      return new QueryOptions(fetchSize$value, rowFormat$value, priority$value);
+    }
+
+    @java.lang.Override
+    @java.lang.SuppressWarnings("all")
+    public java.lang.String toString() {
+      return "QueryOptions.QueryOptionsBuilder(fetchSize$value=" + this.fetchSize$value + ", rowFormat$value=" + this.rowFormat$value + ", priority$value=" + this.priority$value + ")";
+    }
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public static QueryOptions.QueryOptionsBuilder builder() {
+    return new QueryOptions.QueryOptionsBuilder();
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public QueryOptions.QueryOptionsBuilder toBuilder() {
+    return new QueryOptions.QueryOptionsBuilder().fetchSize(this.fetchSize).rowFormat(this.rowFormat).priority(this.priority);
+  }
+
+  /**
+   * number of rows to fetch from the portal at a time. zero fetches all rows at once.
+   */
+  @java.lang.SuppressWarnings("all")
+  public int getFetchSize() {
+    return this.fetchSize;
+  }
+
+  /**
+   * the representation of the returned {@link RowBuffer}s.
+   */
+  @java.lang.SuppressWarnings("all")
+  public RowBufferFormat getRowFormat() {
+    return this.rowFormat;
+  }
+
+  /**
+   * the admission lane to wait in when the pool is saturated.
+   */
+  @java.lang.SuppressWarnings("all")
+  public Priority getPriority() {
+    return this.priority;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public boolean equals(final java.lang.Object o) {
+    if (o == this)
+      return true;
+    if (!(o instanceof QueryOptions))
+      return false;
+    final QueryOptions other = (QueryOptions) o;
+    if (this.getFetchSize() != other.getFetchSize())
+      return false;
+    final java.lang.Object this$rowFormat = this.getRowFormat();
+    final java.lang.Object other$rowFormat = other.getRowFormat();
+    if (this$rowFormat == null ? other$rowFormat != null : !this$rowFormat.equals(other$rowFormat))
+      return false;
+    final java.lang.Object this$priority = this.getPriority();
+    final java.lang.Object other$priority = other.getPriority();
+    if (this$priority == null ? other$priority != null : !this$priority.equals(other$priority))
+      return false;
+    return true;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public int hashCode() {
+    final int PRIME = 59;
+    int result = 1;
+    result = result * PRIME + this.getFetchSize();
+    final java.lang.Object $rowFormat = this.getRowFormat();
+    result = result * PRIME + ($rowFormat == null ? 43 : $rowFormat.hashCode());
+    final java.lang.Object $priority = this.getPriority();
+    result = result * PRIME + ($priority == null ? 43 : $priority.hashCode());
+    return result;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public java.lang.String toString() {
+    return "QueryOptions(fetchSize=" + this.getFetchSize() + ", rowFormat=" + this.getRowFormat() + ", priority=" + this.getPriority() + ")";
+  }
+}
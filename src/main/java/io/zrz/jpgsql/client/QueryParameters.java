@@ -1,11 +1,16 @@
 package io.zrz.jpgsql.client;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.UUID;
 
 import org.postgresql.core.Oid;
 import org.postgresql.util.ByteConverter;
 
+import io.zrz.jpgsql.binary.BinaryParameterCodecs;
 import io.zrz.jpgsql.client.opj.BinaryParamValue;
 
 /**
@@ -30,14 +35,88 @@ public interface QueryParameters {
 
   QueryParameters setIntArray(int pnum, int[] array);
 
+  QueryParameters setLongArray(int pnum, long[] array);
+
+  QueryParameters setDoubleArray(int pnum, double[] array);
+
+  QueryParameters setBooleanArray(int pnum, boolean[] array);
+
+  QueryParameters setUUIDArray(int pnum, Collection<UUID> value);
+
+  QueryParameters setShort(int pnum, short val);
+
+  QueryParameters setBoolean(int pnum, boolean val);
+
+  QueryParameters setFloat(int pnum, float val);
+
+  QueryParameters setDouble(int pnum, double val);
+
+  QueryParameters setNumeric(int pnum, BigDecimal val);
+
+  /**
+   * set the parameter to a timestamp with time zone.
+   */
+
+  QueryParameters setTimestamp(int pnum, Instant val);
+
+  /**
+   * set the parameter to a timestamp without time zone.
+   */
+
+  QueryParameters setTimestamp(int pnum, LocalDateTime val);
+
+  QueryParameters setDate(int pnum, LocalDate val);
+
+  /**
+   * set the parameter to a value which the {@link BinaryParameterCodecs} registered for the OID accepts.
+   *
+   * @throws IllegalArgumentException
+   *           if there is no such codec.
+   */
+
+  QueryParameters setValue(int pnum, Object value, int oid);
+
   QueryParameters setNull(int pnum, int oid);
 
   QueryParameters setBytes(int pnum, byte[] bytes, int oid);
 
   QueryParameters set(int pnum, BinaryParamValue value);
 
+  /**
+   * the value of the parameter. fixed width values are boxed, so encoders should check {@link #isFixedWidth(int)} and
+   * read them with {@link #getBits(int)} instead.
+   */
+
   Object getValue(int pnum);
 
+  /**
+   * true if the parameter holds a fixed width value of one of the types {@link BinaryParameterCodecs#fixedWidth(int)}
+   * lists, which is stored unboxed.
+   */
+
+  boolean isFixedWidth(int pnum);
+
+  /**
+   * the bits of a fixed width parameter, as {@link BinaryParameterCodecs#encodeFixed(int, long)} sends them.
+   *
+   * @throws IllegalStateException
+   *           if the parameter isn't fixed width.
+   */
+
+  long getBits(int pnum);
+
+  short getShort(int pnum);
+
+  int getInt(int pnum);
+
+  long getLong(int pnum);
+
+  float getFloat(int pnum);
+
+  double getDouble(int pnum);
+
+  boolean getBoolean(int pnum);
+
   int getOid(int pnum);
 
   int count();
@@ -0,0 +1,493 @@
+package io.zrz.jpgsql.client.opj;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+
+import org.postgresql.copy.CopyIn;
+import org.postgresql.jdbc.PgConnection;
+import org.reactivestreams.Publisher;
+
+import com.google.common.base.Preconditions;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.zrz.jpgsql.InternalUtils;
+import io.zrz.jpgsql.binary.BinaryStreamWriter;
+import io.zrz.jpgsql.binary.ByteBufBinaryWriter;
+
+/**
+ * loads a stream of records with a number of concurrent binary {@code COPY ... FROM STDIN}s, each on its own connection
+ * from a {@link PgThreadPooledClient}.
+ *
+ * records are dealt to the shards round robin, or by a partition key so that related records land on the same
+ * connection. each shard encodes its records in batches on a computation thread, and writes them to its connection on
+ * an io thread, so encoding and the copies both run in parallel. only a few encoded batches are held per shard ahead of
+ * its connection.
+ *
+ * by default each shard commits on its own as its copy ends, so a failure can leave the others loaded. an atomic load
+ * instead runs each copy in a transaction which is prepared, and only commits them all (with COMMIT PREPARED) once every
+ * shard has prepared, rolling them all back otherwise. this needs max_prepared_transactions on the server.
+ *
+ * disposing of a load before it has started to commit closes the connection of every shard, abandoning its copy, and
+ * rolls back any transactions which had already been prepared.
+ *
+ * <pre>
+ * ParallelCopyLoader.builder(client, "COPY things (id, name) FROM STDIN (FORMAT binary)", (Thing thing, BinaryStreamWriter w) -> {
+ *   w.writeStartRecord(2);
+ *   w.writeBigint(thing.id());
+ *   w.writeText(thing.name());
+ * }).shards(4).build().load(things)
+ * </pre>
+ */
+public final class ParallelCopyLoader<T> {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ParallelCopyLoader.class);
+
+  private static final byte[] TRAILER = new byte[] { -1, -1 };
+
+  private final PgThreadPooledClient client;
+  private final String sql;
+  private final BiConsumer<? super T, ? super BinaryStreamWriter> encoder;
+  private final int shards;
+  private final ToIntFunction<? super T> partitioner;
+  private final int batchSize;
+  private final boolean atomic;
+
+  private ParallelCopyLoader(final Builder<T> b) {
+    this.client = b.client;
+    this.sql = b.sql;
+    this.encoder = b.encoder;
+    this.shards = b.shards;
+    this.partitioner = b.partitioner;
+    this.batchSize = b.batchSize;
+    this.atomic = b.atomic;
+  }
+
+  /**
+   * copies the records, emitting the total number of rows once all of the shards have committed.
+   *
+   * if the records or any of the copies fail, the error is emitted once every shard has ended: an atomic load is then
+   * rolled back in full, otherwise the shards which had already committed stay loaded. if the load is disposed of first,
+   * the shards are abandoned on an io thread.
+   */
+  public Single<Long> load(final Publisher<? extends T> records) {
+    return Single.defer(() -> {
+
+      final String gid = "jpgsql-" + UUID.randomUUID();
+      final AtomicReference<Throwable> sourceError = new AtomicReference<>();
+      final AtomicLong sequence = new AtomicLong();
+      final Shards started = new Shards();
+
+      // a failed source ends every shard normally, which then sees the error rather than committing.
+      final Flowable<T> source =
+        Flowable.<T>fromPublisher(records)
+          .onErrorResumeNext(err -> {
+            sourceError.set(err);
+            return Flowable.empty();
+          });
+
+      return source
+        .groupBy(record -> this.shard(record, sequence))
+        .flatMapSingle(group -> this.copy(started.add(new Shard(group.getKey(), gid + "-" + group.getKey(), sourceError)), group), false, this.shards)
+        .toList()
+        .observeOn(Schedulers.io())
+        .map(shards -> this.complete(started, shards))
+        .doOnDispose(() -> Schedulers.io().scheduleDirect(started::cancel));
+
+    });
+  }
+
+  private int shard(final T record, final AtomicLong sequence) {
+    if (this.partitioner == null) {
+      return (int) (sequence.getAndIncrement() % this.shards);
+    }
+    return Math.floorMod(this.partitioner.applyAsInt(record), this.shards);
+  }
+
+  /**
+   * runs the copy for one shard, opening its connection on an io thread once the first batch has been encoded. never
+   * fails: the error is kept for {@link #complete(List)}, and the rest of the shard's records drained, so the group isn't
+   * cancelled (which would start it again as a new group).
+   *
+   * if the load is cancelled, the encoded batches still queued for the connection are released rather than dropped.
+   */
+  private Single<Shard> copy(final Shard shard, final Flowable<T> records) {
+    final Single<Shard> opened =
+      Single.defer(this.client::requestConnection)
+        .subscribeOn(Schedulers.io())
+        .map(conn -> shard.open(conn, this.sql, this.atomic))
+        .onErrorReturn(shard::failed)
+        .cache();
+    return records
+      .observeOn(Schedulers.computation())
+      .buffer(this.batchSize)
+      .map(batch -> this.encode(shard, batch))
+      .observeOn(Schedulers.io(), false, 4)
+      .concatMapSingle(buf -> opened.map(s -> s.write(buf)))
+      .doOnCancel(shard::discard)
+      .ignoreElements()
+      .toSingle(() -> shard.finish(this.atomic));
+  }
+
+  /**
+   * the batch as a (pooled heap) buffer, which pgjdbc can write from without copying. empty if the shard has failed.
+   */
+  private ByteBuf encode(final Shard shard, final List<T> batch) {
+    if (shard.error != null) {
+      return Unpooled.EMPTY_BUFFER;
+    }
+    final ByteBuf buf = PooledByteBufAllocator.DEFAULT.heapBuffer(64 * 1024);
+    try {
+      final ByteBufBinaryWriter writer = new ByteBufBinaryWriter(buf);
+      for (final T record : batch) {
+        this.encoder.accept(record, writer);
+      }
+      return shard.queue(buf);
+    }
+    catch (final RuntimeException ex) {
+      buf.release();
+      shard.failed(ex);
+      return Unpooled.EMPTY_BUFFER;
+    }
+  }
+
+  /**
+   * commits (or rolls back) the shards once they have all ended, and closes their connections.
+   */
+  private long complete(final Shards started, final List<Shard> shards) {
+
+    if (!started.complete()) {
+      // disposed of while the last shard was ending, so they have all been abandoned already.
+      throw new CancellationException("load cancelled");
+    }
+
+    Throwable failure = null;
+    for (final Shard shard : shards) {
+      if (shard.error != null) {
+        if (failure == null) {
+          failure = shard.error;
+        }
+        else if (failure != shard.error) {
+          failure.addSuppressed(shard.error);
+        }
+      }
+    }
+
+    final boolean commit = failure == null;
+    long rows = 0;
+
+    try {
+      for (final Shard shard : shards) {
+        if (shard.prepared) {
+          try {
+            shard.execute((commit ? "COMMIT PREPARED '" : "ROLLBACK PREPARED '") + shard.gid + "'");
+          }
+          catch (final SQLException ex) {
+            // too late to undo the shards that have already committed.
+            log.error("failed to end prepared transaction {}: {}", shard.gid, ex.getMessage());
+            if (failure == null) {
+              failure = ex;
+            }
+            continue;
+          }
+        }
+        rows += shard.rows;
+      }
+    }
+    finally {
+      for (final Shard shard : shards) {
+        shard.close();
+      }
+    }
+
+    if (failure != null) {
+      throw InternalUtils.sneakyThrow(failure);
+    }
+
+    return rows;
+
+  }
+
+  /**
+   * the shards of one load, which are either all completed by {@link ParallelCopyLoader#complete(Shards, List)} or, if
+   * the load is disposed of before that starts, all cancelled.
+   */
+  private static final class Shards {
+
+    private final List<Shard> shards = new ArrayList<>();
+    private boolean cancelled;
+    private boolean completing;
+
+    synchronized Shard add(final Shard shard) {
+      this.shards.add(shard);
+      if (this.cancelled) {
+        shard.cancel();
+      }
+      return shard;
+    }
+
+    /**
+     * false if they have been cancelled, otherwise they can no longer be.
+     */
+    synchronized boolean complete() {
+      this.completing = !this.cancelled;
+      return this.completing;
+    }
+
+    void cancel() {
+      final List<Shard> shards;
+      synchronized (this) {
+        if (this.completing || this.cancelled) {
+          return;
+        }
+        this.cancelled = true;
+        shards = new ArrayList<>(this.shards);
+      }
+      shards.forEach(Shard::cancel);
+    }
+
+  }
+
+  /**
+   * the copy and connection of one shard. locked while in use, so a cancel waits for a write in progress.
+   */
+  private static final class Shard {
+
+    private final int index;
+    private final String gid;
+    private final AtomicReference<Throwable> sourceError;
+    private final byte[] scratch = new byte[64 * 1024];
+    // encoded buffers not yet written, which discard() releases if the copy is cancelled first.
+    private final Set<ByteBuf> queued = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean discarded;
+    private boolean cancelled;
+    private PgConnection conn;
+    private CopyIn copy;
+    private long rows;
+    private boolean prepared;
+    private volatile Throwable error;
+
+    Shard(final int index, final String gid, final AtomicReference<Throwable> sourceError) {
+      this.index = index;
+      this.gid = gid;
+      this.sourceError = sourceError;
+    }
+
+    /**
+     * starts the copy on the connection, which is closed with the shard even if it fails, or straight away if the shard
+     * was cancelled while it was being opened.
+     */
+    synchronized Shard open(final PgConnection conn, final String sql, final boolean atomic) {
+      this.conn = conn;
+      if (this.cancelled) {
+        this.close();
+        return this;
+      }
+      try {
+        if (atomic) {
+          this.conn.setAutoCommit(false);
+        }
+        this.copy = this.conn.getCopyAPI().copyIn(sql);
+        this.copy.writeToCopy(PgThreadPooledClient.BINARY_PREAMBLE, 0, PgThreadPooledClient.BINARY_PREAMBLE.length);
+      }
+      catch (final SQLException | RuntimeException ex) {
+        this.failed(ex);
+      }
+      return this;
+    }
+
+    Shard failed(final Throwable err) {
+      log.warn("COPY shard {} failed: {}", this.index, err.getMessage());
+      this.error = err;
+      return this;
+    }
+
+    ByteBuf queue(final ByteBuf buf) {
+      synchronized (this.queued) {
+        if (this.discarded) {
+          buf.release();
+          return Unpooled.EMPTY_BUFFER;
+        }
+        this.queued.add(buf);
+      }
+      return buf;
+    }
+
+    /**
+     * releases the buffers which were encoded but will now never be written.
+     */
+    void discard() {
+      synchronized (this.queued) {
+        this.discarded = true;
+        this.queued.forEach(ByteBuf::release);
+        this.queued.clear();
+      }
+    }
+
+    synchronized Shard write(final ByteBuf buf) {
+      if (buf != Unpooled.EMPTY_BUFFER) {
+        synchronized (this.queued) {
+          if (!this.queued.remove(buf)) {
+            // already released by discard().
+            return this;
+          }
+        }
+      }
+      try {
+        if ((this.error == null) && (this.copy != null)) {
+          PgThreadPooledClient.writeToCopy(this.copy, buf, this.scratch);
+        }
+      }
+      catch (final SQLException | RuntimeException ex) {
+        this.failed(ex);
+      }
+      finally {
+        buf.release();
+      }
+      return this;
+    }
+
+    /**
+     * ends the copy, unless it (or the source) failed, in which case closing the connection abandons it.
+     */
+    synchronized Shard finish(final boolean atomic) {
+      if (this.error == null) {
+        this.error = this.sourceError.get();
+      }
+      if ((this.error != null) || (this.copy == null)) {
+        return this;
+      }
+      try {
+        this.copy.writeToCopy(TRAILER, 0, TRAILER.length);
+        this.rows = this.copy.endCopy();
+        if (atomic) {
+          this.execute("PREPARE TRANSACTION '" + this.gid + "'");
+          this.prepared = true;
+          // the session is no longer in a transaction, and COMMIT PREPARED can't run inside one.
+          this.conn.setAutoCommit(true);
+        }
+      }
+      catch (final SQLException ex) {
+        this.failed(ex);
+      }
+      return this;
+    }
+
+    void execute(final String sql) throws SQLException {
+      try (Statement stmt = this.conn.createStatement()) {
+        stmt.execute(sql);
+      }
+    }
+
+    /**
+     * abandons the copy by closing the connection, first rolling back the transaction if it was prepared.
+     */
+    synchronized void cancel() {
+      if (this.cancelled) {
+        return;
+      }
+      this.cancelled = true;
+      this.discard();
+      if (this.error == null) {
+        this.error = new CancellationException("load cancelled");
+      }
+      if (this.prepared) {
+        try {
+          this.execute("ROLLBACK PREPARED '" + this.gid + "'");
+        }
+        catch (final SQLException ex) {
+          log.error("failed to roll back prepared transaction {}: {}", this.gid, ex.getMessage());
+        }
+      }
+      this.close();
+    }
+
+    synchronized void close() {
+      if (this.conn != null) {
+        try {
+          this.conn.close();
+        }
+        catch (final SQLException ex) {
+          log.debug("error closing COPY connection: {}", ex.getMessage());
+        }
+      }
+    }
+
+  }
+
+  public static <T> Builder<T> builder(final PgThreadPooledClient client, final String sql, final BiConsumer<? super T, ? super BinaryStreamWriter> encoder) {
+    return new Builder<>(client, sql, encoder);
+  }
+
+  public static final class Builder<T> {
+
+    private final PgThreadPooledClient client;
+    private final String sql;
+    private final BiConsumer<? super T, ? super BinaryStreamWriter> encoder;
+    private int shards = Runtime.getRuntime().availableProcessors();
+    private ToIntFunction<? super T> partitioner;
+    private int batchSize = 1000;
+    private boolean atomic;
+
+    Builder(final PgThreadPooledClient client, final String sql, final BiConsumer<? super T, ? super BinaryStreamWriter> encoder) {
+      this.client = Preconditions.checkNotNull(client, "client");
+      this.sql = Preconditions.checkNotNull(sql, "sql");
+      this.encoder = Preconditions.checkNotNull(encoder, "encoder");
+    }
+
+    /**
+     * the number of concurrent copies, each of which takes a connection. the number of processors by default.
+     */
+    public Builder<T> shards(final int shards) {
+      Preconditions.checkArgument(shards > 0, "shards must be positive");
+      this.shards = shards;
+      return this;
+    }
+
+    /**
+     * sends records with the same key to the same shard, rather than dealing them round robin.
+     */
+    public Builder<T> partitionBy(final ToIntFunction<? super T> partitioner) {
+      this.partitioner = partitioner;
+      return this;
+    }
+
+    /**
+     * the number of records encoded into each buffer.
+     */
+    public Builder<T> batchSize(final int batchSize) {
+      Preconditions.checkArgument(batchSize > 0, "batchSize must be positive");
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * commit all of the shards or none, using prepared transactions.
+     */
+    public Builder<T> atomic(final boolean atomic) {
+      this.atomic = atomic;
+      return this;
+    }
+
+    public ParallelCopyLoader<T> build() {
+      return new ParallelCopyLoader<>(this);
+    }
+
+  }
+
+}
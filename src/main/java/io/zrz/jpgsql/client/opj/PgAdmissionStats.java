@@ -0,0 +1,94 @@
+package io.zrz.jpgsql.client.opj;
+
+import java.time.Duration;
+
+/**
+ * a snapshot of the admission queue of a {@link PgConnectionThreadPoolExecutor}: work which arrived while the execution
+ * queue was full, and how long it waited for a slot.
+ */
+public final class PgAdmissionStats {
+
+  private final long queued;
+  private final long admitted;
+  private final long timedOut;
+  private final long waiting;
+  private final long totalWaitNanos;
+  private final long maxWaitNanos;
+
+  PgAdmissionStats(final long queued, final long admitted, final long timedOut, final long waiting, final long totalWaitNanos, final long maxWaitNanos) {
+    this.queued = queued;
+    this.admitted = admitted;
+    this.timedOut = timedOut;
+    this.waiting = waiting;
+    this.totalWaitNanos = totalWaitNanos;
+    this.maxWaitNanos = maxWaitNanos;
+  }
+
+  /**
+   * number of tasks which had to wait in the admission queue.
+   */
+  public long getQueued() {
+    return this.queued;
+  }
+
+  /**
+   * number of waiting tasks which were then executed.
+   */
+  public long getAdmitted() {
+    return this.admitted;
+  }
+
+  /**
+   * number of waiting tasks which were rejected after {@link io.zrz.jpgsql.client.PostgresConnectionProperties#getMaxStalledWait()}.
+   */
+  public long getTimedOut() {
+    return this.timedOut;
+  }
+
+  /**
+   * number of tasks waiting right now.
+   */
+  public long getWaiting() {
+    return this.waiting;
+  }
+
+  /**
+   * time spent waiting by the admitted tasks.
+   */
+  public Duration getTotalWait() {
+    return Duration.ofNanos(this.totalWaitNanos);
+  }
+
+  /**
+   * the longest wait of an admitted task.
+   */
+  public Duration getMaxWait() {
+    return Duration.ofNanos(this.maxWaitNanos);
+  }
+
+  /**
+   * the mean wait of the admitted tasks.
+   */
+  public Duration getMeanWait() {
+    return this.admitted == 0 ? Duration.ZERO
+                              : Duration.ofNanos(this.totalWaitNanos / this.admitted);
+  }
+
+  @Override
+  public String toString() {
+    return "PgAdmissionStats(queued="
+      + this.queued
+      + ", admitted="
+      + this.admitted
+      + ", timedOut="
+      + this.timedOut
+      + ", waiting="
+      + this.waiting
+      + ", meanWait="
+      + this.getMeanWait()
+      + ", maxWait="
+      + this.getMaxWait()
+      + ")";
+  }
+
+}
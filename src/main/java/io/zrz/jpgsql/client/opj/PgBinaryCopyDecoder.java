@@ -0,0 +1,320 @@
+package io.zrz.jpgsql.client.opj;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.postgresql.core.Field;
+import org.reactivestreams.Publisher;
+
+import com.google.common.base.Preconditions;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+import io.zrz.jpgsql.client.Query;
+import io.zrz.jpgsql.client.RowBuffer;
+import io.zrz.jpgsql.client.SimpleQuery;
+
+/**
+ * decodes the output of a {@code COPY ... TO STDOUT (FORMAT binary)} into {@link PgPackedResultRows} batches, the
+ * reverse of the {@link PgThreadPooledClient#BINARY_PREAMBLE} and tuple framing written for a binary COPY FROM.
+ *
+ * the stream doesn't describe its columns (only how many each tuple has), so they are given up front. every field is in
+ * binary format, and fixed width values are read straight out of the batch by the {@link RowBuffer} accessors.
+ *
+ * chunks may split tuples at any point, and are released once decoded:
+ *
+ * <pre>
+ * client.copyOut("COPY things TO STDOUT (FORMAT binary)")
+ *   .compose(PgBinaryCopyDecoder.builder().column("id", Oid.INT8).column("name", Oid.TEXT).build())
+ * </pre>
+ */
+public final class PgBinaryCopyDecoder implements FlowableTransformer<ByteBuf, RowBuffer> {
+
+  private static final int HEADER_LENGTH = 11 + 4 + 4;
+
+  /**
+   * set in the header flags if each tuple includes an OID.
+   */
+  private static final int FLAG_OIDS = 1 << 16;
+
+  private final Query query;
+  private final PgResultMeta fields;
+  private final int batchSize;
+  private final boolean direct;
+
+  private PgBinaryCopyDecoder(final Builder b) {
+    this.query = b.query;
+    this.fields = new PgResultMeta(b.columns.toArray(new Field[0]));
+    this.batchSize = b.batchSize;
+    this.direct = b.direct;
+  }
+
+  public PgResultMeta fields() {
+    return this.fields;
+  }
+
+  @Override
+  public Publisher<RowBuffer> apply(final Flowable<ByteBuf> upstream) {
+    return Flowable.defer(() -> {
+      final Decoder decoder = this.decoder();
+      return upstream
+        .concatMapIterable(decoder::decode)
+        .concatWith(Flowable.defer(() -> Flowable.fromIterable(decoder.finish())))
+        .doFinally(decoder::close);
+    });
+  }
+
+  /**
+   * a decoder for a single stream, for use without RxJava.
+   */
+  public Decoder decoder() {
+    return new Decoder();
+  }
+
+  /**
+   * the state of a single stream. not thread safe.
+   */
+  public final class Decoder {
+
+    private final ByteBuf pending = Unpooled.buffer(0);
+    private PgPackedResultRows.Builder batch;
+    private boolean header;
+    private boolean oids;
+    private boolean trailer;
+
+    private Decoder() {
+    }
+
+    /**
+     * decodes the chunk, along with any partial tuple left from the previous one, and releases it.
+     *
+     * only as much of the chunk as completes the partial tuple is copied to it, and the rest is decoded in place. a
+     * partial tuple left at the end is kept for the next chunk.
+     *
+     * @return the batches which were filled.
+     */
+    public List<RowBuffer> decode(final ByteBuf chunk) {
+      final List<RowBuffer> out = new ArrayList<>(1);
+      try {
+        while (this.pending.isReadable() && chunk.isReadable()) {
+          this.pending.writeBytes(chunk, Math.min(this.missing(), chunk.readableBytes()));
+          this.decode(this.pending, out);
+        }
+        this.pending.discardReadBytes();
+        if (chunk.isReadable()) {
+          this.decode(chunk, out);
+          this.pending.writeBytes(chunk);
+        }
+      }
+      finally {
+        chunk.release();
+      }
+      return out;
+    }
+
+    /**
+     * how many more bytes the partial header or tuple held over needs before it can be decoded, or at least before the
+     * next field length in it can be read.
+     */
+    private int missing() {
+      final ByteBuf in = this.pending;
+      final int start = in.readerIndex();
+      final int end = in.writerIndex();
+      if (this.trailer) {
+        // anything after the trailer is left for finish() to reject.
+        return Integer.MAX_VALUE;
+      }
+      if (!this.header) {
+        return (end - start) < HEADER_LENGTH ? HEADER_LENGTH - (end - start)
+                                             : Math.max(1, (start + HEADER_LENGTH + in.getInt(start + 15)) - end);
+      }
+      if ((end - start) < 2) {
+        return 2 - (end - start);
+      }
+      final int count = in.getShort(start);
+      int index = start + 2;
+      for (int i = this.oids ? -1 : 0; (i < count) && (index <= end); ++i) {
+        if ((index + 4) > end) {
+          return (index + 4) - end;
+        }
+        index += 4 + Math.max(in.getInt(index), 0);
+      }
+      return Math.max(1, index - end);
+    }
+
+    /**
+     * called at the end of the stream.
+     *
+     * @return the final batch, which is empty if the rows were an exact multiple of the batch size.
+     *
+     * @throws IllegalStateException
+     *           if the stream ended part way through.
+     */
+    public List<RowBuffer> finish() {
+      if (!this.trailer || this.pending.isReadable()) {
+        throw new IllegalStateException("truncated binary COPY stream");
+      }
+      final List<RowBuffer> out = new ArrayList<>(1);
+      out.add(this.batch().done(true).build());
+      this.batch = null;
+      return out;
+    }
+
+    void close() {
+      this.pending.release();
+    }
+
+    private PgPackedResultRows.Builder batch() {
+      if (this.batch == null) {
+        final PgBinaryCopyDecoder d = PgBinaryCopyDecoder.this;
+        this.batch = PgPackedResultRows.builder(d.query, 0, d.fields).direct(d.direct).done(false).expectedRows(d.batchSize);
+      }
+      return this.batch;
+    }
+
+    private void decode(final ByteBuf in, final List<RowBuffer> out) {
+
+      if (!this.header) {
+        if (in.readableBytes() < HEADER_LENGTH) {
+          return;
+        }
+        final int start = in.readerIndex();
+        for (int i = 0; i < 11; ++i) {
+          if (in.getByte(start + i) != PgThreadPooledClient.BINARY_PREAMBLE[i]) {
+            throw new IllegalStateException("not a binary COPY stream");
+          }
+        }
+        final int flags = in.getInt(start + 11);
+        final int extension = in.getInt(start + 15);
+        if (in.readableBytes() < (HEADER_LENGTH + extension)) {
+          return;
+        }
+        in.skipBytes(HEADER_LENGTH + extension);
+        this.oids = (flags & FLAG_OIDS) != 0;
+        this.header = true;
+      }
+
+      final int width = PgBinaryCopyDecoder.this.fields.count();
+
+      while (!this.trailer && (in.readableBytes() >= 2)) {
+
+        final int start = in.readerIndex();
+        final int count = in.getShort(start);
+
+        if (count == -1) {
+          in.skipBytes(2);
+          this.trailer = true;
+          break;
+        }
+
+        if (count != width) {
+          throw new IllegalStateException(String.format("tuple has %d fields, expected %d", count, width));
+        }
+
+        // check the whole tuple has arrived before adding any of it.
+        int index = start + 2;
+        final int end = in.writerIndex();
+        for (int i = this.oids ? -1 : 0; i < count; ++i) {
+          if ((index + 4) > end) {
+            return;
+          }
+          final int length = in.getInt(index);
+          index += 4 + Math.max(length, 0);
+        }
+        if (index > end) {
+          return;
+        }
+
+        final PgPackedResultRows.Builder b = this.batch();
+        index = start + 2;
+        if (this.oids) {
+          index += 4 + in.getInt(index);
+        }
+        for (int i = 0; i < count; ++i) {
+          final int length = in.getInt(index);
+          index += 4;
+          if (length < 0) {
+            b.addNull();
+          }
+          else {
+            b.add(in, index, length);
+            index += length;
+          }
+        }
+        b.endRow();
+        in.readerIndex(index);
+
+        if (b.rows() >= PgBinaryCopyDecoder.this.batchSize) {
+          out.add(b.build());
+          this.batch = null;
+        }
+
+      }
+
+    }
+
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static final class Builder {
+
+    private final List<Field> columns = new ArrayList<>();
+    private Query query;
+    private int batchSize = 1024;
+    private boolean direct;
+
+    Builder() {
+    }
+
+    /**
+     * adds the next column of the COPY.
+     */
+    public Builder column(final String label, final int oid) {
+      final Field field = new Field(label, oid);
+      field.setFormat(Field.BINARY_FORMAT);
+      this.columns.add(field);
+      return this;
+    }
+
+    /**
+     * the query reported by the batches.
+     */
+    public Builder query(final Query query) {
+      this.query = query;
+      return this;
+    }
+
+    public Builder query(final String sql) {
+      return this.query(new SimpleQuery(sql));
+    }
+
+    /**
+     * the number of rows in each batch.
+     */
+    public Builder batchSize(final int batchSize) {
+      Preconditions.checkArgument(batchSize > 0, "batchSize");
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * if the batches should be stored off heap.
+     */
+    public Builder direct(final boolean direct) {
+      this.direct = direct;
+      return this;
+    }
+
+    public PgBinaryCopyDecoder build() {
+      Preconditions.checkState(!this.columns.isEmpty(), "no columns");
+      return new PgBinaryCopyDecoder(this);
+    }
+
+  }
+
+}
@@ -0,0 +1,120 @@
+package io.zrz.jpgsql.client.opj;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+
+import org.postgresql.jdbc.PgConnection;
+import org.postgresql.util.PSQLException;
+
+import io.zrz.jpgsql.InternalUtils;
+import net.jodah.failsafe.Failsafe;
+import net.jodah.failsafe.RetryPolicy;
+
+/**
+ * the {@link PgLocalConnection} owned by a pool worker, opened on first use and kept for the life of the worker.
+ *
+ * the handle is bound to the worker for as long as it runs, and found through {@link #current()} rather than by
+ * casting the current thread, so workers can be virtual threads as well as {@link PgConnectionThread}s.
+ */
+public final class PgConnectionHandle {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PgConnectionHandle.class);
+
+  private static final ThreadLocal<PgConnectionHandle> CURRENT = new ThreadLocal<>();
+
+  private static final RetryPolicy<PgConnection> retryPolicy =
+    new RetryPolicy<PgConnection>()
+      .handle(PSQLException.class)
+      .withBackoff(100, 500, ChronoUnit.MILLIS)
+      .withJitter(0.25)
+      .withMaxDuration(Duration.ofSeconds(30));
+
+  private final PgThreadPooledClient pool;
+  private PgLocalConnection conn;
+
+  PgConnectionHandle(final PgThreadPooledClient pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * the handle of the worker running on the current thread.
+   *
+   * @throws IllegalStateException
+   *           if called from outside a pool worker.
+   */
+  public static PgConnectionHandle current() {
+    final PgConnectionHandle handle = CURRENT.get();
+    if (handle == null) {
+      throw new IllegalStateException("not running on a connection worker: " + Thread.currentThread());
+    }
+    return handle;
+  }
+
+  /**
+   * the body of a worker: binds this handle, connects, runs the task and then closes the connection again.
+   */
+  Runnable worker(final Runnable run) {
+    return () -> {
+      CURRENT.set(this);
+      try {
+        try {
+          log.debug("connecting");
+          try (ResultSet res = this.connection().getConnection().execSQLQuery("SELECT 1")) {
+            log.debug("established connection");
+          }
+          // the loop
+          run.run();
+          log.debug("worker finished");
+        }
+        catch (final Throwable t) {
+          log.info("connection thread error", t);
+          throw t;
+        }
+        finally {
+          this.close();
+          CURRENT.remove();
+        }
+      }
+      catch (final java.lang.Throwable $ex) {
+        throw InternalUtils.sneakyThrow($ex);
+      }
+    };
+  }
+
+  public PgLocalConnection connection() throws SQLException {
+
+    if (this.conn == null) {
+
+      log.debug("Creating new connection");
+
+      // this may throw.
+      final PgConnection raw =
+        Failsafe.with(retryPolicy)
+          .onFailure(e -> log.warn("connection failed, retying {}", e.getFailure().getMessage()))
+          .get(() -> this.pool.createConnection());
+
+      this.conn = new PgLocalConnection(this.pool, raw);
+
+      if (this.pool.getListener() != null) {
+        this.pool.getListener().connectionCreated(this.conn);
+      }
+
+    }
+
+    return this.conn;
+  }
+
+  public void close() {
+    log.debug("connection closing");
+    if (this.conn != null) {
+      if (this.pool.getListener() != null) {
+        this.pool.getListener().connectionClosed(this.conn);
+      }
+      this.conn.close();
+      this.conn = null;
+    }
+  }
+
+}
@@ -2,34 +2,93 @@
 package io.zrz.jpgsql.client.opj;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.zrz.jpgsql.client.PostgresConnectionProperties;
 import io.zrz.jpgsql.client.PostgresqlCapacityExceededException;
+import io.zrz.jpgsql.client.QueryOptions.Priority;
 
 /**
  * responsible for keeping the pool of connections open.
+ *
+ * work is normally handed straight to the execution queue. once that is full, {@link #admit(Runnable, Priority, Consumer)}
+ * holds it in an admission queue with a lane per {@link Priority}, and moves it across as workers free up: interactive
+ * work first, then batch. anything still waiting after {@link PostgresConnectionProperties#getMaxStalledWait()} is
+ * rejected with a {@link PostgresqlCapacityExceededException}, as is anything arriving when the admission queue is at
+ * {@link PostgresConnectionProperties#getAdmissionQueueDepth()}.
  */
 public class PgConnectionThreadPoolExecutor extends ThreadPoolExecutor implements ThreadFactory, RejectedExecutionHandler, UncaughtExceptionHandler {
   @java.lang.SuppressWarnings("all")
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PgConnectionThreadPoolExecutor.class);
+
+  // expires work waiting for admission, shared by all pools.
+  private static final ScheduledThreadPoolExecutor TIMER = timer();
+
+  /**
+   * a task waiting in the admission queue.
+   */
+  private static final class Pending {
+
+    private final Runnable task;
+    private final Priority priority;
+    private final Consumer<RuntimeException> rejected;
+    private final long queuedAt = System.nanoTime();
+    private ScheduledFuture<?> timeout;
+
+    Pending(final Runnable task, final Priority priority, final Consumer<RuntimeException> rejected) {
+      this.task = task;
+      this.priority = priority;
+      this.rejected = rejected;
+    }
+
+  }
+
   private final PgThreadPooledClient pool;
-  private final LinkedTransferQueue<Runnable> pendingQueue = new LinkedTransferQueue<>();
-  private final AtomicInteger pendingCount = new AtomicInteger(0);
   private PostgresConnectionProperties config;
+  private final Duration maxStalledWait;
+  private final int admissionQueueDepth;
+
+  // the rest is guarded by the lanes.
+  private final EnumMap<Priority, ArrayDeque<Pending>> lanes = new EnumMap<>(Priority.class);
+  private int waiting;
+  private long queued;
+  private long admitted;
+  private long timedOut;
+  private long totalWaitNanos;
+  private long maxWaitNanos;
+
+  // set when the workers run on virtual threads.
+  private final ThreadFactory virtual;
 
   public PgConnectionThreadPoolExecutor(final PgThreadPooledClient pool, final PostgresConnectionProperties config) {
     super(config.getMaxPoolSize(), config.getMaxPoolSize(), config.getIdleTimeout().toMillis(), TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getMaxPoolSize() + config.getQueueDepth(), true));
     this.setThreadFactory(new ThreadFactoryBuilder().setThreadFactory(this).setDaemon(true).setUncaughtExceptionHandler(this).setNameFormat("psql-%d-" + Integer.toHexString(this.hashCode())).build());
     this.pool = pool;
+    this.maxStalledWait = config.getMaxStalledWait() == null ? Duration.ZERO
+                                                             : config.getMaxStalledWait();
+    this.admissionQueueDepth = config.getAdmissionQueueDepth();
+    for (final Priority priority : Priority.values()) {
+      this.lanes.put(priority, new ArrayDeque<>());
+    }
+    this.virtual = config.isVirtualThreads() ? VirtualThreads.factory()
+                                             : null;
+    if (config.isVirtualThreads() && (this.virtual == null)) {
+      log.warn("not using virtual threads: {}", VirtualThreads.unavailable());
+    }
     super.setRejectedExecutionHandler(this);
     // if (config.getMinIdle() > 0) {
     // super.setCorePoolSize(config.getMinIdle() + 1);
@@ -41,9 +100,154 @@ public class PgConnectionThreadPoolExecutor extends ThreadPoolExecutor implement
     log.debug("prestarting : core={} max={} size={}", this.getCorePoolSize(), this.getMaximumPoolSize(), this.getPoolSize());
   }
 
+  private static ScheduledThreadPoolExecutor timer() {
+    final ScheduledThreadPoolExecutor timer =
+      new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("psql-admission-%d").build());
+    timer.setRemoveOnCancelPolicy(true);
+    return timer;
+  }
+
+  /**
+   * execute the task, or if the execution queue is full, wait in the priority's lane for a free slot. if it can't be
+   * executed, the rejection is passed to the consumer rather than thrown, as that may happen later on another thread.
+   */
+  public void admit(final Runnable task, final Priority priority, final Consumer<RuntimeException> rejected) {
+    RuntimeException error = null;
+    synchronized (this.lanes) {
+      if ((this.waiting == 0) && (this.getQueue().remainingCapacity() > 0)) {
+        try {
+          this.execute(task);
+          return;
+        }
+        catch (final RuntimeException ex) {
+          error = ex;
+        }
+      }
+      else if (this.isShutdown() || this.maxStalledWait.isZero() || (this.waiting >= this.admissionQueueDepth)) {
+        error = new PostgresqlCapacityExceededException(String.format("%d tasks already waiting", this.waiting));
+      }
+      else {
+        final Pending pending = new Pending(task, priority, rejected);
+        this.lanes.get(priority).add(pending);
+        this.waiting++;
+        this.queued++;
+        pending.timeout = TIMER.schedule(() -> this.expire(pending), this.maxStalledWait.toNanos(), TimeUnit.NANOSECONDS);
+        log.debug("queued {} task, {} waiting", priority, this.waiting);
+      }
+    }
+    if (error != null) {
+      rejected.accept(error);
+    }
+    else {
+      // a worker may have freed a slot just before this was queued.
+      this.drain();
+    }
+  }
+
   /**
-   * if the execution queue is full, we are backlogging work. add to a queue until the size is full, and ensure we
-   * remove from the queue when workers become available.
+   * move waiting tasks to the execution queue while it has room.
+   */
+  private void drain() {
+    final List<Pending> started = new ArrayList<>();
+    final List<Long> waits = new ArrayList<>();
+    Pending failed = null;
+    RuntimeException error = null;
+    synchronized (this.lanes) {
+      while ((this.waiting > 0) && (this.getQueue().remainingCapacity() > 0) && !this.isShutdown()) {
+        final Pending pending = this.poll();
+        pending.timeout.cancel(false);
+        final long waited = System.nanoTime() - pending.queuedAt;
+        try {
+          this.execute(pending.task);
+        }
+        catch (final RuntimeException ex) {
+          // shut down underneath us.
+          failed = pending;
+          error = ex;
+          break;
+        }
+        this.admitted++;
+        this.totalWaitNanos += waited;
+        this.maxWaitNanos = Math.max(this.maxWaitNanos, waited);
+        started.add(pending);
+        waits.add(waited);
+      }
+    }
+    if (failed != null) {
+      failed.rejected.accept(error);
+    }
+    final PgThreadPooledClient.Listener listener = this.pool.getListener();
+    if (listener != null) {
+      for (int i = 0; i < started.size(); ++i) {
+        listener.admitted(started.get(i).priority, Duration.ofNanos(waits.get(i)));
+      }
+    }
+  }
+
+  private Pending poll() {
+    for (final ArrayDeque<Pending> lane : this.lanes.values()) {
+      if (!lane.isEmpty()) {
+        this.waiting--;
+        return lane.poll();
+      }
+    }
+    throw new IllegalStateException();
+  }
+
+  private void expire(final Pending pending) {
+    synchronized (this.lanes) {
+      if (!this.lanes.get(pending.priority).remove(pending)) {
+        return;
+      }
+      this.waiting--;
+      this.timedOut++;
+    }
+    log.warn("{} task rejected after waiting {}", pending.priority, this.maxStalledWait);
+    pending.rejected.accept(new PostgresqlCapacityExceededException(String.format("no connection available after %s", this.maxStalledWait)));
+  }
+
+  /**
+   * reject everything still waiting, once shut down.
+   */
+  private void rejectWaiting() {
+    final List<Pending> rejected = new ArrayList<>();
+    synchronized (this.lanes) {
+      for (final ArrayDeque<Pending> lane : this.lanes.values()) {
+        rejected.addAll(lane);
+        lane.clear();
+      }
+      this.waiting = 0;
+    }
+    for (final Pending pending : rejected) {
+      pending.timeout.cancel(false);
+      pending.rejected.accept(new PostgresqlCapacityExceededException("pool shut down"));
+    }
+  }
+
+  /**
+   * the admission queue counters.
+   */
+  public PgAdmissionStats admissionStats() {
+    synchronized (this.lanes) {
+      return new PgAdmissionStats(this.queued, this.admitted, this.timedOut, this.waiting, this.totalWaitNanos, this.maxWaitNanos);
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    super.shutdown();
+    this.rejectWaiting();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    final List<Runnable> tasks = super.shutdownNow();
+    this.rejectWaiting();
+    return tasks;
+  }
+
+  /**
+   * the execution queue is full, or the pool is shut down.
    */
   @Override
   public void rejectedExecution(final Runnable r, final ThreadPoolExecutor e) {
@@ -54,6 +258,8 @@ public class PgConnectionThreadPoolExecutor extends ThreadPoolExecutor implement
   @Override
   protected void beforeExecute(final Thread t, final Runnable r) {
     log.debug("about to execute {} on {}", r, t);
+    // the task was just taken from the execution queue, so there is room for a waiting one.
+    this.drain();
     super.beforeExecute(t, r);
   }
 
@@ -63,9 +269,15 @@ public class PgConnectionThreadPoolExecutor extends ThreadPoolExecutor implement
     super.afterExecute(r, t);
   }
 
+  /**
+   * each worker thread owns a connection through its {@link PgConnectionHandle}.
+   */
   @Override
   public Thread newThread(final Runnable r) {
     log.debug("starting new thread");
+    if (this.virtual != null) {
+      return this.virtual.newThread(new PgConnectionHandle(this.pool).worker(r));
+    }
     return new PgConnectionThread(this.pool, r);
   }
 
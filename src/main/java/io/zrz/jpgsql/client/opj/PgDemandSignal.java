@@ -0,0 +1,80 @@
+package io.zrz.jpgsql.client.opj;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import io.reactivex.rxjava3.core.FlowableEmitter;
+import io.reactivex.rxjava3.core.FlowableOperator;
+import io.reactivex.rxjava3.core.FlowableSubscriber;
+import io.zrz.jpgsql.client.QueryResult;
+
+/**
+ * wakes a connection thread that is parked waiting for downstream demand before fetching the next
+ * page of a portal.
+ *
+ * lifted directly on top of the {@link FlowableEmitter} source, so that requests and cancellation
+ * are signalled only once they have been applied to the emitter. the waiting thread re-checks
+ * {@link FlowableEmitter#requested()} under the same monitor, so no signal can be missed.
+ */
+final class PgDemandSignal implements FlowableOperator<QueryResult, QueryResult> {
+
+  @Override
+  public Subscriber<? super QueryResult> apply(final Subscriber<? super QueryResult> downstream) {
+
+    return new FlowableSubscriber<QueryResult>() {
+
+      @Override
+      public void onSubscribe(final Subscription upstream) {
+        downstream.onSubscribe(new Subscription() {
+
+          @Override
+          public void request(final long n) {
+            upstream.request(n);
+            signal();
+          }
+
+          @Override
+          public void cancel() {
+            upstream.cancel();
+            signal();
+          }
+
+        });
+      }
+
+      @Override
+      public void onNext(final QueryResult t) {
+        downstream.onNext(t);
+      }
+
+      @Override
+      public void onError(final Throwable t) {
+        downstream.onError(t);
+      }
+
+      @Override
+      public void onComplete() {
+        downstream.onComplete();
+      }
+
+    };
+
+  }
+
+  synchronized void signal() {
+    this.notifyAll();
+  }
+
+  /**
+   * block until the emitter has outstanding demand or has been cancelled.
+   *
+   * @return true if there is demand, false if cancelled.
+   */
+  synchronized boolean await(final FlowableEmitter<?> emitter) throws InterruptedException {
+    while ((emitter.requested() <= 0) && !emitter.isCancelled()) {
+      this.wait();
+    }
+    return !emitter.isCancelled();
+  }
+
+}
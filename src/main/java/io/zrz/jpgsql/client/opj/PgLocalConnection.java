@@ -2,6 +2,8 @@
 package io.zrz.jpgsql.client.opj;
 
 import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.sql.BatchUpdateException;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.util.Arrays;
@@ -14,29 +16,32 @@ import java.util.stream.Collectors;
 
 import org.postgresql.PGNotification;
 import org.postgresql.core.NativeQuery;
-import org.postgresql.core.Oid;
 import org.postgresql.core.ParameterList;
 import org.postgresql.core.QueryExecutor;
 import org.postgresql.core.TransactionState;
-import org.postgresql.jdbc.PgArray;
+import org.postgresql.jdbc.BatchResultHandler;
 import org.postgresql.jdbc.PgConnection;
+import org.postgresql.jdbc.PgStatement;
+import org.postgresql.util.PSQLException;
 
+import com.google.common.base.Preconditions;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.primitives.Ints;
-import com.google.common.primitives.Longs;
 
 import io.reactivex.rxjava3.core.BackpressureStrategy;
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.FlowableEmitter;
 import io.zrz.jpgsql.InternalUtils;
+import io.zrz.jpgsql.binary.BinaryParameterCodecs;
 import io.zrz.jpgsql.client.CombinedQuery;
 import io.zrz.jpgsql.client.CommandStatus;
 import io.zrz.jpgsql.client.CopyQuery;
 import io.zrz.jpgsql.client.ErrorResult;
 import io.zrz.jpgsql.client.NotifyMessage;
 import io.zrz.jpgsql.client.Query;
+import io.zrz.jpgsql.client.QueryOptions;
 import io.zrz.jpgsql.client.QueryParameters;
 import io.zrz.jpgsql.client.QueryResult;
 import io.zrz.jpgsql.client.QueryResultKind;
@@ -61,6 +66,7 @@ class PgLocalConnection implements PgRawConnection {
    * not expecting results
    */
   public static final int NoResults = QueryExecutor.QUERY_NO_RESULTS;
+  private static final Constructor<BatchResultHandler> BATCH_HANDLER = batchHandler();
   private final PgConnection conn;
   private final QueryExecutor exec;
   private final PgThreadPooledClient pool;
@@ -119,6 +125,42 @@ class PgLocalConnection implements PgRawConnection {
     }
   });
 
+  /**
+   * binds the parameter values into the driver's parameter list. fixed width values are read without boxing, others are
+   * written in binary by the {@link BinaryParameterCodecs} registered for their OID, byte arrays are passed through as
+   * already encoded, and strings for a type without a string codec are left for the server to parse.
+   */
+  static ParameterList bind(final QueryParameters params, final ParameterList pl) throws SQLException {
+    for (int i = 1; i <= params.count(); ++i) {
+      final int oid = params.getOid(i);
+      if (params.isFixedWidth(i)) {
+        pl.setBinaryParameter(i, BinaryParameterCodecs.encodeFixed(oid, params.getBits(i)), oid);
+        continue;
+      }
+      final Object val = params.getValue(i);
+      if (val == null) {
+        pl.setNull(i, oid);
+        continue;
+      } else if (val instanceof BinaryParamValue) {
+        final BinaryParamValue b = (BinaryParamValue) val;
+        pl.setBinaryParameter(i, b.toByteArray(), b.getOid());
+        continue;
+      } else if (val instanceof byte[]) {
+        pl.setBinaryParameter(i, (byte[]) val, oid);
+        continue;
+      }
+      final byte[] bytes = BinaryParameterCodecs.encode(oid, val);
+      if (bytes != null) {
+        pl.setBinaryParameter(i, bytes, oid);
+      } else if (val instanceof String) {
+        pl.setStringParameter(i, (String) val, oid);
+      } else {
+        throw new IllegalArgumentException(String.format("no binary codec for OID %d taking %s", oid, val.getClass().getName()));
+      }
+    }
+    return pl;
+  }
+
   /**
    * execute the query.
    *
@@ -133,6 +175,20 @@ class PgLocalConnection implements PgRawConnection {
   }
 
   void execute(final Query query, final QueryParameters params, final FlowableEmitter<QueryResult> emitter, final int fetchSize, int flags) throws SQLException {
+    this.execute(query, params, emitter, QueryOptions.builder().fetchSize(fetchSize).build(), flags, null);
+  }
+
+  /**
+   * execute the query, fetching further pages of a cursor only as the emitter has demand.
+   *
+   * @param options
+   *          the fetch size and row buffer representation.
+   * @param demand
+   *          signalled when the subscriber requests more or cancels. if null, pages are fetched
+   *          without waiting.
+   */
+  void execute(final Query query, final QueryParameters params, final FlowableEmitter<QueryResult> emitter, final QueryOptions options, int flags, final PgDemandSignal demand) throws SQLException {
+    final int fetchSize = options.getFetchSize();
     log.debug("executing {}, params {}", query, params);
     if (query instanceof CopyQuery) {
       copy((CopyQuery) query, emitter, flags);
@@ -141,68 +197,7 @@ class PgLocalConnection implements PgRawConnection {
     final org.postgresql.core.Query pgquery = this.cache.getUnchecked(query);
     final ParameterList pl;
     if ((params != null) && (params.count() > 0)) {
-      pl = pgquery.createParameterList();
-      for (int i = 1; i <= params.count(); ++i) {
-        final int oid = params.getOid(i);
-        final Object val = params.getValue(i);
-        if (val == null) {
-          pl.setNull(i, oid);
-          continue;
-        } else if (val instanceof BinaryParamValue) {
-          final BinaryParamValue b = (BinaryParamValue) val;
-          pl.setBinaryParameter(i, b.toByteArray(), b.getOid());
-          continue;
-        }
-        switch (oid) {
-        case Oid.INT4: 
-          pl.setIntParameter(i, (int) params.getValue(i));
-          break;
-        case Oid.INT4_ARRAY: 
-          {
-            final int[] vals = (int[]) params.getValue(i);
-            final String res = Arrays.stream(vals).mapToObj(x -> Integer.toString(x)).collect(Collectors.joining(","));
-            pl.setStringParameter(i, "{" + res + "}", oid);
-            break;
-          }
-        case Oid.INT8: 
-          pl.setBinaryParameter(i, Longs.toByteArray((long) params.getValue(i)), Oid.INT8);
-          break;
-        case Oid.UUID: 
-          pl.setBinaryParameter(i, (byte[]) params.getValue(i), oid);
-          break;
-        case Oid.BYTEA: 
-          {
-            final byte[] bytes = (byte[]) params.getValue(i);
-            pl.setBytea(i, bytes, 0, bytes.length);
-            break;
-          }
-        case Oid.TEXT: 
-        case Oid.JSON: 
-        case Oid.VARCHAR: 
-          pl.setStringParameter(i, (String) params.getValue(i), oid);
-          break;
-        case Oid.JSONB_ARRAY: 
-        case Oid.TEXT_ARRAY: 
-        case Oid.VARCHAR_ARRAY: 
-          {
-            final StringBuilder sb = new StringBuilder();
-            sb.append("{");
-            int pi = 0;
-            for (final String str : (String[]) params.getValue(i)) {
-              if (pi++ > 0) {
-                sb.append(",");
-              }
-              PgArray.escapeArrayElement(sb, str);
-            }
-            sb.append("}");
-            final String strval = sb.toString();
-            pl.setStringParameter(i, strval, oid);
-            break;
-          }
-        default: 
-          throw new AssertionError(String.format("Don\'t know how to map param with OID %d", oid));
-        }
-      }
+      pl = bind(params, pgquery.createParameterList());
     } else {
       pl = null;
     }
@@ -225,30 +220,28 @@ class PgLocalConnection implements PgRawConnection {
         flags |= QueryExecutor.QUERY_FORWARD_CURSOR;
       }
       final int fetchRows = fetchSize > 0 ? fetchSize : 0;
-      final PgObservableResultHandler handler = new PgObservableResultHandler(query, emitter, fetchSize);
+      final PgObservableResultHandler handler = new PgObservableResultHandler(query, emitter, fetchSize, options.getRowFormat());
       this.exec.execute(pgquery, pl, handler, 0, fetchRows, flags);
-      fetch:
       while (handler.cursor != null) {
-        while ((handler.cursor != null) && (emitter.requested() <= 0) && !emitter.isCancelled()) {
+        if (demand != null) {
+          final boolean more;
           try {
-            // urgh ... fugly.
-            Thread.sleep(10);
-            log.debug("sleeping, slow consumer");
+            more = demand.await(emitter);
           } catch (final InterruptedException e) {
+            handler.cursor.close();
             throw new RuntimeException(e);
           }
-          if (emitter.isCancelled()) {
+          if (!more) {
+            log.debug("emitter cancelled");
             handler.cursor.close();
-            break fetch;
+            break;
           }
-        }
-        if (emitter.isCancelled()) {
+        } else if (emitter.isCancelled()) {
           log.debug("emitter cancelled");
           handler.cursor.close();
           break;
-        } else {
-          exec.fetch(handler.cursor, handler, fetchRows);
         }
+        exec.fetch(handler.cursor, handler, fetchRows);
       }
     } finally {
     }
@@ -267,6 +260,66 @@ class PgLocalConnection implements PgRawConnection {
     }
   }
 
+  /**
+   * execute a single statement once for each of the parameter sets. pgjdbc parses it once, then sends a Bind/Execute
+   * for each set. it also sends a Sync whenever the responses might fill the socket buffers (about every 256
+   * executions), which would commit an implicit transaction part way through, so the batch must not be sent with
+   * {@link #SuppressBegin}: it then runs in a transaction block, which the caller commits or rolls back. a
+   * {@link CommandStatus} with the update count of each execution is emitted, in order.
+   */
+  void executeBatch(final Query query, final List<QueryParameters> batch, final FlowableEmitter<QueryResult> emitter, final int flags) throws SQLException {
+    Preconditions.checkArgument(query.getSubqueries().size() == 1, "a batch executes a single statement: %s", query);
+    log.debug("executing batch of {} for {}", batch.size(), query);
+    if (batch.isEmpty()) {
+      return;
+    }
+    final org.postgresql.core.Query pgquery = this.cache.getUnchecked(query);
+    final org.postgresql.core.Query[] queries = new org.postgresql.core.Query[batch.size()];
+    final ParameterList[] lists = new ParameterList[batch.size()];
+    for (int i = 0; i < queries.length; ++i) {
+      queries[i] = pgquery;
+      lists[i] = bind(batch.get(i), pgquery.createParameterList());
+    }
+    if (this.pool.getListener() != null) {
+      this.pool.getListener().executingQuery(this, query, batch.get(0));
+    }
+    try (PgStatement statement = (PgStatement) this.conn.createStatement()) {
+      final BatchResultHandler handler = BATCH_HANDLER.newInstance(statement, queries, lists, false);
+      try {
+        this.exec.execute(queries, lists, handler, 0, 0, flags | NoResults);
+      } catch (final BatchUpdateException ex) {
+        // the counts of the executions before the one which failed.
+        final int failed = ex.getLargeUpdateCounts() == null ? 0 : ex.getLargeUpdateCounts().length;
+        final SQLException cause = ex.getNextException() == null ? ex : ex.getNextException();
+        emitter.onError(new ErrorResult(query.statement(0), failed, cause.getMessage(), cause.getSQLState(), cause instanceof PSQLException ? ((PSQLException) cause).getServerErrorMessage() : null, cause));
+        return;
+      }
+      final long[] counts = handler.getLargeUpdateCount();
+      for (int i = 0; i < counts.length; ++i) {
+        emitter.onNext(new CommandStatus(i, "", counts[i], 0));
+      }
+    } catch (final ReflectiveOperationException ex) {
+      throw new IllegalStateException(ex);
+    } finally {
+      if (this.pool.getListener() != null) {
+        this.pool.getListener().queryCompleted(this);
+      }
+    }
+  }
+
+  /**
+   * pgjdbc only executes a batch through a {@link BatchResultHandler}, which is normally created by its statements.
+   */
+  private static Constructor<BatchResultHandler> batchHandler() {
+    try {
+      final Constructor<BatchResultHandler> ctor = BatchResultHandler.class.getDeclaredConstructor(PgStatement.class, org.postgresql.core.Query[].class, ParameterList[].class, boolean.class);
+      ctor.setAccessible(true);
+      return ctor;
+    } catch (final NoSuchMethodException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
   private void copy(final CopyQuery query, final FlowableEmitter<QueryResult> emitter, final int flags) {
     try {
       log.debug("starting COPY {}", query.command());
@@ -20,7 +20,9 @@ import io.reactivex.rxjava3.core.FlowableEmitter;
 import io.zrz.jpgsql.client.CommandStatus;
 import io.zrz.jpgsql.client.ErrorResult;
 import io.zrz.jpgsql.client.Query;
+import io.zrz.jpgsql.client.QueryOptions.RowBufferFormat;
 import io.zrz.jpgsql.client.QueryResult;
+import io.zrz.jpgsql.client.RowBuffer;
 import io.zrz.jpgsql.client.SecureProgress;
 import io.zrz.jpgsql.client.WarningResult;
 
@@ -36,8 +38,14 @@ public class PgObservableResultHandler extends ResultHandlerBase {
   private int statementId = 0;
   ResultCursor cursor;
   private int fetchSize;
+  private final RowBufferFormat rowFormat;
 
   PgObservableResultHandler(final Query query, final FlowableEmitter<QueryResult> emitter, final int fetchSize) {
+    this(query, emitter, fetchSize, RowBufferFormat.TUPLES);
+  }
+
+  PgObservableResultHandler(final Query query, final FlowableEmitter<QueryResult> emitter, final int fetchSize, final RowBufferFormat rowFormat) {
+    this.rowFormat = Objects.requireNonNull(rowFormat);
     this.fetchSize = fetchSize == 0 ? BATCH_SIZE : fetchSize;
     this.emitter = emitter;
     this.query = Objects.requireNonNull(query);
@@ -63,7 +71,7 @@ public class PgObservableResultHandler extends ResultHandlerBase {
       // we have everything at the end.
       while (remain > 0) {
         final int size = Math.min(remain, fetchSize);
-        this.emitter.onNext(new PgResultRows(this.query, this.statementId, ifields, ImmutableList.copyOf(tuples.subList(offset, offset + size)), (cursor == null && size == remain)));
+        this.emitter.onNext(this.batch(ifields, tuples.subList(offset, offset + size), (cursor == null && size == remain)));
         offset += size;
         remain -= size;
       }
@@ -73,6 +81,18 @@ public class PgObservableResultHandler extends ResultHandlerBase {
     }
   }
 
+  private RowBuffer batch(final PgResultMeta ifields, final List<Tuple> tuples, final boolean done) {
+    switch (this.rowFormat) {
+      case PACKED:
+        return PgPackedResultRows.pack(this.query, this.statementId, ifields, tuples, done, false);
+      case PACKED_DIRECT:
+        return PgPackedResultRows.pack(this.query, this.statementId, ifields, tuples, done, true);
+      case TUPLES:
+      default:
+        return new PgResultRows(this.query, this.statementId, ifields, ImmutableList.copyOf(tuples), done);
+    }
+  }
+
   @Override
   public void handleCommandStatus(final String status, final long updateCount, final long insertOID) {
     final CommandStatus msg = new CommandStatus(this.statementId, status, updateCount, insertOID);
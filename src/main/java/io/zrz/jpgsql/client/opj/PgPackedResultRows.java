@@ -0,0 +1,512 @@
+package io.zrz.jpgsql.client.opj;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.postgresql.core.Field;
+import org.postgresql.core.Oid;
+import org.postgresql.core.Tuple;
+import org.postgresql.util.PGbytea;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.primitives.Ints;
+
+import io.netty.buffer.ByteBuf;
+import io.zrz.jpgsql.InternalUtils;
+import io.zrz.jpgsql.client.PgResultRow;
+import io.zrz.jpgsql.client.Query;
+import io.zrz.jpgsql.client.ResultField;
+import io.zrz.jpgsql.client.ResultRow;
+import io.zrz.jpgsql.client.RowBuffer;
+
+/**
+ * a {@link RowBuffer} which stores the whole batch as a single contiguous region (on or off heap),
+ * with an offset and length per cell.
+ *
+ * compared to {@link PgResultRows}, which retains a byte[] per cell, this keeps one allocation per
+ * batch regardless of the number of rows or columns, so large scans put far less pressure on the
+ * collector. fixed width binary values are read directly from the region.
+ *
+ * cells are stored row major. a length of -1 indicates a NULL.
+ */
+public final class PgPackedResultRows implements RowBuffer {
+
+  private static final int NULL_LENGTH = -1;
+
+  private final Query query;
+  private final int statementId;
+  private final PgResultMeta fields;
+  private final ByteBuffer data;
+  private final int[] offsets;
+  private final int[] lengths;
+  private final int width;
+  private final int count;
+  private final boolean done;
+
+  private PgPackedResultRows(final Builder b, final ByteBuffer data) {
+    this.query = b.query;
+    this.statementId = b.statementId;
+    this.fields = b.fields;
+    this.width = b.width;
+    this.count = b.rows;
+    this.done = b.done;
+    this.data = data;
+    this.offsets = b.offsets;
+    this.lengths = b.lengths;
+  }
+
+  /**
+   * index of the cell, after checking it is inside this batch.
+   */
+  private int cell(final int row, final int col) {
+    Preconditions.checkElementIndex(row, this.count, "row");
+    Preconditions.checkElementIndex(col, this.width, "column");
+    return (row * this.width) + col;
+  }
+
+  /**
+   * the offset of a non null cell, or throws {@link NullPointerException}.
+   */
+  private int offset(final int cell) {
+    if (this.lengths[cell] == NULL_LENGTH) {
+      throw new NullPointerException();
+    }
+    return this.offsets[cell];
+  }
+
+  private byte[] copy(final int cell) {
+    final int len = this.lengths[cell];
+    if (len == NULL_LENGTH) {
+      return null;
+    }
+    final byte[] out = new byte[len];
+    if (this.data.hasArray()) {
+      System.arraycopy(this.data.array(), this.data.arrayOffset() + this.offsets[cell], out, 0, len);
+    }
+    else {
+      final ByteBuffer dup = this.data.duplicate();
+      dup.position(this.offsets[cell]);
+      dup.get(out);
+    }
+    return out;
+  }
+
+  /**
+   * true if the region is off heap.
+   */
+  public boolean isDirect() {
+    return this.data.isDirect();
+  }
+
+  /**
+   * the number of bytes of row data held by this batch.
+   */
+  public int size() {
+    return this.data.limit();
+  }
+
+  public boolean isNull(final int row, final int col) {
+    return this.lengths[this.cell(row, col)] == NULL_LENGTH;
+  }
+
+  @Override
+  public Query query() {
+    return this.query;
+  }
+
+  @Override
+  public int statementId() {
+    return this.statementId;
+  }
+
+  @Override
+  public int count() {
+    return this.count;
+  }
+
+  @Override
+  public boolean maybeMore() {
+    return !this.done;
+  }
+
+  @Override
+  public ResultField field(final int index) {
+    return this.fields.field(index);
+  }
+
+  @Override
+  public ResultField field(final String label) {
+    return this.fields.field(label);
+  }
+
+  @Override
+  public PgResultMeta meta() {
+    return this.fields;
+  }
+
+  @Override
+  public int fields() {
+    return this.width;
+  }
+
+  @Override
+  public ResultRow row(final int offset) {
+    return new PgResultRow(this, offset);
+  }
+
+  @Override
+  public byte[] bytes(final int row, final int col) {
+    return this.copy(this.cell(row, col));
+  }
+
+  private long readLong(final int cell, final int col) {
+    final PgResultField field = this.fields.field(col);
+    final int off = this.offset(cell);
+    if (field.format() == Field.BINARY_FORMAT) {
+      switch (field.oid()) {
+        case Oid.INT2:
+          return this.data.getShort(off);
+        case Oid.INT4:
+          return this.data.getInt(off);
+        case Oid.INT8:
+          return this.data.getLong(off);
+      }
+    }
+    if (this.data.hasArray()) {
+      return PgResultDecoder.toLong(field, this.data.array(), this.data.arrayOffset() + off, this.lengths[cell]);
+    }
+    return PgResultDecoder.toLong(field, this.copy(cell));
+  }
+
+  @Override
+  public int intval(final int row, final int col) {
+    return Ints.checkedCast(this.readLong(this.cell(row, col), col));
+  }
+
+  @Override
+  public int intval(final int row, final int col, final int defaultValue) {
+    final int cell = this.cell(row, col);
+    if (this.lengths[cell] == NULL_LENGTH) {
+      return defaultValue;
+    }
+    return Ints.checkedCast(this.readLong(cell, col));
+  }
+
+  @Override
+  public long longval(final int row, final int col) {
+    return this.readLong(this.cell(row, col), col);
+  }
+
+  @Override
+  public long longval(final int row, final int col, final long defaultValue) {
+    final int cell = this.cell(row, col);
+    if (this.lengths[cell] == NULL_LENGTH) {
+      return defaultValue;
+    }
+    return this.readLong(cell, col);
+  }
+
+  @Override
+  public double doubleval(final int row, final int col) {
+    final int cell = this.cell(row, col);
+    if (this.lengths[cell] == NULL_LENGTH) {
+      return Double.NaN;
+    }
+    final PgResultField field = this.fields.field(col);
+    if (field.format() == Field.BINARY_FORMAT) {
+      switch (field.oid()) {
+        case Oid.FLOAT4:
+          return this.data.getFloat(this.offsets[cell]);
+        case Oid.FLOAT8:
+          return this.data.getDouble(this.offsets[cell]);
+        case Oid.INT2:
+        case Oid.INT4:
+        case Oid.INT8:
+          return this.readLong(cell, col);
+      }
+    }
+    if (this.data.hasArray()) {
+      return PgResultDecoder.toDouble(field, this.data.array(), this.data.arrayOffset() + this.offsets[cell], this.lengths[cell]);
+    }
+    return PgResultDecoder.toDouble(field, this.copy(cell));
+  }
+
+  @Override
+  public boolean boolval(final int row, final int col) {
+    final int cell = this.cell(row, col);
+    final PgResultField field = this.fields.field(col);
+    final byte val = this.data.get(this.offset(cell));
+    if (field.format() == Field.TEXT_FORMAT) {
+      return val == 't';
+    }
+    if (field.oid() == Oid.BOOL) {
+      return val == 1;
+    }
+    return PgResultDecoder.toBoolean(field, this.copy(cell));
+  }
+
+  @Override
+  public String strval(final int row, final int col) {
+    final int cell = this.cell(row, col);
+    final int len = this.lengths[cell];
+    if (len == NULL_LENGTH) {
+      return null;
+    }
+    final PgResultField field = this.fields.field(col);
+    if (PgResultDecoder.isText(field) && this.data.hasArray()) {
+      return new String(this.data.array(), this.data.arrayOffset() + this.offsets[cell], len, StandardCharsets.UTF_8);
+    }
+    return PgResultDecoder.toString(field, this.copy(cell));
+  }
+
+  @Override
+  public BigDecimal decimal(final int row, final int col) {
+    final int cell = this.cell(row, col);
+    if (this.lengths[cell] == NULL_LENGTH) {
+      return null;
+    }
+    if (this.data.hasArray()) {
+      return PgResultDecoder.toBigDecimal(this.fields.field(col), this.data.array(), this.data.arrayOffset() + this.offsets[cell], this.lengths[cell]);
+    }
+    return PgResultDecoder.toBigDecimal(this.fields.field(col), this.copy(cell));
+  }
+
+  @Override
+  public Instant instant(final int row, final int col) {
+    final int cell = this.cell(row, col);
+    if (this.lengths[cell] == NULL_LENGTH) {
+      return null;
+    }
+    if (this.data.hasArray()) {
+      return PgResultDecoder.toInstant(this.fields.field(col), this.data.array(), this.data.arrayOffset() + this.offsets[cell], this.lengths[cell]);
+    }
+    return PgResultDecoder.toInstant(this.fields.field(col), this.copy(cell));
+  }
+
+  @Override
+  public byte[] bytea(final int row, final int col) {
+    try {
+      final byte[] raw = this.bytes(row, col);
+      if ((raw != null) && (this.fields.field(col).format() == Field.TEXT_FORMAT)) {
+        return PGbytea.toBytes(raw);
+      }
+      return raw;
+    }
+    catch (final java.lang.Throwable $ex) {
+      throw InternalUtils.sneakyThrow($ex);
+    }
+  }
+
+  @Override
+  public int[] int2vector(final int row, final int column) {
+    final PgResultField field = this.fields.field(column);
+    switch (field.format()) {
+      case Field.TEXT_FORMAT:
+        return Splitter.on(' ').splitToList(strval(row, column)).stream().mapToInt(x -> Integer.parseInt(x)).toArray();
+    }
+    throw new IllegalArgumentException();
+  }
+
+  @Override
+  public Collection<String> textArray(final int row, final int column) {
+    if (this.isNull(row, column)) {
+      return null;
+    }
+    final PgResultField field = this.fields.field(column);
+    switch (field.format()) {
+      case Field.TEXT_FORMAT: {
+        String value = strval(row, column);
+        value = value.substring(1, value.length() - 1);
+        return Splitter.on(",").splitToList(value);
+      }
+    }
+    throw new IllegalArgumentException();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("rowbuffer { count:").append(this.count()).append(" ");
+    sb.append("more:")
+      .append(this.maybeMore() ? "maybe"
+                               : "no")
+      .append(" ");
+    sb.append("bytes: ").append(this.size()).append(this.isDirect() ? " (direct) " : " ");
+    sb.append("fields: ").append(this.fields);
+    sb.append(" }");
+    return sb.toString();
+  }
+
+  /**
+   * packs the given tuples into a single region.
+   */
+  static PgPackedResultRows pack(final Query query, final int statementId, final PgResultMeta fields, final List<Tuple> tuples, final boolean done, final boolean direct) {
+    int size = 0;
+    for (final Tuple tuple : tuples) {
+      size += tuple.length();
+    }
+    final Builder b = builder(query, statementId, fields).direct(direct).done(done).expectedRows(tuples.size()).expectedBytes(size);
+    for (final Tuple tuple : tuples) {
+      b.addRow(tuple);
+    }
+    return b.build();
+  }
+
+  public static Builder builder(final Query query, final int statementId, final PgResultMeta fields) {
+    return new Builder(query, statementId, fields);
+  }
+
+  /**
+   * accumulates cells row by row, then copies them into the final region on {@link #build()}.
+   */
+  public static final class Builder {
+
+    private final Query query;
+    private final int statementId;
+    private final PgResultMeta fields;
+    private final int width;
+    private boolean done = true;
+    private boolean direct;
+    private byte[] buffer = new byte[1024];
+    private int position;
+    private int[] offsets;
+    private int[] lengths;
+    private int cells;
+    private int rows;
+
+    Builder(final Query query, final int statementId, final PgResultMeta fields) {
+      this.query = query;
+      this.statementId = statementId;
+      this.fields = fields;
+      this.width = fields.count();
+      this.offsets = new int[Math.max(this.width, 1) * 64];
+      this.lengths = new int[this.offsets.length];
+    }
+
+    /**
+     * if the region should be allocated off heap.
+     */
+    public Builder direct(final boolean direct) {
+      this.direct = direct;
+      return this;
+    }
+
+    /**
+     * false if more batches may follow for this statement.
+     */
+    public Builder done(final boolean done) {
+      this.done = done;
+      return this;
+    }
+
+    public Builder expectedRows(final int rows) {
+      this.ensureCells(rows * this.width);
+      return this;
+    }
+
+    public Builder expectedBytes(final int bytes) {
+      this.ensureBytes(bytes);
+      return this;
+    }
+
+    private void ensureCells(final int required) {
+      if (required > this.offsets.length) {
+        final int size = Math.max(required, this.offsets.length * 2);
+        this.offsets = Arrays.copyOf(this.offsets, size);
+        this.lengths = Arrays.copyOf(this.lengths, size);
+      }
+    }
+
+    private void ensureBytes(final int required) {
+      if (required > this.buffer.length) {
+        this.buffer = Arrays.copyOf(this.buffer, Math.max(required, this.buffer.length * 2));
+      }
+    }
+
+    public Builder addNull() {
+      this.ensureCells(this.cells + 1);
+      this.offsets[this.cells] = this.position;
+      this.lengths[this.cells] = NULL_LENGTH;
+      this.cells++;
+      return this;
+    }
+
+    public Builder add(final byte[] value) {
+      if (value == null) {
+        return this.addNull();
+      }
+      return this.add(value, 0, value.length);
+    }
+
+    /**
+     * adds a non null cell copied from the buffer, without changing its indexes.
+     */
+    public Builder add(final ByteBuf value, final int index, final int length) {
+      this.ensureCells(this.cells + 1);
+      this.ensureBytes(this.position + length);
+      value.getBytes(index, this.buffer, this.position, length);
+      this.offsets[this.cells] = this.position;
+      this.lengths[this.cells] = length;
+      this.position += length;
+      this.cells++;
+      return this;
+    }
+
+    public Builder add(final byte[] value, final int offset, final int length) {
+      this.ensureCells(this.cells + 1);
+      this.ensureBytes(this.position + length);
+      System.arraycopy(value, offset, this.buffer, this.position, length);
+      this.offsets[this.cells] = this.position;
+      this.lengths[this.cells] = length;
+      this.position += length;
+      this.cells++;
+      return this;
+    }
+
+    /**
+     * marks the end of the current row, which must have exactly one cell per field.
+     */
+    public Builder endRow() {
+      if (this.cells != ((this.rows + 1) * this.width)) {
+        throw new IllegalStateException(String.format("row %d has %d cells, expected %d", this.rows, this.cells - (this.rows * this.width), this.width));
+      }
+      this.rows++;
+      return this;
+    }
+
+    public Builder addRow(final Tuple tuple) {
+      for (int i = 0; i < this.width; ++i) {
+        this.add(tuple.get(i));
+      }
+      return this.endRow();
+    }
+
+    public int rows() {
+      return this.rows;
+    }
+
+    public PgPackedResultRows build() {
+      if (this.cells != (this.rows * this.width)) {
+        throw new IllegalStateException("incomplete row");
+      }
+      final ByteBuffer data;
+      if (this.direct) {
+        data = ByteBuffer.allocateDirect(this.position);
+        data.put(this.buffer, 0, this.position);
+        data.clear();
+      }
+      else {
+        data = ByteBuffer.wrap(this.buffer, 0, this.position).slice();
+      }
+      return new PgPackedResultRows(this, data);
+    }
+
+  }
+
+}
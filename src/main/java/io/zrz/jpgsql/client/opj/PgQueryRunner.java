@@ -2,10 +2,12 @@
 package io.zrz.jpgsql.client.opj;
 
 import java.sql.SQLException;
+import java.util.List;
 
 import io.reactivex.rxjava3.core.FlowableEmitter;
 import io.zrz.jpgsql.client.PostgresqlUnavailableException;
 import io.zrz.jpgsql.client.Query;
+import io.zrz.jpgsql.client.QueryOptions;
 import io.zrz.jpgsql.client.QueryParameters;
 import io.zrz.jpgsql.client.QueryResult;
 
@@ -19,13 +21,35 @@ class PgQueryRunner implements Runnable {
   private final FlowableEmitter<QueryResult> emitter;
   private final Query query;
   private final QueryParameters params;
-  private int fetchSize;
+  private final QueryOptions options;
+  private final PgDemandSignal demand;
+  private final List<QueryParameters> batch;
 
   public PgQueryRunner(final Query query, final QueryParameters params, final FlowableEmitter<QueryResult> emitter, final AmbientContext ctx, final int fetchSize) {
+    this(query, params, emitter, ctx, QueryOptions.builder().fetchSize(fetchSize).build(), null);
+  }
+
+  public PgQueryRunner(final Query query, final QueryParameters params, final FlowableEmitter<QueryResult> emitter, final AmbientContext ctx, final QueryOptions options, final PgDemandSignal demand) {
+    this.demand = demand;
     this.emitter = emitter;
     this.query = query;
     this.params = params;
-    this.fetchSize = fetchSize;
+    this.options = options;
+    this.batch = null;
+  }
+
+  /**
+   * executes the query once for each of the parameter sets.
+   *
+   * @see PgLocalConnection#executeBatch(Query, List, FlowableEmitter, int)
+   */
+  public PgQueryRunner(final Query query, final List<QueryParameters> batch, final FlowableEmitter<QueryResult> emitter, final AmbientContext ctx) {
+    this.demand = null;
+    this.emitter = emitter;
+    this.query = query;
+    this.params = null;
+    this.options = QueryOptions.DEFAULTS;
+    this.batch = batch;
   }
 
   /**
@@ -35,7 +59,12 @@ class PgQueryRunner implements Runnable {
    */
   private void run(final PgLocalConnection conn) throws SQLException {
     try {
-      conn.execute(this.query, this.params, this.emitter, fetchSize, fetchSize == 0 ? PgLocalConnection.SuppressBegin : 0);
+      if (this.batch != null) {
+        // pgjdbc syncs part way through a large batch, so it is run in a transaction block for the commit below.
+        conn.executeBatch(this.query, this.batch, this.emitter, 0);
+      } else {
+        conn.execute(this.query, this.params, this.emitter, this.options, this.options.getFetchSize() == 0 ? PgLocalConnection.SuppressBegin : 0, this.demand);
+      }
     } finally {
       log.debug("command completed with txnstatus {}", conn.transactionState());
       switch (conn.transactionState()) {
@@ -57,12 +86,12 @@ class PgQueryRunner implements Runnable {
   @Override
   public void run() {
     try {
-      this.run(PgConnectionThread.connection());
+      this.run(PgConnectionHandle.current().connection());
       this.emitter.onComplete();
     } catch (final SQLException ex) {
       // Any propagated SQLException results in the connection being closed.
       ex.printStackTrace();
-      PgConnectionThread.close();
+      PgConnectionHandle.current().close();
       this.emitter.onError(new PostgresqlUnavailableException(ex));
     } catch (final Throwable ex) {
       ex.printStackTrace();
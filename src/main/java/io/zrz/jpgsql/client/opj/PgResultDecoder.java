@@ -8,6 +8,7 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.temporal.ChronoField;
+import java.util.UUID;
 
 import org.postgresql.core.Field;
 import org.postgresql.core.Oid;
@@ -21,20 +22,24 @@ public class PgResultDecoder {
   }
 
   public static long toLong(final PgResultField field, final byte[] bs) {
+    return toLong(field, bs, 0, bs.length);
+  }
+
+  public static long toLong(final PgResultField field, final byte[] bs, final int off, final int len) {
 
     final int oid = field.oid();
 
     if (field.format() == Field.TEXT_FORMAT) {
-      return Long.parseLong(new String(bs));
+      return parseLong(bs, off, len);
     }
 
     switch (oid) {
       case Oid.INT2:
-        return ByteConverter.int2(bs, 0);
+        return ByteConverter.int2(bs, off);
       case Oid.INT4:
-        return ByteConverter.int4(bs, 0);
+        return ByteConverter.int4(bs, off);
       case Oid.INT8:
-        return ByteConverter.int8(bs, 0);
+        return ByteConverter.int8(bs, off);
     }
 
     throw new AssertionError(String.format("Can't convert binary field with OID %d to long", oid));
@@ -58,7 +63,22 @@ public class PgResultDecoder {
           return Double.toString(ByteConverter.float4(bs, 0));
         case Oid.FLOAT8:
           return Double.toString(ByteConverter.float8(bs, 0));
+        case Oid.BOOL:
+          return ByteConverter.bool(bs, 0) ? "t"
+                                           : "f";
+        case Oid.NUMERIC:
+          return toBigDecimal(field, bs).toPlainString();
+        case Oid.UUID:
+          return new UUID(ByteConverter.int8(bs, 0), ByteConverter.int8(bs, 8)).toString();
+        case Oid.DATE:
+          return PostgresTimestamp.toLocalDate(ByteConverter.int4(bs, 0)).toString();
+        case JSONB_OID:
+          // a version byte, followed by the text.
+          return new String(bs, 1, bs.length - 1, StandardCharsets.UTF_8);
         default:
+          if (isText(field)) {
+            return new String(bs, StandardCharsets.UTF_8);
+          }
           throw new AssertionError(String.format("Can't convert binary field with OID %d to string", oid));
       }
 
@@ -67,6 +87,28 @@ public class PgResultDecoder {
     return new String(bs, StandardCharsets.UTF_8);
   }
 
+  private static final int JSONB_OID = 3802;
+
+  /**
+   * true if the value is UTF-8 text as received, which is any field in text format, and the string types in binary.
+   */
+  public static boolean isText(final PgResultField field) {
+    if (field.format() == Field.TEXT_FORMAT) {
+      return true;
+    }
+    switch (field.oid()) {
+      case Oid.TEXT:
+      case Oid.VARCHAR:
+      case Oid.BPCHAR:
+      case Oid.NAME:
+      case Oid.JSON:
+      case Oid.XML:
+        return true;
+      default:
+        return false;
+    }
+  }
+
   private static DateTimeFormatter TIMEZONETZ_FORMATTER =
     new DateTimeFormatterBuilder()
       .appendPattern("yyyy-MM-dd HH:mm:ss")
@@ -88,6 +130,10 @@ public class PgResultDecoder {
    */
 
   public static Instant toInstant(final PgResultField field, final byte[] bytes) {
+    return toInstant(field, bytes, 0, bytes.length);
+  }
+
+  public static Instant toInstant(final PgResultField field, final byte[] bytes, final int off, final int len) {
 
     final int oid = field.oid();
 
@@ -96,22 +142,35 @@ public class PgResultDecoder {
       case Oid.TIMESTAMP: {
         if (field.format() == Field.TEXT_FORMAT) {
 
+          final long micros = parseTimestampMicros(bytes, off, len, false);
+
+          if (micros != Long.MIN_VALUE) {
+            return ofEpochMicros(micros);
+          }
+
           // values.put(field.label(), TIMEZONE_FORMATTER.parse(rows.strval(idx, i),
           // LocalDateTime::from).atOffset(ZoneOffset.UTC).toInstant());
 
-          return TIMEZONE_FORMATTER.parse(new String(bytes), LocalDateTime::from).atOffset(ZoneOffset.UTC).toInstant();
+          return TIMEZONE_FORMATTER.parse(ascii(bytes, off, len), LocalDateTime::from).atOffset(ZoneOffset.UTC).toInstant();
         }
-        final long time = ByteConverter.int8(bytes, 0);
+        final long time = ByteConverter.int8(bytes, off);
         return LocalDateTime.of(2000, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).plusMillis(time / 1000);
       }
 
       case Oid.TIMESTAMPTZ: {
 
         if (field.format() == Field.TEXT_FORMAT) {
-          return TIMEZONETZ_FORMATTER.parse(new String(bytes), Instant::from);
+
+          final long micros = parseTimestampMicros(bytes, off, len, true);
+
+          if (micros != Long.MIN_VALUE) {
+            return ofEpochMicros(micros);
+          }
+
+          return TIMEZONETZ_FORMATTER.parse(ascii(bytes, off, len), Instant::from);
         }
 
-        final long time = ByteConverter.int8(bytes, 0);
+        final long time = ByteConverter.int8(bytes, off);
         return Instant.ofEpochMilli(PostgresTimestamp.toUnixMicros(time) / 1000);
 
       }
@@ -119,8 +178,8 @@ public class PgResultDecoder {
 
         final BigDecimal val =
           (field.format() == Field.TEXT_FORMAT)
-                                                ? new BigDecimal(new String(bytes))
-                                                : BigDecimal.valueOf(ByteConverter.float8(bytes, 0));
+                                                ? parseDecimal(bytes, off, len)
+                                                : BigDecimal.valueOf(ByteConverter.float8(bytes, off));
 
         //
 
@@ -141,24 +200,28 @@ public class PgResultDecoder {
    */
 
   public static double toDouble(final PgResultField field, final byte[] bs) {
+    return toDouble(field, bs, 0, bs.length);
+  }
+
+  public static double toDouble(final PgResultField field, final byte[] bs, final int off, final int len) {
 
     final int oid = field.oid();
 
     if (field.format() == Field.TEXT_FORMAT) {
-      return Double.parseDouble(new String(bs));
+      return parseDouble(bs, off, len);
     }
 
     switch (oid) {
       case Oid.FLOAT4:
-        return ByteConverter.float4(bs, 0);
+        return ByteConverter.float4(bs, off);
       case Oid.FLOAT8:
-        return ByteConverter.float8(bs, 0);
+        return ByteConverter.float8(bs, off);
       case Oid.INT2:
-        return ByteConverter.int2(bs, 0);
+        return ByteConverter.int2(bs, off);
       case Oid.INT4:
-        return ByteConverter.int4(bs, 0);
+        return ByteConverter.int4(bs, off);
       case Oid.INT8:
-        return ByteConverter.int8(bs, 0);
+        return ByteConverter.int8(bs, off);
     }
 
     throw new AssertionError(String.format("Can't convert binary field with OID %d to big decimal", oid));
@@ -166,24 +229,36 @@ public class PgResultDecoder {
   }
 
   public static BigDecimal toBigDecimal(final PgResultField field, final byte[] bs) {
+    return toBigDecimal(field, bs, 0, bs.length);
+  }
+
+  public static BigDecimal toBigDecimal(final PgResultField field, final byte[] bs, final int off, final int len) {
 
     final int oid = field.oid();
 
     if (field.format() == Field.TEXT_FORMAT) {
-      return new BigDecimal(Double.parseDouble(new String(bs)));
+      return parseDecimal(bs, off, len);
     }
 
     switch (oid) {
       case Oid.FLOAT4:
-        return BigDecimal.valueOf(ByteConverter.float4(bs, 0));
+        return BigDecimal.valueOf(ByteConverter.float4(bs, off));
       case Oid.FLOAT8:
-        return BigDecimal.valueOf(ByteConverter.float8(bs, 0));
+        return BigDecimal.valueOf(ByteConverter.float8(bs, off));
       case Oid.INT2:
-        return BigDecimal.valueOf(ByteConverter.int2(bs, 0));
+        return BigDecimal.valueOf(ByteConverter.int2(bs, off));
       case Oid.INT4:
-        return BigDecimal.valueOf(ByteConverter.int4(bs, 0));
+        return BigDecimal.valueOf(ByteConverter.int4(bs, off));
       case Oid.INT8:
-        return BigDecimal.valueOf(ByteConverter.int8(bs, 0));
+        return BigDecimal.valueOf(ByteConverter.int8(bs, off));
+      case Oid.NUMERIC: {
+        final Number value = ByteConverter.numeric(bs, off, len);
+        if (value instanceof BigDecimal) {
+          return (BigDecimal) value;
+        }
+        // NaN.
+        throw new NumberFormatException(String.valueOf(value));
+      }
     }
 
     throw new AssertionError(String.format("Can't convert binary field with OID %d to big decimal", oid));
@@ -191,21 +266,377 @@ public class PgResultDecoder {
   }
 
   public static boolean toBoolean(PgResultField field, byte[] val) {
+    return toBoolean(field, val, 0, val.length);
+  }
+
+  public static boolean toBoolean(PgResultField field, byte[] val, int off, int len) {
 
     final int oid = field.oid();
 
     if (field.format() == Field.TEXT_FORMAT) {
-      return val[0] == 't' ? true
-                           : false;
+      return parseBoolean(val, off, len);
     }
 
     switch (oid) {
       case Oid.BOOL:
-        return val[0] == 1 ? true
-                           : false;
+        return val[off] == 1 ? true
+                             : false;
     }
 
     throw new AssertionError(String.format("Can't convert binary field with OID %d to long", oid));
   }
 
+  // -- text format parsers. these work directly on the bytes received from the server rather than
+  // creating an intermediate String, and fall back to the JDK parsers for anything unusual.
+
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+    1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private static String ascii(final byte[] bs, final int off, final int len) {
+    return new String(bs, off, len, StandardCharsets.ISO_8859_1);
+  }
+
+  private static NumberFormatException invalid(final byte[] bs, final int off, final int len) {
+    return new NumberFormatException("For input string: \"" + ascii(bs, off, len) + "\"");
+  }
+
+  /**
+   * parses a text int2, int4 or int8.
+   */
+  public static long parseLong(final byte[] bs, final int off, final int len) {
+
+    if (len <= 0) {
+      throw invalid(bs, off, len);
+    }
+
+    final int end = off + len;
+    int i = off;
+    boolean negative = false;
+
+    if (bs[i] == '-') {
+      negative = true;
+      i++;
+    }
+    else if (bs[i] == '+') {
+      i++;
+    }
+
+    if (i == end) {
+      throw invalid(bs, off, len);
+    }
+
+    // accumulate negatively, so Long.MIN_VALUE is representable.
+    final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    final long multmin = limit / 10;
+    long result = 0;
+
+    while (i < end) {
+      final int digit = bs[i++] - '0';
+      if ((digit < 0) || (digit > 9) || (result < multmin)) {
+        throw invalid(bs, off, len);
+      }
+      result *= 10;
+      if (result < (limit + digit)) {
+        throw invalid(bs, off, len);
+      }
+      result -= digit;
+    }
+
+    return negative ? result : -result;
+
+  }
+
+  /**
+   * parses a text float4, float8 or numeric as a double.
+   *
+   * values with at most 18 significant digits and a decimal exponent within +/- 22 are exact when
+   * computed with a single multiply or divide of the mantissa (Clinger's fast path), so only those
+   * are handled here. everything else, including NaN and Infinity, goes through
+   * {@link Double#parseDouble(String)}.
+   */
+  public static double parseDouble(final byte[] bs, final int off, final int len) {
+
+    final int end = off + len;
+    int i = off;
+    boolean negative = false;
+
+    if ((i < end) && ((bs[i] == '-') || (bs[i] == '+'))) {
+      negative = bs[i] == '-';
+      i++;
+    }
+
+    long mantissa = 0;
+    int significant = 0;
+    int exponent = 0;
+    boolean digits = false;
+    boolean fraction = false;
+
+    for (; i < end; ++i) {
+      final byte c = bs[i];
+      if ((c >= '0') && (c <= '9')) {
+        digits = true;
+        if ((mantissa != 0) || (c != '0')) {
+          if (++significant > 18) {
+            return Double.parseDouble(ascii(bs, off, len));
+          }
+        }
+        mantissa = (mantissa * 10) + (c - '0');
+        if (fraction) {
+          exponent--;
+        }
+      }
+      else if ((c == '.') && !fraction) {
+        fraction = true;
+      }
+      else {
+        break;
+      }
+    }
+
+    if (!digits) {
+      return Double.parseDouble(ascii(bs, off, len));
+    }
+
+    if ((i < end) && ((bs[i] == 'e') || (bs[i] == 'E'))) {
+      i++;
+      boolean negexp = false;
+      if ((i < end) && ((bs[i] == '-') || (bs[i] == '+'))) {
+        negexp = bs[i] == '-';
+        i++;
+      }
+      final int start = i;
+      int exp = 0;
+      while ((i < end) && (bs[i] >= '0') && (bs[i] <= '9') && (exp < 10000)) {
+        exp = (exp * 10) + (bs[i++] - '0');
+      }
+      if (start == i) {
+        throw invalid(bs, off, len);
+      }
+      exponent += negexp ? -exp : exp;
+    }
+
+    if (i != end) {
+      return Double.parseDouble(ascii(bs, off, len));
+    }
+
+    double value = mantissa;
+
+    if (mantissa == 0) {
+      value = 0;
+    }
+    else if ((exponent >= 0) && (exponent <= 22) && (mantissa < (1L << 53))) {
+      value *= POWERS_OF_TEN[exponent];
+    }
+    else if ((exponent < 0) && (exponent >= -22) && (mantissa < (1L << 53))) {
+      value /= POWERS_OF_TEN[-exponent];
+    }
+    else {
+      return Double.parseDouble(ascii(bs, off, len));
+    }
+
+    return negative ? -value : value;
+
+  }
+
+  /**
+   * parses a text bool, which postgres sends as 't' or 'f'.
+   */
+  public static boolean parseBoolean(final byte[] bs, final int off, final int len) {
+    return (len > 0) && (bs[off] == 't');
+  }
+
+  /**
+   * parses a text numeric. anything with more than 18 digits or an exponent is handed to
+   * {@link BigDecimal#BigDecimal(String)}.
+   */
+  public static BigDecimal parseDecimal(final byte[] bs, final int off, final int len) {
+
+    final int end = off + len;
+    int i = off;
+    boolean negative = false;
+
+    if ((i < end) && ((bs[i] == '-') || (bs[i] == '+'))) {
+      negative = bs[i] == '-';
+      i++;
+    }
+
+    long unscaled = 0;
+    int significant = 0;
+    int scale = 0;
+    boolean digits = false;
+    boolean fraction = false;
+
+    for (; i < end; ++i) {
+      final byte c = bs[i];
+      if ((c >= '0') && (c <= '9')) {
+        digits = true;
+        if (((unscaled != 0) || (c != '0')) && (++significant > 18)) {
+          return new BigDecimal(ascii(bs, off, len));
+        }
+        unscaled = (unscaled * 10) + (c - '0');
+        if (fraction) {
+          scale++;
+        }
+      }
+      else if ((c == '.') && !fraction) {
+        fraction = true;
+      }
+      else {
+        return new BigDecimal(ascii(bs, off, len));
+      }
+    }
+
+    if (!digits) {
+      return new BigDecimal(ascii(bs, off, len));
+    }
+
+    return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+
+  }
+
+  private static Instant ofEpochMicros(final long micros) {
+    return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1000L);
+  }
+
+  private static int digits2(final byte[] bs, final int i) {
+    final int a = bs[i] - '0';
+    final int b = bs[i + 1] - '0';
+    if ((a < 0) || (a > 9) || (b < 0) || (b > 9)) {
+      return -1;
+    }
+    return (a * 10) + b;
+  }
+
+  /**
+   * days since 1970-01-01 for a proleptic gregorian date.
+   */
+  private static long epochDay(final int year, final int month, final int day) {
+    final int y = month <= 2 ? year - 1 : year;
+    final int era = Math.floorDiv(y, 400);
+    final int yoe = y - (era * 400);
+    final int doy = ((153 * (month > 2 ? month - 3 : month + 9)) + 2) / 5 + (day - 1);
+    final int doe = (yoe * 365) + (yoe / 4) - (yoe / 100) + doy;
+    return ((long) era * 146097) + doe - 719468;
+  }
+
+  private static int lengthOfMonth(final int year, final int month) {
+    switch (month) {
+      case 2:
+        return (((year % 4) == 0) && (((year % 100) != 0) || ((year % 400) == 0))) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /**
+   * parses a text timestamp in the ISO DateStyle ("yyyy-MM-dd HH:mm:ss[.ffffff]", followed by
+   * "+HH[:mm[:ss]]" for timestamptz) into microseconds since the unix epoch.
+   *
+   * @return the timestamp, or {@link Long#MIN_VALUE} if the value is not in that form (e.g
+   *         infinity, BC dates or 5 digit years) and must be parsed some other way.
+   */
+  static long parseTimestampMicros(final byte[] bs, final int off, final int len, final boolean zoned) {
+
+    final long fallback = Long.MIN_VALUE;
+    final int end = off + len;
+
+    if ((len < 19)
+      || (bs[off + 4] != '-')
+      || (bs[off + 7] != '-')
+      || ((bs[off + 10] != ' ') && (bs[off + 10] != 'T'))
+      || (bs[off + 13] != ':')
+      || (bs[off + 16] != ':')) {
+      return fallback;
+    }
+
+    final int hi = digits2(bs, off);
+    final int lo = digits2(bs, off + 2);
+    final int month = digits2(bs, off + 5);
+    final int day = digits2(bs, off + 8);
+    final int hour = digits2(bs, off + 11);
+    final int minute = digits2(bs, off + 14);
+    final int second = digits2(bs, off + 17);
+
+    if ((hi < 0) || (lo < 0) || (month < 1) || (month > 12) || (day < 1) || (hour < 0) || (hour > 23) || (minute < 0) || (minute > 59) || (second < 0) || (second > 59)) {
+      return fallback;
+    }
+
+    final int year = (hi * 100) + lo;
+
+    if (day > lengthOfMonth(year, month)) {
+      return fallback;
+    }
+
+    int i = off + 19;
+    long micros = 0;
+
+    if ((i < end) && (bs[i] == '.')) {
+      i++;
+      int n = 0;
+      while ((i < end) && (bs[i] >= '0') && (bs[i] <= '9')) {
+        if (++n > 6) {
+          return fallback;
+        }
+        micros = (micros * 10) + (bs[i++] - '0');
+      }
+      if (n == 0) {
+        return fallback;
+      }
+      for (; n < 6; ++n) {
+        micros *= 10;
+      }
+    }
+
+    int offsetSeconds = 0;
+
+    if (zoned) {
+
+      if (((i + 3) > end) || ((bs[i] != '+') && (bs[i] != '-'))) {
+        return fallback;
+      }
+
+      final boolean negative = bs[i] == '-';
+      final int oh = digits2(bs, i + 1);
+      int om = 0;
+      int os = 0;
+      i += 3;
+
+      if (((i + 3) <= end) && (bs[i] == ':')) {
+        om = digits2(bs, i + 1);
+        i += 3;
+        if (((i + 3) <= end) && (bs[i] == ':')) {
+          os = digits2(bs, i + 1);
+          i += 3;
+        }
+      }
+
+      if ((oh < 0) || (om < 0) || (os < 0)) {
+        return fallback;
+      }
+
+      offsetSeconds = (oh * 3600) + (om * 60) + os;
+
+      if (negative) {
+        offsetSeconds = -offsetSeconds;
+      }
+
+    }
+
+    if (i != end) {
+      return fallback;
+    }
+
+    final long seconds = (epochDay(year, month, day) * 86400L) + (hour * 3600) + (minute * 60) + second - offsetSeconds;
+
+    return (seconds * 1_000_000L) + micros;
+
+  }
+
 }
@@ -297,13 +297,13 @@ class PgSingleSession implements Runnable, PgSession {
       CopyIn copy = conn.getCopyAPI().copyIn(sql);
       // PGCopyOutputStream out = new PGCopyOutputStream(copy, 1024 * 1024 * 64);
       copy.writeToCopy(PgThreadPooledClient.BINARY_PREAMBLE, 0, PgThreadPooledClient.BINARY_PREAMBLE.length);
+      final byte[] scratch = new byte[64 * 1024];
       return Flowable.fromPublisher((Publisher<ByteBuf>) source).doOnNext(buf -> {
-        while (buf.isReadable()) {
-          byte[] out = new byte[buf.readableBytes()];
-          buf.readBytes(out);
-          copy.writeToCopy(out, 0, out.length);
+        try {
+          PgThreadPooledClient.writeToCopy(copy, buf, scratch);
+        } finally {
+          buf.release();
         }
-        buf.release();
       }).ignoreElements().andThen(Single.defer(() -> {
         log.debug("closing copy stream");
         long len = copy.endCopy();
@@ -322,12 +322,12 @@ class PgSingleSession implements Runnable, PgSession {
   public void run() {
     log.trace("running query");
     try {
-      this.run(PgConnectionThread.connection());
+      this.run(PgConnectionHandle.current().connection());
     } catch (final SQLException ex) {
       // Any propagated SQLException results in the connection being closed.
       log.warn("connection failed: {}", ex.getMessage(), ex);
       this.accepting = false;
-      PgConnectionThread.close();
+      PgConnectionHandle.current().close();
       this.txnstate.onError(new PostgresqlUnavailableException(ex));
     } catch (final Exception ex) {
       log.warn("connection failed: {}", ex.getMessage(), ex);
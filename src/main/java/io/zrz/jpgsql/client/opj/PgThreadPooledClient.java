@@ -1,14 +1,17 @@
 // Generated by delombok at Tue Sep 22 10:54:18 PDT 2020
 package io.zrz.jpgsql.client.opj;
 
+import java.sql.SQLException;
 import java.time.Duration;
 import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
+import java.util.function.Function;
 import java.util.function.UnaryOperator;
 
 import org.postgresql.PGProperty;
 import org.postgresql.copy.CopyIn;
-import org.postgresql.copy.PGCopyOutputStream;
+import org.postgresql.copy.CopyOut;
 import org.postgresql.ds.PGSimpleDataSource;
 import org.postgresql.jdbc.PgConnection;
 import org.postgresql.jdbc.PreferQueryMode;
@@ -16,24 +19,29 @@ import org.postgresql.util.HostSpec;
 import org.reactivestreams.Publisher;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteSource;
 import com.google.common.primitives.Ints;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.reactivex.rxjava3.core.BackpressureStrategy;
 import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableEmitter;
 import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.schedulers.Schedulers;
-import io.zrz.jpgsql.InternalUtils;
 import io.zrz.jpgsql.client.AbstractPostgresClient;
 import io.zrz.jpgsql.client.ErrorResult;
 import io.zrz.jpgsql.client.NotifyMessage;
 import io.zrz.jpgsql.client.PostgresClient;
 import io.zrz.jpgsql.client.PostgresConnectionProperties;
 import io.zrz.jpgsql.client.PostgresConnectionProperties.PostgresConnectionPropertiesBuilder;
+import io.zrz.jpgsql.client.PostgresQueryProcessor;
 import io.zrz.jpgsql.client.Query;
+import io.zrz.jpgsql.client.QueryOptions;
 import io.zrz.jpgsql.client.QueryParameters;
 import io.zrz.jpgsql.client.QueryResult;
+import io.zrz.jpgsql.client.RowBuffer;
 import io.zrz.sqlwriter.Tuple;
 import net.jodah.failsafe.Failsafe;
 import net.jodah.failsafe.RetryPolicy;
@@ -71,6 +79,12 @@ public class PgThreadPooledClient extends AbstractPostgresClient implements Post
     void executingQuery(PgRawConnection conn, Query query, QueryParameters params);
 
     void queryCompleted(PgRawConnection conn);
+
+    /**
+     * called from a pool thread when work which had to wait for a free connection is started.
+     */
+    default void admitted(final QueryOptions.Priority priority, final Duration waited) {
+    }
   }
 
   PgThreadPooledClient(PostgresConnectionProperties config, final Listener listener) {
@@ -211,18 +225,44 @@ public class PgThreadPooledClient extends AbstractPostgresClient implements Post
   }
 
   public Flowable<QueryResult> submit(final Query query, final QueryParameters params, final int fetchSize) {
+    return submit(query, params, QueryOptions.builder().fetchSize(fetchSize).build());
+  }
+
+  /**
+   * submit with per query options, e.g the fetch size and the {@link RowBuffer} representation.
+   */
+  public Flowable<QueryResult> submit(final Query query, final QueryParameters params, final QueryOptions options) {
+    final AmbientContext ctx = AmbientContext.capture();
+    // wakes the connection thread when more rows are requested, rather than it polling.
+    final PgDemandSignal demand = new PgDemandSignal();
+    return this.dispatch(query, ctx, options, demand, emitter -> new PgQueryRunner(query, params, emitter, ctx, options, demand));
+  }
+
+  /**
+   * executes the query once for each of the parameter sets, parsing it once. pgjdbc sends a Sync about every 256
+   * executions, so the batch is run in a transaction block, which is committed once they have all succeeded and rolled
+   * back otherwise.
+   */
+  @Override
+  public Flowable<long[]> executeBatch(final Query query, final Iterable<QueryParameters> params) {
     final AmbientContext ctx = AmbientContext.capture();
+    final List<QueryParameters> batch = ImmutableList.copyOf(params);
+    return PostgresQueryProcessor.updateCounts(this.dispatch(query, ctx, QueryOptions.DEFAULTS, null, emitter -> new PgQueryRunner(query, batch, emitter, ctx)));
+  }
+
+  private Flowable<QueryResult> dispatch(final Query query, final AmbientContext ctx, final QueryOptions options, final PgDemandSignal demand, final Function<FlowableEmitter<QueryResult>, PgQueryRunner> runner) {
     Preconditions.checkState(!pool.isShutdown(), query.toString());
-    final Flowable<QueryResult> res = Flowable.create(emitter -> {
+    final Flowable<QueryResult> created = Flowable.<QueryResult>create(emitter -> {
       try {
-        final PgQueryRunner runner = new PgQueryRunner(query, params, emitter, ctx, fetchSize);
-        this.pool.execute(ctx.wrap(runner));
+        this.pool.admit(ctx.wrap(runner.apply(emitter)), options.getPriority(), emitter::tryOnError);
       }
       catch (final Throwable ex) {
         log.warn("failed to dispatch work", ex.getMessage());
         emitter.onError(ex);
       }
     }, BackpressureStrategy.BUFFER);
+    final Flowable<QueryResult> res = demand == null ? created
+                                                     : created.lift(demand);
     // map so we have the stacktrace from caller, not nested.
     // StackTraceElement[] trace = Thread.currentThread().getStackTrace();
     final PostgresQueryException trace = new PostgresQueryException(query);
@@ -265,13 +305,10 @@ public class PgThreadPooledClient extends AbstractPostgresClient implements Post
   public PgTransactionalSession open() {
     log.debug("opening transactional session");
     final PgTransactionalSession runner = new PgTransactionalSession(this);
-    try {
-      this.pool.execute(runner);
-    }
-    catch (final Exception ex) {
+    this.pool.admit(runner, QueryOptions.Priority.INTERACTIVE, ex -> {
       log.warn("failed to open session", ex);
       runner.failed(ex);
-    }
+    });
     return runner;
   }
 
@@ -279,13 +316,10 @@ public class PgThreadPooledClient extends AbstractPostgresClient implements Post
   public PgSingleSession openSession() {
     log.debug("opening single session");
     final PgSingleSession runner = new PgSingleSession(this);
-    try {
-      this.pool.execute(runner);
-    }
-    catch (final Exception ex) {
+    this.pool.admit(runner, QueryOptions.Priority.INTERACTIVE, ex -> {
       log.warn("failed to open session", ex);
       runner.failed(ex);
-    }
+    });
     return runner;
   }
 
@@ -319,7 +353,7 @@ public class PgThreadPooledClient extends AbstractPostgresClient implements Post
     return Flowable.create(emitter -> {
       final PgConnectionThread thd = new PgConnectionThread(this, () -> {
         try {
-          final PgLocalConnection conn = PgConnectionThread.connection();
+          final PgLocalConnection conn = PgConnectionHandle.current().connection();
           try {
             conn.notifications(channels, emitter);
           }
@@ -336,6 +370,13 @@ public class PgThreadPooledClient extends AbstractPostgresClient implements Post
     }, BackpressureStrategy.BUFFER);
   }
 
+  /**
+   * how much work has had to wait for a connection, and for how long.
+   */
+  public PgAdmissionStats admissionStats() {
+    return this.pool.admissionStats();
+  }
+
   public void shutdown() {
     this.pool.shutdownNow();
   }
@@ -352,26 +393,38 @@ public class PgThreadPooledClient extends AbstractPostgresClient implements Post
    */
   @Override
   public Publisher<Long> copyTo(final String sql, final Publisher<ByteBuf> data) {
-    try {
-      final Flowable<ByteBuf> upstream = Flowable.fromPublisher(data);
-      return
-      // .observeOn(Schedulers.newThread())
-      this.requestConnection().flatMapCompletable(conn -> {
-        final CopyIn copy = conn.getCopyAPI().copyIn(sql);
-        final PGCopyOutputStream out = new PGCopyOutputStream(copy, 1024 * 1024 * 8);
-        out.write(BINARY_PREAMBLE);
-        return upstream.doOnNext(buf -> {
-          while (buf.isReadable()) {
-            buf.readBytes(out, buf.readableBytes());
-          }
+    final Flowable<ByteBuf> upstream = Flowable.fromPublisher(data);
+    return this.requestConnection().flatMap(conn -> {
+      final CopyIn copy = conn.getCopyAPI().copyIn(sql);
+      copy.writeToCopy(BINARY_PREAMBLE, 0, BINARY_PREAMBLE.length);
+      final byte[] scratch = new byte[COPY_CHUNK_SIZE];
+      return upstream.doOnNext(buf -> {
+        try {
+          writeToCopy(copy, buf, scratch);
+        }
+        finally {
           buf.release();
-        }).ignoreElements().doOnComplete(() -> {
-          out.close();
-        }).doAfterTerminate(conn::close);
-      }).toSingleDefault(1L).toFlowable();
+        }
+      }).ignoreElements().andThen(Single.fromCallable(copy::endCopy)).doAfterTerminate(conn::close);
+    }).toFlowable();
+  }
+
+  private static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+  /**
+   * writes the readable bytes of the buffer to the copy, straight from its array when it has one. pgjdbc only takes
+   * arrays, so anything else goes through the scratch array a piece at a time rather than a new array per buffer.
+   */
+  static void writeToCopy(final CopyIn copy, final ByteBuf buf, final byte[] scratch) throws SQLException {
+    if (buf.hasArray()) {
+      copy.writeToCopy(buf.array(), buf.arrayOffset() + buf.readerIndex(), buf.readableBytes());
+      buf.skipBytes(buf.readableBytes());
+      return;
     }
-    catch (final java.lang.Throwable $ex) {
-      throw InternalUtils.sneakyThrow($ex);
+    while (buf.isReadable()) {
+      final int length = Math.min(scratch.length, buf.readableBytes());
+      buf.readBytes(scratch, 0, length);
+      copy.writeToCopy(scratch, 0, length);
     }
   }
 
@@ -385,6 +438,31 @@ public class PgThreadPooledClient extends AbstractPostgresClient implements Post
     return this;
   }
 
+  /**
+   * start a new connection and copy from it. each chunk is read by pgjdbc on an io thread only once it has been
+   * requested.
+   */
+  @Override
+  public Flowable<ByteBuf> copyOut(final String sql) {
+    return Flowable.using(
+      () -> this.requestConnection().blockingGet(),
+      conn -> {
+        final CopyOut copy = conn.getCopyAPI().copyOut(sql);
+        return Flowable.<ByteBuf>generate(emitter -> {
+          final byte[] data = copy.readFromCopy();
+          if (data == null) {
+            emitter.onComplete();
+          }
+          else {
+            emitter.onNext(Unpooled.wrappedBuffer(data));
+          }
+        });
+      },
+      // the connection is only used for this copy, so one cancelled part way through is ended by closing it.
+      PgConnection::close)
+      .subscribeOn(Schedulers.io());
+  }
+
   @Override
   public Publisher<Long> copyTo(final String sql, final ByteSource source) {
     throw new IllegalArgumentException();
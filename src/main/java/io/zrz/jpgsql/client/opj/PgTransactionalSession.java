@@ -217,12 +217,12 @@ class PgTransactionalSession implements TransactionalSession, Runnable {
   public void run() {
     log.trace("running query");
     try {
-      this.run(PgConnectionThread.connection());
+      this.run(PgConnectionHandle.current().connection());
     } catch (final SQLException ex) {
       // Any propagated SQLException results in the connection being closed.
       log.warn("connection failed: {}", ex.getMessage(), ex);
       this.accepting = false;
-      PgConnectionThread.close();
+      PgConnectionHandle.current().close();
       this.txnstate.onError(new PostgresqlUnavailableException(ex));
     } catch (final Exception ex) {
       log.warn("connection failed: {}", ex.getMessage(), ex);
@@ -0,0 +1,70 @@
+package io.zrz.jpgsql.client.opj;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+import org.postgresql.Driver;
+
+/**
+ * creates virtual threads when running on JDK 21 or later, with a pgjdbc which lets them park. the client is built for
+ * Java 8, so the API is looked up reflectively.
+ *
+ * before 42.6.0, pgjdbc's query executor is synchronized for the whole of a query's socket I/O, so a virtual thread
+ * running one pins its carrier thread throughout: it would just be a platform thread with extra steps. there is also
+ * still one worker per connection, capped at maxPoolSize, so virtual threads only ever make waiting on the server
+ * cheaper, and don't allow any more sessions.
+ */
+final class VirtualThreads {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(VirtualThreads.class);
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * why virtual threads won't be used, or null if they will.
+   */
+  static String unavailable() {
+    // the Driver reports the version it was built as, rather than one inlined here at compile time.
+    final Driver driver = new Driver();
+    if ((driver.getMajorVersion() < 42) || ((driver.getMajorVersion() == 42) && (driver.getMinorVersion() < 6))) {
+      return "pgjdbc " + driver.getMajorVersion() + "." + driver.getMinorVersion() + " holds a monitor for all of a query's I/O, which pins the carrier thread (fixed in 42.6.0)";
+    }
+    if (builder() == null) {
+      return "this JVM doesn't support them";
+    }
+    return null;
+  }
+
+  /**
+   * a factory for virtual threads, or null if they won't be used.
+   */
+  static ThreadFactory factory() {
+    if (unavailable() != null) {
+      return null;
+    }
+    try {
+      // Thread.ofVirtual().factory()
+      final Method factory = builder().getMethod("factory");
+      return (ThreadFactory) factory.invoke(Thread.class.getMethod("ofVirtual").invoke(null));
+    }
+    catch (final ReflectiveOperationException | RuntimeException ex) {
+      log.debug("virtual threads unavailable: {}", ex.toString());
+      return null;
+    }
+  }
+
+  /**
+   * Thread.Builder, if there is one.
+   */
+  private static Class<?> builder() {
+    try {
+      Thread.class.getMethod("ofVirtual");
+      return Class.forName("java.lang.Thread$Builder");
+    }
+    catch (final ReflectiveOperationException | RuntimeException ex) {
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,90 @@
+package io.zrz.jpgsql.proto.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * a connection being taken from a {@link PgPool}, which queries can be given before it has been acquired.
+ *
+ * those given it while it is still being acquired get it in the order they asked, so their queries are sent in that
+ * order, where a CompletableFuture would run its dependents most recent first.
+ */
+final class PgAcquiredConnection {
+
+  private final CompletableFuture<PgConnection> conn;
+  private List<CompletableFuture<PgConnection>> waiting = new ArrayList<>();
+  private volatile long lastUsed = System.nanoTime();
+
+  PgAcquiredConnection(final CompletableFuture<PgConnection> conn) {
+    this.conn = conn;
+    conn.whenComplete((c, ex) -> {
+      synchronized (this) {
+        for (final CompletableFuture<PgConnection> waiter : this.waiting) {
+          if (ex == null) {
+            waiter.complete(c);
+          }
+          else {
+            waiter.completeExceptionally(ex);
+          }
+        }
+        this.waiting = null;
+      }
+    });
+  }
+
+  /**
+   * the connection, for the next query to be sent on.
+   */
+  synchronized CompletableFuture<PgConnection> next() {
+    this.lastUsed = System.nanoTime();
+    if (this.waiting == null) {
+      return this.conn;
+    }
+    final CompletableFuture<PgConnection> waiter = new CompletableFuture<>();
+    this.waiting.add(waiter);
+    return waiter;
+  }
+
+  /**
+   * System.nanoTime() when the connection was last given to a query.
+   */
+  long lastUsed() {
+    return this.lastUsed;
+  }
+
+  /**
+   * the connection if it has been acquired, otherwise null.
+   */
+  PgConnection getNow() {
+    return this.conn.getNow(null);
+  }
+
+  /**
+   * the connection once acquired, waiting for it if need be.
+   */
+  PgConnection get() {
+    return this.conn.join();
+  }
+
+  /**
+   * the open connection, or null if it is still being acquired or has gone.
+   */
+  PgConnection active() {
+    final PgConnection conn = this.getNow();
+    return ((conn != null) && conn.isActive()) ? conn
+                                               : null;
+  }
+
+  boolean failed() {
+    return this.conn.isCompletedExceptionally();
+  }
+
+  /**
+   * failed to be acquired, or closed since.
+   */
+  boolean gone() {
+    return this.failed() || (this.conn.isDone() && !this.conn.join().isActive());
+  }
+
+}
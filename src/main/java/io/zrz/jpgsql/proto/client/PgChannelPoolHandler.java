@@ -1,22 +1,58 @@
 package io.zrz.jpgsql.proto.client;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import io.netty.channel.Channel;
 import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.util.AttributeKey;
 
+/**
+ * runs a {@link PgConnection} over each channel a {@link PgPool} creates, and notes when each goes back in the pool so
+ * the ones which have been idle for a while can be checked before being handed out again.
+ */
 public class PgChannelPoolHandler extends AbstractChannelPoolHandler {
 
+  static final AttributeKey<PgConnection> CONNECTION = AttributeKey.valueOf(PgChannelPoolHandler.class, "connection");
+
+  // System.nanoTime() when the channel was released, or null while it is acquired.
+  static final AttributeKey<Long> IDLE_SINCE = AttributeKey.valueOf(PgChannelPoolHandler.class, "idleSince");
+
+  private final PgConnectionBuilder builder;
+  private final Set<PgConnection> connections = ConcurrentHashMap.newKeySet();
+
+  PgChannelPoolHandler(final PgConnectionBuilder builder) {
+    this.builder = builder;
+  }
+
+  static PgConnection connection(final Channel ch) {
+    return ch.attr(CONNECTION).get();
+  }
+
+  /**
+   * the connections which are open, or being opened, whether idle or acquired.
+   */
+  Set<PgConnection> connections() {
+    return this.connections;
+  }
+
   @Override
-  public void channelReleased(Channel ch) throws Exception {
-    super.channelReleased(ch);
+  public void channelReleased(final Channel ch) throws Exception {
+    ch.attr(IDLE_SINCE).set(System.nanoTime());
   }
 
   @Override
-  public void channelAcquired(Channel ch) throws Exception {
-    super.channelAcquired(ch);
+  public void channelAcquired(final Channel ch) throws Exception {
+    ch.attr(IDLE_SINCE).set(null);
   }
 
   @Override
-  public void channelCreated(Channel ch) throws Exception {
+  public void channelCreated(final Channel ch) throws Exception {
+    final PgConnection conn = new PgConnection(this.builder);
+    conn.attach(ch);
+    ch.attr(CONNECTION).set(conn);
+    this.connections.add(conn);
+    ch.closeFuture().addListener(f -> this.connections.remove(conn));
   }
 
 }
@@ -2,8 +2,15 @@
 package io.zrz.jpgsql.proto.client;
 
 import java.security.KeyStore;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
@@ -12,39 +19,57 @@ import javax.net.ssl.SSLEngine;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 
+import org.reactivestreams.Publisher;
+
+import com.google.common.cache.CacheStats;
+
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
 import io.netty.util.concurrent.ScheduledFuture;
+import io.reactivex.rxjava3.core.BackpressureStrategy;
+import io.reactivex.rxjava3.core.Flowable;
 import io.zrz.jpgsql.InternalUtils;
+import io.zrz.jpgsql.client.PostgresqlUnavailableException;
+import io.zrz.jpgsql.client.Query;
+import io.zrz.jpgsql.client.QueryOptions;
+import io.zrz.jpgsql.client.QueryParameters;
+import io.zrz.jpgsql.client.QueryResult;
+import io.zrz.jpgsql.client.RowBuffer;
 import io.zrz.jpgsql.proto.AbstractConnection;
+import io.zrz.jpgsql.proto.netty.PgSocketOptions;
 import io.zrz.jpgsql.proto.netty.handler.PostgreSQLClientNegotiation;
 import io.zrz.jpgsql.proto.netty.handler.PostgreSQLClientTlsNegotiation;
+import io.zrz.jpgsql.proto.netty.handler.PostgreSQLEncoder;
 import io.zrz.jpgsql.proto.netty.handler.PostgreSQLHandshakeCompleteEvent;
-import io.zrz.jpgsql.proto.wire.Bind;
-import io.zrz.jpgsql.proto.wire.CommandComplete;
-import io.zrz.jpgsql.proto.wire.CopyData;
-import io.zrz.jpgsql.proto.wire.Execute;
-import io.zrz.jpgsql.proto.wire.Parse;
+import io.zrz.jpgsql.proto.wire.BackendKeyData;
+import io.zrz.jpgsql.proto.wire.CancelRequest;
+import io.zrz.jpgsql.proto.wire.ParameterStatus;
 import io.zrz.jpgsql.proto.wire.PostgreSQLPacket;
-import io.zrz.jpgsql.proto.wire.Sync;
+import io.zrz.jpgsql.proto.wire.ReadyForQuery;
+import io.zrz.jpgsql.proto.wire.Terminate;
+import io.zrz.jpgsql.proto.wire.TransactionStatus;
 
 /**
  * A single TCP connection to a postgresql backend.
  *
- * The connection handles some basic state needed for protocol synchronization, but doesn't include any logic for
- * quering, etc.
+ * queries are submitted from any thread, and run one after another in the order submitted. up to the pipeline depth
+ * of them are written back to back without waiting for the responses to the earlier ones, each ending in its own Sync,
+ * and the responses are matched to them in the same order. everything else happens on the channel's event loop, so no
+ * thread is tied up waiting on the server: a small event loop group can multiplex any number of connections.
  *
- * the external API takes commands from a flowable, and emits the results on a seperate flowable.
+ * results are emitted on the event loop, so subscribers should not block.
  *
  * @author theo
  */
@@ -52,14 +77,40 @@ public class PgConnection extends AbstractConnection {
   @java.lang.SuppressWarnings("all")
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PgConnection.class);
   private static final String DEFAULT_USERNAME = System.getProperty("user.name", "postgres");
+  // how long to wait for the server to close the connection a CancelRequest was sent on.
+  private static final long CANCEL_TIMEOUT_MILLIS = 5000;
   private EventLoopGroup group;
   private ChannelFuture connectFuture;
   private HashMap<String, String> params = new HashMap<>();
   private String password;
+  private final int pipelineDepth;
+  private final int copyInWindow;
+  private final int flushThreshold;
+  private final PgSocketOptions socketOptions;
+  private final PgStatementCache statements;
+  private final CompletableFuture<PgConnection> ready = new CompletableFuture<>();
+  // submitted but not yet completed, from any thread.
+  private final AtomicInteger pending = new AtomicInteger();
+  // System.nanoTime() when the last of them completed.
+  private volatile long idleSince = System.nanoTime();
+
+  // the rest is only accessed on the event loop.
+  private final ArrayDeque<PgOperation> queue = new ArrayDeque<>();
+  // written and awaiting their ReadyForQuery. responses arrive strictly in this order.
+  private final ArrayDeque<PgOperation> inflight = new ArrayDeque<>();
+  private boolean established;
+  private Map<String, String> serverParameters = new HashMap<>();
+  private BackendKeyData backend;
+  private TransactionStatus transactionStatus = TransactionStatus.Idle;
 
   PgConnection(final PgConnectionBuilder b) {
     this.group = b.group;
     this.password = b.password;
+    this.pipelineDepth = b.pipelineDepth;
+    this.copyInWindow = b.copyInWindow;
+    this.flushThreshold = b.flushThreshold;
+    this.socketOptions = b.socketOptions;
+    this.statements = new PgStatementCache(b.statementCacheSize);
     if (b.username == null) {
       params.put("user", DEFAULT_USERNAME);
     } else {
@@ -70,148 +121,392 @@ public class PgConnection extends AbstractConnection {
     } else {
       params.put("database", b.database);
     }
+    if (b.applicationName != null) {
+      params.put("application_name", b.applicationName);
+    }
     params.put("client_encoding", "UTF-8");
   }
 
+  /**
+   * completes once the connection is authenticated and ready for queries, or fails if it could not be established.
+   */
+  public CompletableFuture<PgConnection> ready() {
+    return this.ready;
+  }
 
-  private enum HandlerState {
-    Waiting, Identifying, Creating, Starting;
+  /**
+   * true unless the connection has failed or been closed. queries may be submitted before it is established.
+   */
+  public boolean isActive() {
+    return this.connectFuture != null && (!this.connectFuture.isDone() || this.connectFuture.channel().isActive());
   }
 
-  private HandlerState state = HandlerState.Waiting;
+  /**
+   * the number of submitted queries which have not yet completed.
+   */
+  public int pending() {
+    return this.pending.get();
+  }
 
+  /**
+   * how long the connection has had nothing outstanding, or zero while it has.
+   */
+  long idleNanos() {
+    return this.pending.get() > 0 ? 0
+                                  : System.nanoTime() - this.idleSince;
+  }
+
+  private void completed() {
+    if (this.pending.decrementAndGet() == 0) {
+      this.idleSince = System.nanoTime();
+    }
+  }
 
   /**
-   * handler which dispatches events from the netty thread to the user thread.
+   * the ParameterStatus values reported by the server. only valid once {@link #ready()}.
    */
-  private final class Handler extends SimpleChannelInboundHandler<PostgreSQLPacket> {
-    private long outputWrittenLsn;
-    private ChannelHandlerContext ctx;
-    private ScheduledFuture<?> future;
+  public Map<String, String> getServerParameters() {
+    return this.serverParameters;
+  }
 
-    // note that any packets which contain byte buffers are NOT retained after we return, so need to copy if needed.
-    @Override
-    protected void channelRead0(final ChannelHandlerContext ctx, final PostgreSQLPacket msg) throws Exception {
-      log.debug("got message: {}", msg);
-      if (msg instanceof CommandComplete) {
-        if (state != HandlerState.Identifying) {
-          this.nextStage();
-        }
-      } else if (msg instanceof CopyData) {
-        final ByteBuf copydata = ((CopyData) msg).getData();
-        final byte type = copydata.readByte();
-        switch (type) {
-        case 'w': 
-          // data
-          final long startingPoint = copydata.readLong();
-          final long currentEnd = copydata.readLong();
-          final long txtime = copydata.readLong();
-          log.debug("DATA: {}, {}, {}", startingPoint, currentEnd, txtime);
-          break;
-        case 'k': 
-          // keepalive
-          this.processKeepalive(copydata);
-          log.debug("KEEPALIVE");
-          break;
-        default: 
-          log.warn("Unknown type: \'{}\'", type);
-          break;
-        }
-      } else {
-        System.err.println(msg);
+  public BackendKeyData getBackendKeyData() {
+    return this.backend;
+  }
+
+  /**
+   * the transaction status as of the most recently completed query.
+   */
+  public TransactionStatus getTransactionStatus() {
+    return this.transactionStatus;
+  }
+
+  /**
+   * hits and misses of the prepared statement cache, and the number of statements evicted from it.
+   */
+  public CacheStats statementCacheStats() {
+    return this.statements.stats();
+  }
+
+  public Flowable<QueryResult> submit(final Query query, final QueryParameters params) {
+    return submit(query, params, QueryOptions.DEFAULTS);
+  }
+
+  /**
+   * queue the query for execution. nothing is sent until the returned {@link Flowable} is subscribed to.
+   *
+   * when a fetch size is set in the options, the rows are fetched from the portal a page at a time as they are
+   * requested. otherwise they are streamed as fast as the server sends them, batched into {@link RowBuffer}s of up to
+   * 8192 rows.
+   */
+  public Flowable<QueryResult> submit(final Query query, final QueryParameters params, final QueryOptions options) {
+    final Channel channel = this.connectFuture.channel();
+    // each subscription runs the query again, so needs its own demand to resume its own operation.
+    return Flowable.defer(() -> {
+      final PgDemand<QueryResult> demand = new PgDemand<>(channel.eventLoop());
+      final Flowable<QueryResult> res = Flowable.<QueryResult>create(emitter -> {
+        final PgQueryOperation op = new PgQueryOperation(query, params, options, this.statements, emitter);
+        demand.attach(() -> {
+          op.resume();
+          this.next();
+        });
+        this.pending.incrementAndGet();
+        channel.eventLoop().execute(() -> this.enqueue(op));
+      }, BackpressureStrategy.BUFFER);
+      return options.getFetchSize() == 0 ? res
+                                         : res.lift(demand);
+    });
+  }
+
+  /**
+   * queue a batch, which executes the single statement of the query once for each of the parameter sets, parsing it
+   * once and with a single Sync at the end. a {@link io.zrz.jpgsql.client.CommandStatus} is emitted for each.
+   */
+  public Flowable<QueryResult> submitBatch(final Query query, final List<QueryParameters> batch) {
+    final Channel channel = this.connectFuture.channel();
+    return Flowable.<QueryResult>create(emitter -> {
+      final PgQueryOperation op = new PgQueryOperation(query, batch, this.statements, emitter);
+      this.pending.incrementAndGet();
+      channel.eventLoop().execute(() -> this.enqueue(op));
+    }, BackpressureStrategy.BUFFER);
+  }
+
+  /**
+   * queue a {@code COPY ... TO STDOUT}, emitting the raw COPY data as it arrives. the buffers are the decoder's own
+   * (pooled) slices and must be released by the subscriber. they are emitted on the event loop, and only as requested:
+   * any read beyond the demand is held (and released if the subscriber goes away) rather than handed to an operator
+   * which might drop it.
+   *
+   * reading from the socket stops while the subscriber has no outstanding demand, so a slow consumer stalls the server
+   * rather than the data piling up in memory. cancelling sends a CancelRequest, so the server stops the COPY rather than
+   * sending the rest of it. nothing else is sent on the connection until the COPY has ended.
+   */
+  public Flowable<ByteBuf> copyOut(final String sql) {
+    final Channel channel = this.connectFuture.channel();
+    return Flowable.defer(() -> {
+      final PgDemand<ByteBuf> demand = new PgDemand<>(channel.eventLoop());
+      return Flowable.<ByteBuf>create(emitter -> {
+        final PgCopyOutOperation op = new PgCopyOutOperation(sql, emitter, this::cancelRequest);
+        demand.attach(op::resume);
+        this.pending.incrementAndGet();
+        channel.eventLoop().execute(() -> this.enqueue(op));
+      }, BackpressureStrategy.MISSING).lift(demand);
+    });
+  }
+
+  /**
+   * queue a {@code COPY ... FROM STDIN}, writing each buffer from the source as it arrives. the buffers are written to
+   * the socket as they are (so should be pooled direct buffers), and released once flushed. for a binary copy, the
+   * header is written first, so the source starts with the first tuple.
+   *
+   * no more than the copy in window of buffers are requested ahead of the socket. emits the number of rows copied.
+   */
+  public Flowable<Long> copyIn(final String sql, final Publisher<ByteBuf> source) {
+    final Channel channel = this.connectFuture.channel();
+    return Flowable.<Long>create(emitter -> {
+      final PgCopyInOperation op = new PgCopyInOperation(sql, source, this.copyInWindow, emitter, this::next);
+      this.pending.incrementAndGet();
+      channel.eventLoop().execute(() -> this.enqueue(op));
+    }, BackpressureStrategy.BUFFER);
+  }
+
+  /**
+   * a Sync on its own, which the server answers with just a ReadyForQuery: the cheapest round trip there is, to check
+   * that the connection is still alive. completes with the transaction status.
+   */
+  public CompletableFuture<TransactionStatus> sync() {
+    final Channel channel = this.connectFuture.channel();
+    final PgSyncOperation op = new PgSyncOperation();
+    this.pending.incrementAndGet();
+    channel.eventLoop().execute(() -> this.enqueue(op));
+    return op.result();
+  }
+
+  /**
+   * a {@link #sync()} which fails with a {@link TimeoutException} if the server hasn't answered within the timeout, in
+   * which case the connection is closed: a server which stopped answering might not read a Terminate either.
+   */
+  public CompletableFuture<TransactionStatus> sync(final Duration timeout) {
+    final Channel channel = this.connectFuture.channel();
+    final CompletableFuture<TransactionStatus> res = this.sync();
+    final ScheduledFuture<?> timer = channel.eventLoop().schedule(() -> {
+      if (res.completeExceptionally(new TimeoutException("no response to Sync within " + timeout.toMillis() + "ms"))) {
+        channel.close();
       }
+    }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+    res.whenComplete((status, ex) -> timer.cancel(false));
+    return res;
+  }
+
+  private void enqueue(final PgOperation op) {
+    if (this.ready.isCompletedExceptionally() || (this.connectFuture.isDone() && !this.connectFuture.channel().isActive())) {
+      this.failed(op, new PostgresqlUnavailableException("connection closed"));
+      return;
     }
+    this.queue.add(op);
+    this.next();
+  }
 
-    /**
-     * The previous command completed, do the next thing.
-     */
-    private void nextStage() {
-      log.debug("Executing next stage in {}", state);
-      switch (state) {
-      case Waiting: 
-        state = HandlerState.Identifying;
-        sendIdentify();
-        break;
-      case Identifying: 
-      case Creating: 
-        state = HandlerState.Starting;
-        // sendStart();
-        break;
-      case Starting: 
-        // hmmp, that's odd...
-        throw new RuntimeException("Unexpected next stage for state");
+  /**
+   * write as many queued queries as the pipeline allows. a query which hasn't written its Sync yet (because it is
+   * paging through a portal), or a COPY which hasn't ended, holds back everything behind it.
+   */
+  private void next() {
+    if (!this.established) {
+      return;
+    }
+    boolean written = false;
+    while (!this.queue.isEmpty()
+      && (this.inflight.size() < this.pipelineDepth)
+      && (this.inflight.isEmpty() || this.inflight.peekLast().isSynced())) {
+      final PgOperation op = this.queue.poll();
+      log.trace("executing {}", op);
+      this.inflight.add(op);
+      try {
+        op.start(this.connectFuture.channel());
+      }
+      catch (final RuntimeException ex) {
+        // whatever it wrote can't be taken back, and it would never see a ReadyForQuery: give up on the connection
+        // rather than leave everything behind it waiting.
+        log.warn("failed to write {}: {}", op, ex.toString(), ex);
+        this.inflight.pollLast();
+        this.failed(op, ex);
+        this.connectFuture.channel().close();
+        return;
       }
+      written = true;
     }
+    if (written) {
+      this.connectFuture.channel().flush();
+    }
+  }
+
+  private void failed(final PgOperation op, final Throwable cause) {
+    this.completed();
+    op.fail(cause);
+  }
 
-    void sendIdentify() {
-      ctx.write(new Parse("test", "SELECT NOW()"));
-      ctx.write(new Bind("target", "test"));
-      ctx.write(new Execute("target", 0));
-      ctx.write(new Execute("target", 0));
-      ctx.write(new Execute("target", 0));
-      ctx.writeAndFlush(new Sync());
+  /**
+   * fail everything outstanding, once the connection has gone.
+   */
+  private void failAll(final Throwable cause) {
+    this.ready.completeExceptionally(cause);
+    while (!this.inflight.isEmpty()) {
+      this.failed(this.inflight.poll(), cause);
+    }
+    while (!this.queue.isEmpty()) {
+      this.failed(this.queue.poll(), cause);
     }
+  }
 
-    private void processKeepalive(final ByteBuf ptr) {
-      final long currentEnd = ptr.readLong();
-      final long serverTimeMicros = ptr.readLong();
-      this.outputWrittenLsn = currentEnd;
-      final byte reply = ptr.readByte();
-      log.info(String.format("Current Time: %s, Server Time: %s, Reply? %s", Long.toHexString(currentEnd), Long.toString(serverTimeMicros), Boolean.toString(reply != 0)));
-      if (reply == 1) {
-        this.sendKeepalive();
-      }
+  /**
+   * ask the server to cancel whatever this connection is running, by sending a CancelRequest with its key over a new
+   * connection. the statement then fails with 57014, and the connection carries on with the next.
+   *
+   * completes on the event loop once the server has closed the connection the request was sent on, which it does after
+   * passing the request on to the backend, or after the cancel timeout if it doesn't.
+   */
+  Future<Void> cancelRequest() {
+    final BackendKeyData key = this.backend;
+    final Channel channel = this.connectFuture.channel();
+    final Promise<Void> sent = channel.eventLoop().newPromise();
+    if ((key == null) || !channel.isActive()) {
+      return sent.setFailure(new PostgresqlUnavailableException("connection closed"));
     }
+    this.socketOptions.bootstrap(this.group)
+      .handler(new PostgreSQLEncoder())
+      .connect(channel.remoteAddress())
+      .addListener((ChannelFutureListener) f -> {
+        if (!f.isSuccess()) {
+          sent.tryFailure(f.cause());
+          return;
+        }
+        f.channel().writeAndFlush(new CancelRequest(key.getProcessId(), key.getSecret())).addListener((ChannelFutureListener) w -> {
+          if (!w.isSuccess()) {
+            w.channel().close();
+            sent.tryFailure(w.cause());
+            return;
+          }
+          final ScheduledFuture<?> timer = w.channel().eventLoop().schedule(() -> w.channel().close(), CANCEL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+          w.channel().closeFuture().addListener(c -> {
+            timer.cancel(false);
+            sent.trySuccess(null);
+          });
+        });
+      });
+    return sent;
+  }
 
-    /**
-     * While in CopyBoth mode, we need to send periodic keepalives.
-     */
-    private void sendKeepalive() {
-      final long position = this.outputWrittenLsn;
-      log.debug("Sending Keepalive position={}", Long.toHexString(position));
-      // send feedback
-      final ByteBuf xkp = this.ctx.alloc().buffer();
-      xkp.writeByte('r');
-      xkp.writeLong(position);
-      xkp.writeLong(position);
-      xkp.writeLong(0);
-      xkp.writeLong(System.currentTimeMillis() * 1000); // micros since epoch
-      xkp.writeByte(0);
-      final ByteBuf xcd = this.ctx.alloc().buffer();
-      xcd.writeByte('d');
-      xcd.writeInt(xkp.readableBytes() + 4);
-      xcd.writeBytes(xkp);
-      ctx.writeAndFlush(xcd);
+  /**
+   * sends a Terminate and closes the connection. anything outstanding fails.
+   */
+  public void close() {
+    final Channel channel = this.connectFuture.channel();
+    channel.eventLoop().execute(() -> {
+      if (channel.isActive() && this.established) {
+        channel.writeAndFlush(new Terminate()).addListener(ChannelFutureListener.CLOSE);
+      }
+      else {
+        channel.close();
+      }
+    });
+  }
+
+  /**
+   * dispatches messages from the backend to the oldest query in flight.
+   */
+  private final class Handler extends SimpleChannelInboundHandler<PostgreSQLPacket> {
+
+    // note that any packets which contain byte buffers are NOT retained after we return, so need to copy if needed.
+    @Override
+    protected void channelRead0(final ChannelHandlerContext ctx, final PostgreSQLPacket msg) throws Exception {
+      if (msg instanceof ParameterStatus) {
+        serverParameters.put(((ParameterStatus) msg).getKey(), ((ParameterStatus) msg).getValue());
+        return;
+      }
+      final PgOperation head = inflight.peek();
+      if (head == null) {
+        log.warn("unexpected message while idle: {}", msg);
+        return;
+      }
+      if (msg instanceof ReadyForQuery) {
+        transactionStatus = ((ReadyForQuery) msg).getStatus();
+      }
+      final boolean synced = head.isSynced();
+      if (head.handle(msg)) {
+        inflight.poll();
+        completed();
+        next();
+      }
+      else if (!synced && head.isSynced()) {
+        // a paged query finished sending, so the next can go behind it.
+        next();
+      }
     }
 
     @Override
     public void userEventTriggered(final ChannelHandlerContext ctx, final Object evt) throws Exception {
       if (evt instanceof PostgreSQLHandshakeCompleteEvent) {
-        this.ctx = ctx;
         // no need to leave it laying around.
         ctx.channel().pipeline().remove(PostgreSQLClientNegotiation.class);
-        nextStage();
+        final PostgreSQLHandshakeCompleteEvent e = (PostgreSQLHandshakeCompleteEvent) evt;
+        serverParameters.putAll(e.getParameters());
+        backend = e.getBackendKey();
+        established = true;
+        log.debug("connection established");
+        ready.complete(PgConnection.this);
+        next();
+        return;
       }
+      super.userEventTriggered(ctx, evt);
     }
 
     @Override
-    public void channelActive(final ChannelHandlerContext ctx) throws Exception {
-      this.future = ctx.executor().scheduleWithFixedDelay(this::sendKeepalive, 5, 5, TimeUnit.SECONDS);
-      super.channelActive(ctx);
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+      failAll(new PostgresqlUnavailableException("connection closed"));
+      super.channelInactive(ctx);
     }
 
     @Override
-    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
-      if (this.future != null) {
-        this.future.cancel(true);
-      }
-      super.channelInactive(ctx);
+    public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) throws Exception {
+      log.warn("connection error: {}", cause.getMessage(), cause);
+      failAll(cause instanceof PostgresqlUnavailableException ? cause
+                                                             : new PostgresqlUnavailableException(cause));
+      ctx.close();
     }
   }
 
   void connect(final String host, final int port) {
+    final Bootstrap b = this.socketOptions.bootstrap(this.group);
+    b.handler(new ChannelInitializer<SocketChannel>() {
+      @Override
+      public void initChannel(final SocketChannel ch) throws Exception {
+        PgConnection.this.init(ch);
+      }
+    });
+    // attempt to connect.
+    this.connectFuture = b.connect(host, port);
+    this.connectFuture.addListener((ChannelFutureListener) f -> {
+      if (!f.isSuccess()) {
+        this.ready.completeExceptionally(new PostgresqlUnavailableException(f.cause()));
+      }
+    });
+  }
+
+  /**
+   * run the connection over a channel which has been created but not yet connected, by a {@link PgPool}. the pool
+   * connects it, and fails the attempt itself if that doesn't work.
+   */
+  void attach(final Channel ch) {
+    this.connectFuture = ch.newSucceededFuture();
+    this.init(ch);
+  }
+
+  Channel channel() {
+    return this.connectFuture.channel();
+  }
+
+  private void init(final Channel ch) {
     try {
-      final Bootstrap b = new Bootstrap();
       final TrustManagerFactory tmFactory = InsecureTrustManagerFactory.INSTANCE;
       // TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
       final KeyStore tmpKS = null;
@@ -230,15 +525,8 @@ public class PgConnection extends AbstractConnection {
       sslEngine.setEnabledProtocols(sslEngine.getSupportedProtocols());
       sslEngine.setEnabledCipherSuites(sslEngine.getSupportedCipherSuites());
       sslEngine.setEnableSessionCreation(true);
-      b.group(group).channel(NioSocketChannel.class).option(ChannelOption.TCP_NODELAY, true).handler(new ChannelInitializer<SocketChannel>() {
-        @Override
-        public void initChannel(final SocketChannel ch) throws Exception {
-          final ChannelPipeline p = ch.pipeline();
-          p.addLast(new PostgreSQLClientTlsNegotiation(sslEngine, PgConnection.this.params, new Handler(), password));
-        }
-      });
-      // attempt to connect.
-      this.connectFuture = b.connect(host, port);
+      final ChannelPipeline p = ch.pipeline();
+      p.addLast(new PostgreSQLClientTlsNegotiation(sslEngine, this.params, new Handler(), this.password, this.flushThreshold));
     } catch (final java.lang.Throwable $ex) {
       throw InternalUtils.sneakyThrow($ex);
     }
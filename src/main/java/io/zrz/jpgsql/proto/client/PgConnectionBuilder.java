@@ -1,22 +1,41 @@
 package io.zrz.jpgsql.proto.client;
 
+import com.google.common.base.Preconditions;
+
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.zrz.jpgsql.proto.netty.PgSocketOptions;
+import io.zrz.jpgsql.proto.netty.PgTransport;
+import io.zrz.jpgsql.proto.netty.handler.PostgreSQLEncoder;
 
 public class PgConnectionBuilder {
 
-  private static final EventLoopGroup DEFAULT_EVENT_LOOP_GROUP = new NioEventLoopGroup();
+  private static final EventLoopGroup DEFAULT_EVENT_LOOP_GROUP = PgTransport.auto().newEventLoopGroup(0);
 
   EventLoopGroup group = DEFAULT_EVENT_LOOP_GROUP;
   String username;
   String database;
   String password;
+  String applicationName;
+  int pipelineDepth = 16;
+  int statementCacheSize = 256;
+  int copyInWindow = 16;
+  int flushThreshold = PostgreSQLEncoder.FLUSH_IMMEDIATE;
+  PgSocketOptions socketOptions = new PgSocketOptions();
 
   public PgConnectionBuilder group(EventLoopGroup group) {
     this.group = group;
     return this;
   }
 
+  /**
+   * options for the socket, including the epoll specific ones. the transport is that of the group, which by default is
+   * epoll where available.
+   */
+  public PgConnectionBuilder socketOptions(PgSocketOptions socketOptions) {
+    this.socketOptions = socketOptions;
+    return this;
+  }
+
   public PgConnectionBuilder username(String username) {
     this.username = username;
     return this;
@@ -32,6 +51,49 @@ public class PgConnectionBuilder {
     return this;
   }
 
+  public PgConnectionBuilder applicationName(String applicationName) {
+    this.applicationName = applicationName;
+    return this;
+  }
+
+  /**
+   * how many queries may be written before the responses to the earlier ones arrive. 1 disables pipelining.
+   */
+  public PgConnectionBuilder pipelineDepth(int pipelineDepth) {
+    Preconditions.checkArgument(pipelineDepth > 0, "pipelineDepth must be positive");
+    this.pipelineDepth = pipelineDepth;
+    return this;
+  }
+
+  /**
+   * how many named prepared statements to keep on the server. 0 parses every statement again.
+   */
+  public PgConnectionBuilder statementCacheSize(int statementCacheSize) {
+    Preconditions.checkArgument(statementCacheSize >= 0, "statementCacheSize must not be negative");
+    this.statementCacheSize = statementCacheSize;
+    return this;
+  }
+
+  /**
+   * how many buffers of a COPY FROM STDIN may be waiting to be flushed to the socket.
+   */
+  public PgConnectionBuilder copyInWindow(int copyInWindow) {
+    Preconditions.checkArgument(copyInWindow > 0, "copyInWindow must be positive");
+    this.copyInWindow = copyInWindow;
+    return this;
+  }
+
+  /**
+   * when a flush reaches the socket: {@link PostgreSQLEncoder#FLUSH_IMMEDIATE} sends each straight away,
+   * {@link PostgreSQLEncoder#FLUSH_EVENT_LOOP} defers them to the end of the event loop's current task, and anything in
+   * between defers them until that many bytes are waiting.
+   */
+  public PgConnectionBuilder flushThreshold(int flushThreshold) {
+    Preconditions.checkArgument(flushThreshold >= 0, "flushThreshold must not be negative");
+    this.flushThreshold = flushThreshold;
+    return this;
+  }
+
   public PgConnection newConnection(String host, int port) {
     PgConnection conn = new PgConnection(this);
     conn.connect(host, port);
@@ -0,0 +1,257 @@
+package io.zrz.jpgsql.proto.client;
+
+import org.postgresql.util.ServerErrorMessage;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.reactivex.rxjava3.core.FlowableEmitter;
+import io.reactivex.rxjava3.core.FlowableSubscriber;
+import io.zrz.jpgsql.client.ErrorResult;
+import io.zrz.jpgsql.client.SimpleQuery;
+import io.zrz.jpgsql.client.opj.PgThreadPooledClient;
+import io.zrz.jpgsql.proto.wire.CommandComplete;
+import io.zrz.jpgsql.proto.wire.CopyBothResponse.Format;
+import io.zrz.jpgsql.proto.wire.CopyData;
+import io.zrz.jpgsql.proto.wire.CopyDone;
+import io.zrz.jpgsql.proto.wire.CopyFail;
+import io.zrz.jpgsql.proto.wire.CopyInResponse;
+import io.zrz.jpgsql.proto.wire.CopyOutResponse;
+import io.zrz.jpgsql.proto.wire.ErrorResponse;
+import io.zrz.jpgsql.proto.wire.PostgreSQLPacket;
+import io.zrz.jpgsql.proto.wire.Query;
+import io.zrz.jpgsql.proto.wire.ReadyForQuery;
+
+/**
+ * a {@code COPY ... FROM STDIN} on a {@link PgConnection}, sent as a simple query. once the server is ready for the
+ * data, each buffer from the source is written to the socket as the payload of a CopyData message, behind a 5 byte
+ * header: it is never copied, and is released by the transport once written.
+ *
+ * no more than the window of buffers are requested from the source ahead of those that have been flushed, so the
+ * source is held back by the socket rather than queueing up in memory.
+ *
+ * nothing else can be written to the connection until the copy has ended, so the pipeline is held behind it.
+ *
+ * only accessed on the channel's event loop.
+ */
+final class PgCopyInOperation implements PgOperation {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PgCopyInOperation.class);
+
+  private final String sql;
+  private final Publisher<ByteBuf> source;
+  private final int window;
+  private final FlowableEmitter<Long> emitter;
+  private final Runnable synced;
+
+  private Channel channel;
+  private Subscription upstream;
+  private boolean copying;
+  // CopyDone or CopyFail has been written, or the server didn't start a copy. the next query can go behind it.
+  private boolean done;
+  private boolean cancelled;
+  private long rows = -1;
+  private Throwable error;
+
+  /**
+   * @param synced
+   *          called once the copy ends because the source completed, so the connection can write what's queued behind
+   *          it.
+   */
+  PgCopyInOperation(final String sql, final Publisher<ByteBuf> source, final int window, final FlowableEmitter<Long> emitter, final Runnable synced) {
+    this.sql = sql;
+    this.source = source;
+    this.window = window;
+    this.emitter = emitter;
+    this.synced = synced;
+  }
+
+  @Override
+  public void start(final Channel channel) {
+    this.channel = channel;
+    this.emitter.setCancellable(() -> channel.eventLoop().execute(this::cancel));
+    channel.write(new Query(this.sql));
+  }
+
+  @Override
+  public boolean isSynced() {
+    return this.done;
+  }
+
+  @Override
+  public void resume() {
+  }
+
+  @Override
+  public boolean handle(final PostgreSQLPacket msg) {
+
+    if (msg instanceof CopyInResponse) {
+      this.copying = true;
+      if (this.cancelled) {
+        this.end(new CopyFail("COPY cancelled"));
+        return false;
+      }
+      if (((CopyInResponse) msg).getFormat() == Format.Binary) {
+        this.channel.write(this.data(Unpooled.wrappedBuffer(PgThreadPooledClient.BINARY_PREAMBLE)));
+      }
+      this.source.subscribe(new Source());
+    }
+    else if (msg instanceof CommandComplete) {
+      final String tag = ((CommandComplete) msg).getCommandTag();
+      if (this.copying && tag.startsWith("COPY ")) {
+        this.rows = Long.parseLong(tag.substring(5).trim());
+      }
+      else if (this.error == null) {
+        this.error = new IllegalArgumentException("not a COPY ... FROM STDIN: " + this.sql);
+      }
+      this.done = true;
+    }
+    else if (msg instanceof ErrorResponse) {
+      // the server has left copy mode, and ignores any CopyData still on its way.
+      this.stop();
+      // if the source failed, the server is just reporting our CopyFail.
+      if (this.error == null) {
+        final ServerErrorMessage err = PgQueryOperation.message(((ErrorResponse) msg).getMessages());
+        this.error = new ErrorResult(new SimpleQuery(this.sql), 0, err.getMessage(), err.getSQLState(), err, null);
+      }
+      this.done = true;
+    }
+    else if (msg instanceof CopyOutResponse) {
+      this.error = new IllegalArgumentException("not a COPY ... FROM STDIN: " + this.sql);
+      this.done = true;
+    }
+    else if (msg instanceof CopyData) {
+      ((CopyData) msg).getData().release();
+    }
+    else if (msg instanceof ReadyForQuery) {
+      this.stop();
+      this.done = true;
+      if (this.error != null) {
+        this.emitter.onError(this.error);
+      }
+      else {
+        this.emitter.onNext(this.rows);
+        this.emitter.onComplete();
+      }
+      return true;
+    }
+
+    return false;
+
+  }
+
+  /**
+   * a CopyData holding the buffer, which the message takes ownership of.
+   */
+  private ByteBuf data(final ByteBuf payload) {
+    final ByteBuf header = this.channel.alloc().ioBuffer(5);
+    header.writeByte('d');
+    header.writeInt(4 + payload.readableBytes());
+    return this.channel.alloc().compositeDirectBuffer(2).addComponents(true, header, payload);
+  }
+
+  private void stop() {
+    if (this.upstream != null) {
+      this.upstream.cancel();
+      this.upstream = null;
+    }
+  }
+
+  /**
+   * writes the message which ends the copy.
+   */
+  private void end(final PostgreSQLPacket msg) {
+    this.stop();
+    this.done = true;
+    this.channel.writeAndFlush(msg);
+    this.synced.run();
+  }
+
+  private void cancel() {
+    if (this.done) {
+      return;
+    }
+    this.cancelled = true;
+    if (this.copying) {
+      this.end(new CopyFail("COPY cancelled"));
+    }
+  }
+
+  @Override
+  public void fail(final Throwable cause) {
+    this.stop();
+    this.emitter.onError(cause);
+  }
+
+  @Override
+  public String toString() {
+    return "COPY IN " + this.sql;
+  }
+
+  /**
+   * receives the data, moving each signal onto the event loop.
+   */
+  private final class Source implements FlowableSubscriber<ByteBuf> {
+
+    private Subscription subscription;
+
+    @Override
+    public void onSubscribe(final Subscription s) {
+      this.subscription = s;
+      PgCopyInOperation.this.channel.eventLoop().execute(() -> {
+        if (PgCopyInOperation.this.done) {
+          s.cancel();
+          return;
+        }
+        PgCopyInOperation.this.upstream = s;
+        s.request(PgCopyInOperation.this.window);
+      });
+    }
+
+    @Override
+    public void onNext(final ByteBuf buf) {
+      PgCopyInOperation.this.channel.eventLoop().execute(() -> {
+        final PgCopyInOperation op = PgCopyInOperation.this;
+        if (op.done) {
+          buf.release();
+          return;
+        }
+        op.channel.writeAndFlush(op.data(buf)).addListener(f -> {
+          if (f.isSuccess() && !op.done) {
+            this.subscription.request(1);
+          }
+        });
+      });
+    }
+
+    @Override
+    public void onError(final Throwable t) {
+      PgCopyInOperation.this.channel.eventLoop().execute(() -> {
+        final PgCopyInOperation op = PgCopyInOperation.this;
+        if (op.done) {
+          return;
+        }
+        log.warn("COPY source failed: {}", t.toString());
+        op.error = t;
+        op.upstream = null;
+        op.end(new CopyFail(String.valueOf(t.getMessage())));
+      });
+    }
+
+    @Override
+    public void onComplete() {
+      PgCopyInOperation.this.channel.eventLoop().execute(() -> {
+        final PgCopyInOperation op = PgCopyInOperation.this;
+        if (op.done) {
+          return;
+        }
+        op.upstream = null;
+        op.end(new CopyDone());
+      });
+    }
+
+  }
+
+}
@@ -0,0 +1,237 @@
+package io.zrz.jpgsql.proto.client;
+
+import java.util.ArrayDeque;
+import java.util.function.Supplier;
+
+import org.postgresql.util.ServerErrorMessage;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.Future;
+import io.reactivex.rxjava3.core.FlowableEmitter;
+import io.zrz.jpgsql.client.ErrorResult;
+import io.zrz.jpgsql.client.SimpleQuery;
+import io.zrz.jpgsql.proto.wire.CommandComplete;
+import io.zrz.jpgsql.proto.wire.CopyData;
+import io.zrz.jpgsql.proto.wire.CopyDone;
+import io.zrz.jpgsql.proto.wire.CopyFail;
+import io.zrz.jpgsql.proto.wire.CopyInResponse;
+import io.zrz.jpgsql.proto.wire.CopyOutResponse;
+import io.zrz.jpgsql.proto.wire.ErrorResponse;
+import io.zrz.jpgsql.proto.wire.NoticeResponse;
+import io.zrz.jpgsql.proto.wire.PostgreSQLPacket;
+import io.zrz.jpgsql.proto.wire.Query;
+import io.zrz.jpgsql.proto.wire.ReadyForQuery;
+
+/**
+ * a {@code COPY ... TO STDOUT} on a {@link PgConnection}, sent as a simple query, with each CopyData payload passed to
+ * the subscriber as it is.
+ *
+ * once the subscriber has no outstanding demand, auto read is turned off on the channel so nothing more is read from
+ * the socket until it requests more: the server then blocks on a full socket buffer rather than the data queueing up
+ * here. whatever the decoder already has buffered is held here until it is requested, so at most one read's worth is
+ * kept beyond the demand.
+ *
+ * if the subscriber cancels, what is held is released, and a CancelRequest stops the server sending the rest. reading
+ * stays off until the server has taken the request, and then resumes to discard whatever was already on its way, up to
+ * the error ending the COPY. as the server may have finished the COPY before the request arrives, the next query isn't
+ * sent until this one's ReadyForQuery has been read, so the request can't cancel that instead.
+ *
+ * only accessed on the channel's event loop.
+ */
+final class PgCopyOutOperation implements PgOperation {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PgCopyOutOperation.class);
+
+  private final String sql;
+  private final FlowableEmitter<ByteBuf> emitter;
+  private final Supplier<Future<Void>> cancel;
+  // read, but not yet requested.
+  private final ArrayDeque<ByteBuf> held = new ArrayDeque<>();
+
+  private Channel channel;
+  private boolean copying;
+  private boolean paused;
+  private boolean cancelled;
+  // a CancelRequest is being sent.
+  private boolean cancelling;
+  private boolean done;
+  private boolean terminated;
+  private Throwable error;
+
+  PgCopyOutOperation(final String sql, final FlowableEmitter<ByteBuf> emitter, final Supplier<Future<Void>> cancel) {
+    this.sql = sql;
+    this.emitter = emitter;
+    this.cancel = cancel;
+  }
+
+  @Override
+  public void start(final Channel channel) {
+    this.channel = channel;
+    channel.write(new Query(this.sql));
+  }
+
+  /**
+   * nothing is pipelined behind a COPY: a CancelRequest for it could otherwise reach the server once it has moved on,
+   * and cancel the next query instead.
+   */
+  @Override
+  public boolean isSynced() {
+    return false;
+  }
+
+  @Override
+  public void resume() {
+    this.drain();
+    if (!this.cancelling && (this.cancelled || (this.emitter.requested() > 0))) {
+      this.read();
+    }
+  }
+
+  private void read() {
+    if (this.paused) {
+      this.paused = false;
+      this.channel.config().setAutoRead(true);
+      this.channel.read();
+    }
+  }
+
+  private void pause() {
+    if (!this.paused) {
+      this.paused = true;
+      this.channel.config().setAutoRead(false);
+    }
+  }
+
+  /**
+   * pass on as much as has been requested, and then the end once it has all gone.
+   */
+  private void drain() {
+    while (!this.held.isEmpty() && !this.emitter.isCancelled() && (this.emitter.requested() > 0)) {
+      this.emitter.onNext(this.held.poll());
+    }
+    if (this.emitter.isCancelled()) {
+      this.cancelled();
+    }
+    else if (this.done && this.held.isEmpty() && !this.terminated) {
+      this.terminated = true;
+      if (this.error != null) {
+        this.emitter.tryOnError(this.error);
+      }
+      else {
+        this.emitter.onComplete();
+      }
+    }
+  }
+
+  private void cancelled() {
+    this.release();
+    if (!this.cancelled) {
+      this.cancelled = true;
+      if (this.copying) {
+        this.sendCancel();
+      }
+    }
+  }
+
+  /**
+   * reading from the socket resumes once the server has been told to stop, so it isn't kept busy sending the rest.
+   */
+  private void sendCancel() {
+    this.cancelling = true;
+    this.pause();
+    this.cancel.get().addListener(f -> {
+      if (!f.isSuccess()) {
+        log.warn("failed to cancel {}, discarding the rest: {}", this.sql, f.cause().toString());
+      }
+      this.cancelling = false;
+      this.read();
+    });
+  }
+
+  private void release() {
+    while (!this.held.isEmpty()) {
+      this.held.poll().release();
+    }
+  }
+
+  @Override
+  public boolean handle(final PostgreSQLPacket msg) {
+
+    if (msg instanceof CopyData) {
+      this.data(((CopyData) msg).getData());
+    }
+    else if (msg instanceof CopyOutResponse) {
+      this.copying = true;
+      if (this.cancelled) {
+        this.sendCancel();
+      }
+    }
+    else if (msg instanceof CopyDone) {
+      this.copying = false;
+    }
+    else if (msg instanceof CommandComplete) {
+      if (!this.copying && (this.error == null) && !((CommandComplete) msg).getCommandTag().startsWith("COPY")) {
+        this.error = new IllegalArgumentException("not a COPY ... TO STDOUT: " + this.sql);
+      }
+    }
+    else if (msg instanceof CopyInResponse) {
+      // a COPY ... FROM STDIN, which would wait for data forever.
+      this.error = new IllegalArgumentException("not a COPY ... TO STDOUT: " + this.sql);
+      this.channel.writeAndFlush(new CopyFail("COPY FROM STDIN is not supported by copyOut"));
+    }
+    else if (msg instanceof ErrorResponse) {
+      if (!(this.error instanceof ErrorResult)) {
+        final ServerErrorMessage err = PgQueryOperation.message(((ErrorResponse) msg).getMessages());
+        this.error = new ErrorResult(new SimpleQuery(this.sql), 0, err.getMessage(), err.getSQLState(), err, null);
+      }
+    }
+    else if (msg instanceof NoticeResponse) {
+      log.debug("notice during COPY: {}", ((NoticeResponse) msg).getMessages());
+    }
+    else if (msg instanceof ReadyForQuery) {
+      if (this.paused) {
+        this.paused = false;
+        this.channel.config().setAutoRead(true);
+      }
+      // the connection moves on, while whatever is held waits to be requested.
+      this.done = true;
+      this.drain();
+      return true;
+    }
+    else {
+      // e.g the rows of a statement which isn't a COPY.
+      log.debug("unexpected message {} in COPY {}", msg, this.sql);
+    }
+
+    return false;
+
+  }
+
+  private void data(final ByteBuf data) {
+    if (this.cancelled) {
+      data.release();
+      return;
+    }
+    this.held.add(data);
+    this.drain();
+    if (!this.cancelled && (this.emitter.requested() == 0)) {
+      this.pause();
+    }
+  }
+
+  @Override
+  public void fail(final Throwable cause) {
+    this.release();
+    if (!this.terminated) {
+      this.terminated = true;
+      this.emitter.tryOnError(cause);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "COPY OUT " + this.sql;
+  }
+
+}
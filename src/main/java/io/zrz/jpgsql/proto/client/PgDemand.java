@@ -0,0 +1,79 @@
+package io.zrz.jpgsql.proto.client;
+
+import java.util.concurrent.Executor;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import io.reactivex.rxjava3.core.FlowableOperator;
+import io.reactivex.rxjava3.core.FlowableSubscriber;
+/**
+ * resumes a suspended portal (or a paused COPY) on the event loop when the subscriber requests more rows (or cancels).
+ *
+ * the netty counterpart of {@code PgDemandSignal}: lifted directly on top of the emitter, so the request has been
+ * applied to it by the time {@link PgOperation#resume()} checks.
+ */
+final class PgDemand<T> implements FlowableOperator<T, T> {
+
+  private final Executor executor;
+  private volatile Runnable resume;
+
+  PgDemand(final Executor executor) {
+    this.executor = executor;
+  }
+
+  void attach(final Runnable resume) {
+    this.resume = resume;
+  }
+
+  private void signal() {
+    final Runnable task = this.resume;
+    if (task != null) {
+      this.executor.execute(task);
+    }
+  }
+
+  @Override
+  public Subscriber<? super T> apply(final Subscriber<? super T> downstream) {
+
+    return new FlowableSubscriber<T>() {
+
+      @Override
+      public void onSubscribe(final Subscription upstream) {
+        downstream.onSubscribe(new Subscription() {
+
+          @Override
+          public void request(final long n) {
+            upstream.request(n);
+            signal();
+          }
+
+          @Override
+          public void cancel() {
+            upstream.cancel();
+            signal();
+          }
+
+        });
+      }
+
+      @Override
+      public void onNext(final T t) {
+        downstream.onNext(t);
+      }
+
+      @Override
+      public void onError(final Throwable t) {
+        downstream.onError(t);
+      }
+
+      @Override
+      public void onComplete() {
+        downstream.onComplete();
+      }
+
+    };
+
+  }
+
+}
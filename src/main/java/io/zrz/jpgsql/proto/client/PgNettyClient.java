@@ -0,0 +1,396 @@
+package io.zrz.jpgsql.proto.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import org.reactivestreams.Publisher;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteSource;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.zrz.jpgsql.client.AbstractPostgresClient;
+import io.zrz.jpgsql.client.NotifyMessage;
+import io.zrz.jpgsql.client.PgSession;
+import io.zrz.jpgsql.client.PostgresClient;
+import io.zrz.jpgsql.client.PostgresConnectionProperties;
+import io.zrz.jpgsql.client.PostgresConnectionProperties.PostgresConnectionPropertiesBuilder;
+import io.zrz.jpgsql.client.PostgresQueryProcessor;
+import io.zrz.jpgsql.client.Query;
+import io.zrz.jpgsql.client.QueryOptions;
+import io.zrz.jpgsql.client.QueryParameters;
+import io.zrz.jpgsql.client.QueryResult;
+import io.zrz.jpgsql.client.TransactionalSession;
+import io.zrz.jpgsql.proto.netty.PgSocketOptions;
+import io.zrz.jpgsql.proto.netty.PgTransport;
+import io.zrz.sqlwriter.Tuple;
+
+/**
+ * a partial {@link PostgresClient} which runs queries over a fixed number of netty {@link PgConnection}s, rather than a
+ * thread per connection. it supports queries, batches, COPY in both directions, and sessions which each have a
+ * connection to themselves ({@link #open()} and {@link #openSession()}). {@link #notifications(Collection)} and
+ * {@link PgSession#listen(String)} throw {@link UnsupportedOperationException}.
+ *
+ * the connections come from a {@link PgPool}, so are only used once their handshake has completed, and one which
+ * can't be opened within {@link PostgresConnectionProperties#getConnectTimeout()} fails the query waiting for it. the
+ * client takes up to {@link PostgresConnectionProperties#getMaxPoolSize()} of them from the pool, as needed, and shares
+ * them between queries: each is sent on the one with the fewest outstanding, pipelined behind any already in flight up
+ * to {@link PostgresConnectionProperties#getPipelineDepth()}. rows are always returned as packed
+ * {@link io.zrz.jpgsql.client.RowBuffer}s.
+ *
+ * {@link PostgresConnectionProperties#getMinIdle()} connections are opened when the client is created, and kept open
+ * by the pool. one which the client hasn't used for {@link PostgresConnectionProperties#getIdleTimeout()} goes back to
+ * the pool, which closes it after the same again unless it is one of the minIdle, and checks it with a Sync before it
+ * is next taken.
+ */
+public class PgNettyClient extends AbstractPostgresClient {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PgNettyClient.class);
+
+  private final PostgresConnectionProperties config;
+  private final EventLoopGroup group;
+  private final boolean ownGroup;
+  private static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+  private final PgPool pool;
+  private final int maxShared;
+  // the connections taken from the pool for queries to share, including those still being acquired.
+  private final List<PgAcquiredConnection> shared = new ArrayList<>();
+  private final long idleTimeoutNanos;
+  private final ScheduledFuture<?> maintenance;
+  private volatile boolean closed;
+
+  PgNettyClient(final PostgresConnectionProperties config, final EventLoopGroup group) {
+    this.config = config;
+    this.ownGroup = group == null;
+    final PgTransport transport = config.isNativeTransport() ? PgTransport.auto()
+                                                             : PgTransport.NIO;
+    this.group = this.ownGroup ? transport.newEventLoopGroup(Math.min(config.getMaxPoolSize(), Runtime.getRuntime().availableProcessors()))
+                               : group;
+    final PgConnectionBuilder builder = new PgConnectionBuilder().group(this.group).username(config.getUsername()).database(config.getDbname()).applicationName(config.getApplicationName())
+      .pipelineDepth(Math.max(1, config.getPipelineDepth()))
+      .statementCacheSize(Math.max(0, config.getStatementCacheSize()))
+      .copyInWindow(Math.max(1, config.getCopyInWindow()))
+      .flushThreshold(Math.max(0, config.getFlushThreshold()))
+      .socketOptions(new PgSocketOptions().tcpQuickAck(config.isTcpQuickAck()).busyPollMicros(Math.max(0, config.getBusyPollMicros())));
+    if (config.getPassword() != null) {
+      builder.password(config.getPassword().get());
+    }
+    this.maxShared = Math.max(1, config.getMaxPoolSize());
+    final Duration idleTimeout = config.getIdleTimeout();
+    this.idleTimeoutNanos = ((idleTimeout == null) || idleTimeout.isNegative()) ? 0
+                                                                                : idleTimeout.toNanos();
+    final PgPoolBuilder pool = new PgPoolBuilder()
+      .connections(builder)
+      .maxConnections(this.maxShared)
+      .minIdle(Math.min(Math.max(0, config.getMinIdle()), this.maxShared))
+      .connectTimeout(config.getConnectTimeout())
+      .validationTimeout(config.getConnectTimeout())
+      .acquireTimeout(config.getMaxStalledWait());
+    if (this.idleTimeoutNanos > 0) {
+      pool.idleTimeout(idleTimeout).maintenanceInterval(Duration.ofMillis(Math.max(1, idleTimeout.toMillis() / 2)));
+    }
+    this.pool = pool.newPool(config.getHostname(), config.getPort() == 0 ? 5432
+                                                                        : config.getPort());
+    // rather than leaving the first queries to wait for the handshake.
+    this.pool.warmup().whenComplete((v, ex) -> {
+      if (ex != null) {
+        log.warn("failed to open idle connections: {}", ex.toString());
+      }
+    });
+    if (this.idleTimeoutNanos > 0) {
+      final long interval = Math.max(1, idleTimeout.toMillis() / 2);
+      this.maintenance = this.group.next().scheduleAtFixedRate(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+    else {
+      this.maintenance = null;
+    }
+  }
+
+  public static PgNettyClient create(final PostgresConnectionProperties config, final EventLoopGroup group) {
+    return new PgNettyClient(config, group);
+  }
+
+  public static PgNettyClient create(final PostgresConnectionProperties config) {
+    return create(config, null);
+  }
+
+  public static PgNettyClient create(final UnaryOperator<PostgresConnectionPropertiesBuilder> config) {
+    return create(config.apply(PostgresConnectionProperties.builder()).build());
+  }
+
+  /**
+   * the least loaded shared connection, taking another from the pool if there is room and every one is busy. a
+   * connection still being acquired counts as busy.
+   */
+  synchronized CompletableFuture<PgConnection> connection() {
+    Preconditions.checkState(!this.closed, "client closed");
+    this.prune();
+    PgAcquiredConnection best = null;
+    int load = Integer.MAX_VALUE;
+    for (final PgAcquiredConnection shared : this.shared) {
+      final PgConnection conn = shared.active();
+      if ((conn != null) && (conn.pending() < load)) {
+        best = shared;
+        load = conn.pending();
+      }
+    }
+    if (((best == null) || (load > 0)) && (this.shared.size() < this.maxShared)) {
+      best = new PgAcquiredConnection(this.pool.acquire());
+      this.shared.add(best);
+    }
+    else if (best == null) {
+      best = this.shared.get(0);
+    }
+    return best.next();
+  }
+
+  /**
+   * drop connections which failed to open or have since closed, returning the closed ones so the pool can replace them.
+   */
+  private void prune() {
+    for (final Iterator<PgAcquiredConnection> it = this.shared.iterator(); it.hasNext();) {
+      final PgAcquiredConnection shared = it.next();
+      if (shared.gone()) {
+        it.remove();
+        if (!shared.failed()) {
+          this.pool.release(shared.get());
+        }
+      }
+    }
+  }
+
+  /**
+   * the prepared statement cache stats summed over the shared connections.
+   */
+  public synchronized CacheStats statementCacheStats() {
+    CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+    for (final PgAcquiredConnection shared : this.shared) {
+      final PgConnection conn = shared.getNow();
+      if (conn != null) {
+        stats = stats.plus(conn.statementCacheStats());
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * give connections which haven't had a query for the idle timeout back to the pool.
+   */
+  private synchronized void maintain() {
+    if (this.closed) {
+      return;
+    }
+    this.prune();
+    final long now = System.nanoTime();
+    for (final Iterator<PgAcquiredConnection> it = this.shared.iterator(); it.hasNext();) {
+      final PgAcquiredConnection shared = it.next();
+      final PgConnection conn = shared.active();
+      if ((conn != null) && ((now - shared.lastUsed()) >= this.idleTimeoutNanos) && (conn.idleNanos() >= this.idleTimeoutNanos)) {
+        it.remove();
+        this.pool.release(conn);
+      }
+    }
+  }
+
+  /**
+   * runs the work on a shared connection once it has been acquired, or straight away if it already has.
+   */
+  private <T> Flowable<T> on(final Function<PgConnection, ? extends Publisher<T>> work) {
+    return Flowable.fromCompletionStage(this.connection()).concatMap(conn -> Flowable.<T>fromPublisher(work.apply(conn)));
+  }
+
+  /**
+   * results are emitted on the event loop, which mustn't be blocked by subscribers. only one is buffered for the switch
+   * to another thread, so a paged query fetches no more than a page ahead of what its subscriber has requested.
+   */
+  static <T> Flowable<T> offEventLoop(final Flowable<T> results) {
+    return results.observeOn(Schedulers.computation(), true, 1);
+  }
+
+  @Override
+  public Flowable<QueryResult> submit(final Query query, final QueryParameters params) {
+    return submit(query, params, QueryOptions.DEFAULTS);
+  }
+
+  /**
+   * submit with per query options. {@link QueryOptions.RowBufferFormat#TUPLES} is treated as
+   * {@link QueryOptions.RowBufferFormat#PACKED}.
+   */
+  public Flowable<QueryResult> submit(final Query query, final QueryParameters params, final QueryOptions options) {
+    return offEventLoop(Flowable.defer(() -> this.on(conn -> conn.submit(query, params, options))));
+  }
+
+  /**
+   * executes the query once for each of the parameter sets on one connection, parsing it once and with a single Sync
+   * at the end, so the batch runs in one implicit transaction.
+   */
+  @Override
+  public Flowable<long[]> executeBatch(final Query query, final Iterable<QueryParameters> params) {
+    final List<QueryParameters> batch = ImmutableList.copyOf(params);
+    return PostgresQueryProcessor.updateCounts(
+      offEventLoop(Flowable.defer(() -> this.on(conn -> conn.submitBatch(query, batch)))));
+  }
+
+  @Override
+  public Flowable<QueryResult> fetch(final int fetchSize, final Tuple tuple) {
+    return submit(tuple.query(), tuple.params(), QueryOptions.builder().fetchSize(fetchSize).build());
+  }
+
+  @Override
+  public Flowable<QueryResult> submit(final Query query) {
+    return this.submit(query, null);
+  }
+
+  @Override
+  public Flowable<QueryResult> submit(final String sql) {
+    return this.submit(this.createQuery(sql));
+  }
+
+  @Override
+  public Flowable<QueryResult> submit(final String sql, final Object... params) {
+    final Query query = this.createQuery(sql, params.length);
+    final QueryParameters qp = query.createParameters();
+    qp.setFrom(params);
+    return this.submit(query, qp);
+  }
+
+  /**
+   * a connection of its own, taken from the pool. {@link PgSession#listen(String)} isn't supported.
+   */
+  @Override
+  public PgSession openSession() {
+    return new PgNettySession(this, this.reserve(), false);
+  }
+
+  /**
+   * a connection of its own, taken from the pool, with a transaction begun on it.
+   */
+  @Override
+  public TransactionalSession open() {
+    return new PgNettySession(this, this.reserve(), true);
+  }
+
+  /**
+   * the pool for a session to take a connection from. if the shared connections have used it up, one with nothing
+   * outstanding is given back to make room. otherwise the session waits for one up to
+   * {@link PostgresConnectionProperties#getMaxStalledWait()}.
+   */
+  private synchronized PgPool reserve() {
+    Preconditions.checkState(!this.closed, "client closed");
+    this.prune();
+    if (this.pool.acquired() >= this.maxShared) {
+      for (final Iterator<PgAcquiredConnection> it = this.shared.iterator(); it.hasNext();) {
+        final PgConnection conn = it.next().active();
+        if ((conn != null) && (conn.pending() == 0)) {
+          it.remove();
+          this.pool.release(conn);
+          break;
+        }
+      }
+    }
+    return this.pool;
+  }
+
+  @Override
+  public Publisher<NotifyMessage> notifications(final Collection<String> channels) {
+    throw new UnsupportedOperationException("notifications are not supported by the netty client yet");
+  }
+
+  /**
+   * the buffers are written to the socket as they are, so should be pooled direct buffers for the data to go out
+   * without being copied. they are released once flushed.
+   */
+  @Override
+  public Flowable<Long> copyTo(final String sql, final Publisher<ByteBuf> upstream) {
+    return offEventLoop(Flowable.defer(() -> this.on(conn -> conn.copyIn(sql, upstream))));
+  }
+
+  /**
+   * the source is read on an io thread into pooled direct buffers, as the connection is ready for them.
+   */
+  @Override
+  public Flowable<Long> copyTo(final String sql, final ByteSource source) {
+    return this.copyTo(sql, chunks(source));
+  }
+
+  /**
+   * the source in pooled direct buffers, read on an io thread.
+   */
+  static Flowable<ByteBuf> chunks(final ByteSource source) {
+    return Flowable.using(
+      source::openStream,
+      in -> Flowable.<ByteBuf>generate(emitter -> {
+        final ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(COPY_CHUNK_SIZE);
+        try {
+          if (buf.writeBytes(in, COPY_CHUNK_SIZE) < 0) {
+            buf.release();
+            emitter.onComplete();
+          }
+          else {
+            emitter.onNext(buf);
+          }
+        }
+        catch (final IOException ex) {
+          buf.release();
+          emitter.onError(ex);
+        }
+      }),
+      InputStream::close)
+      .subscribeOn(Schedulers.io());
+  }
+
+  /**
+   * reads from the socket are driven by the subscriber's requests, so at most a read's worth is buffered beyond what it
+   * asked for.
+   *
+   * unlike queries, the buffers are emitted on the event loop, as an {@code observeOn} would drop (and leak) the ones it
+   * had queued if cancelled. subscribers should not block: consume or copy each one before switching threads.
+   */
+  @Override
+  public Flowable<ByteBuf> copyOut(final String sql) {
+    return Flowable.defer(() -> this.on(conn -> conn.copyOut(sql)));
+  }
+
+  @Override
+  public PostgresConnectionProperties config() {
+    return this.config;
+  }
+
+  @Override
+  public PostgresClient client() {
+    return this;
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      this.closed = true;
+      if (this.maintenance != null) {
+        this.maintenance.cancel(false);
+      }
+      this.shared.clear();
+      this.pool.close();
+    }
+    if (this.ownGroup) {
+      this.group.shutdownGracefully();
+    }
+  }
+
+}
@@ -0,0 +1,206 @@
+package io.zrz.jpgsql.proto.client;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.reactivestreams.Publisher;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteSource;
+
+import io.netty.buffer.ByteBuf;
+import io.reactivex.rxjava3.core.Flowable;
+import io.zrz.jpgsql.client.NotifyMessage;
+import io.zrz.jpgsql.client.PgSession;
+import io.zrz.jpgsql.client.PostgresClient;
+import io.zrz.jpgsql.client.PostgresQueryProcessor;
+import io.zrz.jpgsql.client.Query;
+import io.zrz.jpgsql.client.QueryOptions;
+import io.zrz.jpgsql.client.QueryParameters;
+import io.zrz.jpgsql.client.QueryResult;
+import io.zrz.jpgsql.client.SessionTxnState;
+import io.zrz.jpgsql.client.TransactionalSession;
+import io.zrz.sqlwriter.Tuple;
+
+/**
+ * a connection taken from a {@link PgNettyClient}'s pool for one user, so each query sees whatever the ones before it
+ * left behind: an open transaction, a SET, a temporary table. queries are pipelined on it in the order they are
+ * subscribed to, and it goes back to the pool once the session is closed.
+ *
+ * as a {@link TransactionalSession}, a BEGIN is sent first, and the session ends when a query ends the transaction:
+ * {@link #txnstate()} completes with {@link SessionTxnState#Closed} after a COMMIT or ROLLBACK, or
+ * {@link SessionTxnState#Error} once a failed transaction has been rolled back. closing it first rolls back.
+ *
+ * {@link #listen(String)} isn't supported, as the netty connection doesn't handle notifications.
+ */
+final class PgNettySession implements PgSession, TransactionalSession {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PgNettySession.class);
+
+  private final PgNettyClient client;
+  private final PgPool pool;
+  private final boolean transactional;
+  private final PgAcquiredConnection conn;
+  private final CompletableFuture<SessionTxnState> txnstate = new CompletableFuture<>();
+  private final AtomicBoolean ending = new AtomicBoolean();
+  private volatile boolean accepting = true;
+
+  PgNettySession(final PgNettyClient client, final PgPool pool, final boolean transactional) {
+    this.client = client;
+    this.pool = pool;
+    this.transactional = transactional;
+    final CompletableFuture<PgConnection> acquired = transactional ? pool.acquire().thenCompose(this::begin)
+                                                                   : pool.acquire();
+    acquired.whenComplete((conn, ex) -> {
+      if (ex != null) {
+        this.accepting = false;
+        this.txnstate.completeExceptionally(ex);
+      }
+    });
+    this.conn = new PgAcquiredConnection(acquired);
+  }
+
+  private CompletableFuture<PgConnection> begin(final PgConnection conn) {
+    final CompletableFuture<PgConnection> res = new CompletableFuture<>();
+    conn.submit(this.client.createQuery("BEGIN"), null).ignoreElements().subscribe(() -> res.complete(conn), ex -> {
+      this.pool.release(conn);
+      res.completeExceptionally(ex);
+    });
+    return res;
+  }
+
+  /**
+   * runs the work on the session's connection, once it has been acquired.
+   */
+  private <T> Flowable<T> on(final Function<PgConnection, ? extends Publisher<T>> work) {
+    Preconditions.checkState(this.accepting, "session is no longer active");
+    return Flowable.defer(() -> Flowable.fromCompletionStage(this.conn.next())
+      .concatMap(conn -> Flowable.<T>fromPublisher(work.apply(conn))
+        .doFinally(() -> conn.channel().eventLoop().execute(() -> this.completed(conn)))));
+  }
+
+  /**
+   * called on the event loop after each query, to end the session if it ended the transaction.
+   */
+  private void completed(final PgConnection conn) {
+    if (!this.transactional) {
+      return;
+    }
+    switch (conn.getTransactionStatus()) {
+      case Idle:
+        this.end(conn, SessionTxnState.Closed, false);
+        break;
+      case Error:
+        this.end(conn, SessionTxnState.Error, true);
+        break;
+      case Transaction:
+      default:
+        break;
+    }
+  }
+
+  /**
+   * stop accepting queries and give the connection back, after a ROLLBACK if requested. a connection which can't be
+   * rolled back is closed, rather than going back to the pool in a transaction.
+   */
+  private void end(final PgConnection conn, final SessionTxnState state, final boolean rollback) {
+    if (!this.ending.compareAndSet(false, true)) {
+      return;
+    }
+    this.accepting = false;
+    if (!rollback) {
+      this.pool.release(conn);
+      this.txnstate.complete(state);
+      return;
+    }
+    conn.submit(this.client.createQuery("ROLLBACK"), null).ignoreElements().subscribe(() -> {
+      this.pool.release(conn);
+      this.txnstate.complete(state);
+    }, ex -> {
+      log.warn("failed to roll back session: {}", ex.toString());
+      conn.close();
+      this.pool.release(conn);
+      this.txnstate.complete(state);
+    });
+  }
+
+  @Override
+  public CompletableFuture<SessionTxnState> txnstate() {
+    return this.txnstate;
+  }
+
+  @Override
+  public Flowable<QueryResult> submit(final Query query, final QueryParameters params) {
+    return this.submit(query, params, QueryOptions.DEFAULTS);
+  }
+
+  /**
+   * submit with per query options, as {@link PgNettyClient#submit(Query, QueryParameters, QueryOptions)}.
+   */
+  public Flowable<QueryResult> submit(final Query query, final QueryParameters params, final QueryOptions options) {
+    return PgNettyClient.offEventLoop(this.on(conn -> conn.submit(query, params, options)));
+  }
+
+  @Override
+  public Flowable<long[]> executeBatch(final Query query, final Iterable<QueryParameters> params) {
+    final List<QueryParameters> batch = ImmutableList.copyOf(params);
+    return PostgresQueryProcessor.updateCounts(PgNettyClient.offEventLoop(this.on(conn -> conn.submitBatch(query, batch))));
+  }
+
+  @Override
+  public Flowable<QueryResult> fetch(final int fetchSize, final Tuple tuple) {
+    return this.submit(tuple.query(), tuple.params(), QueryOptions.builder().fetchSize(fetchSize).build());
+  }
+
+  @Override
+  public Flowable<Long> copyTo(final String sql, final Publisher<ByteBuf> upstream) {
+    return PgNettyClient.offEventLoop(this.on(conn -> conn.copyIn(sql, upstream)));
+  }
+
+  @Override
+  public Flowable<Long> copyTo(final String sql, final ByteSource source) {
+    return this.copyTo(sql, PgNettyClient.chunks(source));
+  }
+
+  /**
+   * as {@link PgNettyClient#copyOut(String)}, the buffers are emitted on the event loop.
+   */
+  @Override
+  public Flowable<ByteBuf> copyOut(final String sql) {
+    return this.on(conn -> conn.copyOut(sql));
+  }
+
+  @Override
+  public Publisher<NotifyMessage> listen(final String channel) {
+    throw new UnsupportedOperationException("notifications are not supported by the netty client yet");
+  }
+
+  @Override
+  public Query createQuery(final String sql, final int paramcount) {
+    return this.client.createQuery(sql, paramcount);
+  }
+
+  @Override
+  public Query createQuery(final List<Query> combine) {
+    return this.client.createQuery(combine);
+  }
+
+  @Override
+  public PostgresClient client() {
+    return this.client;
+  }
+
+  /**
+   * gives the connection back to the pool once the queries already submitted have run, rolling back first if a
+   * transactional session's transaction is still open.
+   */
+  @Override
+  public void close() {
+    this.accepting = false;
+    this.conn.next().thenAccept(conn -> conn.channel().eventLoop().execute(() -> this.end(conn, SessionTxnState.Closed, this.transactional)));
+  }
+
+}
@@ -0,0 +1,42 @@
+package io.zrz.jpgsql.proto.client;
+
+import io.netty.channel.Channel;
+import io.zrz.jpgsql.proto.wire.PostgreSQLPacket;
+
+/**
+ * something queued on a {@link PgConnection}: written once it reaches the front of the pipeline, it then consumes the
+ * responses up to and including the ReadyForQuery that ends it.
+ *
+ * only accessed on the channel's event loop.
+ */
+interface PgOperation {
+
+  /**
+   * write the messages to the channel. the caller flushes.
+   */
+  void start(Channel channel);
+
+  /**
+   * true once everything up to the message which ends this operation has been written, after which the next one can
+   * be sent behind it.
+   */
+  boolean isSynced();
+
+  /**
+   * called on the event loop when the subscriber requests more or cancels.
+   */
+  void resume();
+
+  /**
+   * process a message from the backend.
+   *
+   * @return true once the ReadyForQuery that ends this operation has been received.
+   */
+  boolean handle(PostgreSQLPacket msg);
+
+  /**
+   * the connection failed before the operation completed.
+   */
+  void fail(Throwable cause);
+
+}
@@ -0,0 +1,110 @@
+package io.zrz.jpgsql.proto.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.zrz.jpgsql.binary.BinaryParameterCodecs;
+import io.zrz.jpgsql.client.QueryParameters;
+import io.zrz.jpgsql.client.opj.BinaryParamValue;
+import io.zrz.jpgsql.proto.wire.Bind;
+
+/**
+ * encodes {@link QueryParameters} for the extended query protocol, with the same mapping as the JDBC based client
+ * applies in {@code PgLocalConnection.bind}: values are sent binary through the {@link BinaryParameterCodecs}
+ * registered for their OID, byte arrays as already encoded, and strings for a type without a string codec as text.
+ *
+ * a combined query shares a single parameter list, so each statement takes a window of it.
+ */
+final class PgParameters {
+
+  private static final int TEXT = 0;
+  private static final int BINARY = 1;
+
+  private PgParameters() {
+  }
+
+  /**
+   * the types of the parameters in the window, for the Parse message. 0 leaves it to the server to infer.
+   */
+  static List<Integer> oids(final QueryParameters params, final int offset, final int count) {
+    final List<Integer> oids = new ArrayList<>(count);
+    for (int i = 1; i <= count; ++i) {
+      final Object val = params.isFixedWidth(offset + i) ? null
+                                                         : params.getValue(offset + i);
+      if (val instanceof BinaryParamValue) {
+        oids.add(((BinaryParamValue) val).getOid());
+      }
+      else {
+        oids.add(params.getOid(offset + i));
+      }
+    }
+    return oids;
+  }
+
+  /**
+   * the encoded values of a window of parameters, which are bound to a statement once its name is known.
+   */
+  static final class Values {
+
+    private final List<Integer> formats;
+    private final List<byte[]> values;
+
+    private Values(final List<Integer> formats, final List<byte[]> values) {
+      this.formats = formats;
+      this.values = values;
+    }
+
+    Bind bind(final String portal, final String statement, final List<Integer> resultFormats) {
+      return new Bind(portal, statement, this.formats, this.values, resultFormats);
+    }
+
+  }
+
+  /**
+   * encode the window of parameters, failing with an {@link IllegalArgumentException} for a value which can't be sent.
+   */
+  static Values encode(final QueryParameters params, final int offset, final int count) {
+    final List<Integer> formats = new ArrayList<>(count);
+    final List<byte[]> values = new ArrayList<>(count);
+    for (int i = 1; i <= count; ++i) {
+      final int pnum = offset + i;
+      final int oid = params.getOid(pnum);
+      if (params.isFixedWidth(pnum)) {
+        formats.add(BINARY);
+        values.add(BinaryParameterCodecs.encodeFixed(oid, params.getBits(pnum)));
+        continue;
+      }
+      final Object val = params.getValue(pnum);
+      if (val == null) {
+        formats.add(TEXT);
+        values.add(null);
+        continue;
+      }
+      else if (val instanceof BinaryParamValue) {
+        formats.add(BINARY);
+        values.add(((BinaryParamValue) val).toByteArray());
+        continue;
+      }
+      else if (val instanceof byte[]) {
+        formats.add(BINARY);
+        values.add((byte[]) val);
+        continue;
+      }
+      final byte[] bytes = BinaryParameterCodecs.encode(oid, val);
+      if (bytes != null) {
+        formats.add(BINARY);
+        values.add(bytes);
+      }
+      else if (val instanceof String) {
+        formats.add(TEXT);
+        values.add(((String) val).getBytes(StandardCharsets.UTF_8));
+      }
+      else {
+        throw new IllegalArgumentException(String.format("no binary codec for OID %d taking %s", oid, val.getClass().getName()));
+      }
+    }
+    return new Values(formats, values);
+  }
+
+}
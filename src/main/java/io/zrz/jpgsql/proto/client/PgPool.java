@@ -1,21 +1,307 @@
 package io.zrz.jpgsql.proto.client;
 
-import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.reactivestreams.Publisher;
 
 import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.pool.SimpleChannelPool;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.reactivex.rxjava3.core.Flowable;
+import io.zrz.jpgsql.client.PostgresqlUnavailableException;
+import io.zrz.jpgsql.client.Query;
+import io.zrz.jpgsql.client.QueryParameters;
+import io.zrz.jpgsql.client.QueryResult;
+import io.zrz.jpgsql.proto.wire.TransactionStatus;
+
+/**
+ * a fixed size pool of {@link PgConnection}s to one server, on a netty {@link FixedChannelPool}.
+ *
+ * a connection is only handed out once its handshake has completed, so the first query on it doesn't wait for the
+ * connection to be set up. one which hasn't connected and completed the handshake within the connect timeout is closed,
+ * failing the acquire waiting for it. {@link #warmup()} opens minIdle connections ahead of the first acquire, and they are
+ * topped back up every maintenance interval if some have gone. with an idle timeout, the maintenance also closes those
+ * beyond minIdle which have been back in the pool for longer than it.
+ *
+ * a connection which has been idle for longer than validateAfter is checked with a Sync before being handed out, and
+ * one which fails the check, doesn't answer it within the validation timeout, or is returned in a transaction, is
+ * closed and replaced. once every connection is in use, an acquire waits up to the acquire timeout for one to be
+ * released.
+ */
+public class PgPool implements AutoCloseable {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PgPool.class);
+
+  private final PgChannelPoolHandler handler;
+  private final FixedChannelPool pool;
+  private final int minIdle;
+  private final long idleTimeoutNanos;
+  private final long validateAfterNanos;
+  private final Duration validationTimeout;
+  // the warmup in progress, which a top up or another warmup waits for rather than opening more alongside it.
+  private CompletableFuture<Void> warming;
+  private final ScheduledFuture<?> maintenance;
+  private volatile boolean closed;
+
+  PgPool(final PgPoolBuilder b, final String host, final int port) {
+    final Bootstrap bootstrap = b.connections.socketOptions.bootstrap(b.connections.group).remoteAddress(host, port);
+    this.handler = new PgChannelPoolHandler(b.connections);
+    this.minIdle = b.minIdle;
+    this.idleTimeoutNanos = b.idleTimeout.toNanos();
+    this.validateAfterNanos = b.validateAfter.toNanos();
+    this.validationTimeout = b.validationTimeout;
+    this.pool = new Pool(bootstrap, this.handler, this::isHealthy, b.connectTimeout, b.acquireTimeout.toMillis(), b.maxConnections, b.maxPendingAcquires);
+    if ((this.minIdle > 0) || (this.idleTimeoutNanos > 0)) {
+      final long interval = b.maintenanceInterval.toMillis();
+      this.maintenance = b.connections.group.next().scheduleAtFixedRate(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+    else {
+      this.maintenance = null;
+    }
+  }
+
+  /**
+   * waits for the handshake to complete before the pool hands out a new channel. the acquire timeout only applies while
+   * waiting for a channel to be released, so a server which accepts the connection but never completes the handshake
+   * would otherwise hold up the acquire forever.
+   */
+  private static final class Pool extends FixedChannelPool {
+
+    private final Duration connectTimeout;
+
+    Pool(final Bootstrap bootstrap, final PgChannelPoolHandler handler, final ChannelHealthChecker healthCheck, final Duration connectTimeout,
+        final long acquireTimeoutMillis, final int maxConnections, final int maxPendingAcquires) {
+      super(bootstrap, handler, healthCheck, AcquireTimeoutAction.FAIL, acquireTimeoutMillis, maxConnections, maxPendingAcquires, true, true);
+      this.connectTimeout = connectTimeout;
+    }
+
+    @Override
+    protected ChannelFuture connectChannel(final Bootstrap bs) {
+      final ChannelFuture connect = super.connectChannel(bs);
+      final ChannelPromise ready = connect.channel().newPromise();
+      final ScheduledFuture<?> timer = connect.channel().eventLoop().schedule(() -> {
+        if (ready.tryFailure(new PostgresqlUnavailableException("not connected within " + this.connectTimeout.toMillis() + "ms"))) {
+          connect.channel().close();
+        }
+      }, this.connectTimeout.toNanos(), TimeUnit.NANOSECONDS);
+      ready.addListener(f -> timer.cancel(false));
+      // the channel was initialized (and so has its connection) by the time the connect completes.
+      connect.addListener((ChannelFutureListener) f -> {
+        if (!f.isSuccess()) {
+          ready.tryFailure(new PostgresqlUnavailableException(f.cause()));
+          return;
+        }
+        PgChannelPoolHandler.connection(f.channel()).ready().whenComplete((conn, ex) -> {
+          if (ex == null) {
+            ready.trySuccess();
+          }
+          else {
+            ready.tryFailure(ex);
+            f.channel().close();
+          }
+        });
+      });
+      return ready;
+    }
+
+  }
+
+  /**
+   * open channels which haven't been idle long are taken as they are. the rest get a Sync, so a connection the server
+   * or a firewall has dropped is found here rather than by the query which would have been sent on it. one which
+   * silently stopped answering would never complete the Sync, hence the timeout.
+   */
+  private Future<Boolean> isHealthy(final Channel ch) {
+    final PgConnection conn = PgChannelPoolHandler.connection(ch);
+    if (!ch.isActive()) {
+      return ch.eventLoop().newSucceededFuture(false);
+    }
+    if (conn.getTransactionStatus() != TransactionStatus.Idle) {
+      // returned part way through a transaction: it can't be given to anyone else.
+      log.warn("closing connection released with transaction status {}", conn.getTransactionStatus());
+      conn.close();
+      return ch.eventLoop().newSucceededFuture(false);
+    }
+    final Long idleSince = ch.attr(PgChannelPoolHandler.IDLE_SINCE).get();
+    if ((idleSince == null) || ((System.nanoTime() - idleSince) < this.validateAfterNanos)) {
+      return ch.eventLoop().newSucceededFuture(true);
+    }
+    final Promise<Boolean> healthy = ch.eventLoop().newPromise();
+    conn.sync(this.validationTimeout).whenComplete((status, ex) -> {
+      if ((ex == null) && (status == TransactionStatus.Idle)) {
+        healthy.trySuccess(true);
+      }
+      else {
+        log.debug("idle connection failed validation: {}", (ex == null) ? status : ex.toString());
+        conn.close();
+        healthy.trySuccess(false);
+      }
+    });
+    return healthy;
+  }
+
+  /**
+   * a connection from the pool, which must be passed to {@link #release(PgConnection)} once finished with. fails if
+   * none is released within the acquire timeout, or a new one can't be opened.
+   */
+  public CompletableFuture<PgConnection> acquire() {
+    final CompletableFuture<PgConnection> res = new CompletableFuture<>();
+    this.pool.acquire().addListener((Future<Channel> f) -> {
+      if (f.isSuccess()) {
+        res.complete(PgChannelPoolHandler.connection(f.getNow()));
+      }
+      else {
+        res.completeExceptionally(f.cause() instanceof PostgresqlUnavailableException ? f.cause()
+                                                                                      : new PostgresqlUnavailableException(f.cause()));
+      }
+    });
+    return res;
+  }
 
-public class PgPool {
+  /**
+   * return a connection to the pool. anything still queued on it runs before whatever the next user submits. completes
+   * once it is back in the pool, or closed if it was unhealthy.
+   */
+  public CompletableFuture<Void> release(final PgConnection conn) {
+    final CompletableFuture<Void> res = new CompletableFuture<>();
+    this.pool.release(conn.channel()).addListener(f -> {
+      if (f.isSuccess()) {
+        res.complete(null);
+      }
+      else {
+        log.debug("failed to release connection: {}", f.cause().toString());
+        res.completeExceptionally(f.cause());
+      }
+    });
+    return res;
+  }
+
+  /**
+   * acquire a connection once subscribed to, and release it when the publisher returned by the work completes, fails,
+   * or is cancelled.
+   */
+  public <T> Flowable<T> with(final Function<PgConnection, ? extends Publisher<T>> work) {
+    return Flowable.defer(() -> {
+      final CompletableFuture<PgConnection> acquired = this.acquire();
+      return Flowable.fromCompletionStage(acquired)
+        .concatMap(conn -> Flowable.<T>fromPublisher(work.apply(conn)))
+        // releases once, whether it was acquired before or after this.
+        .doFinally(() -> acquired.thenAccept(this::release));
+    });
+  }
+
+  public Flowable<QueryResult> submit(final Query query, final QueryParameters params) {
+    return this.with(conn -> conn.submit(query, params));
+  }
+
+  /**
+   * open connections until there are at least minIdle, by acquiring that many at once and then releasing them.
+   * completes once they are all ready for queries and back in the pool.
+   */
+  public synchronized CompletableFuture<Void> warmup() {
+    if ((this.warming == null) || this.warming.isDone()) {
+      this.warming = this.open();
+    }
+    return this.warming;
+  }
 
-  SimpleChannelPool pool;
-  final Bootstrap cb = new Bootstrap();
+  private CompletableFuture<Void> open() {
+    final List<CompletableFuture<PgConnection>> acquired = new ArrayList<>(this.minIdle);
+    for (int i = 0; i < this.minIdle; ++i) {
+      acquired.add(this.acquire());
+    }
+    final CompletableFuture<Void> all = CompletableFuture.allOf(acquired.toArray(new CompletableFuture<?>[0]));
+    all.whenComplete((v, ex) -> {
+      if (ex != null) {
+        // put back the ones which did connect.
+        acquired.forEach(f -> f.thenAccept(this::release));
+      }
+    });
+    return all.thenCompose(v -> CompletableFuture.allOf(acquired.stream().map(f -> this.release(f.join())).toArray(CompletableFuture<?>[]::new)));
+  }
 
-  public PgPool(EventLoopGroup group) {
-    cb.group(group).channel(NioSocketChannel.class);
-    this.pool = new SimpleChannelPool(cb.remoteAddress(InetSocketAddress.createUnresolved("127.0.0.1", 5432)), new PgChannelPoolHandler());
+  private synchronized void maintain() {
+    if (this.closed) {
+      return;
+    }
+    if (this.idleTimeoutNanos > 0) {
+      this.closeIdle();
+    }
+    if ((this.handler.connections().size() >= this.minIdle) || ((this.warming != null) && !this.warming.isDone())) {
+      return;
+    }
+    log.debug("topping up to {} connections from {}", this.minIdle, this.handler.connections().size());
+    this.warmup().whenComplete((v, ex) -> {
+      if (ex != null) {
+        log.warn("failed to open idle connections: {}", ex.toString());
+      }
+    });
+  }
+
+  /**
+   * close connections which have been in the pool for longer than the idle timeout, leaving minIdle open. each is
+   * checked again on its event loop, which is where it would be taken out of the pool, so one acquired in the meantime
+   * is left alone.
+   */
+  private void closeIdle() {
+    final long now = System.nanoTime();
+    int excess = this.handler.connections().size() - this.minIdle;
+    for (final PgConnection conn : this.handler.connections()) {
+      if (excess <= 0) {
+        break;
+      }
+      final Channel ch = conn.channel();
+      final Long idleSince = ch.attr(PgChannelPoolHandler.IDLE_SINCE).get();
+      if ((idleSince == null) || ((now - idleSince) < this.idleTimeoutNanos)) {
+        continue;
+      }
+      excess--;
+      ch.eventLoop().execute(() -> {
+        if (idleSince.equals(ch.attr(PgChannelPoolHandler.IDLE_SINCE).get())) {
+          log.debug("closing idle connection");
+          conn.close();
+        }
+      });
+    }
+  }
+
+  /**
+   * the number of connections open or being opened, whether idle or in use.
+   */
+  public int size() {
+    return this.handler.connections().size();
+  }
+
+  /**
+   * the number of connections currently acquired.
+   */
+  public int acquired() {
+    return this.pool.acquiredChannelCount();
+  }
 
+  /**
+   * sends a Terminate on every connection, including those in use, and closes the pool.
+   */
+  @Override
+  public void close() {
+    this.closed = true;
+    if (this.maintenance != null) {
+      this.maintenance.cancel(false);
+    }
+    this.handler.connections().forEach(PgConnection::close);
+    this.pool.close();
   }
 
 }
@@ -0,0 +1,116 @@
+package io.zrz.jpgsql.proto.client;
+
+import java.time.Duration;
+
+import com.google.common.base.Preconditions;
+
+public class PgPoolBuilder {
+
+  PgConnectionBuilder connections = new PgConnectionBuilder();
+  int maxConnections = 8;
+  int minIdle;
+  int maxPendingAcquires = Integer.MAX_VALUE;
+  Duration acquireTimeout = Duration.ofSeconds(30);
+  Duration connectTimeout = Duration.ofSeconds(10);
+  Duration idleTimeout = Duration.ZERO;
+  Duration validateAfter = Duration.ofSeconds(5);
+  Duration validationTimeout = Duration.ofSeconds(5);
+  Duration maintenanceInterval = Duration.ofSeconds(10);
+
+  /**
+   * how each connection is set up: its event loop group, credentials and socket options.
+   */
+  public PgPoolBuilder connections(PgConnectionBuilder connections) {
+    this.connections = connections;
+    return this;
+  }
+
+  public PgPoolBuilder maxConnections(int maxConnections) {
+    Preconditions.checkArgument(maxConnections > 0, "maxConnections must be positive");
+    this.maxConnections = maxConnections;
+    return this;
+  }
+
+  /**
+   * how many connections are opened up front by {@link PgPool#warmup()}, and kept open afterwards by topping up every
+   * maintenance interval.
+   */
+  public PgPoolBuilder minIdle(int minIdle) {
+    Preconditions.checkArgument(minIdle >= 0, "minIdle must not be negative");
+    this.minIdle = minIdle;
+    return this;
+  }
+
+  /**
+   * how many acquires may be waiting for a connection once all of them are in use, after which acquiring fails
+   * straight away.
+   */
+  public PgPoolBuilder maxPendingAcquires(int maxPendingAcquires) {
+    Preconditions.checkArgument(maxPendingAcquires > 0, "maxPendingAcquires must be positive");
+    this.maxPendingAcquires = maxPendingAcquires;
+    return this;
+  }
+
+  /**
+   * how long an acquire waits for a connection once all of them are in use before failing.
+   */
+  public PgPoolBuilder acquireTimeout(Duration acquireTimeout) {
+    Preconditions.checkArgument(!acquireTimeout.isNegative(), "acquireTimeout must not be negative");
+    this.acquireTimeout = acquireTimeout;
+    return this;
+  }
+
+  /**
+   * how long opening a new connection may take, including its startup handshake, before it is closed and the acquire
+   * waiting for it fails.
+   */
+  public PgPoolBuilder connectTimeout(Duration connectTimeout) {
+    Preconditions.checkArgument(!connectTimeout.isNegative() && !connectTimeout.isZero(), "connectTimeout must be positive");
+    this.connectTimeout = connectTimeout;
+    return this;
+  }
+
+  /**
+   * a connection which has been idle in the pool for longer than this is closed by the next maintenance, unless that
+   * would leave fewer than minIdle. zero keeps them open.
+   */
+  public PgPoolBuilder idleTimeout(Duration idleTimeout) {
+    Preconditions.checkArgument(!idleTimeout.isNegative(), "idleTimeout must not be negative");
+    this.idleTimeout = idleTimeout;
+    return this;
+  }
+
+  /**
+   * a connection which has been idle in the pool for longer than this is checked with a Sync before it is handed out.
+   * zero checks every time.
+   */
+  public PgPoolBuilder validateAfter(Duration validateAfter) {
+    Preconditions.checkArgument(!validateAfter.isNegative(), "validateAfter must not be negative");
+    this.validateAfter = validateAfter;
+    return this;
+  }
+
+  /**
+   * how long the Sync checking an idle connection may take, after which the connection is closed and replaced.
+   */
+  public PgPoolBuilder validationTimeout(Duration validationTimeout) {
+    Preconditions.checkArgument(!validationTimeout.isNegative() && !validationTimeout.isZero(), "validationTimeout must be positive");
+    this.validationTimeout = validationTimeout;
+    return this;
+  }
+
+  /**
+   * how often the pool is topped back up to minIdle connections, and idle ones beyond that closed.
+   */
+  public PgPoolBuilder maintenanceInterval(Duration maintenanceInterval) {
+    Preconditions.checkArgument(!maintenanceInterval.isNegative() && !maintenanceInterval.isZero(), "maintenanceInterval must be positive");
+    this.maintenanceInterval = maintenanceInterval;
+    return this;
+  }
+
+  public PgPool newPool(String host, int port) {
+    Preconditions.checkArgument(this.minIdle <= this.maxConnections, "minIdle must not be more than maxConnections");
+    return new PgPool(this, host, port);
+  }
+
+}
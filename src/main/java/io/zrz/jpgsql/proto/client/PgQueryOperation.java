@@ -0,0 +1,536 @@
+package io.zrz.jpgsql.proto.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.postgresql.core.Field;
+import org.postgresql.util.ServerErrorMessage;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import io.netty.channel.Channel;
+import io.reactivex.rxjava3.core.FlowableEmitter;
+import io.zrz.jpgsql.client.CommandStatus;
+import io.zrz.jpgsql.client.ErrorResult;
+import io.zrz.jpgsql.client.Query;
+import io.zrz.jpgsql.client.QueryOptions;
+import io.zrz.jpgsql.client.QueryOptions.RowBufferFormat;
+import io.zrz.jpgsql.client.QueryParameters;
+import io.zrz.jpgsql.client.QueryResult;
+import io.zrz.jpgsql.client.SimpleQuery;
+import io.zrz.jpgsql.client.WarningResult;
+import io.zrz.jpgsql.client.opj.PgPackedResultRows;
+import io.zrz.jpgsql.client.opj.PgResultMeta;
+import io.zrz.jpgsql.proto.wire.Bind;
+import io.zrz.jpgsql.proto.wire.BindComplete;
+import io.zrz.jpgsql.proto.wire.Close;
+import io.zrz.jpgsql.proto.wire.CloseComplete;
+import io.zrz.jpgsql.proto.wire.CommandComplete;
+import io.zrz.jpgsql.proto.wire.CopyData;
+import io.zrz.jpgsql.proto.wire.DataRow;
+import io.zrz.jpgsql.proto.wire.Describe;
+import io.zrz.jpgsql.proto.wire.EmptyQueryResponse;
+import io.zrz.jpgsql.proto.wire.ErrorResponse;
+import io.zrz.jpgsql.proto.wire.Execute;
+import io.zrz.jpgsql.proto.wire.Flush;
+import io.zrz.jpgsql.proto.wire.NoData;
+import io.zrz.jpgsql.proto.wire.NoticeResponse;
+import io.zrz.jpgsql.proto.wire.Parse;
+import io.zrz.jpgsql.proto.wire.ParseComplete;
+import io.zrz.jpgsql.proto.wire.PortalSuspended;
+import io.zrz.jpgsql.proto.wire.PostgreSQLPacket;
+import io.zrz.jpgsql.proto.wire.ReadyForQuery;
+import io.zrz.jpgsql.proto.wire.RowDescription;
+import io.zrz.jpgsql.proto.wire.Sync;
+
+/**
+ * a single submitted {@link Query} on a {@link PgConnection}: the messages sent for it, and the state needed to turn
+ * the responses up to the following ReadyForQuery into {@link QueryResult}s.
+ *
+ * each statement is sent as Parse/Bind/Describe/Execute using the unnamed portal, and the whole query is
+ * closed with a single Sync, so the statements run in one implicit transaction, and an error fails this query only:
+ * the server skips to the Sync and then carries on with whatever was pipelined behind it. when a fetch size is set,
+ * the portal is executed a page at a time as the subscriber requests more, so each statement is sent only after the
+ * previous one completes.
+ *
+ * statements are parsed into named prepared statements kept in the connection's {@link PgStatementCache}, and only
+ * bound when they are already there. with the cache disabled, or while another query's Parse of the same statement is
+ * still outstanding, the unnamed statement is used instead. the cache also
+ * keeps the result description of each statement, so once one has been described it is sent as just Bind/Execute,
+ * and the description is applied when its BindComplete arrives.
+ *
+ * a batch executes the single statement of the query once for each of its parameter sets: it is parsed once, then
+ * bound and executed for each set without a Describe, and closed by the one Sync. only the command status of each
+ * execution is emitted.
+ *
+ * the parameters are all encoded when the operation is created, so one which can't be sent fails the query before it
+ * is queued rather than while it is being written.
+ *
+ * only accessed on the channel's event loop.
+ */
+final class PgQueryOperation implements PgOperation {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PgQueryOperation.class);
+
+  private static final int DEFAULT_BATCH_SIZE = 8192;
+
+  // results are requested as text; the decoders handle either.
+  private static final List<Integer> RESULT_FORMATS = ImmutableList.of();
+
+  private static final String CACHED_PLAN_CHANGED = "0A000";
+  private static final String MISSING_STATEMENT = "26000";
+
+  private final Query query;
+  private final List<QueryParameters> batch;
+  // the number of statements to execute.
+  private final int total;
+  private final FlowableEmitter<QueryResult> emitter;
+  private final int fetchSize;
+  private final int batchSize;
+  private final boolean direct;
+  private final PgStatementCache statements;
+  // the parameter types and encoded values of each statement to send, or null where it takes none.
+  private final List<List<Integer>> oids;
+  private final List<PgParameters.Values> values;
+
+  private Channel channel;
+
+  // the statement currently being responded to, and the next one to send when paging.
+  private int statementId;
+  private int sent;
+  // the prepared statement used by each statement sent, and those whose ParseComplete hasn't arrived yet, where the
+  // unnamed one is empty.
+  private final List<String> names = new ArrayList<>();
+  private final ArrayDeque<String> parsing = new ArrayDeque<>();
+  // the statements closed by this query whose CloseComplete hasn't arrived yet.
+  private final ArrayDeque<String> closing = new ArrayDeque<>();
+  // the cached result of each statement sent without a Describe, or null where one was sent.
+  private final List<Optional<PgResultMeta>> described = new ArrayList<>();
+
+  private PgResultMeta meta;
+  private PgPackedResultRows.Builder rows;
+  private boolean emitted;
+
+  private boolean suspended;
+  private boolean synced;
+  private ErrorResult error;
+
+  PgQueryOperation(
+      final Query query,
+      final QueryParameters params,
+      final QueryOptions options,
+      final PgStatementCache statements,
+      final FlowableEmitter<QueryResult> emitter) {
+    this.query = query;
+    this.batch = null;
+    this.total = query.getSubqueries().size();
+    this.emitter = emitter;
+    this.fetchSize = options.getFetchSize();
+    this.batchSize = this.fetchSize == 0 ? DEFAULT_BATCH_SIZE
+                                         : this.fetchSize;
+    this.direct = options.getRowFormat() == RowBufferFormat.PACKED_DIRECT;
+    this.statements = statements;
+    this.oids = new ArrayList<>(this.total);
+    this.values = new ArrayList<>(this.total);
+    int offset = 0;
+    for (int i = 0; i < this.total; ++i) {
+      final int count = query.statement(i).parameterCount();
+      this.encode(params, offset, count);
+      offset += count;
+    }
+  }
+
+  /**
+   * a batch of executions of the query's single statement.
+   */
+  PgQueryOperation(
+      final Query query,
+      final List<QueryParameters> batch,
+      final PgStatementCache statements,
+      final FlowableEmitter<QueryResult> emitter) {
+    Preconditions.checkArgument(query.getSubqueries().size() == 1, "a batch executes a single statement: %s", query);
+    this.query = query;
+    this.batch = batch;
+    this.total = batch.size();
+    this.emitter = emitter;
+    this.fetchSize = 0;
+    this.batchSize = DEFAULT_BATCH_SIZE;
+    this.direct = false;
+    this.statements = statements;
+    this.oids = new ArrayList<>(this.total);
+    this.values = new ArrayList<>(this.total);
+    final int count = query.statement(0).parameterCount();
+    for (final QueryParameters params : batch) {
+      this.encode(params, 0, count);
+    }
+  }
+
+  /**
+   * the types and values of a window of parameters, in the order the statements are sent.
+   */
+  private void encode(final QueryParameters params, final int offset, final int count) {
+    if (count == 0) {
+      this.oids.add(ImmutableList.of());
+      this.values.add(null);
+    }
+    else {
+      this.oids.add(PgParameters.oids(params, offset, count));
+      this.values.add(PgParameters.encode(params, offset, count));
+    }
+  }
+
+  @Override
+  public String toString() {
+    return this.query.toString();
+  }
+
+  /**
+   * write the query to the channel. the caller flushes, so that many pipelined queries can go in a single write.
+   */
+  @Override
+  public void start(final Channel channel) {
+    this.channel = channel;
+    if (this.fetchSize == 0) {
+      while (this.sent < this.total) {
+        this.writeStatement();
+      }
+      this.synced = true;
+      channel.write(new Sync());
+    }
+    else {
+      this.writeStatement();
+      channel.write(new Flush());
+    }
+  }
+
+  /**
+   * true once the Sync ending this query has been written, after which the next query can be sent behind it. until
+   * then a paged query still has Executes to send on the unnamed portal, so nothing else can be.
+   */
+  @Override
+  public boolean isSynced() {
+    return this.synced;
+  }
+
+  /**
+   * the statement sent as the nth.
+   */
+  private SimpleQuery statement(final int index) {
+    return this.batch == null ? this.query.statement(index)
+                              : this.query.statement(0);
+  }
+
+  private void writeStatement() {
+    final SimpleQuery statement = this.statement(this.sent);
+    final List<Integer> oids = this.oids.get(this.sent);
+    final PgParameters.Values values = this.values.get(this.sent);
+    String name = (this.batch != null) && (this.sent > 0) ? this.names.get(0)
+                                                          : this.statements.get(statement.sql(), oids);
+    this.sent++;
+    if (name == null) {
+      name = this.statements.isEnabled() ? this.statements.add(statement.sql(), oids)
+                                         : null;
+      if (name == null) {
+        name = "";
+      }
+      this.parsing.add(name);
+      this.close();
+      this.channel.write(new Parse(name, statement.sql(), oids));
+    }
+    else {
+      this.close();
+    }
+    this.names.add(name);
+    if (values == null) {
+      this.channel.write(new Bind("", name, ImmutableList.of(), ImmutableList.of(), RESULT_FORMATS));
+    }
+    else {
+      this.channel.write(values.bind("", name, RESULT_FORMATS));
+    }
+    if (this.batch == null) {
+      final Optional<PgResultMeta> description = name.isEmpty() ? null
+                                                                : this.statements.description(name);
+      this.described.add(description);
+      if (description == null) {
+        this.channel.write(new Describe(Describe.PORTAL, ""));
+      }
+    }
+    this.channel.write(new Execute("", this.fetchSize));
+  }
+
+  /**
+   * close any prepared statements evicted from the cache.
+   */
+  private void close() {
+    for (final String name : this.statements.drainClosing()) {
+      this.closing.add(name);
+      this.channel.write(new Close(Close.STATEMENT, name));
+    }
+  }
+
+  private void sync() {
+    if (!this.synced) {
+      this.synced = true;
+      this.channel.writeAndFlush(new Sync());
+    }
+  }
+
+  /**
+   * called when the subscriber requests more or cancels, to continue a suspended portal.
+   */
+  @Override
+  public void resume() {
+    if (!this.suspended || this.synced) {
+      return;
+    }
+    if (this.emitter.isCancelled()) {
+      // closes the portal and abandons the rest of the query.
+      this.suspended = false;
+      this.sync();
+    }
+    else if (this.emitter.requested() > 0) {
+      this.suspended = false;
+      this.channel.write(new Execute("", this.fetchSize));
+      this.channel.writeAndFlush(new Flush());
+    }
+  }
+
+  /**
+   * process a message from the backend.
+   *
+   * @return true once the ReadyForQuery that ends this query has been received.
+   */
+  @Override
+  public boolean handle(final PostgreSQLPacket msg) {
+
+    if (msg instanceof DataRow) {
+      if (this.batch == null) {
+        this.row((DataRow) msg);
+      }
+    }
+    else if (msg instanceof ParseComplete) {
+      final String name = this.parsing.poll();
+      if ((name != null) && !name.isEmpty()) {
+        this.statements.parsed(name);
+      }
+    }
+    else if (msg instanceof BindComplete) {
+      this.bound();
+    }
+    else if (msg instanceof CloseComplete) {
+      this.closing.poll();
+    }
+    else if (msg instanceof RowDescription) {
+      this.describe((RowDescription) msg);
+    }
+    else if (msg instanceof NoData) {
+      this.describe((PgResultMeta) null);
+    }
+    else if (msg instanceof PortalSuspended) {
+      this.flush(false);
+      this.suspended = true;
+      this.resume();
+    }
+    else if (msg instanceof CommandComplete) {
+      this.complete(((CommandComplete) msg).getCommandTag());
+    }
+    else if (msg instanceof EmptyQueryResponse) {
+      this.complete("");
+    }
+    else if (msg instanceof ErrorResponse) {
+      this.error((ErrorResponse) msg);
+    }
+    else if (msg instanceof NoticeResponse) {
+      this.emit(new WarningResult(this.statementId, message(((NoticeResponse) msg).getMessages())));
+    }
+    else if (msg instanceof ReadyForQuery) {
+      if (this.error != null) {
+        this.emitter.onError(this.error);
+      }
+      else {
+        this.emitter.onComplete();
+      }
+      return true;
+    }
+    else if (msg instanceof CopyData) {
+      // COPY isn't supported through here, but the server may still send it.
+      ((CopyData) msg).getData().release();
+    }
+    else {
+      log.warn("unexpected message {} in {}", msg, this.query);
+    }
+
+    return false;
+
+  }
+
+  /**
+   * the connection failed before the query completed.
+   */
+  @Override
+  public void fail(final Throwable cause) {
+    this.emitter.onError(cause);
+  }
+
+  /**
+   * a statement sent without a Describe takes its result from the cache instead, as it was when the statement was sent.
+   */
+  private void bound() {
+    if ((this.batch == null) && (this.statementId < this.described.size())) {
+      final Optional<PgResultMeta> description = this.described.get(this.statementId);
+      if (description != null) {
+        this.meta = description.orElse(null);
+        this.emitted = false;
+      }
+    }
+  }
+
+  private void describe(final RowDescription desc) {
+    final Field[] fields = new Field[desc.getRows().size()];
+    for (int i = 0; i < fields.length; ++i) {
+      final RowDescription.Entry e = desc.getRows().get(i);
+      fields[i] = new Field(e.getName(), e.getTypeOid(), e.getTypeLength(), e.getTypeModifier(), e.getTableOid(), e.getColumn());
+      fields[i].setFormat(e.getFormat());
+    }
+    this.describe(new PgResultMeta(fields));
+  }
+
+  /**
+   * the result of the current statement, or null if it returns no rows, which is kept for the next execution.
+   */
+  private void describe(final PgResultMeta meta) {
+    this.meta = meta;
+    this.emitted = false;
+    final String name = this.names.get(this.statementId);
+    if (!name.isEmpty()) {
+      this.statements.describe(name, meta);
+    }
+  }
+
+  /**
+   * copies the values straight from the row into the batch. the row is released by the connection's handler.
+   */
+  private void row(final DataRow row) {
+    if (this.rows == null) {
+      this.rows = PgPackedResultRows.builder(this.query, this.statementId, this.meta).direct(this.direct);
+    }
+    for (int i = 0; i < row.size(); ++i) {
+      final int length = row.length(i);
+      if (length < 0) {
+        this.rows.addNull();
+      }
+      else {
+        this.rows.add(row.content(), row.index(i), length);
+      }
+    }
+    this.rows.endRow();
+    if ((this.fetchSize == 0) && (this.rows.rows() == this.batchSize)) {
+      this.flush(false);
+    }
+  }
+
+  /**
+   * emit the rows collected so far. the final batch of a statement is always emitted, even if empty.
+   */
+  private void flush(final boolean done) {
+    if ((this.rows == null) && (!done || (this.meta == null) || this.emitted)) {
+      return;
+    }
+    final PgPackedResultRows.Builder b = this.rows == null ? PgPackedResultRows.builder(this.query, this.statementId, this.meta)
+                                                           : this.rows;
+    this.rows = null;
+    this.emitted = true;
+    this.emit(b.done(done).build());
+  }
+
+  private void complete(final String tag) {
+    if (tag.equals("DISCARD ALL") || tag.equals("DEALLOCATE ALL")) {
+      // every prepared statement is gone, including those in the cache.
+      this.statements.clear();
+    }
+    this.flush(true);
+    this.emit(status(this.statementId, tag));
+    this.meta = null;
+    this.statementId++;
+    if (this.fetchSize != 0) {
+      if (this.sent < this.total) {
+        this.writeStatement();
+        this.channel.writeAndFlush(new Flush());
+      }
+      else {
+        this.sync();
+      }
+    }
+  }
+
+  private void error(final ErrorResponse msg) {
+    final ServerErrorMessage err = message(msg.getMessages());
+    this.rows = null;
+    this.meta = null;
+    // the server skips everything until the Sync, so make sure there is one.
+    this.sync();
+    // any statement not parsed yet never will be, and any not closed yet is still there.
+    while (!this.parsing.isEmpty()) {
+      final String parsing = this.parsing.poll();
+      if (!parsing.isEmpty()) {
+        this.statements.remove(parsing);
+      }
+    }
+    while (!this.closing.isEmpty()) {
+      this.statements.closeSkipped(this.closing.poll());
+    }
+    final String name = this.statementId < this.names.size() ? this.names.get(this.statementId)
+                                                             : "";
+    if (!name.isEmpty()) {
+      if (CACHED_PLAN_CHANGED.equals(err.getSQLState())) {
+        // "cached plan must not change result type": the statement has to be parsed again.
+        this.statements.invalidate(name);
+      }
+      else if (MISSING_STATEMENT.equals(err.getSQLState())) {
+        // e.g closed by something outside the cache, such as a DEALLOCATE.
+        this.statements.remove(name);
+      }
+    }
+    if (this.error == null) {
+      final SimpleQuery statement = this.statementId < this.total ? this.statement(this.statementId)
+                                                                  : null;
+      this.error = new ErrorResult(statement, this.statementId, err.getMessage(), err.getSQLState(), err, null);
+    }
+  }
+
+  private void emit(final QueryResult result) {
+    if (!this.emitter.isCancelled()) {
+      this.emitter.onNext(result);
+    }
+  }
+
+  static ServerErrorMessage message(final List<String> fields) {
+    return new ServerErrorMessage(fields.stream().collect(Collectors.joining("\0")));
+  }
+
+  /**
+   * the command status from a CommandComplete tag, e.g "INSERT 0 1" or "UPDATE 12".
+   */
+  static CommandStatus status(final int statementId, final String tag) {
+    final String[] parts = tag.split(" ");
+    long updateCount = 0;
+    long insertOID = 0;
+    if (parts.length > 1) {
+      try {
+        updateCount = Long.parseLong(parts[parts.length - 1]);
+        if (parts.length > 2) {
+          insertOID = Long.parseLong(parts[parts.length - 2]);
+        }
+      }
+      catch (final NumberFormatException ex) {
+        // not a counted command, e.g "SET".
+      }
+    }
+    return new CommandStatus(statementId, tag, updateCount, insertOID);
+  }
+
+}
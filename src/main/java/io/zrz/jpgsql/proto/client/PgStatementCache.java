@@ -0,0 +1,212 @@
+package io.zrz.jpgsql.proto.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import com.google.common.cache.CacheStats;
+
+import io.zrz.jpgsql.client.opj.PgResultMeta;
+
+/**
+ * the named server side prepared statements of a single {@link PgConnection}, keyed by SQL and parameter types, and
+ * evicted least recently used first.
+ *
+ * statements are added when their Parse is written, but only handed out to other queries once its ParseComplete has
+ * arrived: until then the Parse may still be skipped because of an error earlier in the same query, and anything
+ * pipelined behind it which bound the name would fail too. those queries parse the unnamed statement instead. one
+ * which turns out to not exist on the server is removed again by the query which wrote it. evicted or invalidated
+ * statements are closed the next time a statement is written, and kept by the query which wrote the Close until its
+ * CloseComplete arrives: one skipped because of an error earlier in the query is queued to be closed again.
+ *
+ * the result description of each statement is kept along with it once the first execution has described it, so later
+ * ones can skip the Describe. it is dropped with the statement, including when the server reports that its result type
+ * changed.
+ *
+ * a new connection starts with an empty cache, so nothing needs to be done on reconnect.
+ *
+ * only accessed on the channel's event loop, apart from {@link #stats()}.
+ */
+final class PgStatementCache {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PgStatementCache.class);
+
+  private static final class Key {
+
+    private final String sql;
+    private final List<Integer> oids;
+
+    Key(final String sql, final List<Integer> oids) {
+      this.sql = sql;
+      this.oids = oids;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (o == this) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      final Key other = (Key) o;
+      return this.sql.equals(other.sql) && this.oids.equals(other.oids);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.sql, this.oids);
+    }
+
+  }
+
+  private final int maximumSize;
+  private final LinkedHashMap<Key, String> statements;
+  // the result of each cached statement by name: null until described, and empty if it returns no rows.
+  private final Map<String, Optional<PgResultMeta>> descriptions = new HashMap<>();
+  // statements whose ParseComplete hasn't arrived yet.
+  private final Set<String> parsing = new HashSet<>();
+  // statements to close before the next one is written.
+  private final List<String> closing = new ArrayList<>();
+  private int nextId;
+
+  // written on the event loop only, read from anywhere.
+  private volatile long hits;
+  private volatile long misses;
+  private volatile long evictions;
+
+  PgStatementCache(final int maximumSize) {
+    this.maximumSize = maximumSize;
+    this.statements = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  boolean isEnabled() {
+    return this.maximumSize > 0;
+  }
+
+  /**
+   * the name of the prepared statement for this SQL and parameter types, or null if it needs to be parsed.
+   */
+  String get(final String sql, final List<Integer> oids) {
+    if (!this.isEnabled()) {
+      return null;
+    }
+    final String name = this.statements.get(new Key(sql, oids));
+    if ((name == null) || this.parsing.contains(name)) {
+      this.misses++;
+      return null;
+    }
+    this.hits++;
+    return name;
+  }
+
+  /**
+   * allocate a name for a statement about to be parsed, evicting the least recently used one if the cache is full.
+   * null if the same statement is already being parsed, in which case the unnamed one should be used.
+   */
+  String add(final String sql, final List<Integer> oids) {
+    final Key key = new Key(sql, oids);
+    final String current = this.statements.get(key);
+    if ((current != null) && this.parsing.contains(current)) {
+      return null;
+    }
+    final String name = "S_" + this.nextId++;
+    this.statements.put(key, name);
+    this.descriptions.put(name, null);
+    this.parsing.add(name);
+    if (this.statements.size() > this.maximumSize) {
+      final Iterator<String> it = this.statements.values().iterator();
+      final String evicted = it.next();
+      this.closing.add(evicted);
+      this.descriptions.remove(evicted);
+      it.remove();
+      this.evictions++;
+    }
+    return name;
+  }
+
+  /**
+   * the ParseComplete for the statement arrived, so other queries can use it.
+   */
+  void parsed(final String name) {
+    this.parsing.remove(name);
+  }
+
+  /**
+   * the result of the statement, which is empty if it returns no rows, or null if it hasn't been described yet.
+   */
+  Optional<PgResultMeta> description(final String name) {
+    return this.descriptions.get(name);
+  }
+
+  /**
+   * the result of a statement as described by the server, where null means it returns no rows. ignored if the
+   * statement is no longer cached.
+   */
+  void describe(final String name, final PgResultMeta meta) {
+    this.descriptions.replace(name, Optional.ofNullable(meta));
+  }
+
+  /**
+   * statements which are no longer cached and should be closed on the server. the caller writes the Close messages, and
+   * passes any the server skipped to {@link #closeSkipped(String)}.
+   */
+  List<String> drainClosing() {
+    if (this.closing.isEmpty()) {
+      return this.closing;
+    }
+    final List<String> names = new ArrayList<>(this.closing);
+    this.closing.clear();
+    return names;
+  }
+
+  /**
+   * the Close for the statement was skipped because of an error before it, so it is still on the server.
+   */
+  void closeSkipped(final String name) {
+    this.closing.add(name);
+  }
+
+  /**
+   * the statement doesn't exist on the server (any more).
+   */
+  void remove(final String name) {
+    this.statements.values().remove(name);
+    this.descriptions.remove(name);
+    this.parsing.remove(name);
+  }
+
+  /**
+   * the statement still exists, but can't be used any more, e.g because the result type of its cached plan changed.
+   */
+  void invalidate(final String name) {
+    this.descriptions.remove(name);
+    if (this.statements.values().remove(name)) {
+      log.debug("invalidated prepared statement {}", name);
+      this.closing.add(name);
+    }
+  }
+
+  /**
+   * all of the statements were deallocated on the server, e.g by DISCARD ALL.
+   */
+  void clear() {
+    log.debug("clearing {} prepared statements", this.statements.size());
+    this.statements.clear();
+    this.descriptions.clear();
+    this.parsing.clear();
+    this.closing.clear();
+  }
+
+  CacheStats stats() {
+    return new CacheStats(this.hits, this.misses, 0, 0, 0, this.evictions);
+  }
+
+}
@@ -0,0 +1,60 @@
+package io.zrz.jpgsql.proto.client;
+
+import java.util.concurrent.CompletableFuture;
+
+import io.netty.channel.Channel;
+import io.zrz.jpgsql.proto.wire.PostgreSQLPacket;
+import io.zrz.jpgsql.proto.wire.ReadyForQuery;
+import io.zrz.jpgsql.proto.wire.Sync;
+import io.zrz.jpgsql.proto.wire.TransactionStatus;
+
+/**
+ * a lone Sync, which the server answers with nothing but a ReadyForQuery. used to check a connection is alive.
+ *
+ * only accessed on the channel's event loop.
+ */
+final class PgSyncOperation implements PgOperation {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PgSyncOperation.class);
+
+  private final CompletableFuture<TransactionStatus> result = new CompletableFuture<>();
+
+  CompletableFuture<TransactionStatus> result() {
+    return this.result;
+  }
+
+  @Override
+  public void start(final Channel channel) {
+    channel.write(new Sync());
+  }
+
+  @Override
+  public boolean isSynced() {
+    return true;
+  }
+
+  @Override
+  public void resume() {
+  }
+
+  @Override
+  public boolean handle(final PostgreSQLPacket msg) {
+    if (msg instanceof ReadyForQuery) {
+      this.result.complete(((ReadyForQuery) msg).getStatus());
+      return true;
+    }
+    log.warn("unexpected message waiting for ReadyForQuery: {}", msg);
+    return false;
+  }
+
+  @Override
+  public void fail(final Throwable cause) {
+    this.result.completeExceptionally(cause);
+  }
+
+  @Override
+  public String toString() {
+    return "PgSyncOperation";
+  }
+
+}
@@ -0,0 +1,60 @@
+package io.zrz.jpgsql.proto.netty;
+
+/**
+ * frontend (client to server) message types. the startup, SSL and cancel requests have no type byte so aren't listed.
+ *
+ * @see MessageType
+ */
+public enum FrontendMessageType {
+
+  Query((byte) 'Q'),
+
+  Parse((byte) 'P'),
+
+  Bind((byte) 'B'),
+
+  Describe((byte) 'D'),
+
+  Execute((byte) 'E'),
+
+  Sync((byte) 'S'),
+
+  Flush((byte) 'H'),
+
+  Close((byte) 'C'),
+
+  Terminate((byte) 'X'),
+
+  CopyData((byte) 'd'),
+
+  CopyDone((byte) 'c'),
+
+  CopyFail((byte) 'f'),
+
+  PasswordMessage((byte) 'p'),
+
+  ;
+
+  private byte type;
+
+  FrontendMessageType(final byte type) {
+    this.type = type;
+  }
+
+  public byte getType() {
+    return this.type;
+  }
+
+  public static FrontendMessageType getType(final byte type) {
+
+    for (final FrontendMessageType t : FrontendMessageType.values()) {
+      if (t.type == type) {
+        return t;
+      }
+    }
+
+    throw new RuntimeException(String.format("Unknown message type '%s'", type));
+
+  }
+
+}
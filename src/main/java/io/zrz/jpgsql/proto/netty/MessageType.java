@@ -1,5 +1,10 @@
 package io.zrz.jpgsql.proto.netty;
 
+/**
+ * backend (server to client) message types.
+ *
+ * @see FrontendMessageType
+ */
 public enum MessageType {
 
   NoticeResponse((byte) 'N'),
@@ -32,6 +37,18 @@ public enum MessageType {
 
   CloseComplete((byte) '3'),
 
+  NoData((byte) 'n'),
+
+  ParameterDescription((byte) 't'),
+
+  EmptyQueryResponse((byte) 'I'),
+
+  PortalSuspended((byte) 's'),
+
+  CopyInResponse((byte) 'G'),
+
+  CopyOutResponse((byte) 'H'),
+
   ;
 
   private byte type;
@@ -40,6 +57,10 @@ public enum MessageType {
     this.type = type;
   }
 
+  public byte getType() {
+    return this.type;
+  }
+
   public static MessageType getType(final byte type) {
 
     for (final MessageType t : MessageType.values()) {
@@ -0,0 +1,78 @@
+package io.zrz.jpgsql.proto.netty;
+
+import com.google.common.base.Preconditions;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollMode;
+
+/**
+ * socket options for connections to the server. TCP_NODELAY is always set, as every message is flushed as soon as
+ * it is complete.
+ *
+ * the rest only apply to the epoll transport, and are ignored by NIO.
+ */
+public final class PgSocketOptions {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PgSocketOptions.class);
+
+  private boolean tcpQuickAck;
+  private int busyPollMicros;
+  private boolean edgeTriggered = true;
+
+  /**
+   * TCP_QUICKACK: acknowledge responses straight away rather than delaying the ACK to piggyback it on the next query.
+   */
+  public PgSocketOptions tcpQuickAck(final boolean tcpQuickAck) {
+    this.tcpQuickAck = tcpQuickAck;
+    return this;
+  }
+
+  /**
+   * SO_BUSY_POLL: how long a read busy waits on the device queue for data before sleeping, trading CPU for latency.
+   * 0 (the default) doesn't busy poll.
+   */
+  public PgSocketOptions busyPollMicros(final int busyPollMicros) {
+    Preconditions.checkArgument(busyPollMicros >= 0, "busyPollMicros must not be negative");
+    this.busyPollMicros = busyPollMicros;
+    return this;
+  }
+
+  /**
+   * edge triggered (the default) or level triggered epoll.
+   */
+  public PgSocketOptions edgeTriggered(final boolean edgeTriggered) {
+    this.edgeTriggered = edgeTriggered;
+    return this;
+  }
+
+  /**
+   * a bootstrap for connections on the group, with the channel of its transport and these options.
+   */
+  public Bootstrap bootstrap(final EventLoopGroup group) {
+    final PgTransport transport = PgTransport.of(group);
+    final Bootstrap b = new Bootstrap().group(group).channel(transport.socketChannel()).option(ChannelOption.TCP_NODELAY, true);
+    if (transport == PgTransport.EPOLL) {
+      if (this.tcpQuickAck) {
+        b.option(EpollChannelOption.TCP_QUICKACK, true);
+      }
+      if (this.busyPollMicros > 0) {
+        b.option(EpollChannelOption.SO_BUSY_POLL, this.busyPollMicros);
+      }
+      b.option(EpollChannelOption.EPOLL_MODE, this.edgeTriggered ? EpollMode.EDGE_TRIGGERED
+                                                                 : EpollMode.LEVEL_TRIGGERED);
+    }
+    else if (this.tcpQuickAck || (this.busyPollMicros > 0) || !this.edgeTriggered) {
+      log.debug("ignoring epoll socket options on {}", transport);
+    }
+    return b;
+  }
+
+  @Override
+  public String toString() {
+    return "PgSocketOptions(tcpQuickAck=" + this.tcpQuickAck + ", busyPollMicros=" + this.busyPollMicros + ", edgeTriggered=" + this.edgeTriggered + ")";
+  }
+
+}
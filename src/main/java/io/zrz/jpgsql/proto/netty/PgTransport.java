@@ -0,0 +1,101 @@
+package io.zrz.jpgsql.proto.netty;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * the netty transport used for connections: the native epoll one where it is available (linux, with the native
+ * library on the classpath), and NIO everywhere else.
+ *
+ * a channel has to be of the same transport as the event loop it is registered with, so connections take their
+ * transport from the group they are given with {@link #of(EventLoopGroup)}, and the choice is made when the group is
+ * created.
+ */
+public enum PgTransport {
+
+  NIO {
+
+    @Override
+    public boolean isAvailable() {
+      return true;
+    }
+
+    @Override
+    public EventLoopGroup newEventLoopGroup(final int threads) {
+      return new NioEventLoopGroup(threads);
+    }
+
+    @Override
+    public Class<? extends SocketChannel> socketChannel() {
+      return NioSocketChannel.class;
+    }
+
+    @Override
+    public Class<? extends ServerSocketChannel> serverSocketChannel() {
+      return NioServerSocketChannel.class;
+    }
+
+  },
+
+  EPOLL {
+
+    @Override
+    public boolean isAvailable() {
+      return Epoll.isAvailable();
+    }
+
+    @Override
+    public EventLoopGroup newEventLoopGroup(final int threads) {
+      return new EpollEventLoopGroup(threads);
+    }
+
+    @Override
+    public Class<? extends SocketChannel> socketChannel() {
+      return EpollSocketChannel.class;
+    }
+
+    @Override
+    public Class<? extends ServerSocketChannel> serverSocketChannel() {
+      return EpollServerSocketChannel.class;
+    }
+
+  };
+
+  public abstract boolean isAvailable();
+
+  /**
+   * a new event loop group of this transport, where 0 threads means netty's default.
+   */
+  public abstract EventLoopGroup newEventLoopGroup(int threads);
+
+  public abstract Class<? extends SocketChannel> socketChannel();
+
+  public abstract Class<? extends ServerSocketChannel> serverSocketChannel();
+
+  /**
+   * the best transport available here.
+   */
+  public static PgTransport auto() {
+    return EPOLL.isAvailable() ? EPOLL
+                               : NIO;
+  }
+
+  /**
+   * the transport of an event loop group, or of a single event loop.
+   */
+  public static PgTransport of(final EventLoopGroup group) {
+    if ((group instanceof EpollEventLoopGroup) || (group.next().parent() instanceof EpollEventLoopGroup)) {
+      return EPOLL;
+    }
+    return NIO;
+  }
+
+}
@@ -2,11 +2,11 @@ package io.zrz.jpgsql.proto.netty;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufProcessor;
+import io.zrz.jpgsql.proto.wire.DataRow;
 import io.zrz.jpgsql.proto.wire.ErrorResponse;
 import io.zrz.jpgsql.proto.wire.NoticeResponse;
 import io.zrz.jpgsql.proto.wire.RowDescription;
@@ -15,6 +15,7 @@ public class ProtoUtils {
 
   public static final int PROTO_VERSION = 196608;
   public static final int SSL_MAGIC = 80877103;
+  public static final int CANCEL_MAGIC = 80877102;
 
   public static void addParam(final ByteBuf buf, final String key, final String value) {
     buf.writeBytes(key.getBytes(StandardCharsets.UTF_8));
@@ -31,32 +32,49 @@ public class ProtoUtils {
     return String.format("'%s'", value);
   }
 
-  public static String parseString(ByteBuf payload) {
+  /**
+   * read a NUL terminated string, consuming the terminator.
+   */
+
+  public static String parseString(final ByteBuf payload) {
     final int pos = payload.forEachByte(ByteBufProcessor.FIND_NUL);
-    final byte[] posa = new byte[(pos - payload.readerIndex()) + 1];
-    payload.readBytes(posa);
-    return new String(posa, StandardCharsets.UTF_8);
+    final String value = payload.toString(payload.readerIndex(), pos - payload.readerIndex(), StandardCharsets.UTF_8);
+    payload.readerIndex(pos + 1);
+    return value;
   }
 
   /**
-   *
+   * write a NUL terminated string.
    */
 
-  public static ErrorResponse parseError(final ByteBuf payload) {
+  public static void writeString(final ByteBuf buf, final String value) {
+    buf.writeCharSequence(value, StandardCharsets.UTF_8);
+    buf.writeByte(0);
+  }
+
+  /**
+   * parse the fields of an ErrorResponse or NoticeResponse. each entry is the field type code followed by the value, the
+   * same form {@link org.postgresql.util.ServerErrorMessage} parses.
+   */
 
-    final int len = payload.readInt();
+  public static List<String> parseFields(final ByteBuf payload) {
 
-    final List<String> messages = new LinkedList<>();
+    final List<String> messages = new ArrayList<>();
 
-    while (payload.readableBytes() > 0) {
-      final int pos = payload.forEachByte(ByteBufProcessor.FIND_NUL);
-      final byte[] posa = new byte[(pos - payload.readerIndex()) + 1];
-      payload.readBytes(posa);
-      messages.add(new String(posa));
+    while (payload.isReadable()) {
+      final byte type = payload.readByte();
+      if (type == 0) {
+        break;
+      }
+      messages.add((char) type + parseString(payload));
     }
 
-    return new ErrorResponse(messages);
+    return messages;
+
+  }
 
+  public static ErrorResponse parseError(final ByteBuf payload) {
+    return new ErrorResponse(parseFields(payload));
   }
 
   public static List<RowDescription.Entry> parseRowDescription(final ByteBuf payload) {
@@ -86,18 +104,7 @@ public class ProtoUtils {
       final int typmod = payload.readInt();
       final int typfmt = payload.readShort();
 
-      descs.add(new RowDescription.Entry(name));
-
-      // System.err.println(String.format("name = %s, table = %d, col = %d, type = %d, len = %d, mod = %d, fmt = %d",
-      // name,
-      // table,
-      // col,
-      // type,
-      // typlen,
-      // typmod,
-      // typfmt
-      //
-      // ));
+      descs.add(new RowDescription.Entry(name, table, col, type, typlen, typmod, typfmt));
 
     }
 
@@ -105,35 +112,17 @@ public class ProtoUtils {
 
   }
 
-  public static List<String> parseDataRow(final ByteBuf payload) {
-
-    final int rows = payload.readShort();
-
-    final ArrayList<String> results = new ArrayList<>(rows);
-
-    for (int i = 0; i < rows; ++i) {
-
-      final int len = payload.readInt();
-
-      if (len == -1) {
-        results.add(null);
-        // field is NULL.
-        continue;
-      }
-      else if (len == 0) {
-        results.add(null);
-        // empty length
-        continue;
-      }
-
-      final byte[] data = new byte[len];
-      payload.readBytes(data);
-      results.add(new String(data));
-
+  /**
+   * a row over the message body, which it takes ownership of. the values aren't copied.
+   */
+  public static DataRow parseDataRow(final ByteBuf payload) {
+    try {
+      return new DataRow(payload, DataRow.offsets(payload));
+    }
+    catch (final RuntimeException ex) {
+      payload.release();
+      throw ex;
     }
-
-    return results;
-
   }
 
   /**
@@ -144,32 +133,7 @@ public class ProtoUtils {
    */
 
   public static NoticeResponse parseNotice(final ByteBuf payload) {
-
-    final int len = payload.readInt();
-
-    final List<String> messages = new LinkedList<>();
-
-    while (payload.readableBytes() > 1) {
-
-      final byte type = payload.readByte();
-
-      final int pos = payload.forEachByte(ByteBufProcessor.FIND_NUL);
-
-      if (pos == -1) {
-        final byte[] posa = new byte[payload.readableBytes()];
-        payload.readBytes(posa);
-        messages.add(new String(posa));
-      }
-      else {
-        final byte[] posa = new byte[(pos - payload.readerIndex()) + 1];
-        payload.readBytes(posa);
-        messages.add(new String(posa));
-      }
-
-    }
-
-    return new NoticeResponse(messages);
-
+    return new NoticeResponse(parseFields(payload));
   }
 
 }
@@ -11,10 +11,13 @@ import com.google.common.hash.Hashing;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.zrz.jpgsql.client.PostgresqlUnavailableException;
 import io.zrz.jpgsql.proto.wire.AuthenticationMD5Password;
 import io.zrz.jpgsql.proto.wire.AuthenticationOk;
 import io.zrz.jpgsql.proto.wire.AuthenticationPacket;
 import io.zrz.jpgsql.proto.wire.BackendKeyData;
+import io.zrz.jpgsql.proto.wire.ErrorResponse;
 import io.zrz.jpgsql.proto.wire.ParameterStatus;
 import io.zrz.jpgsql.proto.wire.PasswordMessage;
 import io.zrz.jpgsql.proto.wire.PostgreSQLPacket;
@@ -42,7 +45,8 @@ public class PostgreSQLClientNegotiation extends SimpleChannelInboundHandler<Pos
   protected void channelRead0(final ChannelHandlerContext ctx, final PostgreSQLPacket msg) throws Exception {
     log.debug("msg: {}", msg);
     if (established) {
-      ctx.fireChannelRead(msg);
+      // released both here and by the next handler.
+      ctx.fireChannelRead(ReferenceCountUtil.retain(msg));
       return;
     }
     if (msg instanceof ReadyForQuery) {
@@ -71,6 +75,10 @@ public class PostgreSQLClientNegotiation extends SimpleChannelInboundHandler<Pos
       pass[2] = '5';
       System.arraycopy(hash.toString().getBytes(), 0, pass, 3, 32);
       ctx.writeAndFlush(new PasswordMessage(pass));
+    } else if (msg instanceof ErrorResponse) {
+      // e.g authentication failed, or the database doesn't exist. the server closes the connection after.
+      final ErrorResponse err = (ErrorResponse) msg;
+      ctx.fireExceptionCaught(new PostgresqlUnavailableException(String.format("%s: %s", err.getField('C'), err.getField('M'))));
     } else if (msg instanceof AuthenticationPacket) {
       // err, crap.
       log.warn("authentication type {} not supported", msg);
@@ -9,12 +9,9 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.handler.logging.LogLevel;
-import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
-import io.zrz.jpgsql.proto.client.PgConnection;
 import io.zrz.jpgsql.proto.netty.ProtoUtils;
 import io.zrz.jpgsql.proto.wire.PostgreSQLPacket;
 
@@ -29,6 +26,7 @@ public class PostgreSQLClientTlsNegotiation extends SimpleChannelInboundHandler<
   private HashMap<String, String> params;
   private SimpleChannelInboundHandler<PostgreSQLPacket> handler;
   private String password;
+  private int flushThreshold = PostgreSQLEncoder.FLUSH_IMMEDIATE;
 
   public PostgreSQLClientTlsNegotiation() {
   }
@@ -40,6 +38,15 @@ public class PostgreSQLClientTlsNegotiation extends SimpleChannelInboundHandler<
     this.password = password;
   }
 
+  /**
+   * @param flushThreshold
+   *          passed on to the {@link PostgreSQLEncoder}.
+   */
+  public PostgreSQLClientTlsNegotiation(final SSLEngine sslEngine, final HashMap<String, String> params, final SimpleChannelInboundHandler<PostgreSQLPacket> handler, final String password, final int flushThreshold) {
+    this(sslEngine, params, handler, password);
+    this.flushThreshold = flushThreshold;
+  }
+
   @Override
   protected void channelRead0(final ChannelHandlerContext ctx, final ByteBuf msg) throws Exception {
     final byte b = msg.readByte();
@@ -51,8 +58,7 @@ public class PostgreSQLClientTlsNegotiation extends SimpleChannelInboundHandler<
         @Override
         public void operationComplete(final Future<? super Channel> future) throws Exception {
           ctx.pipeline().addLast(new PostgreSQLDecoder());
-          ctx.pipeline().addLast(new PostgreSQLEncoder());
-          ctx.pipeline().addLast(new LoggingHandler(PgConnection.class, LogLevel.DEBUG));
+          ctx.pipeline().addLast(new PostgreSQLEncoder(flushThreshold));
           ctx.pipeline().addLast(new PostgreSQLClientNegotiation(params, password));
           ctx.pipeline().addLast(handler);
         }
@@ -60,11 +66,10 @@ public class PostgreSQLClientTlsNegotiation extends SimpleChannelInboundHandler<
       return;
     }
     // an error occured.
-    log.error("SSL rejected, continuing without ...");
+    log.info("SSL rejected, continuing without ...");
     ctx.pipeline().remove(this);
-    ctx.pipeline().addLast(new LoggingHandler(PgConnection.class, LogLevel.DEBUG));
     ctx.pipeline().addLast(new PostgreSQLDecoder());
-    ctx.pipeline().addLast(new PostgreSQLEncoder());
+    ctx.pipeline().addLast(new PostgreSQLEncoder(flushThreshold));
     ctx.pipeline().addLast(new PostgreSQLClientNegotiation(params, password));
     ctx.pipeline().addLast(handler);
   }
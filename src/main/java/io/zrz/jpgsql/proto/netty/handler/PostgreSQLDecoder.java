@@ -14,14 +14,20 @@ import io.zrz.jpgsql.proto.wire.AuthenticationOk;
 import io.zrz.jpgsql.proto.wire.AuthenticationUnknown;
 import io.zrz.jpgsql.proto.wire.BackendKeyData;
 import io.zrz.jpgsql.proto.wire.BindComplete;
+import io.zrz.jpgsql.proto.wire.CloseComplete;
 import io.zrz.jpgsql.proto.wire.CommandComplete;
 import io.zrz.jpgsql.proto.wire.CopyBothResponse;
 import io.zrz.jpgsql.proto.wire.CopyBothResponse.Format;
 import io.zrz.jpgsql.proto.wire.CopyData;
 import io.zrz.jpgsql.proto.wire.CopyDone;
-import io.zrz.jpgsql.proto.wire.DataRow;
+import io.zrz.jpgsql.proto.wire.CopyInResponse;
+import io.zrz.jpgsql.proto.wire.CopyOutResponse;
+import io.zrz.jpgsql.proto.wire.EmptyQueryResponse;
+import io.zrz.jpgsql.proto.wire.NoData;
+import io.zrz.jpgsql.proto.wire.ParameterDescription;
 import io.zrz.jpgsql.proto.wire.ParameterStatus;
 import io.zrz.jpgsql.proto.wire.ParseComplete;
+import io.zrz.jpgsql.proto.wire.PortalSuspended;
 import io.zrz.jpgsql.proto.wire.PostgreSQLPacket;
 import io.zrz.jpgsql.proto.wire.ReadyForQuery;
 import io.zrz.jpgsql.proto.wire.RowDescription;
@@ -45,7 +51,9 @@ public class PostgreSQLDecoder extends ByteToMessageDecoder {
       }
       in.skipBytes(5);
       final MessageType mtype = MessageType.getType(type);
-      final ByteBuf payload = in.readSlice(len - 4).retain();
+      // DataRow and CopyData hold on to their body, everything else is copied out while parsing.
+      final ByteBuf payload = ((mtype == MessageType.DataRow) || (mtype == MessageType.CopyData)) ? in.readRetainedSlice(len - 4)
+                                                                                                  : in.readSlice(len - 4);
       out.add(parse(mtype, payload));
     }
   }
@@ -103,7 +111,7 @@ public class PostgreSQLDecoder extends ByteToMessageDecoder {
       }
     case DataRow: 
       {
-        return new DataRow(ProtoUtils.parseDataRow(payload));
+        return ProtoUtils.parseDataRow(payload);
       }
     case ErrorResponse: 
       {
@@ -144,34 +152,75 @@ public class PostgreSQLDecoder extends ByteToMessageDecoder {
       {
         return new RowDescription(ProtoUtils.parseRowDescription(payload));
       }
+    case CloseComplete: 
+      {
+        return new CloseComplete();
+      }
+    case NoData: 
+      {
+        return new NoData();
+      }
+    case ParameterDescription: 
+      {
+        final int count = payload.readUnsignedShort();
+        final List<Integer> oids = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+          oids.add(payload.readInt());
+        }
+        return new ParameterDescription(oids);
+      }
+    case EmptyQueryResponse: 
+      {
+        return new EmptyQueryResponse();
+      }
+    case PortalSuspended: 
+      {
+        return new PortalSuspended();
+      }
+    case CopyInResponse: 
+      {
+        final Format format = parseCopyFormat(payload);
+        return new CopyInResponse(format, parseCopyColumns(payload));
+      }
+    case CopyOutResponse: 
+      {
+        final Format format = parseCopyFormat(payload);
+        return new CopyOutResponse(format, parseCopyColumns(payload));
+      }
     }
     log.warn("unknown type: {}", mtype);
     return new UnknownMessage(mtype);
   }
 
+  /**
+   * the data is a retained slice of the input, which the consumer must release.
+   */
   private static final CopyData parseCopyData(final ByteBuf buffer) {
     return new CopyData(buffer);
   }
 
   private static final CopyBothResponse parseCopyBothResponse(final ByteBuf cbp) {
-    final int type = cbp.readByte();
-    switch (type) {
+    final Format format = parseCopyFormat(cbp);
+    return new CopyBothResponse(format, parseCopyColumns(cbp));
+  }
+
+  private static final Format parseCopyFormat(final ByteBuf buffer) {
+    switch (buffer.readByte()) {
     case 0: 
-      // rtype = ReplicationHandle.Format.Text;
-      break;
+      return Format.Text;
     case 1: 
-      // rtype = ReplicationHandle.Format.Binary;
-      break;
+      return Format.Binary;
     default: 
-      // it's an unknown type. erp.
-      // rtype = ReplicationHandle.Format.Unknown;
-      break;
+      return Format.Unknown;
     }
-    final int len = cbp.readShort();
+  }
+
+  private static final List<Integer> parseCopyColumns(final ByteBuf buffer) {
+    final int len = buffer.readShort();
     final List<Integer> formats = new ArrayList<>(len);
     for (int i = 0; i < len; ++i) {
-      formats.add((int) cbp.readShort());
+      formats.add((int) buffer.readShort());
     }
-    return new CopyBothResponse((type) == 1 ? Format.Text : Format.Binary, formats);
+    return formats;
   }
 }
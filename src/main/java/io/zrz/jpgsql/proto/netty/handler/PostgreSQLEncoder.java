@@ -1,10 +1,18 @@
 package io.zrz.jpgsql.proto.netty.handler;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.PromiseNotifier;
 import io.zrz.jpgsql.proto.netty.ProtoUtils;
 import io.zrz.jpgsql.proto.wire.AuthenticationMD5Password;
 import io.zrz.jpgsql.proto.wire.AuthenticationOk;
@@ -12,19 +20,31 @@ import io.zrz.jpgsql.proto.wire.AuthenticationUnknown;
 import io.zrz.jpgsql.proto.wire.BackendKeyData;
 import io.zrz.jpgsql.proto.wire.Bind;
 import io.zrz.jpgsql.proto.wire.BindComplete;
+import io.zrz.jpgsql.proto.wire.CancelRequest;
+import io.zrz.jpgsql.proto.wire.Close;
+import io.zrz.jpgsql.proto.wire.CloseComplete;
 import io.zrz.jpgsql.proto.wire.CommandComplete;
 import io.zrz.jpgsql.proto.wire.CopyBothResponse;
+import io.zrz.jpgsql.proto.wire.CopyBothResponse.Format;
 import io.zrz.jpgsql.proto.wire.CopyData;
 import io.zrz.jpgsql.proto.wire.CopyDone;
+import io.zrz.jpgsql.proto.wire.CopyFail;
+import io.zrz.jpgsql.proto.wire.CopyInResponse;
+import io.zrz.jpgsql.proto.wire.CopyOutResponse;
 import io.zrz.jpgsql.proto.wire.DataRow;
+import io.zrz.jpgsql.proto.wire.Describe;
+import io.zrz.jpgsql.proto.wire.EmptyQueryResponse;
 import io.zrz.jpgsql.proto.wire.ErrorResponse;
 import io.zrz.jpgsql.proto.wire.Execute;
 import io.zrz.jpgsql.proto.wire.Flush;
+import io.zrz.jpgsql.proto.wire.NoData;
 import io.zrz.jpgsql.proto.wire.NoticeResponse;
+import io.zrz.jpgsql.proto.wire.ParameterDescription;
 import io.zrz.jpgsql.proto.wire.ParameterStatus;
 import io.zrz.jpgsql.proto.wire.Parse;
 import io.zrz.jpgsql.proto.wire.ParseComplete;
 import io.zrz.jpgsql.proto.wire.PasswordMessage;
+import io.zrz.jpgsql.proto.wire.PortalSuspended;
 import io.zrz.jpgsql.proto.wire.PostgreSQLPacket;
 import io.zrz.jpgsql.proto.wire.PostgreSQLPacketVisitor;
 import io.zrz.jpgsql.proto.wire.Query;
@@ -33,14 +53,150 @@ import io.zrz.jpgsql.proto.wire.RowDescription;
 import io.zrz.jpgsql.proto.wire.SslRequest;
 import io.zrz.jpgsql.proto.wire.StartupMessage;
 import io.zrz.jpgsql.proto.wire.Sync;
+import io.zrz.jpgsql.proto.wire.Terminate;
 import io.zrz.jpgsql.proto.wire.UnknownMessage;
 
 /**
  * encode PostgreSQL messages.
+ *
+ * messages written between flushes are encoded one after another into a single pooled buffer, which is passed on when
+ * the channel is flushed (or once it gets large), so a pipelined Parse/Bind/Describe/Execute/Sync goes out as one
+ * buffer rather than one each. anything else written, such as the raw buffers of a COPY, passes the encoded messages
+ * on first so the order is kept.
+ *
+ * the flush threshold sets when a flush reaches the socket. with {@link #FLUSH_IMMEDIATE} every flush goes straight
+ * out. otherwise a flush is deferred to the end of the event loop's current task, so that everything written while
+ * handling a read or a batch of submitted queries shares a single syscall, unless at least the threshold of bytes is
+ * waiting, in which case it goes out straight away. {@link #FLUSH_EVENT_LOOP} always defers.
  */
 
 public class PostgreSQLEncoder extends MessageToByteEncoder<PostgreSQLPacket> {
 
+  public static final int FLUSH_IMMEDIATE = 0;
+  public static final int FLUSH_EVENT_LOOP = Integer.MAX_VALUE;
+
+  // the size at which the messages encoded so far are written on without waiting for a flush.
+  private static final int MAX_PENDING = 32 * 1024;
+
+  private final int flushThreshold;
+
+  // the messages encoded since the last write, and the promises of each.
+  private ByteBuf pending;
+  private final List<ChannelPromise> promises = new ArrayList<>();
+  // bytes written since the last flush.
+  private long unflushed;
+  private boolean flushScheduled;
+
+  public PostgreSQLEncoder() {
+    this(FLUSH_IMMEDIATE);
+  }
+
+  /**
+   * @param flushThreshold
+   *          the number of bytes waiting at which a flush goes out straight away, rather than at the end of the event
+   *          loop's current task.
+   */
+  public PostgreSQLEncoder(final int flushThreshold) {
+    Preconditions.checkArgument(flushThreshold >= 0, "flushThreshold must not be negative");
+    this.flushThreshold = flushThreshold;
+  }
+
+  @Override
+  public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) throws Exception {
+    if (!this.acceptOutboundMessage(msg)) {
+      this.writePending(ctx);
+      if (msg instanceof ByteBuf) {
+        this.unflushed += ((ByteBuf) msg).readableBytes();
+      }
+      ctx.write(msg, promise);
+      return;
+    }
+    if (this.pending == null) {
+      this.pending = ctx.alloc().ioBuffer();
+    }
+    final int start = this.pending.writerIndex();
+    try {
+      this.encode(ctx, (PostgreSQLPacket) msg, this.pending);
+    }
+    catch (final EncoderException ex) {
+      this.pending.writerIndex(start);
+      throw ex;
+    }
+    catch (final Throwable ex) {
+      this.pending.writerIndex(start);
+      throw new EncoderException(ex);
+    }
+    finally {
+      ReferenceCountUtil.release(msg);
+    }
+    this.unflushed += this.pending.writerIndex() - start;
+    if (!promise.isVoid()) {
+      this.promises.add(promise);
+    }
+    if (this.pending.readableBytes() >= MAX_PENDING) {
+      this.writePending(ctx);
+    }
+  }
+
+  /**
+   * pass on the messages encoded so far, completing their promises once the buffer is written.
+   */
+  private void writePending(final ChannelHandlerContext ctx) {
+    if (this.pending == null) {
+      return;
+    }
+    final ByteBuf buf = this.pending;
+    this.pending = null;
+    if (this.promises.size() == 1) {
+      ctx.write(buf, this.promises.get(0));
+    }
+    else {
+      final ChannelPromise promise = ctx.newPromise();
+      if (!this.promises.isEmpty()) {
+        promise.addListener(new PromiseNotifier<>(this.promises.toArray(new ChannelPromise[0])));
+      }
+      ctx.write(buf, promise);
+    }
+    this.promises.clear();
+  }
+
+  @Override
+  public void flush(final ChannelHandlerContext ctx) throws Exception {
+    if ((this.flushThreshold == FLUSH_IMMEDIATE) || (this.unflushed >= this.flushThreshold)) {
+      this.flushNow(ctx);
+    }
+    else if (!this.flushScheduled) {
+      this.flushScheduled = true;
+      ctx.executor().execute(() -> {
+        if (this.flushScheduled) {
+          this.flushNow(ctx);
+        }
+      });
+    }
+  }
+
+  private void flushNow(final ChannelHandlerContext ctx) {
+    this.flushScheduled = false;
+    this.unflushed = 0;
+    this.writePending(ctx);
+    ctx.flush();
+  }
+
+  @Override
+  public void close(final ChannelHandlerContext ctx, final ChannelPromise promise) throws Exception {
+    // fails the promises of anything not flushed yet, as the channel's outbound buffer would.
+    this.writePending(ctx);
+    ctx.close(promise);
+  }
+
+  @Override
+  public void handlerRemoved(final ChannelHandlerContext ctx) throws Exception {
+    this.writePending(ctx);
+    if (this.flushScheduled) {
+      this.flushNow(ctx);
+    }
+  }
+
   @Override
   protected void encode(final ChannelHandlerContext ctx, final PostgreSQLPacket msg, final ByteBuf out) throws Exception {
 
@@ -48,21 +204,34 @@ public class PostgreSQLEncoder extends MessageToByteEncoder<PostgreSQLPacket> {
 
       @Override
       public Void visitAuthenticationOk(final AuthenticationOk pkt) {
+        out.writeByte('R');
+        out.writeInt(8);
+        out.writeInt(0);
         return null;
       }
 
       @Override
       public Void visitAuthenticationUnknown(final AuthenticationUnknown pkt) {
+        out.writeByte('R');
+        out.writeInt(8);
+        out.writeInt(pkt.getAuthType());
         return null;
       }
 
       @Override
       public Void visitBackendKeyData(final BackendKeyData data) {
+        out.writeByte('K');
+        out.writeInt(12);
+        out.writeInt(data.getProcessId());
+        out.writeInt(data.getSecret());
         return null;
       }
 
       @Override
       public Void visitCommandComplete(final CommandComplete cmd) {
+        final int pos = begin(out, 'C');
+        ProtoUtils.writeString(out, cmd.getCommandTag());
+        end(out, pos);
         return null;
       }
 
@@ -73,46 +242,87 @@ public class PostgreSQLEncoder extends MessageToByteEncoder<PostgreSQLPacket> {
 
       @Override
       public Void visitCopyBothResponse(final CopyBothResponse cmd) {
+        writeCopyResponse(out, 'W', cmd.getFormat(), cmd.getColumns());
         return null;
       }
 
       @Override
       public Void visitCopyData(final CopyData copyData) {
+        out.writeByte('d');
+        out.writeInt(4 + copyData.getData().readableBytes());
+        out.writeBytes(copyData.getData(), copyData.getData().readerIndex(), copyData.getData().readableBytes());
         return null;
       }
 
       @Override
       public Void visitCopyDone(final CopyDone copyDone) {
+        out.writeByte('c');
+        out.writeInt(4);
         return null;
       }
 
       @Override
       public Void visitDataRow(final DataRow dataRow) {
+        final ByteBuf data = dataRow.content();
+        out.writeByte('D');
+        out.writeInt(4 + data.readableBytes());
+        out.writeBytes(data, data.readerIndex(), data.readableBytes());
         return null;
       }
 
       @Override
       public Void visitErrorResponse(final ErrorResponse errorResponse) {
+        writeFields(out, 'E', errorResponse.getMessages());
         return null;
       }
 
       @Override
       public Void visitNoticeResponse(final NoticeResponse noticeResponse) {
+        writeFields(out, 'N', noticeResponse.getMessages());
         return null;
       }
 
       @Override
       public Void visitParameterStatus(final ParameterStatus parameterStatus) {
+        final int pos = begin(out, 'S');
+        ProtoUtils.writeString(out, parameterStatus.getKey());
+        ProtoUtils.writeString(out, parameterStatus.getValue());
+        end(out, pos);
         return null;
       }
 
       @Override
       public Void visitReadyForQuery(final ReadyForQuery readyForQuery) {
+        out.writeByte('Z');
+        out.writeInt(5);
+        switch (readyForQuery.getStatus()) {
+          case Idle:
+            out.writeByte('I');
+            break;
+          case Transaction:
+            out.writeByte('T');
+            break;
+          case Error:
+            out.writeByte('E');
+            break;
+        }
         return null;
       }
 
       @Override
       public Void visitRowDescription(final RowDescription rowDescription) {
+        final int pos = begin(out, 'T');
+        out.writeShort(rowDescription.getRows().size());
+        for (final RowDescription.Entry e : rowDescription.getRows()) {
+          ProtoUtils.writeString(out, e.getName());
+          out.writeInt(e.getTableOid());
+          out.writeShort(e.getColumn());
+          out.writeInt(e.getTypeOid());
+          out.writeShort(e.getTypeLength());
+          out.writeInt(e.getTypeModifier());
+          out.writeShort(e.getFormat());
+        }
+        end(out, pos);
         return null;
       }
 
@@ -157,9 +367,21 @@ public class PostgreSQLEncoder extends MessageToByteEncoder<PostgreSQLPacket> {
         return null;
       }
 
+      @Override
+      public Void visitCancelRequest(final CancelRequest cancel) {
+        out.writeInt(16);
+        out.writeInt(ProtoUtils.CANCEL_MAGIC);
+        out.writeInt(cancel.getProcessId());
+        out.writeInt(cancel.getSecret());
+        return null;
+      }
+
       @Override
       public Void visitAuthenticationMD5Password(final AuthenticationMD5Password authenticationMD5Password) {
-        // TODO Auto-generated method stub
+        out.writeByte('R');
+        out.writeInt(12);
+        out.writeInt(5);
+        out.writeBytes(authenticationMD5Password.getSalt());
         return null;
       }
 
@@ -226,6 +448,8 @@ public class PostgreSQLEncoder extends MessageToByteEncoder<PostgreSQLPacket> {
 
       @Override
       public Void visitParseComplete(final ParseComplete parseComplete) {
+        out.writeByte('1');
+        out.writeInt(4);
         return null;
       }
 
@@ -256,15 +480,18 @@ public class PostgreSQLEncoder extends MessageToByteEncoder<PostgreSQLPacket> {
         // The number of parameter format codes that follow (denoted C below). This can be zero to indicate that there
         // are no parameters or that the parameters all use the default format (text); or one, in which case the
         // specified format code is applied to all parameters; or it can equal the actual number of parameters.
-        out.writeShort(0);
+        out.writeShort(bind.getParameterFormats().size());
         //
         // Int16[C]
         // The parameter format codes. Each must presently be zero (text) or one (binary).
+        for (final int format : bind.getParameterFormats()) {
+          out.writeShort(format);
+        }
         //
         // Int16
         // The number of parameter values that follow (possibly zero). This must match the number of parameters needed
         // by the query.
-        out.writeShort(0);
+        out.writeShort(bind.getParameterValues().size());
         //
         // Next, the following pair of fields appear for each parameter:
         //
@@ -274,6 +501,15 @@ public class PostgreSQLEncoder extends MessageToByteEncoder<PostgreSQLPacket> {
         //
         // Byten
         // The value of the parameter, in the format indicated by the associated format code. n is the above length.
+        for (final byte[] value : bind.getParameterValues()) {
+          if (value == null) {
+            out.writeInt(-1);
+          }
+          else {
+            out.writeInt(value.length);
+            out.writeBytes(value);
+          }
+        }
         //
         // After the last parameter, the following fields appear:
         //
@@ -283,11 +519,13 @@ public class PostgreSQLEncoder extends MessageToByteEncoder<PostgreSQLPacket> {
         // result columns or that the result columns should all use the default format (text); or one, in which case the
         // specified format code is applied to all result columns (if any); or it can equal the actual number of result
         // columns of the query.
-        out.writeShort(1);
+        out.writeShort(bind.getResultFormats().size());
         //
         // Int16[R]
         // The result-column format codes. Each must presently be zero (text) or one (binary).
-        out.writeShort(1);
+        for (final int format : bind.getResultFormats()) {
+          out.writeShort(format);
+        }
 
         final int len = out.writerIndex() - pos;
         out.setInt(pos, len);
@@ -298,7 +536,8 @@ public class PostgreSQLEncoder extends MessageToByteEncoder<PostgreSQLPacket> {
 
       @Override
       public Void visitBindComplete(final BindComplete bindComplete) {
-        // TODO Auto-generated method stub
+        out.writeByte('2');
+        out.writeInt(4);
         return null;
       }
 
@@ -309,8 +548,127 @@ public class PostgreSQLEncoder extends MessageToByteEncoder<PostgreSQLPacket> {
         return null;
       }
 
+      @Override
+      public Void visitDescribe(final Describe describe) {
+        final int pos = begin(out, 'D');
+        out.writeByte(describe.getKind());
+        ProtoUtils.writeString(out, describe.getName());
+        end(out, pos);
+        return null;
+      }
+
+      @Override
+      public Void visitClose(final Close close) {
+        final int pos = begin(out, 'C');
+        out.writeByte(close.getKind());
+        ProtoUtils.writeString(out, close.getName());
+        end(out, pos);
+        return null;
+      }
+
+      @Override
+      public Void visitTerminate(final Terminate terminate) {
+        out.writeByte('X');
+        out.writeInt(4);
+        return null;
+      }
+
+      @Override
+      public Void visitCopyFail(final CopyFail copyFail) {
+        final int pos = begin(out, 'f');
+        ProtoUtils.writeString(out, copyFail.getMessage());
+        end(out, pos);
+        return null;
+      }
+
+      @Override
+      public Void visitCopyInResponse(final CopyInResponse copyInResponse) {
+        writeCopyResponse(out, 'G', copyInResponse.getFormat(), copyInResponse.getColumns());
+        return null;
+      }
+
+      @Override
+      public Void visitCopyOutResponse(final CopyOutResponse copyOutResponse) {
+        writeCopyResponse(out, 'H', copyOutResponse.getFormat(), copyOutResponse.getColumns());
+        return null;
+      }
+
+      @Override
+      public Void visitNoData(final NoData noData) {
+        out.writeByte('n');
+        out.writeInt(4);
+        return null;
+      }
+
+      @Override
+      public Void visitParameterDescription(final ParameterDescription parameterDescription) {
+        final int pos = begin(out, 't');
+        out.writeShort(parameterDescription.getParamOids().size());
+        for (final int oid : parameterDescription.getParamOids()) {
+          out.writeInt(oid);
+        }
+        end(out, pos);
+        return null;
+      }
+
+      @Override
+      public Void visitEmptyQueryResponse(final EmptyQueryResponse emptyQueryResponse) {
+        out.writeByte('I');
+        out.writeInt(4);
+        return null;
+      }
+
+      @Override
+      public Void visitCloseComplete(final CloseComplete closeComplete) {
+        out.writeByte('3');
+        out.writeInt(4);
+        return null;
+      }
+
+      @Override
+      public Void visitPortalSuspended(final PortalSuspended portalSuspended) {
+        out.writeByte('s');
+        out.writeInt(4);
+        return null;
+      }
+
     });
 
   }
 
+  /**
+   * write the type and a placeholder for the length of a message.
+   *
+   * @return the position of the length, to pass to {@link #end(ByteBuf, int)}.
+   */
+  private static int begin(final ByteBuf out, final char type) {
+    out.writeByte(type);
+    final int pos = out.writerIndex();
+    out.writeInt(0);
+    return pos;
+  }
+
+  private static void end(final ByteBuf out, final int pos) {
+    out.setInt(pos, out.writerIndex() - pos);
+  }
+
+  private static void writeFields(final ByteBuf out, final char type, final List<String> fields) {
+    final int pos = begin(out, type);
+    for (final String field : fields) {
+      ProtoUtils.writeString(out, field);
+    }
+    out.writeByte(0);
+    end(out, pos);
+  }
+
+  private static void writeCopyResponse(final ByteBuf out, final char type, final Format format, final List<Integer> columns) {
+    final int pos = begin(out, type);
+    out.writeByte(format == Format.Binary ? 1 : 0);
+    out.writeShort(columns.size());
+    for (final int column : columns) {
+      out.writeShort(column);
+    }
+    end(out, pos);
+  }
+
 }
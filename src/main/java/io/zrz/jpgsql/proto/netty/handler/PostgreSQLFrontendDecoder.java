@@ -0,0 +1,169 @@
+package io.zrz.jpgsql.proto.netty.handler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.DecoderException;
+import io.zrz.jpgsql.proto.netty.FrontendMessageType;
+import io.zrz.jpgsql.proto.netty.ProtoUtils;
+import io.zrz.jpgsql.proto.wire.Bind;
+import io.zrz.jpgsql.proto.wire.CancelRequest;
+import io.zrz.jpgsql.proto.wire.Close;
+import io.zrz.jpgsql.proto.wire.CopyData;
+import io.zrz.jpgsql.proto.wire.CopyDone;
+import io.zrz.jpgsql.proto.wire.CopyFail;
+import io.zrz.jpgsql.proto.wire.Describe;
+import io.zrz.jpgsql.proto.wire.Execute;
+import io.zrz.jpgsql.proto.wire.Flush;
+import io.zrz.jpgsql.proto.wire.Parse;
+import io.zrz.jpgsql.proto.wire.PasswordMessage;
+import io.zrz.jpgsql.proto.wire.PostgreSQLPacket;
+import io.zrz.jpgsql.proto.wire.Query;
+import io.zrz.jpgsql.proto.wire.SslRequest;
+import io.zrz.jpgsql.proto.wire.StartupMessage;
+import io.zrz.jpgsql.proto.wire.Sync;
+import io.zrz.jpgsql.proto.wire.Terminate;
+
+/**
+ * decode the messages a client sends to the backend, for use on the server side of a connection.
+ *
+ * until the startup message has been received messages are untyped (length prefixed only), after which they all carry
+ * a type byte.
+ *
+ * the payload of a {@link CopyData} is a retained slice of the input, which the consumer must release. all other
+ * messages are fully parsed here.
+ */
+public class PostgreSQLFrontendDecoder extends ByteToMessageDecoder {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PostgreSQLFrontendDecoder.class);
+
+  private boolean started = false;
+
+  @Override
+  protected void decode(final ChannelHandlerContext ctx, final ByteBuf in, final List<Object> out) throws Exception {
+    while (!this.started && (in.readableBytes() >= 8)) {
+      final int len = in.getInt(in.readerIndex());
+      if (in.readableBytes() < len) {
+        return;
+      }
+      in.skipBytes(4);
+      final int code = in.readInt();
+      final ByteBuf payload = in.readSlice(len - 8);
+      switch (code) {
+      case ProtoUtils.SSL_MAGIC:
+        out.add(new SslRequest());
+        break;
+      case ProtoUtils.CANCEL_MAGIC:
+        out.add(new CancelRequest(payload.readInt(), payload.readInt()));
+        break;
+      case ProtoUtils.PROTO_VERSION:
+        this.started = true;
+        out.add(parseStartup(payload));
+        break;
+      default:
+        throw new DecoderException(String.format("unsupported protocol version %d.%d", code >> 16, code & 0xFFFF));
+      }
+    }
+    while (this.started && (in.readableBytes() >= 5)) {
+      final byte type = in.getByte(in.readerIndex());
+      final int len = in.getInt(in.readerIndex() + 1);
+      if (in.readableBytes() < (len + 1)) {
+        return;
+      }
+      in.skipBytes(5);
+      out.add(parse(FrontendMessageType.getType(type), in.readSlice(len - 4)));
+    }
+  }
+
+  private static StartupMessage parseStartup(final ByteBuf payload) {
+    final Map<String, String> params = new LinkedHashMap<>();
+    while (payload.isReadable() && (payload.getByte(payload.readerIndex()) != 0)) {
+      final String key = ProtoUtils.parseString(payload);
+      params.put(key, ProtoUtils.parseString(payload));
+    }
+    return new StartupMessage(3, 0, params);
+  }
+
+  private static PostgreSQLPacket parse(final FrontendMessageType mtype, final ByteBuf payload) {
+    switch (mtype) {
+    case Query:
+      return new Query(ProtoUtils.parseString(payload));
+    case Parse:
+      {
+        final String name = ProtoUtils.parseString(payload);
+        final String query = ProtoUtils.parseString(payload);
+        final int count = payload.readUnsignedShort();
+        final List<Integer> oids = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+          oids.add(payload.readInt());
+        }
+        return new Parse(name, query, oids);
+      }
+    case Bind:
+      {
+        final Bind bind = new Bind(ProtoUtils.parseString(payload), ProtoUtils.parseString(payload));
+        final int formats = payload.readUnsignedShort();
+        for (int i = 0; i < formats; ++i) {
+          bind.getParameterFormats().add((int) payload.readShort());
+        }
+        final int values = payload.readUnsignedShort();
+        for (int i = 0; i < values; ++i) {
+          final int len = payload.readInt();
+          if (len == -1) {
+            bind.getParameterValues().add(null);
+          }
+          else {
+            final byte[] value = new byte[len];
+            payload.readBytes(value);
+            bind.getParameterValues().add(value);
+          }
+        }
+        final int results = payload.readUnsignedShort();
+        for (int i = 0; i < results; ++i) {
+          bind.getResultFormats().add((int) payload.readShort());
+        }
+        return bind;
+      }
+    case Describe:
+      {
+        final char kind = (char) payload.readByte();
+        return new Describe(kind, ProtoUtils.parseString(payload));
+      }
+    case Execute:
+      {
+        final String portal = ProtoUtils.parseString(payload);
+        return new Execute(portal, payload.readInt());
+      }
+    case Sync:
+      return new Sync();
+    case Flush:
+      return new Flush();
+    case Close:
+      {
+        final char kind = (char) payload.readByte();
+        return new Close(kind, ProtoUtils.parseString(payload));
+      }
+    case Terminate:
+      return new Terminate();
+    case CopyData:
+      return new CopyData(payload.retain());
+    case CopyDone:
+      return new CopyDone();
+    case CopyFail:
+      return new CopyFail(ProtoUtils.parseString(payload));
+    case PasswordMessage:
+      {
+        final byte[] password = new byte[payload.readableBytes() - 1];
+        payload.readBytes(password);
+        return new PasswordMessage(password);
+      }
+    }
+    throw new DecoderException("unhandled message type " + mtype);
+  }
+
+}
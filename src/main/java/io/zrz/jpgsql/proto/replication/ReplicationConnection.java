@@ -9,15 +9,14 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.util.concurrent.ScheduledFuture;
 import io.zrz.jpgsql.proto.AbstractConnection;
 import io.zrz.jpgsql.proto.WalPosition;
+import io.zrz.jpgsql.proto.netty.PgSocketOptions;
 import io.zrz.jpgsql.proto.netty.handler.PostgreSQLClientNegotiation;
 import io.zrz.jpgsql.proto.netty.handler.PostgreSQLDecoder;
 import io.zrz.jpgsql.proto.netty.handler.PostgreSQLEncoder;
@@ -41,6 +40,7 @@ public class ReplicationConnection extends AbstractConnection {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ReplicationConnection.class);
   private static final String DEFAULT_USERNAME = System.getProperty("user.name", "postgres");
   private EventLoopGroup group;
+  private PgSocketOptions socketOptions;
   private ChannelFuture connectFuture;
   private HashMap<String, String> params = new HashMap<>();
   private final String slotId;
@@ -52,6 +52,7 @@ public class ReplicationConnection extends AbstractConnection {
       throw new IllegalArgumentException("slotId");
     }
     this.group = b.group;
+    this.socketOptions = b.socketOptions;
     this.slotId = b.slotId;
     this.position = b.position;
     this.create = b.create;
@@ -116,6 +117,7 @@ public class ReplicationConnection extends AbstractConnection {
           log.warn("Unknown type: \'{}\'", type);
           break;
         }
+        copydata.release();
       } else {
         System.err.println(msg);
       }
@@ -224,8 +226,8 @@ public class ReplicationConnection extends AbstractConnection {
   }
 
   void connect(String host, int port) {
-    final Bootstrap b = new Bootstrap();
-    b.group(group).channel(NioSocketChannel.class).option(ChannelOption.TCP_NODELAY, true).handler(new ChannelInitializer<SocketChannel>() {
+    final Bootstrap b = this.socketOptions.bootstrap(this.group);
+    b.handler(new ChannelInitializer<SocketChannel>() {
       @Override
       public void initChannel(final SocketChannel ch) throws Exception {
         final ChannelPipeline p = ch.pipeline();
@@ -1,13 +1,14 @@
 package io.zrz.jpgsql.proto.replication;
 
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.zrz.jpgsql.proto.WalPosition;
+import io.zrz.jpgsql.proto.netty.PgSocketOptions;
+import io.zrz.jpgsql.proto.netty.PgTransport;
 
 public class ReplicationConnectionBuilder
 {
   
-  private static final EventLoopGroup DEFAULT_EVENT_LOOP_GROUP = new NioEventLoopGroup();
+  private static final EventLoopGroup DEFAULT_EVENT_LOOP_GROUP = PgTransport.auto().newEventLoopGroup(0);
 
   EventLoopGroup group = DEFAULT_EVENT_LOOP_GROUP;
   String username;
@@ -15,6 +16,7 @@ public class ReplicationConnectionBuilder
   String slotId;
   WalPosition position;
   String create;
+  PgSocketOptions socketOptions = new PgSocketOptions();
 
   public ReplicationConnectionBuilder group(EventLoopGroup group)
   {
@@ -22,6 +24,15 @@ public class ReplicationConnectionBuilder
     return this;
   }
 
+  /**
+   * options for the socket, including the epoll specific ones. the transport is that of the group.
+   */
+  public ReplicationConnectionBuilder socketOptions(PgSocketOptions socketOptions)
+  {
+    this.socketOptions = socketOptions;
+    return this;
+  }
+
   public ReplicationConnectionBuilder username(String username)
   {
     this.username = username;
@@ -0,0 +1,291 @@
+package io.zrz.jpgsql.proto.server;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.postgresql.core.Oid;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.concurrent.Future;
+import io.zrz.jpgsql.proto.netty.PgTransport;
+import io.zrz.jpgsql.proto.netty.handler.PostgreSQLEncoder;
+import io.zrz.jpgsql.proto.netty.handler.PostgreSQLFrontendDecoder;
+import io.zrz.jpgsql.proto.wire.BackendKeyData;
+import io.zrz.jpgsql.proto.wire.CancelRequest;
+
+/**
+ * an in-process stand-in for a PostgreSQL backend, speaking enough of the v3 protocol for clients (including pgjdbc)
+ * to connect and run statements against canned or generated results.
+ *
+ * it handles startup (refusing SSL, trust or MD5 authentication), the simple and extended query protocols including
+ * portals fetched in pages, transaction status, and COPY in both directions. what each statement returns is configured
+ * with {@link EmbeddedPgServerBuilder#on(String, ServerResult)} or a {@link ServerResponder}. BEGIN, COMMIT, ROLLBACK,
+ * SET and friends, as well as probes like {@code SELECT 1}, are answered without configuration.
+ *
+ * intended for load testing pooling, pipelining and decoding without a database, so results can be made arbitrarily
+ * large (they are generated as they are streamed, honouring channel writability) and delayed to simulate latency.
+ */
+public final class EmbeddedPgServer implements AutoCloseable {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(EmbeddedPgServer.class);
+
+  private static final Pattern BUILTIN = Pattern.compile(
+    "(?i)^(BEGIN|START|COMMIT|END|ROLLBACK|ABORT|SET|RESET|DISCARD|DEALLOCATE|LISTEN|UNLISTEN|SAVEPOINT|RELEASE)\\b.*",
+    Pattern.DOTALL);
+
+  // connection probes, e.g "SELECT 1".
+  private static final Pattern LITERAL = Pattern.compile("(?i)^SELECT (-?\\d{1,9})$");
+
+  private static final Pattern COPY_IN = Pattern.compile("(?is)^COPY\\b.*\\bFROM\\s+STDIN\\b.*");
+
+  private final EventLoopGroup group;
+  private final boolean ownGroup;
+  private final String hostname;
+  private final int requestedPort;
+  private final String username;
+  private final String password;
+  private final Map<String, String> parameters;
+  private final Duration delay;
+  private final List<Map.Entry<Predicate<String>, ServerResult>> results;
+  private final ServerResponder responder;
+
+  private final AtomicInteger processIds = new AtomicInteger(1000);
+  private final AtomicInteger connections = new AtomicInteger();
+  private final AtomicLong queries = new AtomicLong();
+  private final AtomicLong describes = new AtomicLong();
+  private final AtomicLong closes = new AtomicLong();
+  private final AtomicLong cancels = new AtomicLong();
+  private final Map<Integer, Map.Entry<BackendKeyData, PgServerSession>> sessions = new ConcurrentHashMap<>();
+
+  private Channel channel;
+
+  EmbeddedPgServer(final EmbeddedPgServerBuilder b) {
+    this.ownGroup = b.group == null;
+    this.group = this.ownGroup ? PgTransport.auto().newEventLoopGroup(0)
+                               : b.group;
+    this.hostname = b.hostname;
+    this.requestedPort = b.port;
+    this.username = b.username;
+    this.password = b.password;
+    this.parameters = ImmutableMap.copyOf(b.parameters);
+    this.delay = b.delay;
+    this.results = ImmutableList.copyOf(b.results);
+    this.responder = b.responder;
+  }
+
+  public static EmbeddedPgServerBuilder builder() {
+    return new EmbeddedPgServerBuilder();
+  }
+
+  void start() {
+    this.channel =
+      new ServerBootstrap()
+        .group(this.group)
+        .channel(PgTransport.of(this.group).serverSocketChannel())
+        .childOption(ChannelOption.TCP_NODELAY, true)
+        .childHandler(new ChannelInitializer<SocketChannel>() {
+          @Override
+          protected void initChannel(final SocketChannel ch) throws Exception {
+            ch.pipeline().addLast(new PostgreSQLFrontendDecoder());
+            ch.pipeline().addLast(new PostgreSQLEncoder());
+            ch.pipeline().addLast(new PgServerSession(EmbeddedPgServer.this));
+          }
+        })
+        .bind(this.hostname, this.requestedPort)
+        .syncUninterruptibly()
+        .channel();
+    log.debug("listening on {}:{}", this.hostname, this.getPort());
+  }
+
+  public String getHostname() {
+    return this.hostname;
+  }
+
+  /**
+   * the port actually listened on.
+   */
+  public int getPort() {
+    return ((java.net.InetSocketAddress) this.channel.localAddress()).getPort();
+  }
+
+  /**
+   * number of currently open client connections.
+   */
+  public int getConnectionCount() {
+    return this.connections.get();
+  }
+
+  /**
+   * number of statements executed, over all connections.
+   */
+  public long getQueryCount() {
+    return this.queries.get();
+  }
+
+  /**
+   * number of Describe messages received, over all connections.
+   */
+  public long getDescribeCount() {
+    return this.describes.get();
+  }
+
+  /**
+   * number of prepared statements closed with a Close message, over all connections.
+   */
+  public long getCloseCount() {
+    return this.closes.get();
+  }
+
+  /**
+   * number of CancelRequests received for a session which was still connected.
+   */
+  public long getCancelCount() {
+    return this.cancels.get();
+  }
+
+  @Override
+  public void close() {
+    this.channel.close().syncUninterruptibly();
+    if (this.ownGroup) {
+      this.group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+  }
+
+  String getUsername() {
+    return this.username;
+  }
+
+  String getPassword() {
+    return this.password;
+  }
+
+  Map<String, String> getParameters() {
+    return this.parameters;
+  }
+
+  int nextProcessId() {
+    return this.processIds.incrementAndGet();
+  }
+
+  void register(final BackendKeyData key, final PgServerSession session) {
+    this.sessions.put(key.getProcessId(), new AbstractMap.SimpleImmutableEntry<>(key, session));
+  }
+
+  void unregister(final BackendKeyData key) {
+    this.sessions.remove(key.getProcessId());
+  }
+
+  /**
+   * completes once the session has acted on the request, or null if there is no such session.
+   */
+  Future<?> cancel(final CancelRequest request) {
+    final Map.Entry<BackendKeyData, PgServerSession> session = this.sessions.get(request.getProcessId());
+    if ((session == null) || (session.getKey().getSecret() != request.getSecret())) {
+      log.debug("ignoring cancel request for unknown backend {}", request.getProcessId());
+      return null;
+    }
+    this.cancels.incrementAndGet();
+    return session.getValue().cancel();
+  }
+
+  void connected() {
+    this.connections.incrementAndGet();
+  }
+
+  void disconnected() {
+    this.connections.decrementAndGet();
+  }
+
+  void executed() {
+    this.queries.incrementAndGet();
+  }
+
+  void described() {
+    this.describes.incrementAndGet();
+  }
+
+  void closed() {
+    this.closes.incrementAndGet();
+  }
+
+  /**
+   * how long to wait before replying with the given result.
+   */
+  Duration delay(final ServerResult result) {
+    return result.getDelay() == null ? this.delay
+                                     : result.getDelay();
+  }
+
+  /**
+   * the reply for a statement.
+   */
+  ServerResult resolve(final String sql, final List<byte[]> params) {
+
+    final String normalized = EmbeddedPgServerBuilder.normalize(sql);
+
+    for (final Map.Entry<Predicate<String>, ServerResult> e : this.results) {
+      if (e.getKey().test(normalized)) {
+        return e.getValue();
+      }
+    }
+
+    if (this.responder != null) {
+      final ServerResult result = this.responder.respond(sql, params);
+      if (result != null) {
+        return result;
+      }
+    }
+
+    if (BUILTIN.matcher(normalized).matches()) {
+      return ServerResult.command(commandTag(normalized));
+    }
+
+    final Matcher literal = LITERAL.matcher(normalized);
+    if (literal.matches()) {
+      return ServerResult.repeat(1, ServerResult.Column.of("?column?", Oid.INT4), Integer.parseInt(literal.group(1)));
+    }
+
+    if (COPY_IN.matcher(normalized).matches()) {
+      return ServerResult.copyIn();
+    }
+
+    return ServerResult.error("0A000", "no result configured for statement: " + normalized);
+
+  }
+
+  private static String commandTag(final String sql) {
+    final String[] words = sql.toUpperCase().split(" ");
+    switch (words[0]) {
+      case "START":
+        return "BEGIN";
+      case "END":
+        return "COMMIT";
+      case "ABORT":
+        return "ROLLBACK";
+      case "DISCARD":
+      case "DEALLOCATE":
+        return (words.length > 1) && words[words.length - 1].equals("ALL") ? words[0] + " ALL"
+                                                                            : words[0];
+      default:
+        return words[0];
+    }
+  }
+
+}
@@ -0,0 +1,129 @@
+package io.zrz.jpgsql.proto.server;
+
+import java.time.Duration;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+import io.netty.channel.EventLoopGroup;
+
+public class EmbeddedPgServerBuilder {
+
+  EventLoopGroup group;
+  String hostname = "127.0.0.1";
+  int port = 0;
+  String username;
+  String password;
+  final Map<String, String> parameters = new LinkedHashMap<>();
+  Duration delay = Duration.ZERO;
+  final List<Map.Entry<Predicate<String>, ServerResult>> results = new ArrayList<>();
+  ServerResponder responder;
+
+  EmbeddedPgServerBuilder() {
+    this.parameters.put("server_version", "12.4");
+    this.parameters.put("server_encoding", "UTF8");
+    this.parameters.put("client_encoding", "UTF8");
+    this.parameters.put("DateStyle", "ISO, MDY");
+    this.parameters.put("IntervalStyle", "postgres");
+    this.parameters.put("TimeZone", "UTC");
+    this.parameters.put("integer_datetimes", "on");
+    this.parameters.put("standard_conforming_strings", "on");
+    this.parameters.put("is_superuser", "off");
+  }
+
+  /**
+   * run on an existing event loop group rather than creating (and shutting down) our own.
+   */
+  public EmbeddedPgServerBuilder group(final EventLoopGroup group) {
+    this.group = group;
+    return this;
+  }
+
+  public EmbeddedPgServerBuilder hostname(final String hostname) {
+    this.hostname = hostname;
+    return this;
+  }
+
+  /**
+   * the port to listen on. defaults to 0, an ephemeral port. see {@link EmbeddedPgServer#getPort()}.
+   */
+  public EmbeddedPgServerBuilder port(final int port) {
+    this.port = port;
+    return this;
+  }
+
+  /**
+   * reject any other user. by default all users are accepted.
+   */
+  public EmbeddedPgServerBuilder username(final String username) {
+    this.username = username;
+    return this;
+  }
+
+  /**
+   * require MD5 password authentication. by default connections are trusted.
+   */
+  public EmbeddedPgServerBuilder password(final String password) {
+    this.password = password;
+    return this;
+  }
+
+  /**
+   * a ParameterStatus reported at startup, e.g "server_version".
+   */
+  public EmbeddedPgServerBuilder parameter(final String key, final String value) {
+    this.parameters.put(key, value);
+    return this;
+  }
+
+  /**
+   * how long to wait before replying to each statement, unless the {@link ServerResult} has its own delay.
+   */
+  public EmbeddedPgServerBuilder delay(final Duration delay) {
+    this.delay = Objects.requireNonNull(delay);
+    return this;
+  }
+
+  /**
+   * reply to the statement with the given text (ignoring surrounding whitespace and a trailing semicolon).
+   */
+  public EmbeddedPgServerBuilder on(final String sql, final ServerResult result) {
+    return this.on(normalize(sql)::equals, result);
+  }
+
+  /**
+   * reply to any statement matching the predicate, which is given the statement trimmed of any trailing semicolon and
+   * with runs of whitespace collapsed. checked in the order registered, before the responder.
+   */
+  public EmbeddedPgServerBuilder on(final Predicate<String> matcher, final ServerResult result) {
+    this.results.add(new SimpleImmutableEntry<>(matcher, result));
+    return this;
+  }
+
+  /**
+   * consulted for any statement that no {@link #on(Predicate, ServerResult)} matched.
+   */
+  public EmbeddedPgServerBuilder responder(final ServerResponder responder) {
+    this.responder = responder;
+    return this;
+  }
+
+  public EmbeddedPgServer start() {
+    final EmbeddedPgServer server = new EmbeddedPgServer(this);
+    server.start();
+    return server;
+  }
+
+  static String normalize(final String sql) {
+    String value = sql.trim();
+    while (value.endsWith(";")) {
+      value = value.substring(0, value.length() - 1).trim();
+    }
+    return value.replaceAll("\\s+", " ");
+  }
+
+}
@@ -0,0 +1,153 @@
+package io.zrz.jpgsql.proto.server;
+
+import java.util.function.Consumer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ByteProcessor;
+
+/**
+ * receives the data of a {@code COPY ... FROM STDIN}, counting the rows as it streams past.
+ *
+ * text format rows are lines. binary format rows are tuples, which are walked without buffering: only the next length
+ * field is ever held, so arbitrarily large copies can be pushed through.
+ */
+final class PgServerCopyIn {
+
+  // signature and flags field, followed by the header extension length.
+  private static final int SIGNATURE = 11 + 4;
+
+  private enum State {
+    SIGNATURE,
+    EXTENSION,
+    TUPLE,
+    FIELD,
+    SKIP,
+    TRAILER
+  }
+
+  private final Consumer<ByteBuf> sink;
+  private final boolean binary;
+
+  private long rows;
+
+  private State state = State.SIGNATURE;
+  private long skip = SIGNATURE;
+  private int fields;
+  private int partial;
+  private int have;
+
+  PgServerCopyIn(final Consumer<ByteBuf> sink, final boolean binary) {
+    this.sink = sink;
+    this.binary = binary;
+  }
+
+  void accept(final ByteBuf data) {
+    this.sink.accept(data.duplicate());
+    if (this.binary) {
+      this.walk(data.duplicate());
+    }
+    else {
+      int index = data.readerIndex();
+      final int end = data.writerIndex();
+      while (index < end) {
+        final int lf = data.forEachByte(index, end - index, ByteProcessor.FIND_LF);
+        if (lf == -1) {
+          break;
+        }
+        ++this.rows;
+        index = lf + 1;
+      }
+    }
+  }
+
+  long rows() {
+    return this.rows;
+  }
+
+  private void walk(final ByteBuf buf) {
+    while (buf.isReadable()) {
+      switch (this.state) {
+        case SIGNATURE:
+        case SKIP:
+          {
+            final int n = (int) Math.min(this.skip, buf.readableBytes());
+            buf.skipBytes(n);
+            this.skip -= n;
+            if (this.skip == 0) {
+              if (this.state == State.SIGNATURE) {
+                this.state = State.EXTENSION;
+              }
+              else {
+                this.nextField();
+              }
+            }
+          }
+          break;
+        case EXTENSION:
+          if (this.read(buf, 4)) {
+            this.fields = 0;
+            this.skip = this.partial;
+            this.state = this.skip == 0 ? State.TUPLE
+                                        : State.SKIP;
+          }
+          break;
+        case TUPLE:
+          if (this.read(buf, 2)) {
+            if (this.partial == -1) {
+              this.state = State.TRAILER;
+            }
+            else {
+              ++this.rows;
+              this.fields = this.partial;
+              this.nextField();
+            }
+          }
+          break;
+        case FIELD:
+          if (this.read(buf, 4)) {
+            this.fields--;
+            if (this.partial <= 0) {
+              this.nextField();
+            }
+            else {
+              this.skip = this.partial;
+              this.state = State.SKIP;
+            }
+          }
+          break;
+        case TRAILER:
+          buf.skipBytes(buf.readableBytes());
+          break;
+      }
+    }
+  }
+
+  private void nextField() {
+    this.state = this.fields > 0 ? State.FIELD
+                                 : State.TUPLE;
+  }
+
+  /**
+   * accumulate a big endian integer of the given width, which may span buffers.
+   *
+   * @return true once all bytes have been read, with the value in {@link #partial}.
+   */
+  private boolean read(final ByteBuf buf, final int width) {
+    if (this.have == 0) {
+      this.partial = 0;
+    }
+    while ((this.have < width) && buf.isReadable()) {
+      this.partial = (this.partial << 8) | buf.readUnsignedByte();
+      ++this.have;
+    }
+    if (this.have < width) {
+      return false;
+    }
+    if (width == 2) {
+      this.partial = (short) this.partial;
+    }
+    this.have = 0;
+    return true;
+  }
+
+}
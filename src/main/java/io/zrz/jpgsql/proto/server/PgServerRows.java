@@ -0,0 +1,356 @@
+package io.zrz.jpgsql.proto.server;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.postgresql.core.Oid;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.zrz.jpgsql.proto.server.ServerResult.Column;
+import io.zrz.jpgsql.proto.wire.RowDescription;
+
+/**
+ * encodes {@link ServerResult} rows as DataRow messages or COPY data.
+ *
+ * rows are written straight into the outbound buffer rather than built as {@link io.zrz.jpgsql.proto.wire.DataRow}
+ * packets, so the server stays cheap relative to the client under load.
+ *
+ * values are encoded in binary when the client asks for it and the column type is one of the common fixed width,
+ * textual or java.time types. anything else is sent as text, and the row description says so.
+ */
+final class PgServerRows {
+
+  private static final byte[] COPY_SIGNATURE = new byte[] { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', -1, '\r', '\n', 0 };
+
+  private static final LocalDateTime PG_EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+  private static final DateTimeFormatter TIMESTAMP =
+    new DateTimeFormatterBuilder()
+      .appendPattern("yyyy-MM-dd HH:mm:ss")
+      .appendFraction(ChronoField.MICRO_OF_SECOND, 0, 6, true)
+      .toFormatter();
+
+  private static final DateTimeFormatter TIMESTAMPTZ =
+    new DateTimeFormatterBuilder()
+      .append(TIMESTAMP)
+      .appendOffset("+HH:mm", "+00")
+      .toFormatter();
+
+  private PgServerRows() {
+  }
+
+  static boolean hasBinary(final int oid) {
+    switch (oid) {
+      case Oid.BOOL:
+      case Oid.BYTEA:
+      case Oid.INT2:
+      case Oid.INT4:
+      case Oid.INT8:
+      case Oid.OID:
+      case Oid.FLOAT4:
+      case Oid.FLOAT8:
+      case Oid.TEXT:
+      case Oid.VARCHAR:
+      case Oid.BPCHAR:
+      case Oid.NAME:
+      case Oid.UUID:
+      case Oid.DATE:
+      case Oid.TIME:
+      case Oid.TIMESTAMP:
+      case Oid.TIMESTAMPTZ:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * the format of each column, given the result format codes from a Bind.
+   */
+  static int[] formats(final List<Column> columns, final List<Integer> requested) {
+    final int[] formats = new int[columns.size()];
+    for (int i = 0; i < formats.length; ++i) {
+      final int format;
+      if (requested.isEmpty()) {
+        format = 0;
+      }
+      else if (requested.size() == 1) {
+        format = requested.get(0);
+      }
+      else {
+        format = requested.get(i);
+      }
+      formats[i] = (format == 1) && hasBinary(columns.get(i).getTypeOid()) ? 1
+                                                                            : 0;
+    }
+    return formats;
+  }
+
+  static RowDescription describe(final List<Column> columns, final int[] formats) {
+    final List<RowDescription.Entry> entries = new ArrayList<>(columns.size());
+    for (int i = 0; i < formats.length; ++i) {
+      final Column column = columns.get(i);
+      entries.add(new RowDescription.Entry(column.getName(), 0, 0, column.getTypeOid(), typeLength(column.getTypeOid()), -1, formats[i]));
+    }
+    return new RowDescription(entries);
+  }
+
+  private static int typeLength(final int oid) {
+    switch (oid) {
+      case Oid.BOOL:
+        return 1;
+      case Oid.INT2:
+        return 2;
+      case Oid.INT4:
+      case Oid.OID:
+      case Oid.FLOAT4:
+      case Oid.DATE:
+        return 4;
+      case Oid.INT8:
+      case Oid.FLOAT8:
+      case Oid.TIME:
+      case Oid.TIMESTAMP:
+      case Oid.TIMESTAMPTZ:
+        return 8;
+      case Oid.UUID:
+        return 16;
+      default:
+        return -1;
+    }
+  }
+
+  static void writeDataRow(final ByteBuf out, final List<Column> columns, final int[] formats, final Object[] row) {
+    out.writeByte('D');
+    final int pos = out.writerIndex();
+    out.writeInt(0);
+    out.writeShort(formats.length);
+    for (int i = 0; i < formats.length; ++i) {
+      writeValue(out, columns.get(i).getTypeOid(), formats[i], row[i]);
+    }
+    out.setInt(pos, out.writerIndex() - pos);
+  }
+
+  /**
+   * a length prefixed value, or -1 for null.
+   */
+  static void writeValue(final ByteBuf out, final int oid, final int format, final Object value) {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    final int pos = out.writerIndex();
+    out.writeInt(0);
+    if (format == 1) {
+      writeBinary(out, oid, value);
+    }
+    else {
+      out.writeCharSequence(text(value), StandardCharsets.UTF_8);
+    }
+    out.setInt(pos, out.writerIndex() - pos - 4);
+  }
+
+  private static void writeBinary(final ByteBuf out, final int oid, final Object value) {
+    switch (oid) {
+      case Oid.BOOL:
+        out.writeByte(value instanceof Boolean ? ((Boolean) value ? 1 : 0)
+                                               : (text(value).startsWith("t") ? 1 : 0));
+        break;
+      case Oid.INT2:
+        out.writeShort((int) number(value).longValue());
+        break;
+      case Oid.INT4:
+      case Oid.OID:
+        out.writeInt((int) number(value).longValue());
+        break;
+      case Oid.INT8:
+        out.writeLong(number(value).longValue());
+        break;
+      case Oid.FLOAT4:
+        out.writeFloat(number(value).floatValue());
+        break;
+      case Oid.FLOAT8:
+        out.writeDouble(number(value).doubleValue());
+        break;
+      case Oid.UUID:
+        {
+          final UUID uuid = value instanceof UUID ? (UUID) value
+                                                  : UUID.fromString(value.toString());
+          out.writeLong(uuid.getMostSignificantBits());
+          out.writeLong(uuid.getLeastSignificantBits());
+        }
+        break;
+      case Oid.DATE:
+        out.writeInt((int) ChronoUnit.DAYS.between(PG_EPOCH.toLocalDate(), date(value)));
+        break;
+      case Oid.TIME:
+        out.writeLong(time(value).getLong(ChronoField.MICRO_OF_DAY));
+        break;
+      case Oid.TIMESTAMP:
+        out.writeLong(ChronoUnit.MICROS.between(PG_EPOCH, timestamp(value)));
+        break;
+      case Oid.TIMESTAMPTZ:
+        out.writeLong(ChronoUnit.MICROS.between(PG_EPOCH.toInstant(ZoneOffset.UTC), instant(value)));
+        break;
+      default:
+        if (value instanceof byte[]) {
+          out.writeBytes((byte[]) value);
+        }
+        else {
+          out.writeCharSequence(text(value), StandardCharsets.UTF_8);
+        }
+        break;
+    }
+  }
+
+  /**
+   * the text output form of a value.
+   */
+  static String text(final Object value) {
+    if (value instanceof Boolean) {
+      return (Boolean) value ? "t"
+                             : "f";
+    }
+    else if (value instanceof byte[]) {
+      return "\\x" + ByteBufUtil.hexDump((byte[]) value);
+    }
+    else if (value instanceof Instant) {
+      return TIMESTAMPTZ.format(((Instant) value).atOffset(ZoneOffset.UTC));
+    }
+    else if (value instanceof OffsetDateTime) {
+      return TIMESTAMPTZ.format((OffsetDateTime) value);
+    }
+    else if (value instanceof LocalDateTime) {
+      return TIMESTAMP.format((LocalDateTime) value);
+    }
+    return value.toString();
+  }
+
+  private static Number number(final Object value) {
+    if (value instanceof Number) {
+      return (Number) value;
+    }
+    return Double.valueOf(value.toString());
+  }
+
+  private static LocalDate date(final Object value) {
+    if (value instanceof LocalDate) {
+      return (LocalDate) value;
+    }
+    return LocalDate.parse(value.toString());
+  }
+
+  private static LocalTime time(final Object value) {
+    if (value instanceof LocalTime) {
+      return (LocalTime) value;
+    }
+    return LocalTime.parse(value.toString());
+  }
+
+  private static LocalDateTime timestamp(final Object value) {
+    if (value instanceof LocalDateTime) {
+      return (LocalDateTime) value;
+    }
+    else if (value instanceof Instant) {
+      return LocalDateTime.ofInstant((Instant) value, ZoneOffset.UTC);
+    }
+    return LocalDateTime.parse(value.toString(), TIMESTAMP);
+  }
+
+  private static Instant instant(final Object value) {
+    if (value instanceof Instant) {
+      return (Instant) value;
+    }
+    else if (value instanceof OffsetDateTime) {
+      return ((OffsetDateTime) value).toInstant();
+    }
+    return OffsetDateTime.parse(value.toString(), TIMESTAMPTZ).toInstant();
+  }
+
+  static void writeCopyHeader(final ByteBuf out) {
+    out.writeByte('d');
+    out.writeInt(4 + COPY_SIGNATURE.length + 8);
+    out.writeBytes(COPY_SIGNATURE);
+    out.writeInt(0);
+    out.writeInt(0);
+  }
+
+  static void writeCopyTrailer(final ByteBuf out) {
+    out.writeByte('d');
+    out.writeInt(6);
+    out.writeShort(-1);
+  }
+
+  /**
+   * a CopyData message holding a single row, as a binary tuple or a line of text format.
+   */
+  static void writeCopyRow(final ByteBuf out, final List<Column> columns, final boolean binary, final Object[] row) {
+    out.writeByte('d');
+    final int pos = out.writerIndex();
+    out.writeInt(0);
+    if (binary) {
+      out.writeShort(columns.size());
+      for (int i = 0; i < row.length; ++i) {
+        writeValue(out, columns.get(i).getTypeOid(), hasBinary(columns.get(i).getTypeOid()) ? 1 : 0, row[i]);
+      }
+    }
+    else {
+      for (int i = 0; i < row.length; ++i) {
+        if (i > 0) {
+          out.writeByte('\t');
+        }
+        if (row[i] == null) {
+          out.writeByte('\\');
+          out.writeByte('N');
+        }
+        else {
+          writeCopyText(out, text(row[i]));
+        }
+      }
+      out.writeByte('\n');
+    }
+    out.setInt(pos, out.writerIndex() - pos);
+  }
+
+  private static void writeCopyText(final ByteBuf out, final String value) {
+    int start = 0;
+    for (int i = 0; i < value.length(); ++i) {
+      final char ch = value.charAt(i);
+      final char escape;
+      switch (ch) {
+        case '\\':
+          escape = '\\';
+          break;
+        case '\t':
+          escape = 't';
+          break;
+        case '\n':
+          escape = 'n';
+          break;
+        case '\r':
+          escape = 'r';
+          break;
+        default:
+          continue;
+      }
+      out.writeCharSequence(value.subSequence(start, i), StandardCharsets.UTF_8);
+      out.writeByte('\\');
+      out.writeByte(escape);
+      start = i + 1;
+    }
+    out.writeCharSequence(value.subSequence(start, value.length()), StandardCharsets.UTF_8);
+  }
+
+}
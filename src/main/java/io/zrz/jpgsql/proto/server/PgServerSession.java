@@ -0,0 +1,740 @@
+package io.zrz.jpgsql.proto.server;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.postgresql.core.Oid;
+import org.postgresql.util.MD5Digest;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.concurrent.Future;
+import io.zrz.jpgsql.proto.server.ServerResult.Column;
+import io.zrz.jpgsql.proto.wire.AuthenticationMD5Password;
+import io.zrz.jpgsql.proto.wire.AuthenticationOk;
+import io.zrz.jpgsql.proto.wire.BackendKeyData;
+import io.zrz.jpgsql.proto.wire.Bind;
+import io.zrz.jpgsql.proto.wire.BindComplete;
+import io.zrz.jpgsql.proto.wire.CancelRequest;
+import io.zrz.jpgsql.proto.wire.Close;
+import io.zrz.jpgsql.proto.wire.CloseComplete;
+import io.zrz.jpgsql.proto.wire.CommandComplete;
+import io.zrz.jpgsql.proto.wire.CopyBothResponse.Format;
+import io.zrz.jpgsql.proto.wire.CopyData;
+import io.zrz.jpgsql.proto.wire.CopyDone;
+import io.zrz.jpgsql.proto.wire.CopyFail;
+import io.zrz.jpgsql.proto.wire.CopyInResponse;
+import io.zrz.jpgsql.proto.wire.CopyOutResponse;
+import io.zrz.jpgsql.proto.wire.Describe;
+import io.zrz.jpgsql.proto.wire.EmptyQueryResponse;
+import io.zrz.jpgsql.proto.wire.ErrorResponse;
+import io.zrz.jpgsql.proto.wire.Execute;
+import io.zrz.jpgsql.proto.wire.Flush;
+import io.zrz.jpgsql.proto.wire.NoData;
+import io.zrz.jpgsql.proto.wire.ParameterDescription;
+import io.zrz.jpgsql.proto.wire.ParameterStatus;
+import io.zrz.jpgsql.proto.wire.Parse;
+import io.zrz.jpgsql.proto.wire.ParseComplete;
+import io.zrz.jpgsql.proto.wire.PasswordMessage;
+import io.zrz.jpgsql.proto.wire.PortalSuspended;
+import io.zrz.jpgsql.proto.wire.PostgreSQLPacket;
+import io.zrz.jpgsql.proto.wire.Query;
+import io.zrz.jpgsql.proto.wire.ReadyForQuery;
+import io.zrz.jpgsql.proto.wire.SslRequest;
+import io.zrz.jpgsql.proto.wire.StartupMessage;
+import io.zrz.jpgsql.proto.wire.Sync;
+import io.zrz.jpgsql.proto.wire.Terminate;
+import io.zrz.jpgsql.proto.wire.TransactionStatus;
+
+/**
+ * the backend side of a single connection to the {@link EmbeddedPgServer}.
+ *
+ * everything runs on the channel's event loop. incoming messages are queued, and processed in order whenever the
+ * session isn't waiting on a delay, on channel writability while streaming rows, or for COPY data. the work produced by
+ * a simple Query (one step per statement, then ReadyForQuery) is queued as actions which run before any further
+ * message is read.
+ */
+final class PgServerSession extends ChannelInboundHandlerAdapter {
+  @java.lang.SuppressWarnings("all")
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PgServerSession.class);
+
+  // rows are written in chunks of roughly this size.
+  private static final int CHUNK_SIZE = 64 * 1024;
+  // chunks written before giving other tasks (such as a cancel) a turn on the event loop.
+  private static final int CHUNKS_PER_TURN = 16;
+
+  private static final Pattern COPY_OUT = Pattern.compile("(?is)^\\s*COPY\\b.*\\bTO\\s+STDOUT\\b.*");
+  private static final Pattern BINARY = Pattern.compile("(?is).*\\bBINARY\\b.*");
+  private static final Pattern PARAMETER = Pattern.compile("\\$(\\d+)");
+
+  private static final class Statement {
+
+    private final String sql;
+    private final List<Integer> paramOids;
+
+    Statement(final String sql, final List<Integer> paramOids) {
+      this.sql = sql;
+      this.paramOids = paramOids;
+    }
+
+  }
+
+  private static final class Portal {
+
+    private final Statement statement;
+    private final ServerResult result;
+    private final int[] formats;
+    private long position;
+
+    Portal(final Statement statement, final ServerResult result, final int[] formats) {
+      this.statement = statement;
+      this.result = result;
+      this.formats = formats;
+    }
+
+  }
+
+  /**
+   * rows being written to the channel, which may need to wait for it to become writable again.
+   */
+  private final class RowStream {
+
+    private final ServerResult result;
+    private final int[] formats;
+    private final boolean copy;
+    private final boolean binary;
+    private final long end;
+    private final Runnable complete;
+    private long position;
+
+    RowStream(final ServerResult result, final int[] formats, final boolean copy, final boolean binary, final long start, final long end, final Runnable complete) {
+      this.result = result;
+      this.formats = formats;
+      this.copy = copy;
+      this.binary = binary;
+      this.position = start;
+      this.end = end;
+      this.complete = complete;
+    }
+
+    /**
+     * @return true once all rows have been written and the completion run.
+     */
+    boolean resume() {
+      final List<Column> columns = this.result.getColumns();
+      int chunks = 0;
+      while (this.position < this.end) {
+        if (++chunks > CHUNKS_PER_TURN) {
+          PgServerSession.this.ctx.executor().execute(PgServerSession.this::drain);
+          return false;
+        }
+        final ByteBuf buf = PgServerSession.this.ctx.alloc().buffer(CHUNK_SIZE + (CHUNK_SIZE / 4));
+        try {
+          while ((this.position < this.end) && (buf.writerIndex() < CHUNK_SIZE)) {
+            final Object[] row = this.result.row(this.position++);
+            if (this.copy) {
+              PgServerRows.writeCopyRow(buf, columns, this.binary, row);
+            }
+            else {
+              PgServerRows.writeDataRow(buf, columns, this.formats, row);
+            }
+          }
+        }
+        catch (final RuntimeException ex) {
+          buf.release();
+          throw ex;
+        }
+        PgServerSession.this.ctx.write(buf);
+        if (!PgServerSession.this.ctx.channel().isWritable()) {
+          PgServerSession.this.ctx.flush();
+          if (!PgServerSession.this.ctx.channel().isWritable()) {
+            return false;
+          }
+        }
+      }
+      this.complete.run();
+      return true;
+    }
+
+  }
+
+  private final EmbeddedPgServer server;
+  private final ArrayDeque<PostgreSQLPacket> inbox = new ArrayDeque<>();
+  private final ArrayDeque<Runnable> actions = new ArrayDeque<>();
+  private final Map<String, Statement> statements = new HashMap<>();
+  private final Map<String, Portal> portals = new HashMap<>();
+
+  private ChannelHandlerContext ctx;
+  private TransactionStatus txn = TransactionStatus.Idle;
+  private String user;
+  private byte[] salt;
+  private boolean authenticated;
+  private BackendKeyData key;
+  private RowStream stream;
+  private PgServerCopyIn copyIn;
+  private boolean delayed;
+  private boolean simple;
+  private boolean skipToSync;
+  // flushing while streaming rows can fire channelWritabilityChanged, which mustn't drain again underneath it.
+  private boolean draining;
+
+  PgServerSession(final EmbeddedPgServer server) {
+    this.server = server;
+  }
+
+  @Override
+  public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+    this.ctx = ctx;
+    this.server.connected();
+    super.channelActive(ctx);
+  }
+
+  @Override
+  public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+    this.server.disconnected();
+    if (this.key != null) {
+      this.server.unregister(this.key);
+    }
+    for (final PostgreSQLPacket msg : this.inbox) {
+      if (msg instanceof CopyData) {
+        ((CopyData) msg).getData().release();
+      }
+    }
+    this.inbox.clear();
+    super.channelInactive(ctx);
+  }
+
+  @Override
+  public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+    this.inbox.add((PostgreSQLPacket) msg);
+    this.drain();
+  }
+
+  @Override
+  public void channelWritabilityChanged(final ChannelHandlerContext ctx) throws Exception {
+    if (ctx.channel().isWritable()) {
+      this.drain();
+    }
+    super.channelWritabilityChanged(ctx);
+  }
+
+  @Override
+  public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) throws Exception {
+    log.warn("closing connection after error: {}", cause.getMessage(), cause);
+    ctx.close();
+  }
+
+  private void drain() {
+    if (this.draining) {
+      return;
+    }
+    this.draining = true;
+    try {
+      this.drain0();
+    }
+    finally {
+      this.draining = false;
+    }
+    this.ctx.flush();
+  }
+
+  private void drain0() {
+    while (!this.delayed && this.ctx.channel().isActive()) {
+      if (this.stream != null) {
+        if (!this.stream.resume()) {
+          break;
+        }
+        this.stream = null;
+      }
+      else if ((this.copyIn == null) && !this.actions.isEmpty()) {
+        this.actions.poll().run();
+      }
+      else {
+        final PostgreSQLPacket msg = this.inbox.poll();
+        if (msg == null) {
+          break;
+        }
+        this.handle(msg);
+      }
+    }
+  }
+
+  /**
+   * run the task after the given delay, holding off all other processing until then.
+   */
+  private void after(final Duration delay, final Runnable task) {
+    if (delay.isZero()) {
+      task.run();
+      return;
+    }
+    this.delayed = true;
+    this.ctx.flush();
+    this.ctx.executor().schedule(() -> {
+      this.delayed = false;
+      task.run();
+      this.drain();
+    }, delay.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  private void write(final PostgreSQLPacket msg) {
+    this.ctx.write(msg);
+  }
+
+  private void handle(final PostgreSQLPacket msg) {
+
+    if (msg instanceof CopyData) {
+      final ByteBuf data = ((CopyData) msg).getData();
+      try {
+        if ((this.copyIn != null) && !this.skipToSync) {
+          this.copyIn.accept(data);
+        }
+      }
+      finally {
+        data.release();
+      }
+      return;
+    }
+
+    if (!this.authenticated) {
+      this.startup(msg);
+      return;
+    }
+
+    if (this.copyIn != null) {
+      if (msg instanceof CopyDone) {
+        final long rows = this.copyIn.rows();
+        this.copyIn = null;
+        this.complete("COPY " + rows);
+      }
+      else if (msg instanceof CopyFail) {
+        this.copyIn = null;
+        this.fail("57014", "COPY from stdin failed: " + ((CopyFail) msg).getMessage());
+      }
+      else if (!(msg instanceof Flush) && !(msg instanceof Sync)) {
+        this.copyIn = null;
+        this.fail("08P01", "unexpected message type during COPY from stdin");
+      }
+      return;
+    }
+
+    if (msg instanceof Terminate) {
+      this.ctx.close();
+      return;
+    }
+
+    if (msg instanceof Query) {
+      this.query(((Query) msg).getQuery());
+      return;
+    }
+
+    if (msg instanceof Sync) {
+      this.skipToSync = false;
+      this.portals.remove("");
+      this.ready();
+      return;
+    }
+
+    if (this.skipToSync) {
+      return;
+    }
+
+    if (msg instanceof Parse) {
+      final Parse parse = (Parse) msg;
+      this.statements.put(parse.getName(), new Statement(parse.getQuery(), parse.getParamOids()));
+      this.write(new ParseComplete());
+    }
+    else if (msg instanceof Bind) {
+      this.bind((Bind) msg);
+    }
+    else if (msg instanceof Describe) {
+      this.describe((Describe) msg);
+    }
+    else if (msg instanceof Execute) {
+      this.execute((Execute) msg);
+    }
+    else if (msg instanceof Close) {
+      final Close close = (Close) msg;
+      if (close.getKind() == Close.STATEMENT) {
+        if (this.statements.remove(close.getName()) != null) {
+          this.server.closed();
+        }
+      }
+      else {
+        this.portals.remove(close.getName());
+      }
+      this.write(new CloseComplete());
+    }
+    else if (msg instanceof Flush) {
+      this.ctx.flush();
+    }
+    else if (msg instanceof CopyDone || msg instanceof CopyFail) {
+      // the copy already failed, ignore the rest of it.
+    }
+    else {
+      this.fail("08P01", "unexpected message " + msg);
+    }
+
+  }
+
+  private void startup(final PostgreSQLPacket msg) {
+
+    if (msg instanceof SslRequest) {
+      this.ctx.write(Unpooled.wrappedBuffer(new byte[] { 'N' }));
+    }
+    else if (msg instanceof CancelRequest) {
+      // the connection is only for the request, and gets no reply. as with postgresql, it is closed once the session
+      // has been signalled, so a client waiting for that knows the request can't reach a later query.
+      final Future<?> cancelled = this.server.cancel((CancelRequest) msg);
+      if (cancelled == null) {
+        this.ctx.close();
+      }
+      else {
+        cancelled.addListener(f -> this.ctx.close());
+      }
+    }
+    else if (msg instanceof StartupMessage) {
+      this.user = ((StartupMessage) msg).getParameters().get("user");
+      if ((this.server.getUsername() != null) && !this.server.getUsername().equals(this.user)) {
+        this.fatal("28000", String.format("role \"%s\" does not exist", this.user));
+      }
+      else if (this.server.getPassword() != null) {
+        this.salt = new byte[4];
+        ThreadLocalRandom.current().nextBytes(this.salt);
+        this.write(new AuthenticationMD5Password(this.salt));
+      }
+      else {
+        this.authenticated(((StartupMessage) msg).getParameters());
+      }
+    }
+    else if ((msg instanceof PasswordMessage) && (this.salt != null)) {
+      final byte[] expected =
+        MD5Digest.encode(
+          this.user.getBytes(StandardCharsets.UTF_8),
+          this.server.getPassword().getBytes(StandardCharsets.UTF_8),
+          this.salt);
+      if (Arrays.equals(expected, ((PasswordMessage) msg).getPassword())) {
+        this.authenticated(Collections.emptyMap());
+      }
+      else {
+        this.fatal("28P01", String.format("password authentication failed for user \"%s\"", this.user));
+      }
+    }
+    else {
+      this.fatal("08P01", "unexpected message during startup: " + msg);
+    }
+
+  }
+
+  private void authenticated(final Map<String, String> startup) {
+    this.authenticated = true;
+    this.write(new AuthenticationOk());
+    this.server.getParameters().forEach((key, value) -> this.write(new ParameterStatus(key, value)));
+    if (startup.containsKey("application_name")) {
+      this.write(new ParameterStatus("application_name", startup.get("application_name")));
+    }
+    this.key = new BackendKeyData(this.server.nextProcessId(), ThreadLocalRandom.current().nextInt());
+    this.server.register(this.key, this);
+    this.write(this.key);
+    this.ready();
+  }
+
+  /**
+   * a CancelRequest for this session: stop the rows or COPY data being streamed, failing the statement as postgresql
+   * does. anything else has nothing to cancel. completes once done, on the session's event loop.
+   */
+  Future<?> cancel() {
+    return this.ctx.executor().submit(() -> {
+      if (this.stream == null) {
+        return;
+      }
+      this.stream = null;
+      this.fail("57014", "canceling statement due to user request");
+      this.drain();
+    });
+  }
+
+  private void ready() {
+    this.simple = false;
+    this.write(new ReadyForQuery(this.txn));
+  }
+
+  private void fatal(final String sqlState, final String message) {
+    this.ctx.writeAndFlush(error("FATAL", sqlState, message)).addListener(ChannelFutureListener.CLOSE);
+  }
+
+  private static ErrorResponse error(final String severity, final String sqlState, final String message) {
+    final List<String> fields = new ArrayList<>(4);
+    fields.add("S" + severity);
+    fields.add("V" + severity);
+    fields.add("C" + sqlState);
+    fields.add("M" + message);
+    return new ErrorResponse(fields);
+  }
+
+  /**
+   * fail the current statement. in the simple protocol the rest of the query is skipped, in the extended protocol all
+   * messages up to the next Sync are.
+   */
+  private void fail(final String sqlState, final String message) {
+    this.write(error("ERROR", sqlState, message));
+    if (this.txn == TransactionStatus.Transaction) {
+      this.txn = TransactionStatus.Error;
+    }
+    this.actions.clear();
+    if (this.simple) {
+      this.actions.add(this::ready);
+    }
+    else {
+      this.skipToSync = true;
+    }
+  }
+
+  private void complete(final String tag) {
+    switch (tag) {
+      case "BEGIN":
+        if (this.txn == TransactionStatus.Idle) {
+          this.txn = TransactionStatus.Transaction;
+        }
+        break;
+      case "COMMIT":
+      case "ROLLBACK":
+        this.txn = TransactionStatus.Idle;
+        break;
+    }
+    this.write(new CommandComplete(tag));
+  }
+
+  /**
+   * in a failed transaction block, only the end of it is accepted.
+   */
+  private ServerResult resolve(final String sql, final List<byte[]> params) {
+    if (this.txn == TransactionStatus.Error) {
+      final String normalized = EmbeddedPgServerBuilder.normalize(sql).toUpperCase();
+      if (normalized.startsWith("ROLLBACK") || normalized.startsWith("ABORT")) {
+        return ServerResult.command("ROLLBACK");
+      }
+      else if (normalized.startsWith("COMMIT") || normalized.startsWith("END")) {
+        return ServerResult.command("ROLLBACK");
+      }
+      return ServerResult.error("25P02", "current transaction is aborted, commands ignored until end of transaction block");
+    }
+    return this.server.resolve(sql, params);
+  }
+
+  private void query(final String sql) {
+    this.simple = true;
+    final List<String> parts = split(sql);
+    if (parts.isEmpty()) {
+      this.actions.add(() -> this.write(new EmptyQueryResponse()));
+    }
+    for (final String part : parts) {
+      this.actions.add(() -> {
+        final ServerResult result = this.resolve(part, Collections.emptyList());
+        this.server.executed();
+        this.after(this.server.delay(result), () -> this.run(part, result, null, 0));
+      });
+    }
+    this.actions.add(this::ready);
+  }
+
+  private void bind(final Bind bind) {
+    final Statement statement = this.statements.get(bind.getSourcePreparedStatement());
+    if (statement == null) {
+      this.fail("26000", String.format("prepared statement \"%s\" does not exist", bind.getSourcePreparedStatement()));
+      return;
+    }
+    final ServerResult result = this.resolve(statement.sql, bind.getParameterValues());
+    final int[] formats = PgServerRows.formats(result.getColumns(), bind.getResultFormats());
+    this.portals.put(bind.getDestinationPortal(), new Portal(statement, result, formats));
+    this.write(new BindComplete());
+  }
+
+  private void describe(final Describe describe) {
+    this.server.described();
+    if (describe.getKind() == Describe.STATEMENT) {
+      final Statement statement = this.statements.get(describe.getName());
+      if (statement == null) {
+        this.fail("26000", String.format("prepared statement \"%s\" does not exist", describe.getName()));
+        return;
+      }
+      this.write(new ParameterDescription(parameterTypes(statement)));
+      final ServerResult result = this.resolve(statement.sql, Collections.emptyList());
+      this.describe(statement.sql, result, new int[result.getColumns().size()]);
+    }
+    else {
+      final Portal portal = this.portals.get(describe.getName());
+      if (portal == null) {
+        this.fail("34000", String.format("portal \"%s\" does not exist", describe.getName()));
+        return;
+      }
+      this.describe(portal.statement.sql, portal.result, portal.formats);
+    }
+  }
+
+  private void describe(final String sql, final ServerResult result, final int[] formats) {
+    if ((result.getKind() == ServerResult.Kind.ROWS) && !COPY_OUT.matcher(sql).matches()) {
+      this.write(PgServerRows.describe(result.getColumns(), formats));
+    }
+    else {
+      this.write(new NoData());
+    }
+  }
+
+  /**
+   * the declared parameter types, with any unspecified or undeclared ones as text.
+   */
+  private static List<Integer> parameterTypes(final Statement statement) {
+    int count = statement.paramOids.size();
+    final Matcher m = PARAMETER.matcher(statement.sql);
+    while (m.find()) {
+      count = Math.max(count, Integer.parseInt(m.group(1)));
+    }
+    final List<Integer> oids = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      final int oid = i < statement.paramOids.size() ? statement.paramOids.get(i)
+                                                     : Oid.UNSPECIFIED;
+      oids.add(oid == Oid.UNSPECIFIED ? Oid.TEXT
+                                      : oid);
+    }
+    return oids;
+  }
+
+  private void execute(final Execute execute) {
+    final Portal portal = this.portals.get(execute.getCommand());
+    if (portal == null) {
+      this.fail("34000", String.format("portal \"%s\" does not exist", execute.getCommand()));
+      return;
+    }
+    this.server.executed();
+    this.after(this.server.delay(portal.result), () -> this.run(portal.statement.sql, portal.result, portal, execute.getMaxRows()));
+  }
+
+  /**
+   * reply to a statement. for the simple protocol the portal is null, and the row description is sent first.
+   */
+  private void run(final String sql, final ServerResult result, final Portal portal, final int maxRows) {
+
+    switch (result.getKind()) {
+
+      case ERROR:
+        this.fail(result.getSqlState(), result.getMessage());
+        return;
+
+      case COMMAND:
+        this.complete(result.getCommandTag());
+        return;
+
+      case COPY_IN:
+        {
+          final boolean binary = BINARY.matcher(sql).matches();
+          this.copyIn = new PgServerCopyIn(result.getSink(), binary);
+          this.write(new CopyInResponse(binary ? Format.Binary
+                                               : Format.Text,
+            Collections.emptyList()));
+        }
+        return;
+
+      case ROWS:
+        break;
+
+    }
+
+    final long count = result.getRowCount();
+
+    if (COPY_OUT.matcher(sql).matches()) {
+      final boolean binary = BINARY.matcher(sql).matches();
+      final List<Integer> formats = new ArrayList<>();
+      for (final Column column : result.getColumns()) {
+        formats.add(binary && PgServerRows.hasBinary(column.getTypeOid()) ? 1
+                                                                          : 0);
+      }
+      this.write(new CopyOutResponse(binary ? Format.Binary
+                                            : Format.Text,
+        formats));
+      if (binary) {
+        final ByteBuf header = this.ctx.alloc().buffer();
+        PgServerRows.writeCopyHeader(header);
+        this.ctx.write(header);
+      }
+      this.stream = new RowStream(result, null, true, binary, 0, count, () -> {
+        if (binary) {
+          final ByteBuf trailer = this.ctx.alloc().buffer();
+          PgServerRows.writeCopyTrailer(trailer);
+          this.ctx.write(trailer);
+        }
+        this.write(new CopyDone());
+        this.complete("COPY " + count);
+      });
+      return;
+    }
+
+    if (portal == null) {
+      final int[] formats = new int[result.getColumns().size()];
+      this.write(PgServerRows.describe(result.getColumns(), formats));
+      this.stream = new RowStream(result, formats, false, false, 0, count, () -> this.complete("SELECT " + count));
+      return;
+    }
+
+    final long start = portal.position;
+    final long end = (maxRows > 0) ? Math.min(count, start + maxRows)
+                                   : count;
+    portal.position = end;
+
+    this.stream = new RowStream(result, portal.formats, false, false, start, end, () -> {
+      if (end < count) {
+        this.write(new PortalSuspended());
+      }
+      else {
+        this.complete("SELECT " + (end - start));
+      }
+    });
+
+  }
+
+  /**
+   * split a simple query into statements on semicolons outside of quotes.
+   */
+  static List<String> split(final String sql) {
+    final List<String> parts = new ArrayList<>();
+    char quote = 0;
+    int start = 0;
+    for (int i = 0; i < sql.length(); ++i) {
+      final char ch = sql.charAt(i);
+      if (quote != 0) {
+        if (ch == quote) {
+          quote = 0;
+        }
+      }
+      else if ((ch == '\'') || (ch == '"')) {
+        quote = ch;
+      }
+      else if (ch == ';') {
+        add(parts, sql.substring(start, i));
+        start = i + 1;
+      }
+    }
+    add(parts, sql.substring(start));
+    return parts;
+  }
+
+  private static void add(final List<String> parts, final String part) {
+    if (!part.trim().isEmpty()) {
+      parts.add(part.trim());
+    }
+  }
+
+}
@@ -0,0 +1,22 @@
+package io.zrz.jpgsql.proto.server;
+
+import java.util.List;
+
+/**
+ * decides how the {@link EmbeddedPgServer} replies to a statement.
+ */
+@FunctionalInterface
+public interface ServerResponder {
+
+  /**
+   * @param sql
+   *          the statement text, as sent by the client.
+   * @param parameters
+   *          the bound parameter values in the format the client sent them, null for NULL. empty when describing a
+   *          statement or for the simple query protocol.
+   *
+   * @return the reply, or null if this responder doesn't know the statement.
+   */
+  ServerResult respond(String sql, List<byte[]> parameters);
+
+}
@@ -0,0 +1,205 @@
+package io.zrz.jpgsql.proto.server;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import com.google.common.collect.ImmutableList;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * what the {@link EmbeddedPgServer} replies to a statement with.
+ *
+ * rows are produced on demand from a {@link LongFunction}, so very large results cost nothing until they are streamed.
+ * if the statement is a {@code COPY ... TO STDOUT} the rows are sent as COPY data instead of a result set.
+ */
+public final class ServerResult {
+
+  public enum Kind {
+    ROWS,
+    COMMAND,
+    ERROR,
+    COPY_IN
+  }
+
+  /**
+   * a result column. values are encoded according to the type oid, in binary where the client asks for it and the
+   * type is a common one, otherwise as text.
+   */
+  public static final class Column {
+
+    private final String name;
+    private final int typeOid;
+
+    private Column(final String name, final int typeOid) {
+      this.name = Objects.requireNonNull(name);
+      this.typeOid = typeOid;
+    }
+
+    public static Column of(final String name, final int typeOid) {
+      return new Column(name, typeOid);
+    }
+
+    public String getName() {
+      return this.name;
+    }
+
+    public int getTypeOid() {
+      return this.typeOid;
+    }
+
+    @Override
+    public String toString() {
+      return this.name + "(" + this.typeOid + ")";
+    }
+
+  }
+
+  private final Kind kind;
+  private final List<Column> columns;
+  private final long rowCount;
+  private final LongFunction<Object[]> rows;
+  private final String commandTag;
+  private final String sqlState;
+  private final String message;
+  private final Consumer<ByteBuf> sink;
+  private final Duration delay;
+
+  private ServerResult(
+      final Kind kind,
+      final List<Column> columns,
+      final long rowCount,
+      final LongFunction<Object[]> rows,
+      final String commandTag,
+      final String sqlState,
+      final String message,
+      final Consumer<ByteBuf> sink,
+      final Duration delay) {
+    this.kind = kind;
+    this.columns = columns;
+    this.rowCount = rowCount;
+    this.rows = rows;
+    this.commandTag = commandTag;
+    this.sqlState = sqlState;
+    this.message = message;
+    this.sink = sink;
+    this.delay = delay;
+  }
+
+  /**
+   * a canned result set.
+   */
+  public static ServerResult rows(final List<Column> columns, final List<Object[]> rows) {
+    final List<Object[]> copy = ImmutableList.copyOf(rows);
+    return new ServerResult(Kind.ROWS, ImmutableList.copyOf(columns), copy.size(), row -> copy.get((int) row), null, null, null, null, null);
+  }
+
+  /**
+   * a generated result set of {@code count} rows, each created when it is sent.
+   */
+  public static ServerResult generate(final long count, final LongFunction<Object[]> rows, final Column... columns) {
+    return new ServerResult(Kind.ROWS, ImmutableList.copyOf(columns), count, rows, null, null, null, null, null);
+  }
+
+  /**
+   * a single column result set with {@code count} rows of the same value.
+   */
+  public static ServerResult repeat(final long count, final Column column, final Object value) {
+    final Object[] row = new Object[] { value };
+    return generate(count, i -> row, column);
+  }
+
+  /**
+   * a statement that returns no rows, e.g "INSERT 0 1".
+   */
+  public static ServerResult command(final String commandTag) {
+    return new ServerResult(Kind.COMMAND, ImmutableList.of(), 0, null, Objects.requireNonNull(commandTag), null, null, null, null);
+  }
+
+  /**
+   * fail the statement with an ERROR.
+   */
+  public static ServerResult error(final String sqlState, final String message) {
+    return new ServerResult(Kind.ERROR, ImmutableList.of(), 0, null, null, Objects.requireNonNull(sqlState), Objects.requireNonNull(message), null, null);
+  }
+
+  /**
+   * accept a {@code COPY ... FROM STDIN}, discarding the data. the command tag counts text lines or binary tuples.
+   */
+  public static ServerResult copyIn() {
+    return copyIn(buf -> {
+    });
+  }
+
+  /**
+   * accept a {@code COPY ... FROM STDIN}, passing each CopyData payload to the sink. the buffer is only valid for the
+   * duration of the call.
+   */
+  public static ServerResult copyIn(final Consumer<ByteBuf> sink) {
+    return new ServerResult(Kind.COPY_IN, ImmutableList.of(), 0, null, null, null, null, Objects.requireNonNull(sink), null);
+  }
+
+  /**
+   * wait before replying. replaces the server wide default delay.
+   */
+  public ServerResult delay(final Duration delay) {
+    return new ServerResult(this.kind, this.columns, this.rowCount, this.rows, this.commandTag, this.sqlState, this.message, this.sink, delay);
+  }
+
+  public Kind getKind() {
+    return this.kind;
+  }
+
+  public List<Column> getColumns() {
+    return this.columns;
+  }
+
+  public long getRowCount() {
+    return this.rowCount;
+  }
+
+  public Object[] row(final long index) {
+    return this.rows.apply(index);
+  }
+
+  public String getCommandTag() {
+    return this.commandTag;
+  }
+
+  public String getSqlState() {
+    return this.sqlState;
+  }
+
+  public String getMessage() {
+    return this.message;
+  }
+
+  Consumer<ByteBuf> getSink() {
+    return this.sink;
+  }
+
+  /**
+   * the delay for this result, or null to use the server default.
+   */
+  public Duration getDelay() {
+    return this.delay;
+  }
+
+  @Override
+  public String toString() {
+    switch (this.kind) {
+      case ROWS:
+        return "ServerResult(rows=" + this.rowCount + ", columns=" + this.columns + ")";
+      case COMMAND:
+        return "ServerResult(" + this.commandTag + ")";
+      case ERROR:
+        return "ServerResult(" + this.sqlState + ": " + this.message + ")";
+      default:
+        return "ServerResult(" + this.kind + ")";
+    }
+  }
+
+}
@@ -46,7 +46,8 @@ public final class Bind implements PostgreSQLPacket {
   private final String destinationPortal;
   private final String sourcePreparedStatement;
   private final List<Integer> parameterFormats = new ArrayList<>();
-  private final List<Integer> parameterValues = new ArrayList<>();
+  // a null entry is a NULL parameter value.
+  private final List<byte[]> parameterValues = new ArrayList<>();
   private final List<Integer> resultFormats = new ArrayList<>();
 
   @Override
@@ -60,6 +61,13 @@ public final class Bind implements PostgreSQLPacket {
     this.sourcePreparedStatement = sourcePreparedStatement;
   }
 
+  public Bind(final String destinationPortal, final String sourcePreparedStatement, final List<Integer> parameterFormats, final List<byte[]> parameterValues, final List<Integer> resultFormats) {
+    this(destinationPortal, sourcePreparedStatement);
+    this.parameterFormats.addAll(parameterFormats);
+    this.parameterValues.addAll(parameterValues);
+    this.resultFormats.addAll(resultFormats);
+  }
+
   @java.lang.SuppressWarnings("all")
   public String getDestinationPortal() {
     return this.destinationPortal;
@@ -76,7 +84,7 @@ public final class Bind implements PostgreSQLPacket {
   }
 
   @java.lang.SuppressWarnings("all")
-  public List<Integer> getParameterValues() {
+  public List<byte[]> getParameterValues() {
     return this.parameterValues;
   }
 
@@ -0,0 +1,58 @@
+package io.zrz.jpgsql.proto.wire;
+
+/**
+ * sent on a new connection in place of a startup message, to cancel whatever the backend identified by the
+ * {@link BackendKeyData} is running.
+ */
+public final class CancelRequest implements PostgreSQLPacket {
+  private final int processId;
+  private final int secret;
+
+  @Override
+  public <T> T apply(PostgreSQLPacketVisitor<T> visitor) {
+    return visitor.visitCancelRequest(this);
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public CancelRequest(final int processId, final int secret) {
+    this.processId = processId;
+    this.secret = secret;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public int getProcessId() {
+    return this.processId;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public int getSecret() {
+    return this.secret;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public boolean equals(final java.lang.Object o) {
+    if (o == this) return true;
+    if (!(o instanceof CancelRequest)) return false;
+    final CancelRequest other = (CancelRequest) o;
+    if (this.getProcessId() != other.getProcessId()) return false;
+    if (this.getSecret() != other.getSecret()) return false;
+    return true;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public int hashCode() {
+    final int PRIME = 59;
+    int result = 1;
+    result = result * PRIME + this.getProcessId();
+    result = result * PRIME + this.getSecret();
+    return result;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public java.lang.String toString() {
+    return "CancelRequest(processId=" + this.getProcessId() + ", secret=" + this.getSecret() + ")";
+  }
+}
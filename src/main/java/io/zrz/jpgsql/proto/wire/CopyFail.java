@@ -0,0 +1,48 @@
+package io.zrz.jpgsql.proto.wire;
+
+public final class CopyFail implements PostgreSQLPacket {
+  private final String message;
+
+  @Override
+  public <T> T apply(final PostgreSQLPacketVisitor<T> visitor) {
+    return visitor.visitCopyFail(this);
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public CopyFail(final String message) {
+    this.message = message;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public String getMessage() {
+    return this.message;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public boolean equals(final java.lang.Object o) {
+    if (o == this) return true;
+    if (!(o instanceof CopyFail)) return false;
+    final CopyFail other = (CopyFail) o;
+    final java.lang.Object this$message = this.getMessage();
+    final java.lang.Object other$message = other.getMessage();
+    if (this$message == null ? other$message != null : !this$message.equals(other$message)) return false;
+    return true;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public int hashCode() {
+    final int PRIME = 59;
+    int result = 1;
+    final java.lang.Object $message = this.getMessage();
+    result = result * PRIME + ($message == null ? 43 : $message.hashCode());
+    return result;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public java.lang.String toString() {
+    return "CopyFail(message=" + this.getMessage() + ")";
+  }
+}
@@ -0,0 +1,64 @@
+package io.zrz.jpgsql.proto.wire;
+
+import java.util.List;
+
+import io.zrz.jpgsql.proto.wire.CopyBothResponse.Format;
+
+public final class CopyInResponse implements PostgreSQLPacket {
+  private final Format format;
+  private final List<Integer> columns;
+
+  @Override
+  public <T> T apply(final PostgreSQLPacketVisitor<T> visitor) {
+    return visitor.visitCopyInResponse(this);
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public CopyInResponse(final Format format, final List<Integer> columns) {
+    this.format = format;
+    this.columns = columns;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public Format getFormat() {
+    return this.format;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public List<Integer> getColumns() {
+    return this.columns;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public boolean equals(final java.lang.Object o) {
+    if (o == this) return true;
+    if (!(o instanceof CopyInResponse)) return false;
+    final CopyInResponse other = (CopyInResponse) o;
+    final java.lang.Object this$format = this.getFormat();
+    final java.lang.Object other$format = other.getFormat();
+    if (this$format == null ? other$format != null : !this$format.equals(other$format)) return false;
+    final java.lang.Object this$columns = this.getColumns();
+    final java.lang.Object other$columns = other.getColumns();
+    if (this$columns == null ? other$columns != null : !this$columns.equals(other$columns)) return false;
+    return true;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public int hashCode() {
+    final int PRIME = 59;
+    int result = 1;
+    final java.lang.Object $format = this.getFormat();
+    result = result * PRIME + ($format == null ? 43 : $format.hashCode());
+    final java.lang.Object $columns = this.getColumns();
+    result = result * PRIME + ($columns == null ? 43 : $columns.hashCode());
+    return result;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public java.lang.String toString() {
+    return "CopyInResponse(format=" + this.getFormat() + ", columns=" + this.getColumns() + ")";
+  }
+}
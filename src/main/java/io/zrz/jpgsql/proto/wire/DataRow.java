@@ -1,50 +1,240 @@
-// Generated by delombok at Tue Sep 22 10:54:18 PDT 2020
 package io.zrz.jpgsql.proto.wire;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-public final class DataRow implements PostgreSQLPacket {
-  private final List<String> data;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.buffer.Unpooled;
+
+/**
+ * a row of a result, which holds the body of the message as it arrived (a retained slice of the read) along with where
+ * each column starts in it, so nothing is copied or allocated per column.
+ *
+ * it is reference counted like any other netty message: whoever receives it owns it, and must release it once done,
+ * which a {@link io.netty.channel.SimpleChannelInboundHandler} does once it returns. anything which keeps hold of the
+ * row, or of a {@link #value(int)} from it, has to {@link #retain()} it first.
+ *
+ * the values are in the format requested when binding. the typed accessors read binary format values straight out of
+ * the buffer.
+ */
+public final class DataRow extends DefaultByteBufHolder implements PostgreSQLPacket {
+
+  // the index of each column's length in the content, which its value follows.
+  private final int[] offsets;
+
+  /**
+   * the row over a message body, which it takes ownership of.
+   */
+  public DataRow(final ByteBuf data, final int[] offsets) {
+    super(data);
+    this.offsets = offsets;
+  }
+
+  /**
+   * a row of the raw values, where a null entry is a NULL value.
+   */
+  public DataRow(final List<byte[]> values) {
+    this(encode(values));
+  }
+
+  private DataRow(final ByteBuf data) {
+    this(data, offsets(data));
+  }
+
+  private static ByteBuf encode(final List<byte[]> values) {
+    final ByteBuf data = Unpooled.buffer();
+    data.writeShort(values.size());
+    for (final byte[] value : values) {
+      if (value == null) {
+        data.writeInt(-1);
+      }
+      else {
+        data.writeInt(value.length);
+        data.writeBytes(value);
+      }
+    }
+    return data;
+  }
+
+  /**
+   * the index of the length of each column in a DataRow message body.
+   */
+  public static int[] offsets(final ByteBuf data) {
+    int index = data.readerIndex();
+    final int[] offsets = new int[data.getUnsignedShort(index)];
+    index += 2;
+    for (int i = 0; i < offsets.length; ++i) {
+      offsets[i] = index;
+      final int length = data.getInt(index);
+      index += 4 + Math.max(length, 0);
+    }
+    if (index > data.writerIndex()) {
+      throw new IllegalArgumentException("DataRow truncated");
+    }
+    return offsets;
+  }
 
   @Override
   public <T> T apply(final PostgreSQLPacketVisitor<T> visitor) {
     return visitor.visitDataRow(this);
   }
 
+  /**
+   * the number of columns.
+   */
+  public int size() {
+    return this.offsets.length;
+  }
+
+  public boolean isNull(final int column) {
+    return this.length(column) < 0;
+  }
+
+  /**
+   * the length of the column's value, or -1 if it is NULL.
+   */
+  public int length(final int column) {
+    return this.content().getInt(this.offsets[column]);
+  }
+
+  /**
+   * the index of the column's value in the content.
+   */
+  public int index(final int column) {
+    return this.offsets[column] + 4;
+  }
+
+  /**
+   * the column's value as a slice of the content, which is only valid while the row is. null if it is NULL.
+   */
+  public ByteBuf value(final int column) {
+    final int length = this.length(column);
+    return length < 0 ? null
+                      : this.content().slice(this.index(column), length);
+  }
+
+  /**
+   * a copy of the column's value, or null if it is NULL.
+   */
+  public byte[] bytes(final int column) {
+    final int length = this.length(column);
+    return length < 0 ? null
+                      : ByteBufUtil.getBytes(this.content(), this.index(column), length);
+  }
+
+  /**
+   * the column as UTF-8 text, or null if it is NULL.
+   */
+  public String text(final int column) {
+    final int length = this.length(column);
+    return length < 0 ? null
+                      : this.content().toString(this.index(column), length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * a binary int2.
+   */
+  public short int2(final int column) {
+    return this.content().getShort(this.index(column));
+  }
+
+  /**
+   * a binary int4.
+   */
+  public int int4(final int column) {
+    return this.content().getInt(this.index(column));
+  }
+
+  /**
+   * a binary int8.
+   */
+  public long int8(final int column) {
+    return this.content().getLong(this.index(column));
+  }
+
+  /**
+   * a binary float4.
+   */
+  public float float4(final int column) {
+    return this.content().getFloat(this.index(column));
+  }
+
+  /**
+   * a binary float8.
+   */
+  public double float8(final int column) {
+    return this.content().getDouble(this.index(column));
+  }
+
+  /**
+   * a binary bool.
+   */
+  public boolean bool(final int column) {
+    return this.content().getByte(this.index(column)) != 0;
+  }
+
+  /**
+   * copies of the values, where a null entry is a NULL value.
+   */
+  public List<byte[]> getData() {
+    final List<byte[]> data = new ArrayList<>(this.offsets.length);
+    for (int i = 0; i < this.offsets.length; ++i) {
+      data.add(this.bytes(i));
+    }
+    return Collections.unmodifiableList(data);
+  }
+
   @Override
-  public String toString() {
-    return "DataRow(" + data.size() + ")";
+  public DataRow replace(final ByteBuf content) {
+    return new DataRow(content);
   }
 
-  @java.lang.SuppressWarnings("all")
-  public DataRow(final List<String> data) {
-    this.data = data;
+  @Override
+  public DataRow copy() {
+    return (DataRow) super.copy();
   }
 
-  @java.lang.SuppressWarnings("all")
-  public List<String> getData() {
-    return this.data;
+  @Override
+  public DataRow duplicate() {
+    return (DataRow) super.duplicate();
   }
 
-  @java.lang.Override
-  @java.lang.SuppressWarnings("all")
-  public boolean equals(final java.lang.Object o) {
-    if (o == this) return true;
-    if (!(o instanceof DataRow)) return false;
-    final DataRow other = (DataRow) o;
-    final java.lang.Object this$data = this.getData();
-    final java.lang.Object other$data = other.getData();
-    if (this$data == null ? other$data != null : !this$data.equals(other$data)) return false;
-    return true;
+  @Override
+  public DataRow retainedDuplicate() {
+    return (DataRow) super.retainedDuplicate();
   }
 
-  @java.lang.Override
-  @java.lang.SuppressWarnings("all")
-  public int hashCode() {
-    final int PRIME = 59;
-    int result = 1;
-    final java.lang.Object $data = this.getData();
-    result = result * PRIME + ($data == null ? 43 : $data.hashCode());
-    return result;
+  @Override
+  public DataRow retain() {
+    super.retain();
+    return this;
   }
+
+  @Override
+  public DataRow retain(final int increment) {
+    super.retain(increment);
+    return this;
+  }
+
+  @Override
+  public DataRow touch() {
+    super.touch();
+    return this;
+  }
+
+  @Override
+  public DataRow touch(final Object hint) {
+    super.touch(hint);
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "DataRow(" + this.offsets.length + ")";
+  }
+
 }
@@ -0,0 +1,64 @@
+package io.zrz.jpgsql.proto.wire;
+
+/**
+ * Describe a prepared statement ('S') or portal ('P'), answered with its row description.
+ */
+public final class Describe implements PostgreSQLPacket {
+
+  public static final char STATEMENT = 'S';
+  public static final char PORTAL = 'P';
+
+  private final char kind;
+  private final String name;
+
+  @Override
+  public <T> T apply(final PostgreSQLPacketVisitor<T> visitor) {
+    return visitor.visitDescribe(this);
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public Describe(final char kind, final String name) {
+    this.kind = kind;
+    this.name = name;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public char getKind() {
+    return this.kind;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public String getName() {
+    return this.name;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public boolean equals(final java.lang.Object o) {
+    if (o == this) return true;
+    if (!(o instanceof Describe)) return false;
+    final Describe other = (Describe) o;
+    if (this.getKind() != other.getKind()) return false;
+    final java.lang.Object this$name = this.getName();
+    final java.lang.Object other$name = other.getName();
+    if (this$name == null ? other$name != null : !this$name.equals(other$name)) return false;
+    return true;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public int hashCode() {
+    final int PRIME = 59;
+    int result = 1;
+    result = result * PRIME + this.getKind();
+    final java.lang.Object $name = this.getName();
+    result = result * PRIME + ($name == null ? 43 : $name.hashCode());
+    return result;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public java.lang.String toString() {
+    return "Describe(kind=" + this.getKind() + ", name=" + this.getName() + ")";
+  }
+}
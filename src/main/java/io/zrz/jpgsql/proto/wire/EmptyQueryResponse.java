@@ -0,0 +1,33 @@
+package io.zrz.jpgsql.proto.wire;
+
+public final class EmptyQueryResponse implements PostgreSQLPacket {
+  @Override
+  public <T> T apply(final PostgreSQLPacketVisitor<T> visitor) {
+    return visitor.visitEmptyQueryResponse(this);
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public EmptyQueryResponse() {
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public boolean equals(final java.lang.Object o) {
+    if (o == this) return true;
+    if (!(o instanceof EmptyQueryResponse)) return false;
+    return true;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public int hashCode() {
+    final int result = 1;
+    return result;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public java.lang.String toString() {
+    return "EmptyQueryResponse()";
+  }
+}
@@ -5,6 +5,10 @@ import java.util.List;
 
 public final class ErrorResponse implements PostgreSQLPacket {
 
+  /**
+   * each field is the single character field type (e.g 'C' for the SQLSTATE, 'M' for the message), followed by its
+   * value.
+   */
   private final List<String> messages;
 
   @Override
@@ -22,6 +26,18 @@ public final class ErrorResponse implements PostgreSQLPacket {
     return this.messages;
   }
 
+  /**
+   * the value of the given field type, or null if the server didn't send one.
+   */
+  public String getField(final char type) {
+    for (final String message : this.messages) {
+      if (!message.isEmpty() && (message.charAt(0) == type)) {
+        return message.substring(1);
+      }
+    }
+    return null;
+  }
+
   @java.lang.Override
   @java.lang.SuppressWarnings("all")
   public boolean equals(final java.lang.Object o) {
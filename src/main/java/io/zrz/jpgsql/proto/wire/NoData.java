@@ -0,0 +1,33 @@
+package io.zrz.jpgsql.proto.wire;
+
+public final class NoData implements PostgreSQLPacket {
+  @Override
+  public <T> T apply(final PostgreSQLPacketVisitor<T> visitor) {
+    return visitor.visitNoData(this);
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public NoData() {
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public boolean equals(final java.lang.Object o) {
+    if (o == this) return true;
+    if (!(o instanceof NoData)) return false;
+    return true;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public int hashCode() {
+    final int result = 1;
+    return result;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public java.lang.String toString() {
+    return "NoData()";
+  }
+}
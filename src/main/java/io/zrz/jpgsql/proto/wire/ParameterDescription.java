@@ -0,0 +1,50 @@
+package io.zrz.jpgsql.proto.wire;
+
+import java.util.List;
+
+public final class ParameterDescription implements PostgreSQLPacket {
+  private final List<Integer> paramOids;
+
+  @Override
+  public <T> T apply(final PostgreSQLPacketVisitor<T> visitor) {
+    return visitor.visitParameterDescription(this);
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public ParameterDescription(final List<Integer> paramOids) {
+    this.paramOids = paramOids;
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public List<Integer> getParamOids() {
+    return this.paramOids;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public boolean equals(final java.lang.Object o) {
+    if (o == this) return true;
+    if (!(o instanceof ParameterDescription)) return false;
+    final ParameterDescription other = (ParameterDescription) o;
+    final java.lang.Object this$paramOids = this.getParamOids();
+    final java.lang.Object other$paramOids = other.getParamOids();
+    if (this$paramOids == null ? other$paramOids != null : !this$paramOids.equals(other$paramOids)) return false;
+    return true;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public int hashCode() {
+    final int PRIME = 59;
+    int result = 1;
+    final java.lang.Object $paramOids = this.getParamOids();
+    result = result * PRIME + ($paramOids == null ? 43 : $paramOids.hashCode());
+    return result;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public java.lang.String toString() {
+    return "ParameterDescription(paramOids=" + this.getParamOids() + ")";
+  }
+}
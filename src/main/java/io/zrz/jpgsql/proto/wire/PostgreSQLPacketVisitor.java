@@ -38,6 +38,8 @@ public interface PostgreSQLPacketVisitor<T> {
 
   T visitSslRequest(SslRequest sslRequestMessage);
 
+  T visitCancelRequest(CancelRequest cancelRequest);
+
   T visitAuthenticationMD5Password(AuthenticationMD5Password authenticationMD5Password);
 
   T visitPasswordMessage(PasswordMessage passwordMessage);
@@ -54,4 +56,26 @@ public interface PostgreSQLPacketVisitor<T> {
 
   T visitSync(Sync sync);
 
+  T visitDescribe(Describe describe);
+
+  T visitClose(Close close);
+
+  T visitTerminate(Terminate terminate);
+
+  T visitCopyFail(CopyFail copyFail);
+
+  T visitCopyInResponse(CopyInResponse copyInResponse);
+
+  T visitCopyOutResponse(CopyOutResponse copyOutResponse);
+
+  T visitNoData(NoData noData);
+
+  T visitParameterDescription(ParameterDescription parameterDescription);
+
+  T visitEmptyQueryResponse(EmptyQueryResponse emptyQueryResponse);
+
+  T visitCloseComplete(CloseComplete closeComplete);
+
+  T visitPortalSuspended(PortalSuspended portalSuspended);
+
 }
@@ -7,10 +7,27 @@ public final class RowDescription implements PostgreSQLPacket {
 
   public static final class Entry {
     private final String name;
+    private final int tableOid;
+    private final int column;
+    private final int typeOid;
+    private final int typeLength;
+    private final int typeModifier;
+    // 0 for text, 1 for binary.
+    private final int format;
 
-    @java.lang.SuppressWarnings("all")
     public Entry(final String name) {
+      this(name, 0, 0, 0, 0, -1, 0);
+    }
+
+    @java.lang.SuppressWarnings("all")
+    public Entry(final String name, final int tableOid, final int column, final int typeOid, final int typeLength, final int typeModifier, final int format) {
       this.name = name;
+      this.tableOid = tableOid;
+      this.column = column;
+      this.typeOid = typeOid;
+      this.typeLength = typeLength;
+      this.typeModifier = typeModifier;
+      this.format = format;
     }
 
     @java.lang.SuppressWarnings("all")
@@ -18,6 +35,36 @@ public final class RowDescription implements PostgreSQLPacket {
       return this.name;
     }
 
+    @java.lang.SuppressWarnings("all")
+    public int getTableOid() {
+      return this.tableOid;
+    }
+
+    @java.lang.SuppressWarnings("all")
+    public int getColumn() {
+      return this.column;
+    }
+
+    @java.lang.SuppressWarnings("all")
+    public int getTypeOid() {
+      return this.typeOid;
+    }
+
+    @java.lang.SuppressWarnings("all")
+    public int getTypeLength() {
+      return this.typeLength;
+    }
+
+    @java.lang.SuppressWarnings("all")
+    public int getTypeModifier() {
+      return this.typeModifier;
+    }
+
+    @java.lang.SuppressWarnings("all")
+    public int getFormat() {
+      return this.format;
+    }
+
     @java.lang.Override
     @java.lang.SuppressWarnings("all")
     public boolean equals(final java.lang.Object o) {
@@ -27,6 +74,12 @@ public final class RowDescription implements PostgreSQLPacket {
       final java.lang.Object this$name = this.getName();
       final java.lang.Object other$name = other.getName();
       if (this$name == null ? other$name != null : !this$name.equals(other$name)) return false;
+      if (this.getTableOid() != other.getTableOid()) return false;
+      if (this.getColumn() != other.getColumn()) return false;
+      if (this.getTypeOid() != other.getTypeOid()) return false;
+      if (this.getTypeLength() != other.getTypeLength()) return false;
+      if (this.getTypeModifier() != other.getTypeModifier()) return false;
+      if (this.getFormat() != other.getFormat()) return false;
       return true;
     }
 
@@ -37,13 +90,20 @@ public final class RowDescription implements PostgreSQLPacket {
       int result = 1;
       final java.lang.Object $name = this.getName();
       result = result * PRIME + ($name == null ? 43 : $name.hashCode());
+      result = result * PRIME + this.getTableOid();
+      result = result * PRIME + this.getColumn();
+      result = result * PRIME + this.getTypeOid();
+      result = result * PRIME + this.getTypeLength();
+      result = result * PRIME + this.getTypeModifier();
+      result = result * PRIME + this.getFormat();
       return result;
     }
 
     @java.lang.Override
     @java.lang.SuppressWarnings("all")
     public java.lang.String toString() {
-      return "RowDescription.Entry(name=" + this.getName() + ")";
+      return "RowDescription.Entry(name=" + this.getName() + ", tableOid=" + this.getTableOid() + ", column=" + this.getColumn() + ", typeOid=" + this.getTypeOid()
+        + ", typeLength=" + this.getTypeLength() + ", typeModifier=" + this.getTypeModifier() + ", format=" + this.getFormat() + ")";
     }
   }
 
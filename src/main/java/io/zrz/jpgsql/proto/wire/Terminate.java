@@ -0,0 +1,33 @@
+package io.zrz.jpgsql.proto.wire;
+
+public final class Terminate implements PostgreSQLPacket {
+  @Override
+  public <T> T apply(final PostgreSQLPacketVisitor<T> visitor) {
+    return visitor.visitTerminate(this);
+  }
+
+  @java.lang.SuppressWarnings("all")
+  public Terminate() {
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public boolean equals(final java.lang.Object o) {
+    if (o == this) return true;
+    if (!(o instanceof Terminate)) return false;
+    return true;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public int hashCode() {
+    final int result = 1;
+    return result;
+  }
+
+  @java.lang.Override
+  @java.lang.SuppressWarnings("all")
+  public java.lang.String toString() {
+    return "Terminate()";
+  }
+}
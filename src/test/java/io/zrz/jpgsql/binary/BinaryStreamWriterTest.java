@@ -0,0 +1,225 @@
+package io.zrz.jpgsql.binary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+import org.postgresql.core.Oid;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+public class BinaryStreamWriterTest {
+
+  private static byte[] byteBuf(final Consumer<BinaryStreamWriter> writes) {
+    final ByteBuf buf = Unpooled.buffer();
+    writes.accept(new ByteBufBinaryWriter(buf));
+    return ByteBufUtil.getBytes(buf);
+  }
+
+  private static byte[] stream(final Consumer<BinaryStreamWriter> writes) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writes.accept(new BinaryOutputStreamWriter(out));
+    return out.toByteArray();
+  }
+
+  /**
+   * the field as written by both writers, which must agree.
+   */
+  private static byte[] field(final Consumer<BinaryStreamWriter> writes) {
+    final byte[] bytes = byteBuf(writes);
+    assertArrayEquals(bytes, stream(writes));
+    return bytes;
+  }
+
+  /**
+   * the value of a field, checking its length.
+   */
+  private static byte[] value(final Consumer<BinaryStreamWriter> writes) {
+    final ByteBuf buf = Unpooled.wrappedBuffer(field(writes));
+    assertEquals(buf.readableBytes() - 4, buf.readInt());
+    return ByteBufUtil.getBytes(buf);
+  }
+
+  private static byte[] bytes(final int... values) {
+    final byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; ++i) {
+      bytes[i] = (byte) values[i];
+    }
+    return bytes;
+  }
+
+  @Test
+  public void testScalars() {
+    assertArrayEquals(BinaryParameterCodecs.encode(Oid.FLOAT4, 1.5f), value(w -> w.writeFloat(1.5f)));
+    assertArrayEquals(BinaryParameterCodecs.encode(Oid.FLOAT8, -2.25d), value(w -> w.writeDouble(-2.25d)));
+    final UUID uuid = UUID.randomUUID();
+    assertArrayEquals(BinaryParameterCodecs.encode(Oid.UUID, uuid), value(w -> w.writeUuid(uuid)));
+    final LocalDate date = LocalDate.of(2020, 9, 22);
+    assertArrayEquals(BinaryParameterCodecs.encode(Oid.DATE, date), value(w -> w.writeDate(date)));
+    for (final String n : new String[] { "0", "1", "-1.5", "12345678.000100", "1e10", "-0.00001", "123456789012345678901234567890.5" }) {
+      final BigDecimal v = new BigDecimal(n);
+      assertArrayEquals(n, BinaryParameterCodecs.encode(Oid.NUMERIC, v), value(w -> w.writeNumeric(v)));
+    }
+  }
+
+  @Test
+  public void testInterval() {
+    assertArrayEquals(bytes(0, 0, 0, 0, 0, 0x5B, (byte) 0x8D, (byte) 0x80, 0, 0, 0, 3, 0, 0, 0, 14), value(w -> w.writeInterval(6_000_000, 3, 14)));
+    assertArrayEquals(value(w -> w.writeInterval(90_000_000L, 0, 0)), value(w -> w.writeInterval(Duration.ofSeconds(90))));
+    assertArrayEquals(value(w -> w.writeInterval(0, 2, 13)), value(w -> w.writeInterval(Period.of(1, 1, 2))));
+  }
+
+  @Test
+  public void testRanges() {
+    assertArrayEquals(bytes(0x01), value(w -> w.writeEmptyRange()));
+    // [1,10)
+    assertArrayEquals(bytes(0x02, 0, 0, 0, 4, 0, 0, 0, 1, 0, 0, 0, 4, 0, 0, 0, 10), value(w -> w.writeInt4Range(1, 10)));
+    // (,10)
+    assertArrayEquals(bytes(0x08, 0, 0, 0, 4, 0, 0, 0, 10), value(w -> w.writeInt4Range(null, 10)));
+    // [1,)
+    assertArrayEquals(bytes(0x12, 0, 0, 0, 8, 0, 0, 0, 0, 0, 0, 0, 1), value(w -> w.writeInt8Range(1L, null)));
+    // (,)
+    assertArrayEquals(bytes(0x18), value(w -> w.writeInt8Range(null, null)));
+    final Instant start = Instant.parse("2020-09-22T10:54:18Z");
+    assertArrayEquals(
+      value(w -> w.writeInt8Range(PostgresTimestamp.fromInstant(start), null)),
+      value(w -> w.writeTimestampRange(start, null)));
+  }
+
+  @Test
+  public void testArrays() {
+    final int[] ints = { 1, -2, 3 };
+    assertArrayEquals(BinaryParameterCodecs.encode(Oid.INT4_ARRAY, ints), value(w -> w.writeIntArray(ints)));
+    final long[] longs = { Long.MIN_VALUE, 0, Long.MAX_VALUE };
+    assertArrayEquals(BinaryParameterCodecs.encode(Oid.INT8_ARRAY, longs), value(w -> w.writeBigintArray(longs)));
+    assertArrayEquals(BinaryParameterCodecs.encode(Oid.INT4_ARRAY, new int[0]), value(w -> w.writeIntArray(new int[0])));
+    final String[] text = { "a", null, "é" };
+    assertArrayEquals(BinaryParameterCodecs.encode(Oid.TEXT_ARRAY, text), value(w -> w.writeTextArray(Arrays.asList(text))));
+  }
+
+  @Test
+  public void testComposite() {
+    final byte[] composite = value(w -> w.writeComposite(2, f -> {
+      f.writeOid(Oid.INT4);
+      f.writeInt(7);
+      f.writeOid(Oid.TEXT);
+      f.writeNull();
+    }));
+    assertArrayEquals(bytes(0, 0, 0, 2, 0, 0, 0, 23, 0, 0, 0, 4, 0, 0, 0, 7, 0, 0, 0, 25, -1, -1, -1, -1), composite);
+  }
+
+  private static final String NUL = "\\" + "u0000";
+
+  /**
+   * the document as written, or null if it was rejected.
+   */
+  private static String jsonb(final String json, final boolean replace) {
+    final ByteBuf buf = Unpooled.buffer();
+    buf.writeLong(0x0123456789ABCDEFL);
+    final ByteBufBinaryWriter w = new ByteBufBinaryWriter(buf).replaceJsonbNul(replace);
+    try {
+      w.writeJsonb(json.getBytes(StandardCharsets.UTF_8));
+    }
+    catch (final IllegalArgumentException ex) {
+      // nothing is left behind.
+      assertEquals(8, buf.writerIndex());
+      return null;
+    }
+    buf.skipBytes(8);
+    assertEquals(buf.readableBytes() - 4, buf.readInt());
+    assertEquals(1, buf.readByte());
+    return buf.toString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testJsonbNul() {
+    assertEquals("{\"a\":\"b\"}", jsonb("{\"a\":\"b\"}", false));
+    assertEquals(null, jsonb("{\"a\":\"" + NUL + "\"}", false));
+    // at the very end, which the byte by byte scan used to miss.
+    assertEquals(null, jsonb("\"x" + NUL, false));
+    assertEquals(null, jsonb(NUL, false));
+    // an escaped backslash followed by u0000.
+    assertEquals("\"\\\\u0000\"", jsonb("\"\\\\u0000\"", false));
+    assertEquals("\"\\\\\\ufffd\"", jsonb("\"\\\\" + NUL + "\"", true));
+    assertEquals("[\"\\ufffd\",\"\\ufffd\"]", jsonb("[\"" + NUL + "\",\"" + NUL + "\"]", true));
+    assertEquals("\"\\ufffd1\"", jsonb("\"" + NUL + "1\"", true));
+  }
+
+  /**
+   * the escape at every offset, against a byte at a time scan.
+   */
+  @Test
+  public void testJsonbScan() {
+    final Random random = new Random(1);
+    final String alphabet = "ab\\u0\"";
+    for (int i = 0; i < 10_000; ++i) {
+      final StringBuilder json = new StringBuilder();
+      for (int j = random.nextInt(40); j > 0; --j) {
+        json.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      if (random.nextBoolean()) {
+        json.insert(random.nextInt(json.length() + 1), NUL);
+      }
+      final byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+      final int expected = naive(bytes);
+      // offset in the array, off heap, and through the ByteBuf accessors.
+      final ByteBuf heap = Unpooled.wrappedBuffer(new byte[3], bytes).copy().slice(3, bytes.length);
+      final ByteBuf direct = Unpooled.directBuffer().writeBytes(bytes);
+      assertEquals(json.toString(), expected, JsonbEscapes.indexOfNul(heap, 0, bytes.length));
+      assertEquals(json.toString(), expected, JsonbEscapes.indexOfNul(direct, 0, bytes.length));
+      assertEquals(json.toString(), expected, JsonbEscapes.indexOfNul(heap.asReadOnly(), 0, bytes.length));
+      direct.release();
+    }
+  }
+
+  private static int naive(final byte[] bytes) {
+    for (int i = 0; i < bytes.length; ++i) {
+      if (bytes[i] == '\\') {
+        if ((i + 5) < bytes.length && new String(bytes, i + 1, 5, StandardCharsets.US_ASCII).equals("u0000")) {
+          return i;
+        }
+        ++i;
+      }
+    }
+    return -1;
+  }
+
+  @Test
+  public void testJsonbSources() {
+    final byte[] json = ("{\"a\":\"" + NUL + "\"}").getBytes(StandardCharsets.UTF_8);
+    final ByteBuffer direct = ByteBuffer.allocateDirect(json.length + 2);
+    direct.put((byte) 'x').put(json).flip().position(1);
+    final ByteBuf replaced = Unpooled.buffer();
+    new ByteBufBinaryWriter(replaced).replaceJsonbNul(true).writeJsonb(direct);
+    // the source isn't consumed or changed.
+    assertEquals(1, direct.position());
+    assertEquals('\\', direct.get(7));
+    assertEquals("{\"a\":\"\\ufffd\"}", replaced.toString(5, replaced.readableBytes() - 5, StandardCharsets.UTF_8));
+    final ByteBuf source = Unpooled.directBuffer().writeBytes(json);
+    try {
+      new ByteBufBinaryWriter(Unpooled.buffer()).writeJsonb(source);
+      fail("expected error");
+    }
+    catch (final IllegalArgumentException ex) {
+      // expected
+    }
+    source.release();
+  }
+
+}
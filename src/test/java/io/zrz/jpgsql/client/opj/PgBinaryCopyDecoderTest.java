@@ -0,0 +1,139 @@
+package io.zrz.jpgsql.client.opj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.postgresql.core.Oid;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.reactivex.rxjava3.core.Flowable;
+import io.zrz.jpgsql.binary.ByteBufBinaryWriter;
+import io.zrz.jpgsql.binary.PostgresTimestamp;
+import io.zrz.jpgsql.client.RowBuffer;
+
+public class PgBinaryCopyDecoderTest {
+
+  private static final Instant EPOCH = Instant.parse("2020-09-22T10:54:18Z");
+
+  private static final PgBinaryCopyDecoder DECODER =
+    PgBinaryCopyDecoder.builder()
+      .query("COPY things TO STDOUT (FORMAT binary)")
+      .column("id", Oid.INT8)
+      .column("name", Oid.TEXT)
+      .column("size", Oid.INT4)
+      .column("ok", Oid.BOOL)
+      .column("created", Oid.TIMESTAMPTZ)
+      .batchSize(100)
+      .build();
+
+  /**
+   * the stream as written for a binary COPY FROM.
+   */
+  private static ByteBuf stream(final int rows) {
+    final ByteBuf buf = Unpooled.buffer();
+    buf.writeBytes(PgThreadPooledClient.BINARY_PREAMBLE);
+    final ByteBufBinaryWriter w = new ByteBufBinaryWriter(buf);
+    for (int i = 0; i < rows; ++i) {
+      w.writeStartRecord(5);
+      w.writeBigint(i);
+      if ((i % 3) == 0) {
+        w.writeNull();
+      }
+      else {
+        w.writeText("thing " + i + " é");
+      }
+      w.writeInt(i * 2);
+      w.writeBoolean((i % 2) == 0);
+      w.writeTimestampPgMicros(PostgresTimestamp.fromInstant(EPOCH.plusSeconds(i)));
+    }
+    buf.writeShort(-1);
+    return buf;
+  }
+
+  /**
+   * splits the stream into chunks which don't line up with the tuples.
+   */
+  private static List<ByteBuf> chunks(final ByteBuf stream, final int size) {
+    final List<ByteBuf> chunks = new ArrayList<>();
+    while (stream.isReadable()) {
+      chunks.add(stream.readRetainedSlice(Math.min(size, stream.readableBytes())));
+    }
+    stream.release();
+    return chunks;
+  }
+
+  @Test
+  public void testRoundTrip() {
+    for (final int size : new int[] { 1, 7, 64, 1000, 100_000 }) {
+      final List<RowBuffer> batches = Flowable.fromIterable(chunks(stream(250), size)).compose(DECODER).toList().blockingGet();
+      // two full, then the last with the remainder.
+      assertEquals(3, batches.size());
+      assertTrue(batches.get(0).maybeMore());
+      assertFalse(batches.get(2).maybeMore());
+      assertEquals(50, batches.get(2).count());
+      int row = 0;
+      for (final RowBuffer batch : batches) {
+        assertEquals(5, batch.fields());
+        for (int i = 0; i < batch.count(); ++i, ++row) {
+          assertEquals(row, batch.longval(i, 0));
+          assertEquals((row % 3) == 0 ? null : "thing " + row + " é", batch.strval(i, 1));
+          assertEquals(row * 2, batch.intval(i, 2));
+          assertEquals(BigDecimal.valueOf(row * 2), batch.decimal(i, 2));
+          assertEquals((row % 2) == 0, batch.boolval(i, 3));
+          assertEquals(EPOCH.plusSeconds(row), batch.instant(i, 4));
+        }
+      }
+      assertEquals(250, row);
+    }
+  }
+
+  @Test
+  public void testOffHeap() {
+    final PgBinaryCopyDecoder decoder =
+      PgBinaryCopyDecoder.builder().column("id", Oid.INT8).column("name", Oid.TEXT).column("size", Oid.INT4).column("ok", Oid.BOOL).column("created", Oid.TIMESTAMPTZ).direct(true).build();
+    final List<RowBuffer> batches = Flowable.fromIterable(chunks(stream(10), 13)).compose(decoder).toList().blockingGet();
+    assertEquals(1, batches.size());
+    final PgPackedResultRows rows = (PgPackedResultRows) batches.get(0);
+    assertTrue(rows.isDirect());
+    assertEquals(10, rows.count());
+    assertNull(rows.strval(0, 1));
+    assertEquals("thing 1 é", rows.strval(1, 1));
+    assertEquals(9, rows.longval(9, 0));
+  }
+
+  @Test
+  public void testTruncated() {
+    final ByteBuf stream = stream(10);
+    stream.writerIndex(stream.writerIndex() - 5);
+    try {
+      Flowable.fromIterable(chunks(stream, 16)).compose(DECODER).blockingSubscribe();
+      fail("expected error");
+    }
+    catch (final IllegalStateException ex) {
+      assertEquals("truncated binary COPY stream", ex.getMessage());
+    }
+  }
+
+  @Test
+  public void testWrongWidth() {
+    final PgBinaryCopyDecoder decoder = PgBinaryCopyDecoder.builder().column("id", Oid.INT8).build();
+    try {
+      Flowable.just(stream(1)).compose(decoder).blockingSubscribe();
+      fail("expected error");
+    }
+    catch (final IllegalStateException ex) {
+      assertEquals("tuple has 5 fields, expected 1", ex.getMessage());
+    }
+  }
+
+}
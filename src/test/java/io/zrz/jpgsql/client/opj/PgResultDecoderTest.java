@@ -0,0 +1,99 @@
+package io.zrz.jpgsql.client.opj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+
+import org.junit.Test;
+
+public class PgResultDecoderTest {
+
+  private static byte[] bytes(final String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static long parseLong(final String value) {
+    final byte[] bs = bytes("xx" + value + "yy");
+    return PgResultDecoder.parseLong(bs, 2, bs.length - 4);
+  }
+
+  private static double parseDouble(final String value) {
+    final byte[] bs = bytes(value);
+    return PgResultDecoder.parseDouble(bs, 0, bs.length);
+  }
+
+  private static BigDecimal parseDecimal(final String value) {
+    final byte[] bs = bytes(value);
+    return PgResultDecoder.parseDecimal(bs, 0, bs.length);
+  }
+
+  private static Instant parseTimestamp(final String value, final boolean zoned) {
+    final byte[] bs = bytes(value);
+    final long micros = PgResultDecoder.parseTimestampMicros(bs, 0, bs.length, zoned);
+    return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1000L);
+  }
+
+  @Test
+  public void testLong() {
+    assertEquals(0, parseLong("0"));
+    assertEquals(-1234, parseLong("-1234"));
+    assertEquals(32767, parseLong("32767"));
+    assertEquals(Long.MAX_VALUE, parseLong(Long.toString(Long.MAX_VALUE)));
+    assertEquals(Long.MIN_VALUE, parseLong(Long.toString(Long.MIN_VALUE)));
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testLongOverflow() {
+    parseLong("9223372036854775808");
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testLongInvalid() {
+    parseLong("12a");
+  }
+
+  @Test
+  public void testDouble() {
+    for (final String value : new String[] { "0", "-0", "1.5", "3.141592653589793", "1e+100", "-1.2345e-10", "123456789012345678901234", "0.1", "NaN", "Infinity",
+      "-Infinity", "4.9e-324", "1.7976931348623157e+308", "0.30000000000000004" }) {
+      assertEquals(value, Double.doubleToRawLongBits(Double.parseDouble(value)), Double.doubleToRawLongBits(parseDouble(value)));
+    }
+  }
+
+  @Test
+  public void testDecimal() {
+    assertEquals(new BigDecimal("0.1"), parseDecimal("0.1"));
+    assertEquals(new BigDecimal("-123.4500"), parseDecimal("-123.4500"));
+    assertEquals(new BigDecimal("12345678901234567890.123"), parseDecimal("12345678901234567890.123"));
+    assertEquals(new BigDecimal("1E+5"), parseDecimal("1e5"));
+  }
+
+  @Test
+  public void testBoolean() {
+    assertTrue(PgResultDecoder.parseBoolean(bytes("t"), 0, 1));
+    assertFalse(PgResultDecoder.parseBoolean(bytes("f"), 0, 1));
+  }
+
+  @Test
+  public void testTimestamp() {
+    assertEquals(Instant.parse("2020-09-22T10:54:18Z"), parseTimestamp("2020-09-22 10:54:18", false));
+    assertEquals(Instant.parse("2020-09-22T10:54:18.123456Z"), parseTimestamp("2020-09-22 10:54:18.123456", false));
+    assertEquals(Instant.parse("1960-02-29T23:59:59.5Z"), parseTimestamp("1960-02-29 23:59:59.5", false));
+    assertEquals(OffsetDateTime.parse("2020-09-22T10:54:18.1-07:00").toInstant(), parseTimestamp("2020-09-22 10:54:18.1-07", true));
+    assertEquals(OffsetDateTime.parse("2020-09-22T10:54:18+05:30").toInstant(), parseTimestamp("2020-09-22 10:54:18+05:30", true));
+  }
+
+  @Test
+  public void testTimestampFallback() {
+    assertEquals(Long.MIN_VALUE, PgResultDecoder.parseTimestampMicros(bytes("infinity"), 0, 8, false));
+    assertEquals(Long.MIN_VALUE, PgResultDecoder.parseTimestampMicros(bytes("2019-02-29 00:00:00"), 0, 19, false));
+    final byte[] bc = bytes("0044-03-15 00:00:00 BC");
+    assertEquals(Long.MIN_VALUE, PgResultDecoder.parseTimestampMicros(bc, 0, bc.length, false));
+  }
+
+}
@@ -1,12 +1,43 @@
 package io.zrz.jpgsql.client.opj;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+
 import org.junit.Ignore;
 import org.junit.Test;
+import org.postgresql.core.Oid;
+import org.postgresql.util.PSQLException;
 
 import com.google.common.collect.Sets;
 
+import io.netty.buffer.ByteBuf;
 import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.zrz.jpgsql.client.ErrorResult;
 import io.zrz.jpgsql.client.NotifyMessage;
+import io.zrz.jpgsql.client.PostgresConnectionProperties;
+import io.zrz.jpgsql.client.PostgresqlCapacityExceededException;
+import io.zrz.jpgsql.client.Query;
+import io.zrz.jpgsql.client.QueryOptions;
+import io.zrz.jpgsql.client.QueryParameters;
+import io.zrz.jpgsql.client.QueryResult;
+import io.zrz.jpgsql.client.RowBuffer;
+import io.zrz.jpgsql.client.SimpleQuery;
+import io.zrz.jpgsql.proto.server.EmbeddedPgServer;
+import io.zrz.jpgsql.proto.server.ServerResult;
+import io.zrz.jpgsql.proto.server.ServerResult.Column;
 
 public class PgThreadPooledClientTest {
 
@@ -20,4 +51,409 @@ public class PgThreadPooledClientTest {
     });
   }
 
+  private static PgThreadPooledClient client(final EmbeddedPgServer server, final Duration maxStalledWait) {
+    return PgThreadPooledClient.create(
+      PostgresConnectionProperties.builder()
+        .hostname(server.getHostname())
+        .port(server.getPort())
+        .dbname("test")
+        .username("test")
+        .maxPoolSize(1)
+        .maxStalledWait(maxStalledWait)
+        .build());
+  }
+
+  @Test
+  public void testAdmission() throws Exception {
+    final List<String> order = Collections.synchronizedList(new ArrayList<>());
+    try (EmbeddedPgServer server =
+      EmbeddedPgServer.builder()
+        .responder((sql, params) -> {
+          if (sql.startsWith("SELECT 1")) {
+            // the connection probe.
+            return null;
+          }
+          order.add(sql);
+          return ServerResult.command("SELECT 0").delay(Duration.ofMillis(50));
+        })
+        .start()) {
+      final PgThreadPooledClient client = client(server, Duration.ofSeconds(10));
+      try {
+        client.submit("SELECT 'connected'").blockingSubscribe();
+        // one running and one in the execution queue, so the rest have to wait for admission.
+        final List<Flowable<QueryResult>> queries = new ArrayList<>();
+        queries.add(client.submit("SELECT 'running'").cache());
+        queries.get(0).subscribe();
+        Thread.sleep(20);
+        queries.add(client.submit("SELECT 'queued'").cache());
+        queries.get(1).subscribe();
+        final QueryOptions batch = QueryOptions.builder().priority(QueryOptions.Priority.BATCH).build();
+        for (int i = 0; i < 3; ++i) {
+          queries.add(client.submit(new SimpleQuery("SELECT 'batch'"), null, batch));
+        }
+        queries.add(client.submit(new SimpleQuery("SELECT 'interactive'"), null, QueryOptions.DEFAULTS));
+        Flowable.merge(queries).blockingSubscribe();
+
+        final PgAdmissionStats stats = client.admissionStats();
+        assertEquals(stats.toString(), 4, stats.getQueued());
+        assertEquals(stats.toString(), 4, stats.getAdmitted());
+        assertEquals(0, stats.getTimedOut());
+        assertTrue(stats.getMaxWait().toMillis() >= 50);
+        // the interactive query overtook the batch ones waiting ahead of it.
+        assertEquals("SELECT 'interactive'", order.get(order.indexOf("SELECT 'queued'") + 1));
+      }
+      finally {
+        client.close();
+      }
+    }
+  }
+
+  @Test
+  public void testAdmissionTimeout() throws Exception {
+    try (EmbeddedPgServer server =
+      EmbeddedPgServer.builder()
+        .responder((sql, params) -> sql.startsWith("SELECT 1") ? null
+                                                               : ServerResult.command("SELECT 0").delay(Duration.ofMillis(500)))
+        .start()) {
+      final PgThreadPooledClient client = client(server, Duration.ofMillis(50));
+      try {
+        client.submit("SELECT 1").blockingSubscribe();
+        client.submit("SELECT 'running'").subscribe();
+        Thread.sleep(20);
+        client.submit("SELECT 'queued'").subscribe();
+        try {
+          client.submit("SELECT 'waiting'").blockingSubscribe();
+          fail("expected rejection");
+        }
+        catch (final PostgresQueryException ex) {
+          assertTrue(ex.getCause() instanceof PostgresqlCapacityExceededException);
+        }
+        assertEquals(1, client.admissionStats().getTimedOut());
+      }
+      finally {
+        client.close();
+      }
+    }
+  }
+
+  @Test
+  public void testExecuteBatch() throws Exception {
+    final List<String> received = Collections.synchronizedList(new ArrayList<>());
+    try (EmbeddedPgServer server =
+      EmbeddedPgServer.builder()
+        .responder((sql, params) -> {
+          if (!sql.startsWith("INSERT")) {
+            return null;
+          }
+          received.add(new String(params.get(0), StandardCharsets.UTF_8));
+          return ServerResult.command("INSERT 0 1");
+        })
+        .start()) {
+      final PgThreadPooledClient client = client(server, Duration.ofSeconds(10));
+      try {
+        final Query query = client.createQuery("INSERT INTO things (name) VALUES ($1)", 1);
+        final List<QueryParameters> batch = new ArrayList<>();
+        for (int i = 0; i < 50; ++i) {
+          batch.add(query.createParameters().setString(1, "thing " + i, Oid.TEXT));
+        }
+        final long[] counts = client.executeBatch(query, batch).blockingFirst();
+        assertEquals(50, counts.length);
+        for (final long count : counts) {
+          assertEquals(1, count);
+        }
+        assertEquals(50, received.size());
+        assertEquals("thing 49", received.get(49));
+      }
+      finally {
+        client.close();
+      }
+    }
+  }
+
+  @Test
+  public void testExecuteBatchAtomic() throws Exception {
+    // rows are only committed by a COMMIT, or straight away outside of a transaction block. the ROLLBACK of a failed
+    // one isn't passed to the responder, so they are dropped by the next BEGIN instead.
+    final List<String> pending = Collections.synchronizedList(new ArrayList<>());
+    final List<String> committed = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger txns = new AtomicInteger();
+    try (EmbeddedPgServer server =
+      EmbeddedPgServer.builder()
+        .responder((sql, params) -> {
+          if (sql.startsWith("BEGIN")) {
+            txns.incrementAndGet();
+            pending.clear();
+          }
+          else if (sql.startsWith("COMMIT")) {
+            committed.addAll(pending);
+            pending.clear();
+          }
+          else if (sql.startsWith("INSERT")) {
+            final String name = new String(params.get(0), StandardCharsets.UTF_8);
+            if (name.equals("thing 290")) {
+              return ServerResult.error("23505", "duplicate key value violates unique constraint \"things_pkey\"");
+            }
+            (txns.get() == 0 ? committed : pending).add(name);
+            return ServerResult.command("INSERT 0 1");
+          }
+          return null;
+        })
+        .start()) {
+      final PgThreadPooledClient client = client(server, Duration.ofSeconds(10));
+      try {
+        final Query query = client.createQuery("INSERT INTO things (name) VALUES ($1)", 1);
+        final List<QueryParameters> batch = new ArrayList<>();
+        for (int i = 0; i < 300; ++i) {
+          batch.add(query.createParameters().setString(1, "thing " + i, Oid.TEXT));
+        }
+        try {
+          client.executeBatch(query, batch).blockingFirst();
+          fail("expected error");
+        }
+        catch (final PostgresQueryException ex) {
+          assertEquals("23505", ((ErrorResult) ex.getCause()).getSQLState());
+        }
+        // the rows ahead of the failed one, including those sent before pgjdbc's intermediate Syncs, are rolled back.
+        client.submit("SELECT 1").blockingSubscribe();
+        assertEquals(Collections.emptyList(), committed);
+        assertEquals(1, txns.get());
+
+        final long[] counts = client.executeBatch(query, batch.subList(0, 290)).blockingFirst();
+        assertEquals(290, counts.length);
+        assertEquals(290, committed.size());
+      }
+      finally {
+        client.close();
+      }
+    }
+  }
+
+  @Test
+  public void testCopyOut() throws Exception {
+    try (EmbeddedPgServer server =
+      EmbeddedPgServer.builder().on("COPY things TO STDOUT", ServerResult.repeat(1000, Column.of("id", Oid.INT8), 1L)).start()) {
+      final PgThreadPooledClient client = client(server, Duration.ofSeconds(10));
+      try {
+        final long bytes = client.copyOut("COPY things TO STDOUT").map(buf -> {
+          final int length = buf.readableBytes();
+          buf.release();
+          return (long) length;
+        }).reduce(0L, Long::sum).blockingGet();
+        assertEquals(1000 * 2, bytes);
+        // stopping early cancels the copy.
+        assertEquals(10, client.copyOut("COPY things TO STDOUT").doOnNext(ByteBuf::release).take(10).count().blockingGet().longValue());
+      }
+      finally {
+        client.close();
+      }
+    }
+  }
+
+  /**
+   * records each COPY, and the distinct two phase commit statements.
+   */
+  private static EmbeddedPgServer loaderServer(final AtomicInteger copies, final Set<String> transactions) {
+    return loaderServer(copies, transactions, (sql, result) -> result);
+  }
+
+  /**
+   * the same, with the results for COPYs and two phase commits replaced by the given function.
+   */
+  private static EmbeddedPgServer loaderServer(final AtomicInteger copies, final Set<String> transactions, final BiFunction<String, ServerResult, ServerResult> results) {
+    return EmbeddedPgServer.builder()
+      .responder((sql, params) -> {
+        if (sql.startsWith("COPY")) {
+          copies.incrementAndGet();
+          return results.apply(sql, ServerResult.copyIn());
+        }
+        else if (sql.contains("PREPARED") || sql.startsWith("PREPARE TRANSACTION")) {
+          transactions.add(sql);
+          return results.apply(sql, ServerResult.command(sql.startsWith("PREPARE") ? "PREPARE TRANSACTION" : sql.substring(0, sql.indexOf(' ')) + " PREPARED"));
+        }
+        return null;
+      })
+      .start();
+  }
+
+  private static long count(final Set<String> transactions, final String command) {
+    return transactions.stream().filter(sql -> sql.startsWith(command)).count();
+  }
+
+  private static ParallelCopyLoader.Builder<Integer> loader(final PgThreadPooledClient client) {
+    return ParallelCopyLoader.<Integer>builder(client, "COPY things (id) FROM STDIN (FORMAT binary)", (id, w) -> {
+      w.writeStartRecord(1);
+      w.writeInt(id);
+    }).shards(4).batchSize(100);
+  }
+
+  @Test
+  public void testParallelCopy() throws Exception {
+    final AtomicInteger copies = new AtomicInteger();
+    final Set<String> transactions = ConcurrentHashMap.newKeySet();
+    try (EmbeddedPgServer server = loaderServer(copies, transactions)) {
+      final PgThreadPooledClient client = client(server, Duration.ofSeconds(10));
+      try {
+        assertEquals(10_000, loader(client).build().load(Flowable.range(0, 10_000)).blockingGet().longValue());
+        assertEquals(4, copies.get());
+        assertTrue(transactions.isEmpty());
+
+        // all the records with the same key go to the same shard, so fewer keys than shards uses fewer connections.
+        assertEquals(1000, loader(client).partitionBy(id -> id % 2).build().load(Flowable.range(0, 1000)).blockingGet().longValue());
+        assertEquals(6, copies.get());
+      }
+      finally {
+        client.close();
+      }
+    }
+  }
+
+  private static void await(final BooleanSupplier condition) throws InterruptedException {
+    for (int i = 0; (i < 500) && !condition.getAsBoolean(); ++i) {
+      Thread.sleep(10);
+    }
+    assertTrue(condition.getAsBoolean());
+  }
+
+  @Test
+  public void testParallelCopyCancelled() throws Exception {
+    final Set<String> transactions = ConcurrentHashMap.newKeySet();
+    try (EmbeddedPgServer server =
+      loaderServer(new AtomicInteger(), transactions, (sql, result) -> sql.startsWith("PREPARE") && sql.endsWith("-0'") ? result.delay(Duration.ofSeconds(2))
+                                                                                                                       : result)) {
+      final PgThreadPooledClient client = client(server, Duration.ofSeconds(10));
+      try {
+        final Disposable load = loader(client).atomic(true).build().load(Flowable.range(0, 10_000)).subscribe();
+        // disposed of while the first shard is still preparing, after the rest have.
+        await(() -> count(transactions, "PREPARE TRANSACTION") == 4);
+        load.dispose();
+        // the prepared transactions are rolled back, and every shard's connection closed, leaving at most the pool's own.
+        await(() -> (count(transactions, "ROLLBACK PREPARED") == 4) && (server.getConnectionCount() <= 1));
+        assertEquals(0, count(transactions, "COMMIT PREPARED"));
+      }
+      finally {
+        client.close();
+      }
+    }
+  }
+
+  @Test
+  public void testParallelCopyAtomic() throws Exception {
+    final Set<String> transactions = ConcurrentHashMap.newKeySet();
+    final AtomicInteger copies = new AtomicInteger();
+    final AtomicInteger failCopy = new AtomicInteger();
+    // the COPY numbered failCopy fails when it starts, and the rest succeed.
+    try (EmbeddedPgServer server =
+      loaderServer(copies, transactions, (sql, result) -> sql.startsWith("COPY") && (copies.get() == failCopy.get()) ? ServerResult.error("23505", "duplicate key value")
+                                                                                                                    : result)) {
+      final PgThreadPooledClient client = client(server, Duration.ofSeconds(10));
+      try {
+        assertEquals(10_000, loader(client).atomic(true).build().load(Flowable.range(0, 10_000)).blockingGet().longValue());
+        assertEquals(4, count(transactions, "PREPARE TRANSACTION"));
+        assertEquals(4, count(transactions, "COMMIT PREPARED"));
+
+        // one shard failing rolls back the ones which had prepared.
+        transactions.clear();
+        failCopy.set(copies.get() + 1);
+        try {
+          loader(client).atomic(true).build().load(Flowable.range(0, 10_000)).blockingGet();
+          fail("expected error");
+        }
+        catch (final RuntimeException ex) {
+          // the shard's own error, which blockingGet wraps as it is checked.
+          assertEquals("23505", ((PSQLException) ex.getCause()).getSQLState());
+        }
+        assertEquals(3, count(transactions, "PREPARE TRANSACTION"));
+        assertEquals(3, count(transactions, "ROLLBACK PREPARED"));
+        assertEquals(0, count(transactions, "COMMIT PREPARED"));
+
+        // a failed source fails every shard before it prepares.
+        transactions.clear();
+        try {
+          loader(client).atomic(true).build().load(Flowable.range(0, 10_000).map(id -> {
+            if (id == 9_999) {
+              throw new IllegalStateException("bad record");
+            }
+            return id;
+          })).blockingGet();
+          fail("expected error");
+        }
+        catch (final IllegalStateException ex) {
+          assertEquals("bad record", ex.getMessage());
+        }
+        assertEquals(0, count(transactions, "PREPARE TRANSACTION"));
+        assertEquals(0, count(transactions, "COMMIT PREPARED"));
+      }
+      finally {
+        client.close();
+      }
+    }
+  }
+
+  @Test
+  public void testVirtualThreads() throws Exception {
+    // only used with JDK 21 and a pgjdbc which doesn't pin them, and otherwise ignored.
+    final boolean virtual = VirtualThreads.factory() != null;
+
+    final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    final PgThreadPooledClient.Listener listener = new PgThreadPooledClient.Listener() {
+
+      @Override
+      public void connectionCreated(final PgRawConnection conn) {
+      }
+
+      @Override
+      public void connectionClosed(final PgRawConnection conn) {
+      }
+
+      @Override
+      public void executingQuery(final PgRawConnection conn, final Query query, final QueryParameters params) {
+        threads.add(Thread.currentThread());
+      }
+
+      @Override
+      public void queryCompleted(final PgRawConnection conn) {
+      }
+
+    };
+
+    try (EmbeddedPgServer server =
+      EmbeddedPgServer.builder().on("SELECT * FROM things", ServerResult.repeat(1000, Column.of("id", Oid.INT8), 1L)).start()) {
+      final PgThreadPooledClient client =
+        PgThreadPooledClient.create(
+          PostgresConnectionProperties.builder()
+            .hostname(server.getHostname())
+            .port(server.getPort())
+            .dbname("test")
+            .username("test")
+            .maxPoolSize(4)
+            .virtualThreads(true)
+            .build(),
+          listener);
+      try {
+        final long rows =
+          Flowable.range(0, 20)
+            .flatMap(
+              i -> client.submit("SELECT * FROM things").filter(RowBuffer.class::isInstance).map(r -> (long) ((RowBuffer) r).count()),
+              // no more than the pool will accept at once.
+              4)
+            .reduce(0L, Long::sum)
+            .blockingGet();
+        assertEquals(20 * 1000L, rows);
+      }
+      finally {
+        client.close();
+      }
+    }
+
+    assertTrue(!threads.isEmpty());
+    for (final Thread thread : threads) {
+      if (virtual) {
+        assertTrue(thread + " is virtual", (Boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+      }
+      else {
+        assertTrue(thread + " is a platform thread", thread instanceof PgConnectionThread);
+      }
+    }
+  }
+
 }
@@ -0,0 +1,117 @@
+package io.zrz.jpgsql.proto.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.reactivex.rxjava3.core.BackpressureStrategy;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import io.zrz.jpgsql.proto.wire.CommandComplete;
+import io.zrz.jpgsql.proto.wire.CopyBothResponse.Format;
+import io.zrz.jpgsql.proto.wire.CopyData;
+import io.zrz.jpgsql.proto.wire.CopyDone;
+import io.zrz.jpgsql.proto.wire.CopyOutResponse;
+import io.zrz.jpgsql.proto.wire.ErrorResponse;
+import io.zrz.jpgsql.proto.wire.ReadyForQuery;
+import io.zrz.jpgsql.proto.wire.TransactionStatus;
+
+public class PgCopyOutOperationTest {
+
+  private final EmbeddedChannel channel = new EmbeddedChannel();
+  private final AtomicInteger cancels = new AtomicInteger();
+  private final Promise<Void> cancelled = this.channel.eventLoop().newPromise();
+  private PgCopyOutOperation op;
+
+  private Future<Void> cancel() {
+    this.cancels.incrementAndGet();
+    return this.cancelled;
+  }
+
+  private TestSubscriber<ByteBuf> start(final long initialRequest) {
+    final TestSubscriber<ByteBuf> sub =
+      Flowable.<ByteBuf>create(
+        emitter -> this.op = new PgCopyOutOperation("COPY things TO STDOUT", emitter, this::cancel),
+        BackpressureStrategy.MISSING)
+        .test(initialRequest);
+    this.op.start(this.channel);
+    this.op.handle(new CopyOutResponse(Format.Text, ImmutableList.of()));
+    return sub;
+  }
+
+  private List<ByteBuf> data(final int count) {
+    final List<ByteBuf> data = new ArrayList<>();
+    for (int i = 0; i < count; ++i) {
+      final ByteBuf buf = Unpooled.buffer(4).writeInt(i);
+      data.add(buf);
+      assertFalse(this.op.handle(new CopyData(buf)));
+    }
+    return data;
+  }
+
+  @Test
+  public void testHeldUntilRequested() {
+    final TestSubscriber<ByteBuf> sub = start(1);
+    final List<ByteBuf> data = data(3);
+    assertFalse(this.channel.config().isAutoRead());
+    this.op.handle(new CopyDone());
+    this.op.handle(new CommandComplete("COPY 3"));
+    // the connection moves on, but the rest waits for the subscriber.
+    assertTrue(this.op.handle(new ReadyForQuery(TransactionStatus.Idle)));
+    assertTrue(this.channel.config().isAutoRead());
+    sub.assertValueCount(1).assertNotComplete();
+    sub.request(2);
+    this.op.resume();
+    sub.assertValueSequence(data).assertComplete();
+    data.forEach(ByteBuf::release);
+  }
+
+  @Test
+  public void testCancelReleasesHeld() {
+    final TestSubscriber<ByteBuf> sub = start(1);
+    final List<ByteBuf> data = data(3);
+    sub.cancel();
+    this.op.resume();
+    assertEquals(1, this.cancels.get());
+    // nothing more is read until the server has been told to stop.
+    assertFalse(this.channel.config().isAutoRead());
+    this.cancelled.setSuccess(null);
+    assertTrue(this.channel.config().isAutoRead());
+    // the one delivered is the subscriber's, the rest are released here.
+    assertEquals(Arrays.asList(1, 0, 0), Arrays.asList(data.get(0).refCnt(), data.get(1).refCnt(), data.get(2).refCnt()));
+    final ByteBuf late = data(1).get(0);
+    assertEquals(0, late.refCnt());
+    // the COPY ends with the error for the cancel, which nobody is listening for any more.
+    this.op.handle(new ErrorResponse(Arrays.asList("SERROR", "C57014", "Mcanceling statement due to user request")));
+    assertTrue(this.op.handle(new ReadyForQuery(TransactionStatus.Idle)));
+    sub.assertNoErrors();
+    assertEquals(1, this.cancels.get());
+    data.get(0).release();
+  }
+
+  @Test
+  public void testFailReleasesHeld() {
+    final TestSubscriber<ByteBuf> sub = start(0);
+    final List<ByteBuf> data = data(2);
+    final IllegalStateException cause = new IllegalStateException("closed");
+    this.op.fail(cause);
+    sub.assertError(cause);
+    assertEquals(0, data.get(0).refCnt());
+    assertEquals(0, data.get(1).refCnt());
+  }
+
+}
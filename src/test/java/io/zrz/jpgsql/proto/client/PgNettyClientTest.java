@@ -0,0 +1,711 @@
+package io.zrz.jpgsql.proto.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import org.junit.After;
+import org.junit.Test;
+import org.postgresql.core.Oid;
+import org.postgresql.util.ByteConverter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Longs;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import io.zrz.jpgsql.binary.PostgresTimestamp;
+import io.zrz.jpgsql.client.CommandStatus;
+import io.zrz.jpgsql.client.DefaultParametersList;
+import io.zrz.jpgsql.client.ErrorResult;
+import io.zrz.jpgsql.client.PgSession;
+import io.zrz.jpgsql.client.PostgresqlUnavailableException;
+import io.zrz.jpgsql.client.PostgresConnectionProperties.PostgresConnectionPropertiesBuilder;
+import io.zrz.jpgsql.client.Query;
+import io.zrz.jpgsql.client.QueryOptions;
+import io.zrz.jpgsql.client.QueryParameters;
+import io.zrz.jpgsql.client.QueryResult;
+import io.zrz.jpgsql.client.RowBuffer;
+import io.zrz.jpgsql.client.SessionTxnState;
+import io.zrz.jpgsql.client.SimpleQuery;
+import io.zrz.jpgsql.client.TransactionalSession;
+import io.zrz.jpgsql.client.opj.PgBinaryCopyDecoder;
+import io.zrz.jpgsql.client.opj.PgThreadPooledClient;
+import io.zrz.jpgsql.proto.netty.PgTransport;
+import io.zrz.jpgsql.proto.netty.handler.PostgreSQLEncoder;
+import io.zrz.jpgsql.proto.server.EmbeddedPgServer;
+import io.zrz.jpgsql.proto.server.EmbeddedPgServerBuilder;
+import io.zrz.jpgsql.proto.server.ServerResult;
+import io.zrz.jpgsql.proto.server.ServerResult.Column;
+import io.zrz.jpgsql.proto.wire.TransactionStatus;
+
+public class PgNettyClientTest {
+
+  private static final ServerResult THINGS =
+    ServerResult.generate(
+      10_000,
+      i -> new Object[] { i, "thing " + i, (i % 2) == 0 ? null : (i / 2.0) },
+      Column.of("id", Oid.INT8),
+      Column.of("name", Oid.TEXT),
+      Column.of("half", Oid.FLOAT8));
+
+  private EmbeddedPgServer server;
+  private PgNettyClient client;
+
+  @After
+  public void close() {
+    if (this.client != null) {
+      this.client.close();
+      this.client = null;
+    }
+    if (this.server != null) {
+      this.server.close();
+      this.server = null;
+    }
+  }
+
+  private PgNettyClient connect(final EmbeddedPgServerBuilder builder, final String password) {
+    return connect(builder, password, 2);
+  }
+
+  private PgNettyClient connect(final EmbeddedPgServerBuilder builder, final String password, final int poolSize) {
+    return start(builder, b -> {
+      b.maxPoolSize(poolSize);
+      return password == null ? b
+                              : b.password(password);
+    });
+  }
+
+  private PgNettyClient start(final EmbeddedPgServerBuilder builder, final UnaryOperator<PostgresConnectionPropertiesBuilder> config) {
+    this.server = builder.start();
+    this.client =
+      PgNettyClient.create(b -> config.apply(b.hostname(this.server.getHostname()).port(this.server.getPort()).dbname("test").username("test")));
+    return this.client;
+  }
+
+  private static long check(final List<QueryResult> results) {
+    long rows = 0;
+    for (final QueryResult result : results) {
+      if (!(result instanceof RowBuffer)) {
+        continue;
+      }
+      final RowBuffer buffer = (RowBuffer) result;
+      for (int i = 0; i < buffer.count(); ++i, ++rows) {
+        assertEquals(rows, buffer.longval(i, 0));
+        assertEquals("thing " + rows, buffer.strval(i, 1));
+        assertEquals((rows % 2) == 0 ? null : Double.toString(rows / 2.0), buffer.strval(i, 2));
+      }
+    }
+    return rows;
+  }
+
+  @Test
+  public void testSelect() {
+    final PgNettyClient client = connect(EmbeddedPgServer.builder().on("SELECT * FROM things", THINGS), null);
+    final List<QueryResult> results = client.submit("SELECT * FROM things").toList().blockingGet();
+    assertEquals(10_000, check(results));
+    final CommandStatus status = (CommandStatus) results.get(results.size() - 1);
+    assertEquals("SELECT 10000", status.getStatus());
+    assertEquals(10_000, status.getUpdateCount());
+  }
+
+  @Test
+  public void testParameters() {
+    final PgNettyClient client =
+      connect(EmbeddedPgServer.builder()
+        .responder((sql, params) -> ServerResult.rows(
+          ImmutableList.of(Column.of("a", Oid.INT8), Column.of("b", Oid.TEXT)),
+          ImmutableList.of(new Object[] { Longs.fromByteArray(params.get(0)), params.get(1) == null ? "null" : new String(params.get(1), StandardCharsets.UTF_8) }))),
+        null);
+    final RowBuffer rows = (RowBuffer) client.submit("SELECT $1, $2", 1234L, "hello").blockingFirst();
+    assertEquals(1234L, rows.longval(0, 0));
+    assertEquals("hello", rows.strval(0, 1));
+  }
+
+  @Test
+  public void testBinaryParameters() {
+    final List<List<byte[]>> received = new ArrayList<>();
+    final PgNettyClient client =
+      connect(EmbeddedPgServer.builder()
+        .responder((sql, params) -> {
+          received.add(params);
+          return ServerResult.command("SELECT 0");
+        }),
+        null);
+    final UUID uuid = UUID.randomUUID();
+    final Instant now = Instant.parse("2020-01-02T03:04:05.123456Z");
+    client.submit(
+      "SELECT $1, $2, $3, $4, $5, $6, $7, $8, $9",
+      true,
+      (short) 7,
+      1.5d,
+      new BigDecimal("-12345.678900"),
+      now,
+      uuid,
+      new int[] { 1, 2 },
+      new String[] { "a", null, "\u00e9" },
+      "text")
+      .blockingSubscribe();
+
+    final List<byte[]> params = received.get(0);
+    assertTrue(ByteConverter.bool(params.get(0), 0));
+    assertEquals(7, ByteConverter.int2(params.get(1), 0));
+    assertEquals(1.5d, ByteConverter.float8(params.get(2), 0), 0);
+    assertEquals(new BigDecimal("-12345.678900"), ByteConverter.numeric(params.get(3)));
+    assertEquals(PostgresTimestamp.fromUnixMicros((now.getEpochSecond() * 1_000_000L) + 123456), ByteConverter.int8(params.get(4), 0));
+    assertEquals(uuid, new UUID(ByteConverter.int8(params.get(5), 0), ByteConverter.int8(params.get(5), 8)));
+
+    // one dimension, no nulls, of int4 with two elements starting at 1.
+    final byte[] ints = params.get(6);
+    assertEquals(1, ByteConverter.int4(ints, 0));
+    assertEquals(0, ByteConverter.int4(ints, 4));
+    assertEquals(Oid.INT4, ByteConverter.int4(ints, 8));
+    assertEquals(2, ByteConverter.int4(ints, 12));
+    assertEquals(1, ByteConverter.int4(ints, 16));
+    assertEquals(4, ByteConverter.int4(ints, 20));
+    assertEquals(1, ByteConverter.int4(ints, 24));
+    assertEquals(2, ByteConverter.int4(ints, 32));
+
+    final byte[] texts = params.get(7);
+    assertEquals(1, ByteConverter.int4(texts, 4));
+    assertEquals(Oid.TEXT, ByteConverter.int4(texts, 8));
+    assertEquals(1, ByteConverter.int4(texts, 20));
+    assertEquals('a', texts[24]);
+    assertEquals(-1, ByteConverter.int4(texts, 25));
+    assertEquals(2, ByteConverter.int4(texts, 29));
+    assertEquals("\u00e9", new String(texts, 33, 2, StandardCharsets.UTF_8));
+
+    assertEquals("text", new String(params.get(8), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testFixedWidthParameters() {
+    final List<List<byte[]>> received = new ArrayList<>();
+    final PgNettyClient client =
+      connect(EmbeddedPgServer.builder()
+        .responder((sql, params) -> {
+          received.add(params);
+          return ServerResult.command("SELECT 0");
+        }),
+        null);
+
+    final DefaultParametersList head = new DefaultParametersList(2);
+    head.setInteger(1, -5).setDouble(2, 2.25d);
+    final DefaultParametersList params = new DefaultParametersList(4);
+    params.append(params.append(1, head), new DefaultParametersList(2).setFrom("x", LocalDate.of(2000, 1, 3)));
+
+    assertTrue(params.isFixedWidth(1));
+    assertEquals(-5, params.getInt(1));
+    assertEquals(-5L, params.getLong(1));
+    assertEquals(2.25d, params.getDouble(2), 0);
+    assertEquals(Double.valueOf(2.25d), params.getValue(2));
+    assertTrue(!params.isFixedWidth(3));
+    assertEquals(LocalDate.of(2000, 1, 3), params.getValue(4));
+
+    client.submit(new SimpleQuery("SELECT $1, $2, $3, $4", 4), params).blockingSubscribe();
+
+    final List<byte[]> sent = received.get(0);
+    assertEquals(4, sent.get(0).length);
+    assertEquals(-5, ByteConverter.int4(sent.get(0), 0));
+    assertEquals(2.25d, ByteConverter.float8(sent.get(1), 0), 0);
+    assertEquals("x", new String(sent.get(2), StandardCharsets.UTF_8));
+    assertEquals(2, ByteConverter.int4(sent.get(3), 0));
+  }
+
+  @Test
+  public void testUnencodableParameter() {
+    final PgNettyClient client = connect(EmbeddedPgServer.builder().on("SELECT * FROM things", THINGS), null, 1);
+    final Query query = client.createQuery("SELECT $1", 1);
+    final TestSubscriber<QueryResult> bad = client.submit(query, query.createParameters().setStringArray(1, Arrays.asList("a"), Oid.POINT)).test();
+    // fails before it is queued, so the query behind it on the same connection still runs.
+    assertEquals(10_000, check(client.submit("SELECT * FROM things").toList().timeout(5, TimeUnit.SECONDS).blockingGet()));
+    bad.awaitDone(5, TimeUnit.SECONDS).assertError(ex -> ex.getMessage().startsWith("no binary codec for OID"));
+    assertEquals(1, this.server.getConnectionCount());
+  }
+
+  @Test
+  public void testExecuteBatch() {
+    final List<Long> inserted = new ArrayList<>();
+    final PgNettyClient client =
+      connect(EmbeddedPgServer.builder()
+        .responder((sql, params) -> {
+          final long id = Longs.fromByteArray(params.get(0));
+          inserted.add(id);
+          return ServerResult.command(id == 0 ? "INSERT 0 0"
+                                              : "INSERT 0 1");
+        }),
+        null,
+        1);
+    final Query query = client.createQuery("INSERT INTO things (id) VALUES ($1)", 1);
+    final List<QueryParameters> batch = new ArrayList<>();
+    for (long i = 0; i < 100; ++i) {
+      batch.add(query.createParameters().setLong(1, i));
+    }
+    final long[] counts = client.executeBatch(query, batch).blockingFirst();
+    assertEquals(100, counts.length);
+    assertEquals(0, counts[0]);
+    for (int i = 1; i < counts.length; ++i) {
+      assertEquals(1, counts[i]);
+    }
+    assertEquals(100, inserted.size());
+    assertEquals(99L, (long) inserted.get(99));
+    // parsed once, and never looked up again for the rest of the batch.
+    assertEquals(1, client.statementCacheStats().requestCount());
+  }
+
+  @Test
+  public void testFetchPages() {
+    final PgNettyClient client = connect(EmbeddedPgServer.builder().on("SELECT * FROM things", THINGS), null);
+    final List<QueryResult> results =
+      client.submit(new SimpleQuery("SELECT * FROM things"), null, QueryOptions.builder().fetchSize(1000).build()).toList().blockingGet();
+    assertEquals(10_000, check(results));
+    assertEquals(10, results.stream().filter(RowBuffer.class::isInstance).count());
+  }
+
+  @Test
+  public void testFetchPagesOnDemand() throws InterruptedException {
+    final PgNettyClient client = connect(EmbeddedPgServer.builder().on("SELECT * FROM things", THINGS), null, 1);
+    final TestSubscriber<QueryResult> paged =
+      client.submit(new SimpleQuery("SELECT * FROM things"), null, QueryOptions.builder().fetchSize(100).build()).test(1);
+    paged.awaitCount(1);
+    Thread.sleep(200);
+    // a page ahead at most, rather than enough to fill the buffer between the event loop and the subscriber.
+    assertTrue(this.server.getQueryCount() + " pages", this.server.getQueryCount() <= 2);
+    paged.requestMore(Long.MAX_VALUE);
+    assertEquals(10_000, check(paged.awaitDone(10, TimeUnit.SECONDS).values()));
+  }
+
+  @Test
+  public void testFetchPagesResubscribed() {
+    final PgNettyClient client = connect(EmbeddedPgServer.builder().on("SELECT * FROM things", THINGS), null, 1);
+    final Flowable<QueryResult> paged = client.connection().join().submit(new SimpleQuery("SELECT * FROM things"), null, QueryOptions.builder().fetchSize(1000).build());
+    // each subscription runs the query, and requests resume its own portal.
+    final TestSubscriber<QueryResult> first = paged.test(1);
+    final TestSubscriber<QueryResult> second = paged.test(1);
+    first.awaitCount(1);
+    first.requestMore(Long.MAX_VALUE);
+    first.awaitDone(10, TimeUnit.SECONDS).assertComplete();
+    second.awaitCount(1);
+    second.requestMore(Long.MAX_VALUE);
+    second.awaitDone(10, TimeUnit.SECONDS).assertComplete();
+    assertEquals(10_000, check(first.values()));
+    assertEquals(10_000, check(second.values()));
+  }
+
+  @Test
+  public void testError() {
+    final PgNettyClient client = connect(EmbeddedPgServer.builder().on("SELECT * FROM broken", ServerResult.error("42P01", "relation \"broken\" does not exist")), null);
+    try {
+      client.submit("SELECT * FROM broken").blockingSubscribe();
+      fail("expected error");
+    }
+    catch (final ErrorResult ex) {
+      assertEquals("42P01", ex.getSQLState());
+    }
+    // the connection is still usable afterwards.
+    assertEquals(0, check(client.submit("SET search_path TO public").toList().blockingGet()));
+  }
+
+  @Test
+  public void testConcurrent() {
+    final PgNettyClient client = connect(EmbeddedPgServer.builder().on("SELECT * FROM things", THINGS), null);
+    final long rows =
+      Flowable.range(0, 100)
+        .flatMap(i -> client.submit("SELECT * FROM things").filter(RowBuffer.class::isInstance).map(r -> (long) ((RowBuffer) r).count()))
+        .reduce(0L, Long::sum)
+        .blockingGet();
+    assertEquals(100 * 10_000L, rows);
+    assertTrue(this.server.getConnectionCount() <= 2);
+  }
+
+  private static EmbeddedPgServerBuilder pipelineServer() {
+    return EmbeddedPgServer.builder()
+      .on("SELECT * FROM things", THINGS)
+      .on("SELECT * FROM broken", ServerResult.error("42P01", "relation \"broken\" does not exist"));
+  }
+
+  @Test
+  public void testPipelined() {
+    this.pipeline(connect(pipelineServer(), null, 1));
+  }
+
+  @Test
+  public void testPipelinedDeferredFlush() {
+    this.pipeline(start(pipelineServer(), b -> b.maxPoolSize(1).flushThreshold(PostgreSQLEncoder.FLUSH_EVENT_LOOP)));
+  }
+
+  private void pipeline(final PgNettyClient client) {
+    // every 10th query fails, which must not affect the ones pipelined around it.
+    final List<String> results =
+      Flowable.range(0, 50)
+        .concatMapEager(i -> client.submit((i % 10) == 5 ? "SELECT * FROM broken"
+                                                         : "SELECT * FROM things")
+          .filter(CommandStatus.class::isInstance)
+          .map(r -> ((CommandStatus) r).getStatus())
+          .onErrorReturn(ex -> ((ErrorResult) ex).getSQLState()))
+        .toList()
+        .blockingGet();
+    assertEquals(50, results.size());
+    for (int i = 0; i < results.size(); ++i) {
+      assertEquals((i % 10) == 5 ? "42P01"
+                                 : "SELECT 10000",
+        results.get(i));
+    }
+    assertEquals(1, this.server.getConnectionCount());
+  }
+
+  @Test
+  public void testIdleMaintenance() throws InterruptedException {
+    final PgNettyClient client =
+      start(EmbeddedPgServer.builder().on("SELECT pg_sleep(0.1)", ServerResult.command("SELECT 1").delay(Duration.ofMillis(100))),
+        b -> b.maxPoolSize(2).minIdle(1).idleTimeout(Duration.ofMillis(200)).connectTimeout(Duration.ofSeconds(1)));
+    Flowable.range(0, 2).flatMap(i -> client.submit("SELECT pg_sleep(0.1)")).blockingSubscribe();
+    assertEquals(2, this.server.getConnectionCount());
+    // the one beyond minIdle is closed once idle.
+    for (int i = 0; (i < 100) && (this.server.getConnectionCount() > 1); ++i) {
+      Thread.sleep(20);
+    }
+    assertEquals(1, this.server.getConnectionCount());
+    // the other is kept, and replaced ahead of the next query if dropped.
+    final PgConnection kept = client.connection().join();
+    kept.channel().close().sync();
+    Thread.sleep(300);
+    final PgConnection replaced = client.connection().join();
+    assertTrue(replaced != kept);
+    assertTrue(replaced.ready().isDone());
+    assertEquals("SELECT 1", ((CommandStatus) client.submit("SELECT pg_sleep(0.1)").blockingLast()).getStatus());
+    assertEquals(1, this.server.getConnectionCount());
+  }
+
+  @Test
+  public void testTransactionalSession() throws Exception {
+    final PgNettyClient client = connect(pipelineServer(), null, 1);
+    final PgConnection conn = client.connection().join();
+    // the only connection is shared, so is given back for the session to take once it has nothing outstanding.
+    final TransactionalSession session = client.open();
+    assertEquals(10_000, check(Flowable.fromPublisher(session.submit("SELECT * FROM things")).toList().blockingGet()));
+    assertEquals(TransactionStatus.Transaction, conn.getTransactionStatus());
+    Flowable.fromPublisher(session.submit("COMMIT")).blockingSubscribe();
+    assertEquals(SessionTxnState.Closed, session.txnstate().get(5, TimeUnit.SECONDS));
+    // back in the pool, out of the transaction.
+    assertSame(conn, client.connection().join());
+    assertEquals(TransactionStatus.Idle, conn.getTransactionStatus());
+
+    final TransactionalSession failed = client.open();
+    Flowable.fromPublisher(failed.submit("SELECT * FROM broken")).test().awaitDone(5, TimeUnit.SECONDS).assertError(ErrorResult.class);
+    assertEquals(SessionTxnState.Error, failed.txnstate().get(5, TimeUnit.SECONDS));
+    assertSame(conn, client.connection().join());
+    assertEquals(TransactionStatus.Idle, conn.getTransactionStatus());
+
+    final TransactionalSession closed = client.open();
+    Flowable.fromPublisher(closed.submit("SELECT * FROM things")).blockingSubscribe();
+    closed.close();
+    assertEquals(SessionTxnState.Closed, closed.txnstate().get(5, TimeUnit.SECONDS));
+    assertSame(conn, client.connection().join());
+    assertEquals(TransactionStatus.Idle, conn.getTransactionStatus());
+    assertEquals(1, this.server.getConnectionCount());
+  }
+
+  @Test
+  public void testSession() {
+    final PgNettyClient client = connect(pipelineServer(), null, 2);
+    final PgSession session = client.openSession();
+    // one of its own, rather than one of those the client's queries share.
+    assertEquals(10_000, check(Flowable.fromPublisher(session.submit("SELECT * FROM things")).toList().blockingGet()));
+    assertEquals(10_000, check(client.submit("SELECT * FROM things").toList().blockingGet()));
+    assertEquals(2, this.server.getConnectionCount());
+    session.close();
+    try {
+      session.submit("SELECT * FROM things");
+      fail("expected session to be closed");
+    }
+    catch (final IllegalStateException ex) {
+      // expected.
+    }
+  }
+
+  @Test
+  public void testConnectTimeout() throws Exception {
+    // the connection is accepted by the kernel, but nothing ever answers the startup message.
+    try (ServerSocket server = new ServerSocket(0)) {
+      this.client = PgNettyClient.create(b -> b.hostname("localhost").port(server.getLocalPort()).dbname("test").username("test").connectTimeout(Duration.ofMillis(200)));
+      this.client.submit("SELECT 1").test().awaitDone(5, TimeUnit.SECONDS).assertError(PostgresqlUnavailableException.class);
+    }
+  }
+
+  @Test
+  public void testTransports() {
+    for (final PgTransport transport : PgTransport.values()) {
+      if (!transport.isAvailable()) {
+        continue;
+      }
+      final PgNettyClient client =
+        start(EmbeddedPgServer.builder().on("SELECT * FROM things", THINGS),
+          b -> b.maxPoolSize(1).nativeTransport(transport != PgTransport.NIO).tcpQuickAck(true).busyPollMicros(10));
+      assertEquals(10_000, check(client.submit("SELECT * FROM things").toList().blockingGet()));
+      this.close();
+    }
+  }
+
+  @Test
+  public void testStatementCache() {
+    final AtomicBoolean changed = new AtomicBoolean();
+    final PgNettyClient client =
+      start(EmbeddedPgServer.builder()
+        .on("SELECT * FROM things", THINGS)
+        .on("DISCARD ALL", ServerResult.command("DISCARD ALL"))
+        .responder((sql, params) -> changed.getAndSet(false) ? ServerResult.error("0A000", "cached plan must not change result type")
+                                                             : ServerResult.command("SELECT 0")),
+        b -> b.maxPoolSize(1).statementCacheSize(2));
+
+    for (int i = 0; i < 3; ++i) {
+      client.submit("SELECT * FROM things").blockingSubscribe();
+    }
+    assertEquals(1, client.statementCacheStats().missCount());
+    assertEquals(2, client.statementCacheStats().hitCount());
+
+    // the first is evicted by the third.
+    client.submit("SELECT 1").blockingSubscribe();
+    client.submit("SELECT 2").blockingSubscribe();
+    assertEquals(1, client.statementCacheStats().evictionCount());
+    client.submit("SELECT * FROM things").blockingSubscribe();
+    assertEquals(4, client.statementCacheStats().missCount());
+
+    // a changed result type drops the statement, which is then parsed again.
+    changed.set(true);
+    try {
+      client.submit("SELECT 2").blockingSubscribe();
+      fail("expected error");
+    }
+    catch (final ErrorResult ex) {
+      assertEquals("0A000", ex.getSQLState());
+    }
+    client.submit("SELECT 2").blockingSubscribe();
+    assertEquals(5, client.statementCacheStats().missCount());
+
+    // as does DISCARD ALL for all of them.
+    client.submit("DISCARD ALL").blockingSubscribe();
+    final long misses = client.statementCacheStats().missCount();
+    client.submit("SELECT 2").blockingSubscribe();
+    assertEquals(misses + 1, client.statementCacheStats().missCount());
+  }
+
+  @Test
+  public void testStatementCachePipelinedError() {
+    final PgNettyClient client =
+      start(EmbeddedPgServer.builder()
+        .on("SELECT 1", ServerResult.repeat(1, Column.of("a", Oid.INT4), 1))
+        .on("SELECT * FROM broken", ServerResult.error("42P01", "relation \"broken\" does not exist")),
+        b -> b.maxPoolSize(1).flushThreshold(PostgreSQLEncoder.FLUSH_EVENT_LOOP));
+    final Query failing = client.createQuery(Arrays.asList(client.createQuery("SELECT * FROM broken", 0), client.createQuery("SELECT 1", 0)));
+    // the second is sent before the Parse in the first is skipped, so mustn't use the statement it names.
+    final List<String> results =
+      Flowable.just(failing, client.createQuery("SELECT 1", 0))
+        .concatMapEager(q -> client.submit(q)
+          .filter(CommandStatus.class::isInstance)
+          .map(r -> ((CommandStatus) r).getStatus())
+          .onErrorReturn(ex -> ((ErrorResult) ex).getSQLState()))
+        .toList()
+        .blockingGet();
+    assertEquals(Arrays.asList("42P01", "SELECT 1"), results);
+    assertEquals("SELECT 1", ((CommandStatus) client.submit("SELECT 1").blockingLast()).getStatus());
+    assertEquals("SELECT 1", ((CommandStatus) client.submit("SELECT 1").blockingLast()).getStatus());
+    assertEquals(1, client.statementCacheStats().hitCount());
+  }
+
+  @Test
+  public void testStatementCacheCloseSkipped() {
+    final PgNettyClient client =
+      start(EmbeddedPgServer.builder().on("SELECT * FROM broken", ServerResult.error("42P01", "relation \"broken\" does not exist")),
+        b -> b.maxPoolSize(1).statementCacheSize(2));
+    client.submit("SELECT 1").blockingSubscribe();
+    client.submit("SELECT 2").blockingSubscribe();
+    // each Parse evicts one: the Close before the failing statement is run, the one after it skipped.
+    final Query failing = client.createQuery(Arrays.asList(client.createQuery("SELECT * FROM broken", 0), client.createQuery("SELECT 3", 0)));
+    client.submit(failing).test().awaitDone(5, TimeUnit.SECONDS).assertError(ErrorResult.class);
+    assertEquals(1, this.server.getCloseCount());
+    // so it is closed again by the next.
+    client.submit("SELECT 1").blockingSubscribe();
+    assertEquals(2, this.server.getCloseCount());
+  }
+
+  @Test
+  public void testDescribeCached() {
+    final PgNettyClient client =
+      connect(EmbeddedPgServer.builder().on("SELECT * FROM things", THINGS).on("SET a = 1", ServerResult.command("SET")), null, 1);
+    for (int i = 0; i < 3; ++i) {
+      final List<QueryResult> results = client.submit("SELECT * FROM things").toList().blockingGet();
+      assertEquals(10_000, check(results));
+      assertEquals("half", ((RowBuffer) results.get(0)).meta().field(2).label());
+      assertEquals(1, client.submit("SET a = 1").toList().blockingGet().size());
+    }
+    final List<QueryResult> pages =
+      client.submit(new SimpleQuery("SELECT * FROM things"), null, QueryOptions.builder().fetchSize(1000).build()).toList().blockingGet();
+    assertEquals(10_000, check(pages));
+    // each statement is only described by its first execution.
+    assertEquals(2, this.server.getDescribeCount());
+  }
+
+  @Test
+  public void testCopyOut() {
+    final PgNettyClient client = connect(EmbeddedPgServer.builder().on("COPY things TO STDOUT", THINGS), null, 1);
+    final String text =
+      client.copyOut("COPY things TO STDOUT")
+        .map(buf -> {
+          try {
+            return buf.toString(StandardCharsets.UTF_8);
+          }
+          finally {
+            buf.release();
+          }
+        })
+        .reduce(new StringBuilder(), StringBuilder::append)
+        .blockingGet()
+        .toString();
+    final String[] lines = text.split("\n");
+    assertEquals(10_000, lines.length);
+    assertEquals("0\tthing 0\t\\N", lines[0]);
+    assertEquals("1\tthing 1\t0.5", lines[1]);
+  }
+
+  @Test
+  public void testCopyOutBinary() {
+    final PgNettyClient client = connect(EmbeddedPgServer.builder().on("COPY things TO STDOUT (FORMAT binary)", THINGS), null, 1);
+    final List<QueryResult> batches =
+      client.copyOut("COPY things TO STDOUT (FORMAT binary)")
+        .compose(PgBinaryCopyDecoder.builder().column("id", Oid.INT8).column("name", Oid.TEXT).column("half", Oid.FLOAT8).batchSize(4096).build())
+        .<QueryResult>map(x -> x)
+        .toList()
+        .blockingGet();
+    assertEquals(3, batches.size());
+    assertEquals(10_000, check(batches));
+  }
+
+  @Test
+  public void testCopyOutBackpressure() throws InterruptedException {
+    final int count = 2_000_000;
+    final AtomicLong generated = new AtomicLong();
+    final PgNettyClient client =
+      connect(EmbeddedPgServer.builder()
+        .on("COPY things TO STDOUT", ServerResult.generate(count, i -> new Object[] { generated.incrementAndGet(), "thing " + i }, Column.of("id", Oid.INT8), Column.of("name", Oid.TEXT)))
+        .on("SELECT * FROM things", THINGS),
+        null,
+        1);
+
+    final TestSubscriber<ByteBuf> slow = client.copyOut("COPY things TO STDOUT").doOnNext(ByteBuf::release).test(1);
+    slow.awaitCount(1);
+    Thread.sleep(200);
+    // the server blocks on the socket rather than everything being read into memory.
+    assertEquals(1, slow.values().size());
+    assertTrue(generated.get() + " rows", generated.get() < count);
+
+    // cancelling stops the server, rather than the rest being sent and discarded, and the connection can be used again.
+    slow.cancel();
+    assertEquals(10_000, check(client.submit("SELECT * FROM things").toList().blockingGet()));
+    assertEquals(1, this.server.getCancelCount());
+    assertEquals(1, this.server.getConnectionCount());
+    assertTrue(generated.get() + " rows", generated.get() < (count / 2));
+  }
+
+  @Test
+  public void testCopyOutCancelPipelined() {
+    final PgNettyClient client =
+      connect(EmbeddedPgServer.builder()
+        .on("COPY things TO STDOUT", ServerResult.generate(1000, i -> new Object[] { i, "thing " + i }, Column.of("id", Oid.INT8), Column.of("name", Oid.TEXT)))
+        .on("SELECT * FROM things", ServerResult.generate(200_000, i -> new Object[] { i, "thing " + i, (i % 2) == 0 ? null : (i / 2.0) },
+          Column.of("id", Oid.INT8), Column.of("name", Oid.TEXT), Column.of("half", Oid.FLOAT8))),
+        null,
+        1);
+    // small enough for the server to have sent all of it by the time the subscriber cancels.
+    final TestSubscriber<ByteBuf> copy = client.copyOut("COPY things TO STDOUT").doOnNext(ByteBuf::release).test(1);
+    copy.awaitCount(1);
+    final TestSubscriber<QueryResult> after = client.submit("SELECT * FROM things").test();
+    copy.cancel();
+    // the CancelRequest must not reach the server while it runs the query queued behind the COPY.
+    after.awaitDone(10, TimeUnit.SECONDS).assertNoErrors().assertComplete();
+    assertEquals(200_000, check(after.values()));
+    assertEquals(1, this.server.getConnectionCount());
+  }
+
+  @Test
+  public void testCopyOutError() {
+    final PgNettyClient client =
+      connect(EmbeddedPgServer.builder().on("COPY broken TO STDOUT", ServerResult.error("42P01", "relation \"broken\" does not exist")), null);
+    try {
+      client.copyOut("COPY broken TO STDOUT").blockingSubscribe();
+      fail("expected error");
+    }
+    catch (final ErrorResult ex) {
+      assertEquals("42P01", ex.getSQLState());
+    }
+  }
+
+  @Test
+  public void testCopyIn() {
+    final ByteBuf received = Unpooled.buffer();
+    final PgNettyClient client =
+      connect(EmbeddedPgServer.builder().on(sql -> sql.startsWith("COPY things"), ServerResult.copyIn(received::writeBytes)).on("SELECT * FROM things", THINGS), null, 1);
+    final AtomicLong outstanding = new AtomicLong();
+    final AtomicLong maxOutstanding = new AtomicLong();
+    final Flowable<ByteBuf> tuples =
+      Flowable.range(0, 1000)
+        .map(i -> {
+          final ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(14);
+          buf.writeShort(1).writeInt(8).writeLong(i);
+          return buf;
+        })
+        .concatWith(Flowable.fromCallable(() -> PooledByteBufAllocator.DEFAULT.directBuffer(2).writeShort(-1)))
+        .doOnRequest(n -> maxOutstanding.accumulateAndGet(outstanding.addAndGet(n), Math::max))
+        .doOnNext(buf -> outstanding.decrementAndGet());
+
+    // a query queued behind the copy waits for it to end.
+    final Flowable<QueryResult> after = client.submit("SELECT * FROM things").cache();
+    assertEquals(1000, client.copyTo("COPY things (id) FROM STDIN BINARY", tuples).blockingSingle().longValue());
+    assertEquals(10_000, check(after.toList().blockingGet()));
+
+    assertEquals(PgThreadPooledClient.BINARY_PREAMBLE.length + (1000 * 14) + 2, received.readableBytes());
+    assertEquals(999, received.getLong(received.writerIndex() - 2 - 8));
+    assertTrue(maxOutstanding.get() + " requested", maxOutstanding.get() <= 16);
+  }
+
+  @Test
+  public void testCopyInSourceError() {
+    final PgNettyClient client =
+      connect(EmbeddedPgServer.builder().on(sql -> sql.startsWith("COPY things"), ServerResult.copyIn(buf -> {})).on("SELECT * FROM things", THINGS), null, 1);
+    try {
+      client.copyTo("COPY things (id) FROM STDIN BINARY", Flowable.error(new IllegalStateException("source failed"))).blockingSubscribe();
+      fail("expected error");
+    }
+    catch (final IllegalStateException ex) {
+      assertEquals("source failed", ex.getMessage());
+    }
+    // the CopyFail ended the copy, so the connection is still usable.
+    assertEquals(10_000, check(client.submit("SELECT * FROM things").toList().blockingGet()));
+  }
+
+  @Test
+  public void testPassword() {
+    final PgNettyClient client = connect(EmbeddedPgServer.builder().password("secret").on("SELECT * FROM things", THINGS), "secret");
+    assertEquals(10_000, check(client.submit("SELECT * FROM things").toList().blockingGet()));
+  }
+
+}
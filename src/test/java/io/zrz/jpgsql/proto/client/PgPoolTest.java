@@ -0,0 +1,185 @@
+package io.zrz.jpgsql.proto.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+import org.postgresql.core.Oid;
+
+import io.zrz.jpgsql.client.CommandStatus;
+import io.zrz.jpgsql.client.PostgresqlUnavailableException;
+import io.zrz.jpgsql.client.QueryResult;
+import io.zrz.jpgsql.client.SimpleQuery;
+import io.zrz.jpgsql.proto.server.EmbeddedPgServer;
+import io.zrz.jpgsql.proto.server.ServerResult;
+import io.zrz.jpgsql.proto.server.ServerResult.Column;
+
+public class PgPoolTest {
+
+  private EmbeddedPgServer server;
+  private PgPool pool;
+
+  @After
+  public void close() {
+    if (this.pool != null) {
+      this.pool.close();
+      this.pool = null;
+    }
+    if (this.server != null) {
+      this.server.close();
+      this.server = null;
+    }
+  }
+
+  private PgPool start(final PgPoolBuilder builder) {
+    this.server =
+      EmbeddedPgServer.builder()
+        .on("SELECT 1", ServerResult.repeat(1, Column.of("a", Oid.INT4), 1))
+        .on("SELECT pg_sleep(2)", ServerResult.command("SELECT 1").delay(Duration.ofSeconds(2)))
+        .start();
+    this.pool = builder.connections(new PgConnectionBuilder().username("test").database("test")).newPool(this.server.getHostname(), this.server.getPort());
+    return this.pool;
+  }
+
+  @Test
+  public void testWarmup() throws Exception {
+    final PgPool pool = start(new PgPoolBuilder().minIdle(2));
+    pool.warmup().get();
+    assertEquals(2, pool.size());
+    assertEquals(0, pool.acquired());
+    assertEquals(2, this.server.getConnectionCount());
+    // handed out ready, without opening another.
+    final PgConnection conn = pool.acquire().get();
+    assertTrue(conn.ready().isDone());
+    assertEquals(1, pool.acquired());
+    pool.release(conn);
+    final QueryResult last = pool.submit(new SimpleQuery("SELECT 1"), null).blockingLast();
+    assertEquals("SELECT 1", ((CommandStatus) last).getStatus());
+    assertEquals(2, this.server.getConnectionCount());
+  }
+
+  @Test
+  public void testTopUp() throws Exception {
+    final PgPool pool = start(new PgPoolBuilder().minIdle(2).maintenanceInterval(Duration.ofMillis(50)));
+    pool.warmup().get();
+    final PgConnection conn = pool.acquire().get();
+    conn.channel().close().sync();
+    pool.release(conn);
+    for (int i = 0; (i < 100) && ((pool.size() < 2) || (this.server.getConnectionCount() < 2)); ++i) {
+      Thread.sleep(20);
+    }
+    assertEquals(2, pool.size());
+    assertEquals(2, this.server.getConnectionCount());
+  }
+
+  @Test
+  public void testAcquireTimeout() throws Exception {
+    final PgPool pool = start(new PgPoolBuilder().maxConnections(1).acquireTimeout(Duration.ofMillis(100)));
+    final PgConnection conn = pool.acquire().get();
+    try {
+      pool.acquire().get();
+      fail("expected timeout");
+    }
+    catch (final ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof PostgresqlUnavailableException);
+      assertTrue(ex.getCause().getCause() instanceof TimeoutException);
+    }
+    pool.release(conn);
+    assertSame(conn, pool.acquire().get());
+  }
+
+  @Test
+  public void testValidateIdle() throws Exception {
+    final PgPool pool = start(new PgPoolBuilder().maxConnections(1).validateAfter(Duration.ZERO));
+    final PgConnection conn = pool.acquire().get();
+    pool.release(conn);
+    // passes the Sync, so is handed out again.
+    assertSame(conn, pool.acquire().get());
+    pool.release(conn);
+    // a dropped one is replaced.
+    conn.channel().close().sync();
+    final PgConnection replaced = pool.acquire().get();
+    assertNotSame(conn, replaced);
+    assertEquals("SELECT 1", ((CommandStatus) replaced.submit(new SimpleQuery("SELECT 1"), null).blockingLast()).getStatus());
+    assertEquals(1, this.server.getConnectionCount());
+  }
+
+  @Test
+  public void testValidationTimeout() throws Exception {
+    final PgPool pool = start(new PgPoolBuilder().maxConnections(1).validateAfter(Duration.ZERO).validationTimeout(Duration.ofMillis(100)));
+    final PgConnection conn = pool.acquire().get();
+    // still running when the connection is next validated, so the Sync isn't answered in time.
+    conn.submit(new SimpleQuery("SELECT pg_sleep(2)"), null).subscribe(r -> {}, ex -> {});
+    pool.release(conn).get();
+    final long start = System.nanoTime();
+    final PgConnection replaced = pool.acquire().get();
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1000);
+    assertNotSame(conn, replaced);
+    assertFalse(conn.channel().isActive());
+    assertEquals("SELECT 1", ((CommandStatus) replaced.submit(new SimpleQuery("SELECT 1"), null).blockingLast()).getStatus());
+  }
+
+  @Test
+  public void testHandshakeTimeout() throws Exception {
+    // accepts connections, but never answers the startup message.
+    try (ServerSocket server = new ServerSocket(0)) {
+      final List<Socket> accepted = new ArrayList<>();
+      final Thread acceptor = new Thread(() -> {
+        try {
+          while (true) {
+            accepted.add(server.accept());
+          }
+        }
+        catch (final Exception ex) {
+          // closed.
+        }
+      });
+      acceptor.setDaemon(true);
+      acceptor.start();
+      this.pool =
+        new PgPoolBuilder()
+          .maxConnections(1)
+          .minIdle(1)
+          .connectTimeout(Duration.ofMillis(200))
+          .connections(new PgConnectionBuilder().username("test").database("test"))
+          .newPool("localhost", server.getLocalPort());
+      try {
+        this.pool.warmup().get(5, TimeUnit.SECONDS);
+        fail("expected warmup to fail");
+      }
+      catch (final ExecutionException ex) {
+        assertTrue(ex.getCause() instanceof PostgresqlUnavailableException);
+      }
+      // the failed connection gave its slot back, so the next acquire tries again rather than waiting for it.
+      try {
+        this.pool.acquire().get(5, TimeUnit.SECONDS);
+        fail("expected acquire to fail");
+      }
+      catch (final ExecutionException ex) {
+        assertTrue(ex.getCause() instanceof PostgresqlUnavailableException);
+      }
+      for (int i = 0; (i < 100) && (this.pool.size() > 0); ++i) {
+        Thread.sleep(20);
+      }
+      assertEquals(0, this.pool.size());
+      for (final Socket socket : accepted) {
+        socket.close();
+      }
+    }
+  }
+
+}
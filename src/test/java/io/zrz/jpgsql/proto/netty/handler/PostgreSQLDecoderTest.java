@@ -0,0 +1,75 @@
+package io.zrz.jpgsql.proto.netty.handler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.zrz.jpgsql.proto.wire.DataRow;
+
+public class PostgreSQLDecoderTest {
+
+  private static ByteBuf row() {
+    final ByteBuf body = Unpooled.buffer();
+    body.writeShort(5);
+    body.writeInt(4).writeInt(42);
+    body.writeInt(-1);
+    body.writeInt(0);
+    final byte[] text = "héllo".getBytes(StandardCharsets.UTF_8);
+    body.writeInt(text.length).writeBytes(text);
+    body.writeInt(8).writeDouble(1.5);
+    final ByteBuf msg = Unpooled.buffer();
+    msg.writeByte('D').writeInt(4 + body.readableBytes()).writeBytes(body);
+    return msg;
+  }
+
+  @Test
+  public void testDataRow() {
+    final EmbeddedChannel channel = new EmbeddedChannel(new PostgreSQLDecoder());
+    final ByteBuf frames = row();
+    // split across reads.
+    channel.writeInbound(frames.readRetainedSlice(7), frames);
+    final DataRow row = channel.readInbound();
+    assertEquals(5, row.size());
+    assertEquals(42, row.int4(0));
+    assertTrue(row.isNull(1));
+    assertNull(row.text(1));
+    assertNull(row.value(1));
+    // empty isn't NULL.
+    assertFalse(row.isNull(2));
+    assertEquals("", row.text(2));
+    assertEquals("héllo", row.text(3));
+    assertEquals(6, row.value(3).readableBytes());
+    assertEquals(1.5, row.float8(4), 0);
+    assertArrayEquals(new byte[0], row.getData().get(2));
+    assertEquals(1, row.refCnt());
+    assertTrue(row.release());
+    assertFalse(channel.finish());
+  }
+
+  @Test
+  public void testRoundTrip() {
+    final DataRow row = new DataRow(Arrays.asList("a".getBytes(StandardCharsets.UTF_8), null));
+    final EmbeddedChannel channel = new EmbeddedChannel(new PostgreSQLEncoder(), new PostgreSQLDecoder());
+    // writing it passes on a reference, which the encoder releases.
+    channel.writeOutbound(row.retain());
+    final ByteBuf out = channel.readOutbound();
+    channel.writeInbound(out);
+    final DataRow decoded = channel.readInbound();
+    assertEquals(row, decoded);
+    assertEquals("a", decoded.text(0));
+    assertTrue(decoded.isNull(1));
+    decoded.release();
+    assertTrue(row.release());
+  }
+
+}
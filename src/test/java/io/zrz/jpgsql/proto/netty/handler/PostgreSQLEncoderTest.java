@@ -0,0 +1,123 @@
+package io.zrz.jpgsql.proto.netty.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.zrz.jpgsql.proto.wire.Bind;
+import io.zrz.jpgsql.proto.wire.Describe;
+import io.zrz.jpgsql.proto.wire.Execute;
+import io.zrz.jpgsql.proto.wire.Parse;
+import io.zrz.jpgsql.proto.wire.PostgreSQLPacket;
+import io.zrz.jpgsql.proto.wire.Query;
+import io.zrz.jpgsql.proto.wire.Sync;
+
+public class PostgreSQLEncoderTest {
+
+  private static List<PostgreSQLPacket> statement() {
+    return Arrays.asList(
+      new Parse("S_1", "SELECT $1"),
+      new Bind("", "S_1", ImmutableList.of(), ImmutableList.of(), ImmutableList.of()),
+      new Describe(Describe.PORTAL, ""),
+      new Execute("", 0),
+      new Sync());
+  }
+
+  /**
+   * the messages encoded one at a time.
+   */
+  private static ByteBuf separately(final List<PostgreSQLPacket> msgs) {
+    final ByteBuf out = Unpooled.buffer();
+    for (final PostgreSQLPacket msg : msgs) {
+      final EmbeddedChannel channel = new EmbeddedChannel(new PostgreSQLEncoder());
+      channel.writeAndFlush(msg);
+      final ByteBuf buf = channel.readOutbound();
+      out.writeBytes(buf);
+      buf.release();
+      assertFalse(channel.finish());
+    }
+    return out;
+  }
+
+  @Test
+  public void testCoalesce() {
+    final EmbeddedChannel channel = new EmbeddedChannel(new PostgreSQLEncoder());
+    final ChannelFuture[] futures = statement().stream().map(channel::write).toArray(ChannelFuture[]::new);
+    assertNull(channel.readOutbound());
+    channel.flush();
+    final ByteBuf out = channel.readOutbound();
+    assertEquals(separately(statement()), out);
+    out.release();
+    assertNull(channel.readOutbound());
+    for (final ChannelFuture future : futures) {
+      assertTrue(future.isSuccess());
+    }
+    assertFalse(channel.finish());
+  }
+
+  @Test
+  public void testPassThrough() {
+    final EmbeddedChannel channel = new EmbeddedChannel(new PostgreSQLEncoder());
+    final ByteBuf raw = Unpooled.wrappedBuffer(new byte[] { 'd', 0, 0, 0, 5, 1 });
+    channel.write(new Sync());
+    channel.write(raw);
+    channel.writeAndFlush(new Sync());
+    // the order is kept.
+    final ByteBuf first = channel.readOutbound();
+    assertEquals(separately(Arrays.asList(new Sync())), first);
+    assertSame(raw, channel.readOutbound());
+    final ByteBuf last = channel.readOutbound();
+    assertEquals(first, last);
+    first.release();
+    last.release();
+    raw.release();
+    assertFalse(channel.finish());
+  }
+
+  @Test
+  public void testDeferredFlush() {
+    final EmbeddedChannel channel = new EmbeddedChannel(new PostgreSQLEncoder(PostgreSQLEncoder.FLUSH_EVENT_LOOP));
+    statement().forEach(channel::write);
+    channel.flush();
+    statement().forEach(channel::write);
+    channel.flush();
+    // nothing goes out until the task that flushed is done, and then both statements go together.
+    assertNull(channel.readOutbound());
+    channel.runPendingTasks();
+    final ByteBuf out = channel.readOutbound();
+    final ByteBuf expected = separately(statement());
+    assertEquals(Unpooled.wrappedBuffer(expected.retainedDuplicate(), expected), out);
+    out.release();
+    assertFalse(channel.finish());
+  }
+
+  @Test
+  public void testFlushThreshold() {
+    final EmbeddedChannel channel = new EmbeddedChannel(new PostgreSQLEncoder(64));
+    channel.writeAndFlush(new Sync());
+    assertNull(channel.readOutbound());
+    // over the threshold goes out straight away, along with what was waiting.
+    channel.writeAndFlush(new Query(Strings.repeat("x", 64)));
+    final ByteBuf out = channel.readOutbound();
+    assertEquals(5 + 70, out.readableBytes());
+    out.release();
+    channel.runPendingTasks();
+    assertNull(channel.readOutbound());
+    assertFalse(channel.finish());
+  }
+
+}
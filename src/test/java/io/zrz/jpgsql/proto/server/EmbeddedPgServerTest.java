@@ -0,0 +1,151 @@
+package io.zrz.jpgsql.proto.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.postgresql.core.Oid;
+import org.postgresql.jdbc.PgConnection;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.reactivex.rxjava3.core.Flowable;
+import io.zrz.jpgsql.client.QueryResult;
+import io.zrz.jpgsql.client.RowBuffer;
+import io.zrz.jpgsql.client.SimpleQuery;
+import io.zrz.jpgsql.client.opj.PgThreadPooledClient;
+import io.zrz.jpgsql.client.opj.PostgresQueryException;
+import io.zrz.jpgsql.proto.server.ServerResult.Column;
+
+public class EmbeddedPgServerTest {
+
+  private static final ServerResult THINGS =
+    ServerResult.generate(
+      10_000,
+      i -> new Object[] { i, "thing " + i, (i % 2) == 0 ? null : (i / 2.0) },
+      Column.of("id", Oid.INT8),
+      Column.of("name", Oid.TEXT),
+      Column.of("half", Oid.FLOAT8));
+
+  private EmbeddedPgServer server;
+  private PgThreadPooledClient client;
+
+  @After
+  public void close() {
+    if (this.client != null) {
+      this.client.close();
+    }
+    if (this.server != null) {
+      this.server.close();
+    }
+  }
+
+  private PgThreadPooledClient connect(final EmbeddedPgServerBuilder builder, final String password) {
+    this.server = builder.start();
+    this.client =
+      PgThreadPooledClient.create(b -> {
+        b.hostname(this.server.getHostname()).port(this.server.getPort()).dbname("test").username("test").maxPoolSize(2);
+        return password == null ? b
+                                : b.password(password);
+      });
+    return this.client;
+  }
+
+  private static long check(final List<QueryResult> results) {
+    long rows = 0;
+    for (final QueryResult result : results) {
+      if (!(result instanceof RowBuffer)) {
+        continue;
+      }
+      final RowBuffer buffer = (RowBuffer) result;
+      for (int i = 0; i < buffer.count(); ++i, ++rows) {
+        assertEquals(rows, buffer.longval(i, 0));
+        assertEquals("thing " + rows, buffer.strval(i, 1));
+        assertEquals((rows % 2) == 0 ? null : Double.toString(rows / 2.0), buffer.strval(i, 2));
+      }
+    }
+    return rows;
+  }
+
+  @Test
+  public void testSelect() {
+    final PgThreadPooledClient client = connect(EmbeddedPgServer.builder().on("SELECT * FROM things", THINGS), null);
+    assertEquals(10_000, check(client.submit("SELECT * FROM things;").toList().blockingGet()));
+    assertEquals(10_000, check(client.submit("SELECT * FROM things").toList().blockingGet()));
+    assertTrue(this.server.getQueryCount() >= 2);
+  }
+
+  @Test
+  public void testFetchPages() {
+    final PgThreadPooledClient client = connect(EmbeddedPgServer.builder().on("SELECT * FROM things", THINGS), null);
+    final List<QueryResult> results = client.submit(new SimpleQuery("SELECT * FROM things"), null, 1000).toList().blockingGet();
+    assertEquals(10_000, check(results));
+    assertTrue(results.size() >= 10);
+  }
+
+  @Test
+  public void testError() {
+    final PgThreadPooledClient client = connect(EmbeddedPgServer.builder().on("SELECT * FROM broken", ServerResult.error("42P01", "relation \"broken\" does not exist")), null);
+    try {
+      client.submit("SELECT * FROM broken").blockingSubscribe();
+      fail("expected error");
+    }
+    catch (final PostgresQueryException ex) {
+      assertEquals("42P01", ex.getErrorResult().get().getSQLState());
+    }
+    // the connection is still usable afterwards.
+    assertEquals(0, check(client.submit("SET search_path TO public").toList().blockingGet()));
+  }
+
+  @Test
+  public void testDelay() {
+    final PgThreadPooledClient client = connect(EmbeddedPgServer.builder().on("SELECT * FROM things", THINGS.delay(Duration.ofMillis(250))), null);
+    final long start = System.nanoTime();
+    assertEquals(10_000, check(client.submit("SELECT * FROM things").toList().blockingGet()));
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 250);
+  }
+
+  @Test
+  public void testPassword() {
+    final PgThreadPooledClient client = connect(EmbeddedPgServer.builder().password("secret").on("SELECT * FROM things", THINGS), "secret");
+    assertEquals(10_000, check(client.submit("SELECT * FROM things").toList().blockingGet()));
+  }
+
+  @Test
+  public void testCopyIn() {
+    final ByteBuf received = Unpooled.buffer();
+    final PgThreadPooledClient client = connect(EmbeddedPgServer.builder().on(sql -> sql.startsWith("COPY things"), ServerResult.copyIn(received::writeBytes)), null);
+    final ByteBuf data = Unpooled.buffer();
+    for (int i = 0; i < 100; ++i) {
+      data.writeShort(1);
+      data.writeInt(8);
+      data.writeLong(i);
+    }
+    data.writeShort(-1);
+    final int length = data.readableBytes();
+    assertEquals(100, Flowable.fromPublisher(client.copyTo("COPY things (id) FROM STDIN BINARY", Flowable.just(data))).blockingSingle().longValue());
+    assertEquals(PgThreadPooledClient.BINARY_PREAMBLE.length + length, received.readableBytes());
+    assertEquals(99, received.getLong(received.writerIndex() - 2 - 8));
+  }
+
+  @Test
+  public void testCopyOut() throws Exception {
+    connect(EmbeddedPgServer.builder().on("COPY things TO STDOUT", THINGS), null);
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (PgConnection conn = this.client.createConnection()) {
+      assertEquals(10_000, conn.getCopyAPI().copyOut("COPY things TO STDOUT", out));
+    }
+    final String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    assertEquals(10_000, lines.length);
+    assertEquals("0\tthing 0\t\\N", lines[0]);
+    assertEquals("1\tthing 1\t0.5", lines[1]);
+  }
+
+}